@@ -26,4 +26,13 @@ import java.lang.annotation.*;
 @Target(value = ElementType.TYPE)
 @Retention(value = RetentionPolicy.RUNTIME)
 public @interface Component {
+    /**
+     * <p>Flag indicating if component is double buffered.</p>
+     * <p>Double buffered component should implement {@link org.skinnyelephant.framework.core.Copyable} and have public no argument constructor.
+     * Systems write to component returned by {@link org.skinnyelephant.framework.core.Entity#getComponent(Class)}, readers see state of previous tick through
+     * {@link org.skinnyelephant.framework.core.Entity#getFrontComponent(Class)}.</p>
+     *
+     * @return true if component is double buffered.
+     */
+    boolean doubleBuffered() default false;
 }
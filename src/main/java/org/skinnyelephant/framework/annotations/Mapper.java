@@ -0,0 +1,30 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * <p>Annotation marking {@link org.skinnyelephant.framework.core.ComponentMapper} field of
+ * {@link org.skinnyelephant.framework.systems.EntitySystem} to be injected when system is added to core.</p>
+ * <p>Component class is taken from type argument of the field, for example {@code @Mapper ComponentMapper<Position> positions;}</p>
+ */
+@Documented
+@Target(value = ElementType.FIELD)
+@Retention(value = RetentionPolicy.RUNTIME)
+public @interface Mapper {
+}
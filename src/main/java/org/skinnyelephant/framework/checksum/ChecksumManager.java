@@ -0,0 +1,430 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.checksum;
+
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.EntityListener;
+import org.skinnyelephant.framework.core.Manager;
+import org.skinnyelephant.framework.core.ProcessListener;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Manager maintaining deterministic checksum of world for lockstep desync detection.</p>
+ * <p>Every component is hashed together with key of its type, computed from class name so it does not depend on order
+ * in which component IDs were assigned. Entity hash is sum of its component hashes, world checksum is sum of mixed
+ * entity hashes, so both are independent of iteration order and can be updated by subtracting old and adding new hash
+ * of changed entity only.</p>
+ * <p>Entities are re-hashed when components are added or removed. Entities whose components were requested with
+ * {@link Entity#modifyComponent(Class)} are re-hashed at the end of tick or when checksum is read, changes written
+ * directly have to be reported with {@link #update(Entity)}. Components are hashed with {@link Checksummable#checksum()},
+ * components not implementing it fail with {@link IllegalStateException}, as their {@link Object#hashCode()} can differ between peers.</p>
+ * <p>To add manager to core call {@code core.addManager(new ChecksumManager(core))}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class ChecksumManager implements Manager, EntityListener, ProcessListener {
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Core which world is hashed.
+     */
+    private final Core core;
+    /**
+     * Type keys by component class.
+     */
+    private final Map<Class<?>, Long> typeKeys = new HashMap<Class<?>, Long>();
+    /**
+     * Component classes by type key.
+     */
+    private final Map<Long, Class<?>> keyTypes = new HashMap<Long, Class<?>>();
+    /**
+     * Flags of hashed entities by slot.
+     */
+    private boolean[] present = new boolean[0];
+    /**
+     * Entity hashes by slot.
+     */
+    private long[] entityHashes = new long[0];
+    /**
+     * Sorted component type keys by slot.
+     */
+    private long[][] componentTypes = new long[0][];
+    /**
+     * Component hashes by slot in order of type keys.
+     */
+    private long[][] componentHashes = new long[0][];
+    /**
+     * Flags of slots waiting for re-hash.
+     */
+    private boolean[] dirty = new boolean[0];
+    /**
+     * Slots waiting for re-hash.
+     */
+    private int[] dirtySlots = new int[16];
+    /**
+     * Number of slots waiting for re-hash.
+     */
+    private int dirtyCount;
+    /**
+     * World checksum.
+     */
+    private long checksum;
+
+    /**
+     * Constructor for creating checksum manager.
+     *
+     * @param core core which world is hashed.
+     */
+    public ChecksumManager(final Core core) {
+        this.core = core;
+    }
+
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        initialized = true;
+        core.getEntityManager().addEntityListener(this);
+        for (Entity e : core.getEntityManager().getAllEntities()) {
+            update(e);
+        }
+    }
+
+    /**
+     * Returns world checksum, re-hashing modified entities first.
+     *
+     * @return checksum.
+     */
+    public long getChecksum() {
+        flush();
+        return checksum;
+    }
+
+    /**
+     * Re-hashes entity after its components were changed directly.
+     *
+     * @param entity entity.
+     */
+    public void update(final Entity entity) {
+        int slot = slot(entity);
+        ensureCapacity(slot + 1);
+        if (present[slot]) {
+            checksum -= contribution(entity.getEntityId(), entityHashes[slot]);
+        }
+        Collection<Object> components = entity.getComponents();
+        long[] types = new long[components.size()];
+        int i = 0;
+        for (Object component : components) {
+            types[i++] = typeKey(component.getClass());
+        }
+        Arrays.sort(types);
+        long[] hashes = new long[types.length];
+        long entityHash = 0;
+        for (Object component : components) {
+            long type = typeKey(component.getClass());
+            long hash = mix(type ^ mix(valueHash(component)));
+            hashes[Arrays.binarySearch(types, type)] = hash;
+            entityHash += hash;
+        }
+        present[slot] = true;
+        entityHashes[slot] = entityHash;
+        componentTypes[slot] = types;
+        componentHashes[slot] = hashes;
+        checksum += contribution(entity.getEntityId(), entityHash);
+    }
+
+    /**
+     * Computes checksum of whole world from scratch, without using or changing incremental state.
+     *
+     * @return checksum.
+     */
+    public long computeFullChecksum() {
+        long sum = 0;
+        for (Entity e : core.getEntityManager().getAllEntities()) {
+            long entityHash = 0;
+            for (Object component : e.getComponents()) {
+                long type = typeKey(component.getClass());
+                entityHash += mix(type ^ mix(valueHash(component)));
+            }
+            sum += contribution(e.getEntityId(), entityHash);
+        }
+        return sum;
+    }
+
+    /**
+     * Creates snapshot of entity and component hashes.
+     *
+     * @return snapshot.
+     */
+    public ChecksumSnapshot snapshot() {
+        flush();
+        int count = 0;
+        for (boolean p : present) {
+            if (p) {
+                count++;
+            }
+        }
+        long[] ids = new long[count];
+        long[][] types = new long[count][];
+        long[][] hashes = new long[count][];
+        int i = 0;
+        for (int slot = 0; slot < present.length; slot++) {
+            if (present[slot]) {
+                ids[i] = slot;
+                types[i] = componentTypes[slot].clone();
+                hashes[i] = componentHashes[slot].clone();
+                i++;
+            }
+        }
+        return new ChecksumSnapshot(checksum, ids, types, hashes);
+    }
+
+    /**
+     * Compares local world with remote snapshot and reports first differing entity with lowest ID.
+     *
+     * @param remote snapshot of remote world.
+     * @return first difference or null if worlds are equal.
+     */
+    public DesyncReport findDesync(final ChecksumSnapshot remote) {
+        flush();
+        int slot = 0;
+        int index = 0;
+        while (true) {
+            while (slot < present.length && !present[slot]) {
+                slot++;
+            }
+            boolean hasLocal = slot < present.length;
+            boolean hasRemote = index < remote.getEntityCount();
+            if (!hasLocal && !hasRemote) {
+                return null;
+            }
+            if (!hasRemote || (hasLocal && slot < remote.getEntityId(index))) {
+                return new DesyncReport(slot, null, entityHashes[slot], 0);
+            }
+            if (!hasLocal || remote.getEntityId(index) < slot) {
+                return new DesyncReport(remote.getEntityId(index), null, 0, sum(remote.hashes(index)));
+            }
+            DesyncReport report = compare(slot, remote.types(index), remote.hashes(index));
+            if (report != null) {
+                return report;
+            }
+            slot++;
+            index++;
+        }
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+        update(entity);
+    }
+
+    @Override
+    public void entityRemoved(final Entity entity) {
+        int slot = slot(entity);
+        if (slot < present.length && present[slot]) {
+            checksum -= contribution(entity.getEntityId(), entityHashes[slot]);
+            present[slot] = false;
+            componentTypes[slot] = null;
+            componentHashes[slot] = null;
+        }
+    }
+
+    @Override
+    public void componentAdded(final Entity entity, final Object component) {
+        if (isRegistered(entity)) {
+            update(entity);
+        }
+    }
+
+    @Override
+    public void componentRemoved(final Entity entity, final Object component) {
+        if (isRegistered(entity)) {
+            update(entity);
+        }
+    }
+
+    @Override
+    public void componentModified(final Entity entity, final Object component) {
+        int slot = slot(entity);
+        if (slot < present.length && present[slot] && !dirty[slot]) {
+            dirty[slot] = true;
+            if (dirtyCount == dirtySlots.length) {
+                dirtySlots = Arrays.copyOf(dirtySlots, dirtyCount * 2);
+            }
+            dirtySlots[dirtyCount++] = slot;
+        }
+    }
+
+    @Override
+    public void beforeProcess(final float delta) {
+    }
+
+    @Override
+    public void afterProcess(final float delta) {
+        flush();
+    }
+
+    @Override
+    public void dispose() {
+        core.getEntityManager().removeEntityListener(this);
+        present = new boolean[0];
+        dirtyCount = 0;
+        checksum = 0;
+    }
+
+    /**
+     * Compares component hashes of local entity with remote ones.
+     */
+    private DesyncReport compare(final int slot, final long[] types, final long[] hashes) {
+        long[] localTypes = componentTypes[slot];
+        long[] localHashes = componentHashes[slot];
+        int i = 0;
+        int j = 0;
+        while (i < localTypes.length || j < types.length) {
+            if (j == types.length || (i < localTypes.length && localTypes[i] < types[j])) {
+                return new DesyncReport(slot, keyTypes.get(localTypes[i]), localHashes[i], 0);
+            }
+            if (i == localTypes.length || types[j] < localTypes[i]) {
+                return new DesyncReport(slot, keyTypes.get(types[j]), 0, hashes[j]);
+            }
+            if (localHashes[i] != hashes[j]) {
+                return new DesyncReport(slot, keyTypes.get(types[j]), localHashes[i], hashes[j]);
+            }
+            i++;
+            j++;
+        }
+        return null;
+    }
+
+    /**
+     * Re-hashes entities modified since last flush.
+     */
+    private void flush() {
+        for (int i = 0; i < dirtyCount; i++) {
+            int slot = dirtySlots[i];
+            dirty[slot] = false;
+            if (present[slot]) {
+                Entity e = core.getEntityManager().getEntity((long) slot);
+                if (e != null) {
+                    update(e);
+                }
+            }
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Returns key of component type computed from its class name.
+     */
+    private long typeKey(final Class<?> type) {
+        Long key = typeKeys.get(type);
+        if (key == null) {
+            String name = type.getName();
+            long hash = 1125899906842597L;
+            for (int i = 0; i < name.length(); i++) {
+                hash = 31 * hash + name.charAt(i);
+            }
+            key = mix(hash);
+            Class<?> previous = keyTypes.get(key);
+            if (previous != null && previous != type) {
+                throw new IllegalStateException("Component types " + previous.getName() + " and " + type.getName() + " have the same key.");
+            }
+            typeKeys.put(type, key);
+            keyTypes.put(key, type);
+        }
+        return key;
+    }
+
+    /**
+     * Returns hash of component value.
+     */
+    private static long valueHash(final Object component) {
+        if (!(component instanceof Checksummable)) {
+            throw new IllegalStateException("Component " + component.getClass().getName()
+                    + " must implement Checksummable to be hashed.");
+        }
+        return ((Checksummable) component).checksum();
+    }
+
+    /**
+     * Returns contribution of entity to world checksum.
+     */
+    private static long contribution(final long id, final long entityHash) {
+        return mix(id * 0x9E3779B97F4A7C15L + entityHash);
+    }
+
+    /**
+     * Mixes bits of value.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Returns sum of hashes.
+     */
+    private static long sum(final long[] hashes) {
+        long sum = 0;
+        for (long hash : hashes) {
+            sum += hash;
+        }
+        return sum;
+    }
+
+    /**
+     * Checks if entity is registered, changes of entities not yet added to core are not hashed.
+     */
+    private boolean isRegistered(final Entity entity) {
+        return core.getEntityManager().getEntity(entity.getEntityId()) == entity;
+    }
+
+    /**
+     * Grows per slot arrays.
+     */
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= present.length) {
+            return;
+        }
+        int length = Math.max(capacity, Math.max(64, present.length * 2));
+        present = Arrays.copyOf(present, length);
+        dirty = Arrays.copyOf(dirty, length);
+        entityHashes = Arrays.copyOf(entityHashes, length);
+        componentTypes = Arrays.copyOf(componentTypes, length);
+        componentHashes = Arrays.copyOf(componentHashes, length);
+    }
+
+    /**
+     * Returns slot of entity.
+     */
+    private static int slot(final Entity entity) {
+        long id = entity.getEntityId();
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Entity ID " + id + " cannot be hashed.");
+        }
+        return (int) id;
+    }
+}
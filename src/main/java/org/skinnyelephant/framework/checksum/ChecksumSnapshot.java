@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.checksum;
+
+/**
+ * <p>Per entity and per component hashes of world at one point of time, created with {@link ChecksumManager#snapshot()}.</p>
+ * <p>Snapshot contains only primitive values, so it can be sent to other peer and compared there with
+ * {@link ChecksumManager#findDesync(ChecksumSnapshot)}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public final class ChecksumSnapshot {
+    /**
+     * World checksum.
+     */
+    private final long checksum;
+    /**
+     * Entity IDs in ascending order.
+     */
+    private final long[] ids;
+    /**
+     * Component type keys of each entity in ascending order.
+     */
+    private final long[][] types;
+    /**
+     * Component hashes of each entity in order of type keys.
+     */
+    private final long[][] hashes;
+
+    /**
+     * Constructor for creating snapshot.
+     *
+     * @param checksum world checksum.
+     * @param ids      entity IDs in ascending order.
+     * @param types    component type keys of each entity in ascending order.
+     * @param hashes   component hashes of each entity in order of type keys.
+     */
+    public ChecksumSnapshot(final long checksum, final long[] ids, final long[][] types, final long[][] hashes) {
+        if (ids.length != types.length || ids.length != hashes.length) {
+            throw new IllegalArgumentException("Snapshot arrays should have the same length.");
+        }
+        this.checksum = checksum;
+        this.ids = ids;
+        this.types = types;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Getter for world checksum.
+     *
+     * @return checksum.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Getter for number of entities.
+     *
+     * @return number of entities.
+     */
+    public int getEntityCount() {
+        return ids.length;
+    }
+
+    /**
+     * Returns ID of entity.
+     *
+     * @param index entity position.
+     * @return entity ID.
+     */
+    public long getEntityId(final int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns component type keys of entity.
+     *
+     * @param index entity position.
+     * @return type keys in ascending order.
+     */
+    public long[] getComponentTypes(final int index) {
+        return types[index].clone();
+    }
+
+    /**
+     * Returns component hashes of entity.
+     *
+     * @param index entity position.
+     * @return hashes in order of type keys.
+     */
+    public long[] getComponentHashes(final int index) {
+        return hashes[index].clone();
+    }
+
+    /**
+     * Returns component type keys of entity without copying.
+     */
+    long[] types(final int index) {
+        return types[index];
+    }
+
+    /**
+     * Returns component hashes of entity without copying.
+     */
+    long[] hashes(final int index) {
+        return hashes[index];
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.checksum;
+
+/**
+ * Interface for components providing their own deterministic hash to {@link ChecksumManager}.
+ * Every component of world hashed by {@link ChecksumManager} has to implement it.
+ */
+public interface Checksummable {
+    /**
+     * Returns hash of component state, equal on every peer for equal state.
+     *
+     * @return hash of component state.
+     */
+    long checksum();
+}
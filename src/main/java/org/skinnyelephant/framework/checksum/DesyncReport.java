@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.checksum;
+
+/**
+ * First difference found between local world and remote {@link ChecksumSnapshot}.
+ *
+ * @author Kristaps Kohs
+ */
+public final class DesyncReport {
+    /**
+     * ID of differing entity.
+     */
+    private final long entityId;
+    /**
+     * Differing component class, null if whole entity is missing on one side or type is unknown locally.
+     */
+    private final Class<?> componentType;
+    /**
+     * Local hash, 0 if missing locally.
+     */
+    private final long localHash;
+    /**
+     * Remote hash, 0 if missing remotely.
+     */
+    private final long remoteHash;
+
+    DesyncReport(final long entityId, final Class<?> componentType, final long localHash, final long remoteHash) {
+        this.entityId = entityId;
+        this.componentType = componentType;
+        this.localHash = localHash;
+        this.remoteHash = remoteHash;
+    }
+
+    /**
+     * Getter for ID of differing entity.
+     *
+     * @return entity ID.
+     */
+    public long getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * Getter for differing component class.
+     *
+     * @return component class or null if whole entity is missing on one side or type is unknown locally.
+     */
+    public Class<?> getComponentType() {
+        return componentType;
+    }
+
+    /**
+     * Getter for local hash of entity or component.
+     *
+     * @return local hash, 0 if missing locally.
+     */
+    public long getLocalHash() {
+        return localHash;
+    }
+
+    /**
+     * Getter for remote hash of entity or component.
+     *
+     * @return remote hash, 0 if missing remotely.
+     */
+    public long getRemoteHash() {
+        return remoteHash;
+    }
+
+    @Override
+    public String toString() {
+        return "Desync at entity " + entityId
+                + (componentType != null ? " component " + componentType.getName() : "")
+                + " local " + Long.toHexString(localHash) + " remote " + Long.toHexString(remoteHash);
+    }
+}
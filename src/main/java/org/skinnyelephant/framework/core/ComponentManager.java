@@ -16,8 +16,10 @@
 
 package org.skinnyelephant.framework.core;
 
-import java.util.HashMap;
+import org.skinnyelephant.framework.annotations.Component;
+
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class for managing components, generating and storing component Id's.
@@ -33,6 +35,10 @@ public class ComponentManager implements Manager {
      * Map containing all component ids.
      */
     private Map<Class, Long> componentIds;
+    /**
+     * Bitmap of double buffered components.
+     */
+    private volatile long doubleBufferedComponents;
 
     /**
      * Method for getting component id based on its class or generating new if id is not present in framework.
@@ -47,21 +53,75 @@ public class ComponentManager implements Manager {
         if (component == null) {
             throw new NullPointerException("Component type cannot be null.");
         }
+        Long id = componentIds.get(component);
+        if (id == null) {
+            id = registerComponent(component);
+        }
+        return id;
+    }
+
+    /**
+     * Method for getting component id based on its class without generating new id.
+     *
+     * @param component component class.
+     * @return component id or 0 if component class has no id.
+     */
+    protected final long findComponentId(Class<?> component) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        Long id = componentIds.get(component);
+        return id == null ? 0 : id;
+    }
+
+    /**
+     * Generates id for component class, synchronized so components can be registered from several threads.
+     *
+     * @param component component class.
+     * @return component id.
+     */
+    private synchronized long registerComponent(Class<?> component) {
         Long id = componentIds.get(component);
         if (id == null) {
             id = (long) Math.pow(2, componentIds.size());
+            Component annotation = component.getAnnotation(Component.class);
+            if (annotation != null && annotation.doubleBuffered()) {
+                if (!Copyable.class.isAssignableFrom(component)) {
+                    throw new IllegalArgumentException("Double buffered component " + component.getName() + " should implement Copyable.");
+                }
+                doubleBufferedComponents |= id;
+            }
             componentIds.put(component, id);
         }
         return id;
     }
 
+    /**
+     * Returns bitmap of double buffered components.
+     *
+     * @return double buffered component bitmap.
+     */
+    public final long getDoubleBufferedComponents() {
+        return doubleBufferedComponents;
+    }
+
+    /**
+     * Checks if component with given class is double buffered.
+     *
+     * @param component component class.
+     * @return true if component is double buffered.
+     */
+    public final boolean isDoubleBuffered(Class<?> component) {
+        return (getComponentId(component) & doubleBufferedComponents) != 0;
+    }
+
     @Override
     public void initialize() {
         if (initialized) {
             throw new IllegalStateException("Manager already initialized");
         }
         initialized = true;
-        this.componentIds = new HashMap<Class, Long>();
+        this.componentIds = new ConcurrentHashMap<Class, Long>();
     }
 
     @Override
@@ -70,6 +130,7 @@ public class ComponentManager implements Manager {
             throw new IllegalStateException("Manager not initialized");
         }
         componentIds.clear();
+        doubleBufferedComponents = 0;
         initialized = false;
     }
 }
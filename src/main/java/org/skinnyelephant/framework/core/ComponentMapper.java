@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.core;
+
+/**
+ * <p>Typed accessor of single component type.</p>
+ * <p>Component ID is resolved once when mapper is created, so component is read from entity without class lookup.
+ * Mappers are obtained with {@link Core#getComponentMapper(Class)} or injected into system fields annotated with
+ * {@link org.skinnyelephant.framework.annotations.Mapper}.</p>
+ *
+ * @param <T> component class.
+ * @author Kristaps Kohs
+ */
+public final class ComponentMapper<T> {
+    /**
+     * Core of mapped entities.
+     */
+    private final Core core;
+    /**
+     * Component class.
+     */
+    private final Class<T> type;
+    /**
+     * Component ID.
+     */
+    private final long componentId;
+
+    /**
+     * Constructor for creating mapper.
+     *
+     * @param core core of mapped entities.
+     * @param type component class.
+     */
+    ComponentMapper(final Core core, final Class<T> type) {
+        this.core = core;
+        this.type = type;
+        this.componentId = core.getComponentId(type);
+    }
+
+    /**
+     * Returns component of entity.
+     *
+     * @param entity entity.
+     * @return component or null if entity does not have it.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(final Entity entity) {
+        return (T) entity.getComponentById(componentId);
+    }
+
+    /**
+     * Returns component of entity which is going to be modified, see {@link Entity#modifyComponent(Class)}.
+     *
+     * @param entity entity.
+     * @return component or null if entity does not have it.
+     */
+    public T modify(final Entity entity) {
+        T component = get(entity);
+        if (component != null) {
+            core.getEntityManager().componentModified(entity, component);
+        }
+        return component;
+    }
+
+    /**
+     * Checks if entity has component.
+     *
+     * @param entity entity.
+     * @return true if entity has component.
+     */
+    public boolean has(final Entity entity) {
+        return (entity.getComponentsIds() & componentId) != 0;
+    }
+
+    /**
+     * Getter for component class.
+     *
+     * @return component class.
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Getter for component ID.
+     *
+     * @return component ID.
+     */
+    public long getComponentId() {
+        return componentId;
+    }
+}
@@ -18,12 +18,26 @@ package org.skinnyelephant.framework.core;
 
 import org.reflections.Reflections;
 import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.annotations.Mapper;
 import org.skinnyelephant.framework.systems.EntitySystem;
+import org.skinnyelephant.framework.systems.Phase;
+import org.skinnyelephant.framework.systems.SystemGroup;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * Base framework class containing manages,systems input processors.
+ * <p>Base framework class containing manages,systems input processors.</p>
+ * <p>Core created in concurrent mode allows {@link #createEntity()}, {@link #createPooledEntity(Class[])} and
+ * {@link #removeEntity(long)} to be called from any thread, see {@link EntityManager} for visibility guarantees.
+ * Systems and managers should still be added, removed and processed from single thread.</p>
  *
  * @author Kristaps Kohs
  */
@@ -32,14 +46,42 @@ public final class Core implements Disposable {
      * List of systems in this core.
      */
     private final List<EntitySystem> systems;
+    /**
+     * Systems of each {@link Phase} in processing order, indexed by phase ordinal.
+     */
+    private final List<List<EntitySystem>> phaseSystems = new ArrayList<List<EntitySystem>>();
+    /**
+     * Processing period of each {@link Phase} in milliseconds, indexed by phase ordinal.
+     */
+    private final float[] phasePeriods = new float[Phase.values().length];
+    /**
+     * Accumulated delta time of each {@link Phase} since its last processing.
+     */
+    private final float[] phaseDeltas = new float[Phase.values().length];
+    /**
+     * System groups by their names.
+     */
+    private final Map<String, SystemGroup> groups = new HashMap<String, SystemGroup>();
     /**
      * Map containing all managers of this core.
      */
     private final Map<Class<? extends Manager>, Manager> managers = new HashMap<Class<? extends Manager>, Manager>();
+    /**
+     * Managers notified when tick is processed.
+     */
+    private final List<ProcessListener> processListeners = new ArrayList<ProcessListener>();
+    /**
+     * Component mappers by component class.
+     */
+    private final Map<Class<?>, ComponentMapper<?>> mappers = new ConcurrentHashMap<Class<?>, ComponentMapper<?>>();
     /**
      * Flag indicating if core has been initialized.
      */
     private boolean initialized;
+    /**
+     * Flag indicating if entities can be created and removed from several threads.
+     */
+    private final boolean concurrent;
     /**
      * Manager responsible for managing components.
      */
@@ -52,12 +94,33 @@ public final class Core implements Disposable {
      * Manager responsible for pooling entities
      */
     private PoolManager poolManager;
+    /**
+     * Lock guarding front buffers of double buffered components, write lock is held while buffers are swapped.
+     */
+    private final ReadWriteLock bufferLock = new ReentrantReadWriteLock();
+    /**
+     * Index of buffer of double buffered components visible to readers, changed only while holding write lock.
+     */
+    private volatile int frontBuffer;
 
     /**
      * Constructor for creating framework core.
      */
     public Core() {
-        this.systems = new ArrayList<EntitySystem>();
+        this(false);
+    }
+
+    /**
+     * Constructor for creating framework core.
+     *
+     * @param concurrent flag indicating if entities can be created and removed from several threads.
+     */
+    public Core(final boolean concurrent) {
+        this.concurrent = concurrent;
+        this.systems = concurrent ? new CopyOnWriteArrayList<EntitySystem>() : new ArrayList<EntitySystem>();
+        for (int i = 0; i < Phase.values().length; i++) {
+            phaseSystems.add(new ArrayList<EntitySystem>());
+        }
         this.componentManager = new ComponentManager();
         this.entityManager = new EntityManager(this);
         this.poolManager = new PoolManager(this);
@@ -96,17 +159,25 @@ public final class Core implements Disposable {
         if (!initialized) {
             throw new IllegalStateException("Core has not been initialized!");
         }
-        for (EntitySystem system : systems) {
-            system.processSystem();
-            if (!system.isPassive()) {
-                system.processEntities(entityManager.getEntitiesForSystem(system));
+        beforeProcess(0);
+        for (List<EntitySystem> list : phaseSystems) {
+            for (int i = 0; i < list.size(); i++) {
+                EntitySystem system = list.get(i);
+                entityManager.deliverNotifications();
+                if (system.isEnabled()) {
+                    system.processSystem();
+                    processEntities(system);
+                }
             }
         }
+        entityManager.deliverNotifications();
+        afterProcess(0);
+        swapBuffers();
     }
 
     /**
      * <p>Main {@link Core} processing method.</p>
-     * <p>Iterates through all {@link EntitySystem} and retrieves required entities and passes them to system processing.</p>
+     * <p>Iterates through all {@link Phase}s which are due for processing and passes required entities to their enabled systems.</p>
      *
      * @param delta delta time.
      */
@@ -115,27 +186,111 @@ public final class Core implements Disposable {
             throw new IllegalStateException("Core has not been initialized!");
         }
 
-        for (EntitySystem system : systems) {
-            if (!system.isPeriodic()) {
-                system.processSystem();
-                if (!system.isPassive()) {
-                    system.processEntities(entityManager.getEntitiesForSystem(system));
+        beforeProcess(delta);
+        for (int phase = 0; phase < phaseSystems.size(); phase++) {
+            float phaseDelta = delta;
+            if (phasePeriods[phase] > 0) {
+                phaseDeltas[phase] += delta;
+                if (phaseDeltas[phase] < phasePeriods[phase]) {
+                    continue;
                 }
-            } else {
-                if (system.isProcessingRequired(delta)) {
+                phaseDelta = phaseDeltas[phase];
+                phaseDeltas[phase] = 0;
+            }
+            List<EntitySystem> list = phaseSystems.get(phase);
+            for (int i = 0; i < list.size(); i++) {
+                EntitySystem system = list.get(i);
+                entityManager.deliverNotifications();
+                if (system.isEnabled() && system.isProcessingRequired(phaseDelta)) {
                     system.processSystem();
-                    if (!system.isPassive()) {
-                        system.processEntities(entityManager.getEntitiesForSystem(system));
-                    }
+                    processEntities(system);
                 }
             }
         }
 
+        entityManager.deliverNotifications();
+        afterProcess(delta);
+        swapBuffers();
         poolManager.cleanUpPool(delta);
     }
 
+    /**
+     * Notifies {@link ProcessListener} managers that tick is about to be processed.
+     *
+     * @param delta delta time.
+     */
+    private void beforeProcess(final float delta) {
+        entityManager.deliverNotifications();
+        for (int i = 0; i < processListeners.size(); i++) {
+            processListeners.get(i).beforeProcess(delta);
+        }
+    }
+
+    /**
+     * Notifies {@link ProcessListener} managers that all systems have been processed.
+     *
+     * @param delta delta time.
+     */
+    private void afterProcess(final float delta) {
+        for (int i = 0; i < processListeners.size(); i++) {
+            processListeners.get(i).afterProcess(delta);
+        }
+        entityManager.deliverNotifications();
+    }
+
+    /**
+     * <p>Publishes double buffered components written in this tick to readers.</p>
+     * <p>State is copied into back buffers without holding lock, then buffers are flipped under write lock.
+     * If readers hold {@link #getFrontBufferLock()} processing does not wait for them, buffers are published at the end of next tick instead.</p>
+     */
+    private void swapBuffers() {
+        entityManager.prepareBuffers(1 - frontBuffer);
+        if (bufferLock.writeLock().tryLock()) {
+            try {
+                frontBuffer = 1 - frontBuffer;
+            } finally {
+                bufferLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns index of buffer of double buffered components visible to readers.
+     *
+     * @return front buffer index.
+     */
+    final int getFrontBuffer() {
+        return frontBuffer;
+    }
+
+    /**
+     * <p>Getter for lock guarding front buffers of double buffered components.</p>
+     * <p>Reader running on other thread than {@link #process(float)} should hold this lock while reading
+     * {@link Entity#getFrontComponent(Class)} of several entities to see state of single tick.
+     * Processing is never blocked by readers, while lock is held buffers are not published and readers keep seeing the same tick.</p>
+     *
+     * @return front buffer read lock.
+     */
+    public final Lock getFrontBufferLock() {
+        return bufferLock.readLock();
+    }
+
+    /**
+     * Passes entities to non passive {@link EntitySystem}.
+     *
+     * @param system system to process.
+     */
+    private void processEntities(final EntitySystem system) {
+        if (system.isPassive()) {
+            return;
+        }
+        system.processEntities(entityManager.getEntitiesForSystem(system));
+    }
+
     /**
      * Method for adding {@link EntitySystem} to {@link Core}, and also calls {@link org.skinnyelephant.framework.systems.EntitySystem#initialize()} method.
+     * System is processed in its {@link EntitySystem#getPhase()}, {@link Phase#SIMULATE} by default.
+     * Fields of system annotated with {@link Mapper} are injected before system is initialized.
      *
      * @param system {@link EntitySystem} to add to {@link Core}.
      */
@@ -144,8 +299,120 @@ public final class Core implements Disposable {
             throw new IllegalStateException("Core has not been initialized!");
         }
         system.setCore(this);
+        injectMappers(system);
         system.initialize();
         systems.add(system);
+        phaseSystems.get(system.getPhase().ordinal()).add(system);
+        entityManager.registerSystem(system);
+    }
+
+    /**
+     * Injects {@link ComponentMapper}s into fields of system annotated with {@link Mapper}.
+     *
+     * @param system system to inject.
+     */
+    private void injectMappers(final EntitySystem system) {
+        for (Class<?> type = system.getClass(); type != EntitySystem.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!field.isAnnotationPresent(Mapper.class)) {
+                    continue;
+                }
+                if (field.getType() != ComponentMapper.class) {
+                    throw new IllegalArgumentException("Field " + field.getName() + " of " + type.getName() + " is not ComponentMapper");
+                }
+                Type generic = field.getGenericType();
+                if (!(generic instanceof ParameterizedType)
+                        || !(((ParameterizedType) generic).getActualTypeArguments()[0] instanceof Class)) {
+                    throw new IllegalArgumentException("Component class of mapper " + field.getName() + " of " + type.getName() + " is not given");
+                }
+                Class<?> component = (Class<?>) ((ParameterizedType) generic).getActualTypeArguments()[0];
+                field.setAccessible(true);
+                try {
+                    field.set(system, getComponentMapper(component));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Failed to inject mapper " + field.getName() + " of " + type.getName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method for adding {@link EntitySystem} to be processed in given {@link Phase}.
+     *
+     * @param phase  phase in which system is processed.
+     * @param system {@link EntitySystem} to add to {@link Core}.
+     */
+    public final void addSystem(final Phase phase, final EntitySystem system) {
+        system.setPhase(phase);
+        addSystem(system);
+    }
+
+    /**
+     * Method for adding {@link EntitySystem} to be processed in given {@link Phase} as part of named {@link SystemGroup}.
+     *
+     * @param phase  phase in which system is processed.
+     * @param group  name of the group.
+     * @param system {@link EntitySystem} to add to {@link Core}.
+     * @throws IllegalStateException if system is already added to core, its group is left unchanged.
+     */
+    public final void addSystem(final Phase phase, final String group, final EntitySystem system) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        system.setPhase(phase);
+        getSystemGroup(group).add(system);
+        addSystem(system);
+    }
+
+    /**
+     * Returns system group with given name, creating it if it does not exist.
+     *
+     * @param name group name.
+     * @return system group.
+     */
+    public final SystemGroup getSystemGroup(final String name) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        SystemGroup group = groups.get(name);
+        if (group == null) {
+            group = new SystemGroup(name);
+            groups.put(name, group);
+        }
+        return group;
+    }
+
+    /**
+     * <p>Enables or disables all systems of group with given name.</p>
+     * <p>Disabled systems stay registered and their entities are kept up to date.</p>
+     *
+     * @param name    group name.
+     * @param enabled flag.
+     */
+    public final void setGroupEnabled(final String name, final boolean enabled) {
+        getSystemGroup(name).setEnabled(enabled);
+    }
+
+    /**
+     * <p>Sets processing period of given {@link Phase}.</p>
+     * <p>Phase with period is processed only when accumulated delta time reaches period, its systems receive accumulated delta.</p>
+     *
+     * @param phase  phase.
+     * @param period period in milliseconds, 0 to process phase in every tick.
+     */
+    public final void setPhasePeriod(final Phase phase, final float period) {
+        phasePeriods[phase.ordinal()] = period;
+        phaseDeltas[phase.ordinal()] = 0;
+    }
+
+    /**
+     * Getter for processing period of given {@link Phase}.
+     *
+     * @param phase phase.
+     * @return period in milliseconds, 0 if phase is processed in every tick.
+     */
+    public final float getPhasePeriod(final Phase phase) {
+        return phasePeriods[phase.ordinal()];
     }
 
     /**
@@ -161,6 +428,27 @@ public final class Core implements Disposable {
         return componentManager.getComponentId(comp);
     }
 
+    /**
+     * <p>Returns {@link ComponentMapper} of given component class.</p>
+     * <p>Mapper resolves component ID once and should be kept by caller instead of looking component up by class.</p>
+     *
+     * @param type component class.
+     * @param <T>  component class.
+     * @return component mapper.
+     */
+    @SuppressWarnings("unchecked")
+    public final <T> ComponentMapper<T> getComponentMapper(final Class<T> type) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        ComponentMapper<T> mapper = (ComponentMapper<T>) mappers.get(type);
+        if (mapper == null) {
+            mapper = new ComponentMapper<T>(this, type);
+            mappers.put(type, mapper);
+        }
+        return mapper;
+    }
+
     /**
      * Creates {@link Entity} without reference and registers it to {@link Core}
      *
@@ -188,12 +476,76 @@ public final class Core implements Disposable {
         return e;
     }
 
+    /**
+     * Creates {@link Entity} with given ID and registers it to {@link Core}, used for restoring previously removed entity.
+     *
+     * @param reference Entity reference, can be null.
+     * @param id        Entity ID, must not be in use.
+     * @return Created entity.
+     * @throws IllegalArgumentException if ID is in use.
+     */
+    public final Entity createEntity(final String reference, final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        Entity e = new Entity(reference, this);
+        entityManager.addEntity(e, id);
+        return e;
+    }
+
+    /**
+     * <p>Creates {@link Entity} with ID reserved by caller and registers it to {@link Core}.</p>
+     * <p>ID has to be reserved with {@link #reserveEntityId(long)} or kept by {@link #removeEntity(Entity, boolean)},
+     * reservation is taken over by created entity without returning ID to generator, so no other thread can take it in between.</p>
+     *
+     * @param reference Entity reference, can be null.
+     * @param id        reserved Entity ID.
+     * @return Created entity.
+     * @throws IllegalArgumentException if ID is used by entity.
+     */
+    public final Entity createReservedEntity(final String reference, final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        Entity e = new Entity(reference, this);
+        entityManager.addReservedEntity(e, id);
+        return e;
+    }
+
+    /**
+     * <p>Reserves entity ID, so it is not assigned to new entities.</p>
+     * <p>Used to keep ID of entity stored outside of core, which is later restored with {@link #createReservedEntity(String, long)}
+     * or with {@link #createEntity(String, long)} after releasing ID with {@link #releaseEntityId(long)}.</p>
+     *
+     * @param id entity ID.
+     * @return true if ID was free and is now reserved.
+     */
+    public final boolean reserveEntityId(final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        return entityManager.reserveId(id);
+    }
+
+    /**
+     * Releases entity ID reserved with {@link #reserveEntityId(long)}.
+     *
+     * @param id reserved entity ID.
+     * @throws IllegalArgumentException if ID is used by entity.
+     */
+    public final void releaseEntityId(final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        entityManager.releaseId(id);
+    }
+
     public final Entity createPooledEntity(Class<?>... components) {
         if (!initialized) {
             throw new IllegalStateException("Core has not been initialized!");
         }
         Entity e = poolManager.createPooledEntity(components);
-        if (entityManager.getEntity(e.getEntityId()) == null) {
+        if (!e.isAttached()) {
             entityManager.addEntity(e);
         }
         return e;
@@ -210,9 +562,6 @@ public final class Core implements Disposable {
             throw new IllegalStateException("Core has not been initialized!");
         }
         Entity e = entityManager.getEntity(reference);
-        if (e.isPooled()) {
-            poolManager.destroyPooledEntity(e);
-        }
         entityManager.removeEntity(e);
         return e;
     }
@@ -221,20 +570,163 @@ public final class Core implements Disposable {
      * Removes {@link Entity} with given id from  {@link Core}
      *
      * @param id Entity id
-     * @return Created entity.
+     * @return Removed entity or null if entity with given id does not exist.
      */
     public final Entity removeEntity(final long id) {
         if (!initialized) {
             throw new IllegalStateException("Core has not been initialized!");
         }
         Entity e = entityManager.getEntity(id);
-        if (e.isPooled()) {
-            poolManager.destroyPooledEntity(e);
+        if (e == null) {
+            return null;
         }
         entityManager.removeEntity(e);
         return e;
     }
 
+    /**
+     * <p>Removes given {@link Entity} from {@link Core}.</p>
+     * <p>If ID is kept, it stays reserved as if it was reserved with {@link #reserveEntityId(long)} in the same step,
+     * so no other entity can get it before it is released with {@link #releaseEntityId(long)}.</p>
+     *
+     * @param e      Entity to remove.
+     * @param keepId flag if entity ID should stay reserved.
+     * @return true if entity has been removed by this call, false if it is not registered or is removed by other thread.
+     */
+    public final boolean removeEntity(final Entity e, final boolean keepId) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        return entityManager.removeEntity(e, keepId);
+    }
+
+    /**
+     * <p>Creates entity and returns only its ID, entity is then used through ID based methods of core.</p>
+     * <p>Components are stored in table indexed by entity ID, {@link Entity} object is not created until entity is
+     * passed to system or listener or is requested with {@link EntityManager#getEntity(long)}.</p>
+     *
+     * @return ID of created entity.
+     */
+    public final long createEntityId() {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        return entityManager.addEntityId();
+    }
+
+    /**
+     * <p>Removes entity with given ID like {@link #removeEntity(long)} without returning removed {@link Entity}.</p>
+     * <p>Entity used only by ID is removed without creating its entity object, unless there are listeners to notify.</p>
+     *
+     * @param id Entity ID.
+     * @return true if entity has been removed by this call, false if it does not exist or is removed by other thread.
+     */
+    public final boolean removeEntityId(final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        return entityManager.removeEntity(id, false);
+    }
+
+    /**
+     * Checks if entity with given ID exists.
+     *
+     * @param id Entity ID.
+     * @return true if entity exists.
+     */
+    public final boolean isAlive(final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        return entityManager.isAlive(id);
+    }
+
+    /**
+     * Adds component to entity with given ID.
+     *
+     * @param id        Entity ID.
+     * @param component Component to be added.
+     * @throws IllegalArgumentException if entity does not exist.
+     */
+    public final void addComponent(final long id, final Object component) {
+        if (component == null) {
+            throw new NullPointerException("Component cannot be null.");
+        }
+        checkAlive(id);
+        entityManager.addComponent(id, null, component);
+    }
+
+    /**
+     * Returns component of entity with given ID.
+     *
+     * @param id   Entity ID.
+     * @param type Component class.
+     * @param <T>  Component class.
+     * @return Component or null if entity or component does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    public final <T> T getComponent(final long id, final Class<T> type) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        return (T) entityManager.getComponent(id, componentManager.findComponentId(type));
+    }
+
+    /**
+     * Returns component of entity with given ID which is going to be modified, see {@link Entity#modifyComponent(Class)}.
+     *
+     * @param id   Entity ID.
+     * @param type Component class.
+     * @param <T>  Component class.
+     * @return Component or null if component does not exist.
+     * @throws IllegalArgumentException if entity does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    public final <T> T modifyComponent(final long id, final Class<T> type) {
+        checkAlive(id);
+        Object component = entityManager.getComponent(id, componentManager.findComponentId(type));
+        if (component != null) {
+            entityManager.componentModified(id, null, component);
+        }
+        return (T) component;
+    }
+
+    /**
+     * Removes component from entity with given ID.
+     *
+     * @param id   Entity ID.
+     * @param type Component class.
+     * @throws IllegalArgumentException if entity does not exist.
+     */
+    public final void removeComponent(final long id, final Class<?> type) {
+        checkAlive(id);
+        entityManager.removeComponent(id, null, componentManager.findComponentId(type));
+    }
+
+    /**
+     * Checks that entity with given ID exists.
+     *
+     * @param id Entity ID.
+     * @throws IllegalArgumentException if entity does not exist.
+     */
+    private void checkAlive(final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Core has not been initialized!");
+        }
+        if (!entityManager.isAlive(id)) {
+            throw new IllegalArgumentException("Entity " + id + " does not exist.");
+        }
+    }
+
+    /**
+     * Getter for concurrent flag.
+     *
+     * @return true if entities can be created and removed from several threads.
+     */
+    public final boolean isConcurrent() {
+        return concurrent;
+    }
+
     /**
      * Getter for {@link EntityManager}
      *
@@ -319,7 +811,13 @@ public final class Core implements Disposable {
             throw new IllegalStateException("Core has not been initialized!");
         }
         systems.remove(system);
+        phaseSystems.get(system.getPhase().ordinal()).remove(system);
+        if (system.getGroup() != null) {
+            system.getGroup().remove(system);
+        }
+        entityManager.unregisterSystem(system);
         system.dispose();
+        system.setCore(null);
     }
 
     /**
@@ -334,6 +832,9 @@ public final class Core implements Disposable {
         }
         manager.initialize();
         managers.put(manager.getClass(), manager);
+        if (manager instanceof ProcessListener) {
+            processListeners.add((ProcessListener) manager);
+        }
     }
 
     /**
@@ -362,6 +863,9 @@ public final class Core implements Disposable {
         Manager m = managers.get(type);
         m.dispose();
         managers.remove(type);
+        if (m instanceof ProcessListener) {
+            processListeners.remove(m);
+        }
     }
 
     @Override
@@ -369,19 +873,26 @@ public final class Core implements Disposable {
         if (!initialized) {
             throw new IllegalStateException("Core is not initialized.");
         }
-        entityManager.dispose();
-        componentManager.dispose();
-        poolManager.dispose();
-
         for (Manager manager : managers.values()) {
             manager.dispose();
         }
 
+        entityManager.dispose();
+        componentManager.dispose();
+        poolManager.dispose();
+
         for (EntitySystem system : systems) {
             system.dispose();
+            system.setCore(null);
         }
         systems.clear();
+        for (List<EntitySystem> list : phaseSystems) {
+            list.clear();
+        }
+        groups.clear();
         managers.clear();
+        processListeners.clear();
+        mappers.clear();
         initialized = false;
     }
 }
@@ -17,11 +17,20 @@
 package org.skinnyelephant.framework.core;
 
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 /**
- * Class representing entity in this framework.
+ * <p>Class representing entity in this framework.</p>
+ * <p>While entity is registered, its components are stored in entity table of {@link EntityManager} indexed by entity ID
+ * and entity object is only a view of its row. Entity used only by ID through {@link Core#createEntityId()} and related
+ * methods gets entity object when it is first passed to system or listener.
+ * Entity which is not registered, for example removed or pooled entity, keeps its components itself in array ordered
+ * by their component IDs, changes made to it are not reported to systems and listeners.</p>
  *
  * @author Kristaps Kohs
  */
@@ -43,13 +52,26 @@ public final class Entity implements Disposable {
      */
     private Core core;
     /**
-     * Map of used components.
+     * Empty component array shared by entities without components.
      */
-    private Map<Class<?>, Object> components;
+    private static final Object[] NO_COMPONENTS = new Object[0];
+    /**
+     * Used components in order of their component IDs, replaced when component is added or removed.
+     */
+    private Object[] components;
+    /**
+     * Two buffers of double buffered component copies, front buffer is selected by {@link Core#getFrontBuffer()}.
+     * Null if entity never had double buffered component.
+     */
+    private Map<Class<?>, Object>[] buffers;
     /**
      * Flag indicating whether entity should be pooled.
      */
     private boolean isPooled;
+    /**
+     * Entity table storing components of this entity, null while entity is not registered.
+     */
+    private EntityTable table;
 
     /**
      * Constructor for creating entity with string reference.
@@ -59,7 +81,7 @@ public final class Entity implements Disposable {
      */
     protected Entity(String reference, Core core) {
         this.reference = reference;
-        this.components = new HashMap<Class<?>, Object>();
+        this.components = NO_COMPONENTS;
         this.core = core;
     }
 
@@ -72,6 +94,19 @@ public final class Entity implements Disposable {
         this(null, core);
     }
 
+    /**
+     * Constructor for creating entity object of entity registered by ID.
+     *
+     * @param core  framework {@link Core}
+     * @param table entity table containing row of entity.
+     * @param id    entity ID.
+     */
+    Entity(final Core core, final EntityTable table, final long id) {
+        this(null, core);
+        this.table = table;
+        this.eID = id;
+    }
+
     /**
      * Method for adding component to {@link Entity}.
      *
@@ -80,10 +115,31 @@ public final class Entity implements Disposable {
      * @return this entity.
      */
     public <T> Entity addComponent(T component) {
-        components.put(component.getClass(), component);
-        core.getEntityManager().removeFromCache(this);
-        componentsIds |= core.getComponentManager().getComponentId(component.getClass());
-        core.getEntityManager().addToCache(this);
+        if (table != null) {
+            core.getEntityManager().addComponent(eID, this, component);
+        } else {
+            applyDetached(new Object[]{component});
+        }
+        return this;
+    }
+
+    /**
+     * <p>Method for adding several components to {@link Entity} at once.</p>
+     * <p>System cache is updated only once after all components are added.</p>
+     *
+     * @param components Components to be added.
+     * @return this entity.
+     */
+    public Entity addComponents(Object... components) {
+        for (Object component : components) {
+            if (component == null) {
+                throw new NullPointerException("Component cannot be null.");
+            }
+            if (component instanceof Class) {
+                throw new IllegalArgumentException("Component type " + component + " can not be added as component.");
+            }
+        }
+        applyComponents(components.clone());
         return this;
     }
 
@@ -96,20 +152,285 @@ public final class Entity implements Disposable {
      */
     @SuppressWarnings("unchecked")
     public <T> T getComponent(Class<?> type) {
-        Object component = components.get(type);
-        if (component != null) {
-            return (T) components.get(type);
-        } else {
+        return (T) getComponentById(core.getComponentManager().findComponentId(type));
+    }
+
+    /**
+     * Returns component with given component ID.
+     *
+     * @param componentId component ID.
+     * @return Component or null if component does not exist.
+     */
+    final Object getComponentById(final long componentId) {
+        if (table != null) {
+            return componentId == 0 ? null : table.component(eID, Long.numberOfTrailingZeros(componentId));
+        }
+        if ((componentsIds & componentId) == 0) {
+            return null;
+        }
+        return components[Long.bitCount(componentsIds & (componentId - 1))];
+    }
+
+    /**
+     * Returns all components of this entity.
+     *
+     * @return unmodifiable view of components.
+     */
+    public Collection<Object> getComponents() {
+        if (table == null) {
+            return Collections.unmodifiableList(Arrays.asList(components));
+        }
+        final long bits = table.bits(eID);
+        final Object[] row = new Object[Long.bitCount(bits)];
+        int index = 0;
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1, index++) {
+            row[index] = table.component(eID, Long.numberOfTrailingZeros(remaining));
+        }
+        return Collections.unmodifiableList(Arrays.asList(row));
+    }
+
+    /**
+     * <p>Method for retrieving front buffer of component.</p>
+     * <p>For double buffered component returns state published at the end of last {@link Core#process(float)},
+     * which should not be modified. Double buffered component added during tick is not visible until it is published,
+     * removed component stays visible until then. For other components returns the same component as {@link #getComponent(Class)}.</p>
+     *
+     * @param type Component class.
+     * @param <T>  Class annotated with {@link org.skinnyelephant.framework.annotations.Component}
+     * @return Component or null if component does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getFrontComponent(Class<?> type) {
+        long componentId = core.getComponentManager().findComponentId(type);
+        if ((componentId & core.getComponentManager().getDoubleBufferedComponents()) == 0) {
+            return (T) getComponentById(componentId);
+        }
+        if (buffers == null) {
             return null;
         }
+        Map<Class<?>, Object> front = buffers[core.getFrontBuffer()];
+        return front == null ? null : (T) front.get(type);
     }
 
+    /**
+     * <p>Method for retrieving component which is going to be modified by caller.</p>
+     * <p>Modification is reported to systems tracking changes and to registered {@link EntityListener}s before component is returned,
+     * so changes made directly to component returned by {@link #getComponent(Class)} are not tracked.</p>
+     *
+     * @param type Component class.
+     * @param <T>  Class annotated with {@link org.skinnyelephant.framework.annotations.Component}
+     * @return Component or null if component does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T modifyComponent(Class<?> type) {
+        Object component = getComponent(type);
+        if (component != null && table != null) {
+            core.getEntityManager().componentModified(this, component);
+        }
+        return (T) component;
+    }
+
+    /**
+     * Method for removing component from {@link Entity}.
+     *
+     * @param type Component class.
+     */
     public void removeComponent(Class<?> type) {
-        Object component = components.get(type);
-        if (component != null) {
-            core.getEntityManager().removeFromCache(this);
-            componentsIds ^= core.getComponentManager().getComponentId(component.getClass());
-            core.getEntityManager().addToCache(this);
+        if (table != null) {
+            core.getEntityManager().removeComponent(eID, this, core.getComponentManager().findComponentId(type));
+        } else {
+            applyDetached(new Object[]{type});
+        }
+    }
+
+    /**
+     * <p>Method for removing several components from {@link Entity} at once.</p>
+     * <p>System cache is updated only once after all components are removed.</p>
+     *
+     * @param types Component classes.
+     * @return this entity.
+     */
+    public Entity removeComponents(Class<?>... types) {
+        applyComponents(types.clone());
+        return this;
+    }
+
+    /**
+     * <p>Starts new {@link EntityEdit} for this entity.</p>
+     * <p>Components added and removed through edit are applied with single system cache update on {@link EntityEdit#commit()}.</p>
+     *
+     * @return edit scope for this entity.
+     */
+    public EntityEdit edit() {
+        return new EntityEdit(this);
+    }
+
+    /**
+     * <p>Applies components to add and component types to remove in given order.</p>
+     * <p>Changes of registered entity are stored in entity table and reported to systems with single system cache
+     * update, see {@link EntityManager#applyComponents(long, Entity, Object[])}.</p>
+     *
+     * @param operations component instances to add and {@link Class} instances of component types to remove.
+     */
+    final void applyComponents(final Object[] operations) {
+        if (table != null) {
+            core.getEntityManager().applyComponents(eID, this, operations);
+        } else {
+            applyDetached(operations);
+        }
+    }
+
+    /**
+     * <p>Applies components to add and component types to remove to entity which is not registered.</p>
+     * <p>Final component bitmap is computed first, so component array is replaced only once for whole batch.</p>
+     *
+     * @param operations component instances to add and {@link Class} instances of component types to remove.
+     */
+    private void applyDetached(final Object[] operations) {
+        final ComponentManager componentManager = core.getComponentManager();
+        final long[] ids = new long[operations.length];
+        long next = componentsIds;
+        for (int i = 0; i < operations.length; i++) {
+            if (operations[i] instanceof Class) {
+                ids[i] = componentManager.findComponentId((Class<?>) operations[i]);
+                next &= ~ids[i];
+            } else {
+                ids[i] = componentManager.getComponentId(operations[i].getClass());
+                next |= ids[i];
+            }
+        }
+        Object[] applied = next == 0 ? NO_COMPONENTS : new Object[Long.bitCount(next)];
+        int index = 0;
+        for (long bits = next; bits != 0; bits &= bits - 1, index++) {
+            applied[index] = valueBefore(operations, ids, operations.length, Long.lowestOneBit(bits), components, componentsIds);
+        }
+        components = applied;
+        componentsIds = next;
+    }
+
+    /**
+     * Returns component with given ID as it was before given operation of batch was applied.
+     *
+     * @param operations  batch operations, see {@link #applyDetached(Object[])}.
+     * @param ids         component IDs of operations.
+     * @param end         index of operation, only operations before it are considered.
+     * @param componentId component ID.
+     * @param previous    component array before batch.
+     * @param previousIds component bitmap before batch.
+     * @return component or null if entity did not contain component at that point.
+     */
+    private static Object valueBefore(final Object[] operations, final long[] ids, final int end, final long componentId,
+                                      final Object[] previous, final long previousIds) {
+        if (componentId == 0) {
+            return null;
+        }
+        for (int i = end - 1; i >= 0; i--) {
+            if (ids[i] == componentId) {
+                return operations[i] instanceof Class ? null : operations[i];
+            }
+        }
+        if ((previousIds & componentId) == 0) {
+            return null;
+        }
+        return previous[Long.bitCount(previousIds & (componentId - 1))];
+    }
+
+    /**
+     * Moves components kept by this entity into its row of entity table, called when entity is registered.
+     *
+     * @param entityTable entity table of {@link EntityManager}.
+     */
+    final void attach(final EntityTable entityTable) {
+        int index = 0;
+        for (long bits = componentsIds; bits != 0; bits &= bits - 1, index++) {
+            entityTable.setComponent(eID, Long.numberOfTrailingZeros(bits), components[index]);
+        }
+        entityTable.setBits(eID, componentsIds);
+        components = NO_COMPONENTS;
+        componentsIds = 0;
+        table = entityTable;
+    }
+
+    /**
+     * Copies components from row of entity table into this entity and clears the row, called when entity is removed.
+     */
+    final void detach() {
+        final long bits = table.bits(eID);
+        final Object[] detached = bits == 0 ? NO_COMPONENTS : new Object[Long.bitCount(bits)];
+        int index = 0;
+        for (long remaining = bits; remaining != 0; remaining &= remaining - 1, index++) {
+            detached[index] = table.component(eID, Long.numberOfTrailingZeros(remaining));
+        }
+        table.clearRow(eID);
+        components = detached;
+        componentsIds = bits;
+        table = null;
+    }
+
+    /**
+     * Checks if components of this entity are stored in entity table.
+     *
+     * @return true if entity is registered.
+     */
+    final boolean isAttached() {
+        return table != null;
+    }
+
+    /**
+     * <p>Copies state of double buffered components into buffer which is not visible to readers.</p>
+     * <p>Buffer is brought in line with components added and removed since it was last prepared, so structural
+     * changes reach readers only when buffer is published by {@link Core}.</p>
+     *
+     * @param back index of buffer to prepare.
+     * @return false if entity has no double buffered components in either buffer.
+     */
+    @SuppressWarnings("unchecked")
+    final boolean prepareBuffer(final int back) {
+        final long used = getComponentsIds();
+        final long buffered = used & core.getComponentManager().getDoubleBufferedComponents();
+        if (buffers == null) {
+            if (buffered == 0) {
+                return false;
+            }
+            buffers = (Map<Class<?>, Object>[]) new Map<?, ?>[2];
+        }
+        Map<Class<?>, Object> target = buffers[back];
+        if (target == null) {
+            target = new HashMap<Class<?>, Object>();
+            buffers[back] = target;
+        }
+        for (long bits = buffered; bits != 0; bits &= bits - 1) {
+            Object component = getComponentById(Long.lowestOneBit(bits));
+            Copyable<Object> copy = (Copyable<Object>) target.get(component.getClass());
+            if (copy == null) {
+                copy = createCopy(component);
+                target.put(component.getClass(), copy);
+            }
+            copy.copyFrom(component);
+        }
+        if (target.size() > Long.bitCount(buffered)) {
+            for (Iterator<Class<?>> it = target.keySet().iterator(); it.hasNext(); ) {
+                if ((core.getComponentManager().findComponentId(it.next()) & buffered) == 0) {
+                    it.remove();
+                }
+            }
+        }
+        Map<Class<?>, Object> other = buffers[1 - back];
+        return !target.isEmpty() || (other != null && !other.isEmpty());
+    }
+
+    /**
+     * Creates buffer copy of double buffered component.
+     *
+     * @param component double buffered component.
+     * @return new instance of component class.
+     */
+    @SuppressWarnings("unchecked")
+    private static Copyable<Object> createCopy(Object component) {
+        try {
+            return (Copyable<Object>) component.getClass().newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to create front buffer of component " + component.getClass().getName(), e);
         }
     }
 
@@ -137,7 +458,7 @@ public final class Entity implements Disposable {
      * @return
      */
     public long getComponentsIds() {
-        return componentsIds;
+        return table != null ? table.bits(eID) : componentsIds;
     }
 
     /**
@@ -168,7 +489,7 @@ public final class Entity implements Disposable {
 
     @Override
     public void dispose() {
-        for (Object o : components.values()) {
+        for (Object o : getComponents()) {
             if (o instanceof Disposable) {
                 ((Disposable) o).dispose();
             }
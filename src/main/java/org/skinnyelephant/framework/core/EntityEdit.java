@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Builder style edit scope for adding and removing components of single {@link Entity}.</p>
+ * <p>Changes are recorded and applied in given order on {@link EntityEdit#commit()},
+ * system cache is updated only once with final component bitmap.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public final class EntityEdit {
+    /**
+     * Entity being edited.
+     */
+    private final Entity entity;
+    /**
+     * Recorded operations, either component instance to add or {@link Class} of component type to remove.
+     */
+    private final List<Object> operations = new ArrayList<Object>();
+    /**
+     * Flag indicating if edit has been committed.
+     */
+    private boolean committed;
+
+    /**
+     * Constructor for creating edit scope for given entity.
+     *
+     * @param entity entity to edit.
+     */
+    EntityEdit(final Entity entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * Records component to be added to entity.
+     *
+     * @param component Component to be added.
+     * @return this edit.
+     */
+    public EntityEdit add(final Object component) {
+        if (component == null) {
+            throw new NullPointerException("Component cannot be null.");
+        }
+        if (component instanceof Class) {
+            throw new IllegalArgumentException("Component type " + component + " can not be added as component.");
+        }
+        operations.add(component);
+        return this;
+    }
+
+    /**
+     * Records component type to be removed from entity.
+     *
+     * @param type Component class.
+     * @return this edit.
+     */
+    public EntityEdit remove(final Class<?> type) {
+        if (type == null) {
+            throw new NullPointerException("Component type cannot be null.");
+        }
+        operations.add(type);
+        return this;
+    }
+
+    /**
+     * Applies all recorded changes to entity and updates system cache once.
+     *
+     * @return edited entity.
+     * @throws IllegalStateException if edit has been committed already.
+     */
+    public Entity commit() {
+        if (committed) {
+            throw new IllegalStateException("Edit has been committed already.");
+        }
+        committed = true;
+        entity.applyComponents(operations.toArray());
+        return entity;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.core;
+
+/**
+ * <p>Listener notified by {@link EntityManager} about entity life cycle and component changes.</p>
+ * <p>Listeners are registered with {@link EntityManager#addEntityListener(EntityListener)}.</p>
+ */
+public interface EntityListener {
+    /**
+     * Called after entity is registered to {@link EntityManager}. Entity may already contain components.
+     *
+     * @param entity registered entity.
+     */
+    void entityAdded(Entity entity);
+
+    /**
+     * Called before entity is removed from {@link EntityManager}, entity still contains its components.
+     *
+     * @param entity entity to be removed.
+     */
+    void entityRemoved(Entity entity);
+
+    /**
+     * Called after component is added to entity.
+     *
+     * @param entity    entity.
+     * @param component added component.
+     */
+    void componentAdded(Entity entity, Object component);
+
+    /**
+     * Called after component is removed from entity.
+     *
+     * @param entity    entity.
+     * @param component removed component.
+     */
+    void componentRemoved(Entity entity, Object component);
+
+    /**
+     * Called when component is requested for modification with {@link Entity#modifyComponent(Class)},
+     * before caller writes to it.
+     *
+     * @param entity    entity.
+     * @param component component to be modified.
+     */
+    void componentModified(Entity entity, Object component);
+}
@@ -16,20 +16,48 @@
 
 package org.skinnyelephant.framework.core;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Multimap;
 import org.skinnyelephant.framework.systems.EntitySystem;
+import org.skinnyelephant.framework.util.ConcurrentEntityIdGenerator;
 import org.skinnyelephant.framework.util.EntityIdGenerator;
 import org.skinnyelephant.framework.util.EntityIdGeneratorImpl;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Entity Manager class for managing entites in application.
+ * <p>Entity Manager class for managing entites in application.</p>
+ * <p>Components of registered entities are stored in {@link EntityTable} indexed by entity ID. {@link Entity} object of
+ * entity created by {@link #addEntityId()} is created only when entity is first passed to system or listener or is
+ * requested by caller, so entities used only by ID do not allocate entity objects.</p>
+ * <p>If {@link Core} is created in concurrent mode, entity table, id generation and system membership use
+ * concurrent structures and entities can be created and removed from any thread. In this mode:</p>
+ * <ul>
+ * <li>Entity created or removed on other thread is visible to systems processed after the call has returned,
+ * systems processed at the same time may or may not see it.</li>
+ * <li>{@link EntitySystem} membership callbacks and {@link EntityListener}s are not called on the thread making
+ * the change, notifications are queued and delivered on the thread running {@link Core#process(float)}
+ * before each system is processed.</li>
+ * <li>Entity is registered and removed while holding its lock, so removal started while entity is being registered
+ * waits until it has joined its systems.</li>
+ * <li>Removed entity is disposed, returned to pool and its ID is released only after its removal has been delivered
+ * to systems and listeners, so they never see entity with disposed components.</li>
+ * <li>Single entity should be modified only by one thread at a time.</li>
+ * </ul>
+ * <p>If manager is not concurrent, entities and components can be changed only from one thread. While systems are processed
+ * by worker threads, changes are restricted to thread set by {@link #setOwnerThread(Thread)} and changes made from other threads
+ * fail with {@link IllegalStateException} before anything is changed.</p>
  *
  * @author Kristaps Kohs
  */
@@ -39,21 +67,49 @@ public class EntityManager implements Manager {
      */
     private boolean initialized;
     /**
-     * Cache containing Immutable Set of entities for each Entity System.
+     * Flag indicating if manager is used from several threads.
      */
-    private final Multimap<EntitySystem, Entity> systemCache = HashMultimap.create();
+    private final boolean concurrent;
+    /**
+     * Cache containing entities for each Entity System.
+     */
+    private final Map<EntitySystem, Membership> systemCache;
+    /**
+     * Entity system caches in order systems were registered.
+     */
+    private final List<Membership> memberships;
     /**
      * Map of string id referenced entities.
      */
-    private final Map<String, Entity> referencedEntities = new HashMap<String, Entity>();
+    private final Map<String, Entity> referencedEntities;
+    /**
+     * Table containing all present entities and their components by entity ID.
+     */
+    private final EntityTable entities;
     /**
-     * Map containing all present entities.
+     * Entities containing double buffered components.
      */
-    private final Map<Long, Entity> entityMap = new HashMap<Long, Entity>();
+    private final Set<Entity> bufferedEntities;
+    /**
+     * Systems which should be notified about component modifications.
+     */
+    private final List<EntitySystem> trackingSystems;
+    /**
+     * Registered entity listeners.
+     */
+    private final List<EntityListener> listeners;
+    /**
+     * Notifications waiting for delivery on processing thread, null if manager is not concurrent.
+     */
+    private final Queue<Notification> notifications;
+    /**
+     * Only thread allowed to change entities if manager is not concurrent, null if changes are not restricted.
+     */
+    private volatile Thread ownerThread;
     /**
      * Support class for generating entity id and reusing them.
      */
-    private final EntityIdGenerator entityIdGenerator = new EntityIdGeneratorImpl();
+    private final EntityIdGenerator entityIdGenerator;
     /**
      * Reference to Core class.
      */
@@ -66,6 +122,27 @@ public class EntityManager implements Manager {
      */
     protected EntityManager(final Core core) {
         this.core = core;
+        this.concurrent = core.isConcurrent();
+        if (concurrent) {
+            systemCache = new ConcurrentHashMap<EntitySystem, Membership>();
+            memberships = new CopyOnWriteArrayList<Membership>();
+            referencedEntities = new ConcurrentHashMap<String, Entity>();
+            bufferedEntities = Collections.newSetFromMap(new ConcurrentHashMap<Entity, Boolean>());
+            trackingSystems = new CopyOnWriteArrayList<EntitySystem>();
+            listeners = new CopyOnWriteArrayList<EntityListener>();
+            notifications = new ConcurrentLinkedQueue<Notification>();
+            entityIdGenerator = new ConcurrentEntityIdGenerator();
+        } else {
+            systemCache = new HashMap<EntitySystem, Membership>();
+            memberships = new ArrayList<Membership>();
+            referencedEntities = new HashMap<String, Entity>();
+            bufferedEntities = new HashSet<Entity>();
+            trackingSystems = new ArrayList<EntitySystem>();
+            listeners = new ArrayList<EntityListener>();
+            notifications = null;
+            entityIdGenerator = new EntityIdGeneratorImpl();
+        }
+        entities = new EntityTable();
     }
 
     @Override
@@ -83,11 +160,23 @@ public class EntityManager implements Manager {
             throw new IllegalStateException("Manager not initialized.");
         }
         systemCache.clear();
+        memberships.clear();
+        trackingSystems.clear();
+        listeners.clear();
+        if (notifications != null) {
+            Notification notification;
+            while ((notification = notifications.poll()) != null) {
+                if (notification.type == Notification.ENTITY_RELEASED || notification.type == Notification.ENTITY_DISPOSED) {
+                    notification.entity.dispose();
+                }
+            }
+        }
         referencedEntities.clear();
-        for (Entity e : entityMap.values()) {
-            e.dispose();
+        for (long id = entities.next(0); id >= 0; id = entities.next(id + 1)) {
+            disposeComponents(id);
         }
-        entityMap.clear();
+        entities.clear();
+        bufferedEntities.clear();
         entityIdGenerator.reset();
         initialized = false;
     }
@@ -96,8 +185,8 @@ public class EntityManager implements Manager {
      * Cleans up all entities.
      */
     public void cleanUp() {
-        for (Entity e : entityMap.values()) {
-            removeEntity(e);
+        for (long id = entities.next(0); id >= 0; id = entities.next(id + 1)) {
+            removeEntity(id, false);
         }
     }
 
@@ -112,11 +201,287 @@ public class EntityManager implements Manager {
         if (!initialized) {
             throw new IllegalStateException("Manager not initialized");
         }
+        checkOwner();
         if (e.getReference() != null) {
             referencedEntities.put(e.getReference(), e);
         }
         e.setEntityId(entityIdGenerator.getId());
-        entityMap.put(e.getEntityId(), e);
+        register(e);
+    }
+
+    /**
+     * <p>Registers entity without creating {@link Entity} object.</p>
+     * <p>Entity is used through its ID, its entity object is created on demand, see {@link EntityManager}.</p>
+     *
+     * @return ID of registered entity.
+     */
+    protected final long addEntityId() {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        checkOwner();
+        final long id = entityIdGenerator.getId();
+        entities.setHandle(id, EntityTable.ALIVE);
+        notifyListeners(Notification.ENTITY_ADDED, id, null, null);
+        return id;
+    }
+
+    /**
+     * Adds entity to this manager with given ID, used for restoring previously removed entity.
+     *
+     * @param e  Entity to add.
+     * @param id ID of entity.
+     * @throws IllegalArgumentException if ID is in use.
+     */
+    protected final void addEntity(final Entity e, final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        checkOwner();
+        if (!entityIdGenerator.reserveId(id)) {
+            throw new IllegalArgumentException("Entity ID " + id + " is already in use.");
+        }
+        if (e.getReference() != null) {
+            referencedEntities.put(e.getReference(), e);
+        }
+        e.setEntityId(id);
+        register(e);
+    }
+
+    /**
+     * Adds entity to this manager with ID reserved by caller, reservation is consumed without releasing ID.
+     *
+     * @param e  Entity to add.
+     * @param id reserved ID of entity.
+     * @throws IllegalArgumentException if ID is used by entity.
+     */
+    protected final void addReservedEntity(final Entity e, final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        checkOwner();
+        if (entities.contains(id)) {
+            throw new IllegalArgumentException("Entity ID " + id + " is used by entity.");
+        }
+        if (e.getReference() != null) {
+            referencedEntities.put(e.getReference(), e);
+        }
+        e.setEntityId(id);
+        register(e);
+    }
+
+    /**
+     * Reserves ID without entity, so it is not assigned to new entities until it is released.
+     *
+     * @param id ID to reserve.
+     * @return true if ID was free and is now reserved.
+     */
+    protected final boolean reserveId(final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        return entityIdGenerator.reserveId(id);
+    }
+
+    /**
+     * Releases ID reserved with {@link #reserveId(long)}.
+     *
+     * @param id reserved ID.
+     * @throws IllegalArgumentException if ID is used by entity.
+     */
+    protected final void releaseId(final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        if (entities.contains(id)) {
+            throw new IllegalArgumentException("Entity ID " + id + " is used by entity.");
+        }
+        entityIdGenerator.removeId(id);
+    }
+
+    /**
+     * <p>Registers entity with assigned ID and notifies systems and listeners.</p>
+     * <p>Components of entity are moved into its row before entity is published. Entity is published and its system
+     * membership is set while holding entity lock, so removal of the entity started by other thread waits until
+     * registration is complete.</p>
+     *
+     * @param e Entity to register.
+     */
+    private void register(final Entity e) {
+        synchronized (e) {
+            final long id = e.getEntityId();
+            e.attach(entities);
+            entities.setHandle(id, e);
+            updateCache(id, e, 0);
+            notifyListeners(Notification.ENTITY_ADDED, id, e, null);
+        }
+    }
+
+    /**
+     * Checks if entity with given ID is registered.
+     *
+     * @param id entity ID.
+     * @return true if entity is registered.
+     */
+    protected final boolean isAlive(final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        return entities.contains(id);
+    }
+
+    /**
+     * <p>Restricts changes of entities and components to given thread.</p>
+     * <p>Used while systems are processed by worker threads, so change made from worker fails before it is applied.
+     * Has no effect if manager is concurrent, as changes from other threads are queued.</p>
+     *
+     * @param thread thread allowed to change entities, null to lift restriction.
+     */
+    public final void setOwnerThread(final Thread thread) {
+        if (!concurrent) {
+            ownerThread = thread;
+        }
+    }
+
+    /**
+     * Checks if entities can be changed from current thread.
+     *
+     * @throws IllegalStateException if changes are restricted to other thread.
+     */
+    private void checkOwner() {
+        final Thread owner = ownerThread;
+        if (owner != null && owner != Thread.currentThread()) {
+            throw new IllegalStateException("Entities can not be changed from thread " + Thread.currentThread().getName()
+                    + " while systems are processed in parallel unless core is concurrent.");
+        }
+    }
+
+    /**
+     * Returns entity object of registered entity, object is created if entity has been used only by ID.
+     *
+     * @param id entity ID.
+     * @return entity or null if entity is not registered.
+     */
+    private Entity facade(final long id) {
+        Object handle = entities.handle(id);
+        while (handle == EntityTable.ALIVE) {
+            final Entity e = new Entity(core, entities, id);
+            if (entities.replaceHandle(id, handle, e)) {
+                return e;
+            }
+            handle = entities.handle(id);
+        }
+        return (Entity) handle;
+    }
+
+    /**
+     * Returns given entity object or entity object of given ID if none is given.
+     *
+     * @param id entity ID.
+     * @param e  entity object or null.
+     * @return entity or null if entity is not registered.
+     */
+    private Entity facade(final long id, final Entity e) {
+        return e != null ? e : facade(id);
+    }
+
+    /**
+     * Returns component of registered entity.
+     *
+     * @param id          entity ID.
+     * @param componentId component ID.
+     * @return component or null if entity or component does not exist.
+     */
+    final Object getComponent(final long id, final long componentId) {
+        return componentId == 0 ? null : entities.component(id, Long.numberOfTrailingZeros(componentId));
+    }
+
+    /**
+     * Adds component to registered entity and updates system cache.
+     *
+     * @param id        entity ID.
+     * @param e         entity object or null if it should be created only when needed.
+     * @param component component to add.
+     */
+    final void addComponent(final long id, final Entity e, final Object component) {
+        checkOwner();
+        final long componentId = core.getComponentManager().getComponentId(component.getClass());
+        final int column = Long.numberOfTrailingZeros(componentId);
+        final long previousComponents = entities.bits(id);
+        final Object replaced = entities.component(id, column);
+        entities.setComponent(id, column, component);
+        entities.setBits(id, previousComponents | componentId);
+        if (replaced != null) {
+            notifyListeners(Notification.COMPONENT_REMOVED, id, e, replaced);
+        }
+        notifyListeners(Notification.COMPONENT_ADDED, id, e, component);
+        updateCache(id, e, previousComponents);
+    }
+
+    /**
+     * Removes component from registered entity and updates system cache.
+     *
+     * @param id          entity ID.
+     * @param e           entity object or null if it should be created only when needed.
+     * @param componentId component ID.
+     */
+    final void removeComponent(final long id, final Entity e, final long componentId) {
+        checkOwner();
+        final long previousComponents = entities.bits(id);
+        if ((previousComponents & componentId) == 0) {
+            return;
+        }
+        final int column = Long.numberOfTrailingZeros(componentId);
+        final Object removed = entities.component(id, column);
+        entities.setComponent(id, column, null);
+        entities.setBits(id, previousComponents & ~componentId);
+        notifyListeners(Notification.COMPONENT_REMOVED, id, e, removed);
+        updateCache(id, e, previousComponents);
+    }
+
+    /**
+     * <p>Applies components to add and component types to remove to registered entity in given order.</p>
+     * <p>Listeners are notified about every change in given order after components have been applied,
+     * system cache is updated only once with final component bitmap.</p>
+     *
+     * @param id         entity ID.
+     * @param e          entity object or null if it should be created only when needed.
+     * @param operations component instances to add and {@link Class} instances of component types to remove.
+     */
+    final void applyComponents(final long id, final Entity e, final Object[] operations) {
+        checkOwner();
+        final ComponentManager componentManager = core.getComponentManager();
+        final boolean notify = !listeners.isEmpty();
+        final Object[] replaced = notify ? new Object[operations.length] : null;
+        final long previousComponents = entities.bits(id);
+        long components = previousComponents;
+        for (int i = 0; i < operations.length; i++) {
+            final boolean removal = operations[i] instanceof Class;
+            final long componentId = removal
+                    ? componentManager.findComponentId((Class<?>) operations[i])
+                    : componentManager.getComponentId(operations[i].getClass());
+            if (componentId == 0) {
+                continue;
+            }
+            final int column = Long.numberOfTrailingZeros(componentId);
+            if (notify) {
+                replaced[i] = entities.component(id, column);
+            }
+            entities.setComponent(id, column, removal ? null : operations[i]);
+            components = removal ? components & ~componentId : components | componentId;
+        }
+        entities.setBits(id, components);
+        if (notify) {
+            for (int i = 0; i < operations.length; i++) {
+                if (replaced[i] != null) {
+                    notifyListeners(Notification.COMPONENT_REMOVED, id, e, replaced[i]);
+                }
+                if (!(operations[i] instanceof Class)) {
+                    notifyListeners(Notification.COMPONENT_ADDED, id, e, operations[i]);
+                }
+            }
+        }
+        updateCache(id, e, previousComponents);
     }
 
     /**
@@ -130,16 +495,16 @@ public class EntityManager implements Manager {
         if (!initialized) {
             throw new IllegalStateException("Manager not initialized");
         }
-        if (!referencedEntities.containsKey(reference)) {
+        Entity e = referencedEntities.get(reference);
+        if (e == null) {
             throw new IllegalArgumentException("Entity with reference " + reference + " not registered.");
         }
-        return referencedEntities.get(reference);
+        return e;
     }
 
     /**
      * <p>Method for getting {@link ImmutableSet} of {@link Entity} for given {@link EntitySystem}</p>
-     * <p>If system cache contains Set of entities for this system then its returned otherwise,
-     * all of the entities are checked for components required to this system and added to set.</p>
+     * <p>Same set instance is returned until membership of the system changes.</p>
      *
      * @param system System for which entities are requested.
      * @return Set of entities for given system.
@@ -148,18 +513,228 @@ public class EntityManager implements Manager {
         if (!initialized) {
             throw new IllegalStateException("Manager not initialized");
         }
-        ImmutableSet<Entity> set = ImmutableSet.copyOf(systemCache.get(system));
-        if (set != null && !set.isEmpty()) return set;
+        Membership membership = systemCache.get(system);
+        if (membership == null) {
+            return ImmutableSet.of();
+        }
+        return membership.view();
+    }
 
-        for (Entity e : entityMap.values()) {
-            long bit = (e.getComponentsIds() & system.getUsedComponents());
-            if (bit == system.getUsedComponents() && bit != 0) {
-                systemCache.put(system, e);
+    /**
+     * <p>Registers system to manager.</p>
+     * <p>All present entities are checked for components required to this system and added to system cache.</p>
+     *
+     * @param system system to register.
+     */
+    protected final void registerSystem(final EntitySystem system) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        Membership membership = new Membership(system, concurrent);
+        systemCache.put(system, membership);
+        memberships.add(membership);
+        if (system.isTrackingChanges()) {
+            trackingSystems.add(system);
+        }
+        for (long id = entities.next(0); id >= 0; id = entities.next(id + 1)) {
+            if (matches(system.getUsedComponents(), entities.bits(id))) {
+                Entity e = facade(id);
+                if (e != null && membership.add(e)) {
+                    notifySystem(Notification.SYSTEM_ENTITY_ADDED, system, e, null);
+                }
             }
         }
+    }
 
+    /**
+     * Removes system cache of given system.
+     *
+     * @param system system to unregister.
+     */
+    protected final void unregisterSystem(final EntitySystem system) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        Membership membership = systemCache.remove(system);
+        if (membership != null) {
+            memberships.remove(membership);
+        }
+        trackingSystems.remove(system);
+    }
 
-        return ImmutableSet.copyOf(systemCache.get(system));
+    /**
+     * Registers listener to be notified about entity and component changes.
+     *
+     * @param listener listener to add.
+     */
+    public void addEntityListener(final EntityListener listener) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes registered entity listener.
+     *
+     * @param listener listener to remove.
+     */
+    public void removeEntityListener(final EntityListener listener) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies listeners about component added to entity.
+     *
+     * @param e         entity.
+     * @param component added component.
+     */
+    protected final void componentAdded(final Entity e, final Object component) {
+        notifyListeners(Notification.COMPONENT_ADDED, e.getEntityId(), e, component);
+    }
+
+    /**
+     * Notifies listeners about component removed from entity.
+     *
+     * @param e         entity.
+     * @param component removed component.
+     */
+    protected final void componentRemoved(final Entity e, final Object component) {
+        notifyListeners(Notification.COMPONENT_REMOVED, e.getEntityId(), e, component);
+    }
+
+    /**
+     * <p>Notifies systems tracking changes and listeners about component modification.</p>
+     * <p>Only systems which use component and contain given entity are notified.</p>
+     *
+     * @param e         entity.
+     * @param component modified component.
+     */
+    protected final void componentModified(final Entity e, final Object component) {
+        componentModified(e.getEntityId(), e, component);
+    }
+
+    /**
+     * Notifies systems tracking changes and listeners about component modification of registered entity.
+     *
+     * @param id        entity ID.
+     * @param e         entity object or null if it should be created only when needed.
+     * @param component modified component.
+     */
+    final void componentModified(final long id, Entity e, final Object component) {
+        if (!trackingSystems.isEmpty()) {
+            final long componentId = core.getComponentId(component.getClass());
+            final long components = entities.bits(id);
+            for (int i = 0; i < trackingSystems.size(); i++) {
+                EntitySystem system = trackingSystems.get(i);
+                final long usedComponents = system.getUsedComponents();
+                if ((usedComponents & componentId) != 0 && matches(usedComponents, components)
+                        && (e = facade(id, e)) != null) {
+                    notifySystem(Notification.SYSTEM_ENTITY_MODIFIED, system, e, component);
+                }
+            }
+        }
+        notifyListeners(Notification.COMPONENT_MODIFIED, id, e, component);
+    }
+
+    /**
+     * <p>Delivers notifications queued by changes made on other threads.</p>
+     * <p>Called by {@link Core} on processing thread, does nothing if manager is not concurrent.</p>
+     */
+    protected final void deliverNotifications() {
+        if (notifications == null) {
+            return;
+        }
+        Notification notification;
+        while ((notification = notifications.poll()) != null) {
+            if (notification.type == Notification.ENTITY_RELEASED || notification.type == Notification.ENTITY_DISPOSED) {
+                release(notification.entity, notification.id, notification.type == Notification.ENTITY_DISPOSED);
+            } else if (notification.system == null) {
+                deliverToListeners(notification.type, notification.entity, notification.component);
+            } else if (systemCache.containsKey(notification.system)) {
+                deliverToSystem(notification.type, notification.system, notification.entity, notification.component);
+            }
+        }
+    }
+
+    /**
+     * Notifies system about entity membership change or queues notification if manager is concurrent.
+     *
+     * @param type      notification type.
+     * @param system    system to notify.
+     * @param e         entity.
+     * @param component modified component or null.
+     */
+    private void notifySystem(final int type, final EntitySystem system, final Entity e, final Object component) {
+        if (notifications != null) {
+            notifications.add(new Notification(type, system, e, component));
+        } else {
+            deliverToSystem(type, system, e, component);
+        }
+    }
+
+    /**
+     * <p>Notifies listeners about entity change or queues notification if manager is concurrent.</p>
+     * <p>Entity object is created only if there are listeners to notify.</p>
+     *
+     * @param type      notification type.
+     * @param id        entity ID.
+     * @param entity    entity object or null if it should be created only when needed.
+     * @param component changed component or null.
+     */
+    private void notifyListeners(final int type, final long id, final Entity entity, final Object component) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        final Entity e = facade(id, entity);
+        if (e == null) {
+            return;
+        }
+        if (notifications != null) {
+            notifications.add(new Notification(type, null, e, component));
+        } else {
+            deliverToListeners(type, e, component);
+        }
+    }
+
+    private void deliverToSystem(final int type, final EntitySystem system, final Entity e, final Object component) {
+        switch (type) {
+            case Notification.SYSTEM_ENTITY_ADDED:
+                system.entityAdded(e);
+                break;
+            case Notification.SYSTEM_ENTITY_REMOVED:
+                system.entityRemoved(e);
+                break;
+            default:
+                system.entityModified(e, component);
+                break;
+        }
+    }
+
+    private void deliverToListeners(final int type, final Entity e, final Object component) {
+        for (int i = 0; i < listeners.size(); i++) {
+            EntityListener listener = listeners.get(i);
+            switch (type) {
+                case Notification.ENTITY_ADDED:
+                    listener.entityAdded(e);
+                    break;
+                case Notification.ENTITY_REMOVED:
+                    listener.entityRemoved(e);
+                    break;
+                case Notification.COMPONENT_ADDED:
+                    listener.componentAdded(e, component);
+                    break;
+                case Notification.COMPONENT_REMOVED:
+                    listener.componentRemoved(e, component);
+                    break;
+                default:
+                    listener.componentModified(e, component);
+                    break;
+            }
+        }
     }
 
     /**
@@ -171,13 +746,86 @@ public class EntityManager implements Manager {
         if (!initialized) {
             throw new IllegalStateException("Manager not initialized");
         }
-        for (EntitySystem system : core.getSystems()) {
-            if ((system.getUsedComponents() & e.getComponentsIds()) == system.getUsedComponents()) {
-                systemCache.put(system, e);
+        for (int i = 0; i < memberships.size(); i++) {
+            Membership membership = memberships.get(i);
+            final long usedComponents = membership.system.getUsedComponents();
+            if ((usedComponents & e.getComponentsIds()) == usedComponents && membership.add(e)) {
+                notifySystem(Notification.SYSTEM_ENTITY_ADDED, membership.system, e, null);
+            }
+        }
+    }
+
+    /**
+     * <p>Moves entity between system caches after its component bitmap has changed.</p>
+     * <p>Every system is checked only once, entity is added to systems it started to match and
+     * removed from systems it no longer matches, membership of other systems is left untouched.</p>
+     *
+     * @param e                  Entity which components have changed.
+     * @param previousComponents component bitmap before change.
+     */
+    protected final void updateCache(final Entity e, final long previousComponents) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        if (e.isAttached()) {
+            updateCache(e.getEntityId(), e, previousComponents);
+        }
+    }
+
+    /**
+     * Moves registered entity between system caches after its component bitmap has changed, see {@link #updateCache(Entity, long)}.
+     *
+     * @param id                 entity ID.
+     * @param entity             entity object or null if it should be created only when needed.
+     * @param previousComponents component bitmap before change.
+     */
+    private void updateCache(final long id, final Entity entity, final long previousComponents) {
+        final long currentComponents = entities.bits(id);
+        if (currentComponents == previousComponents) {
+            return;
+        }
+        Entity e = entity;
+        final long bufferedComponents = core.getComponentManager().getDoubleBufferedComponents();
+        if ((currentComponents & bufferedComponents) != 0) {
+            if ((e = facade(id, e)) == null) {
+                return;
+            }
+            bufferedEntities.add(e);
+        }
+        for (int i = 0; i < memberships.size(); i++) {
+            Membership membership = memberships.get(i);
+            final long usedComponents = membership.system.getUsedComponents();
+            boolean wasMember = matches(usedComponents, previousComponents);
+            boolean isMember = matches(usedComponents, currentComponents);
+            if (wasMember == isMember) {
+                continue;
+            }
+            if ((e = facade(id, e)) == null) {
+                return;
+            }
+            if (wasMember) {
+                if (membership.remove(e)) {
+                    notifySystem(Notification.SYSTEM_ENTITY_REMOVED, membership.system, e, null);
+                }
+            } else {
+                if (membership.add(e)) {
+                    notifySystem(Notification.SYSTEM_ENTITY_ADDED, membership.system, e, null);
+                }
             }
         }
     }
 
+    /**
+     * Checks if entity with given component bitmap is required by system with given used components.
+     *
+     * @param usedComponents system used component bitmap.
+     * @param components     entity component bitmap.
+     * @return true if entity contains all components used by system.
+     */
+    private static boolean matches(final long usedComponents, final long components) {
+        return components != 0 && (usedComponents & components) == usedComponents;
+    }
+
     /**
      * Removes entity from system cache.
      *
@@ -187,55 +835,175 @@ public class EntityManager implements Manager {
         if (!initialized) {
             throw new IllegalStateException("Manager not initialized");
         }
-        for (EntitySystem system : core.getSystems()) {
-            if ((system.getUsedComponents() & e.getComponentsIds()) == system.getUsedComponents()) {
-                systemCache.remove(system, e);
+        for (int i = 0; i < memberships.size(); i++) {
+            Membership membership = memberships.get(i);
+            final long usedComponents = membership.system.getUsedComponents();
+            if ((usedComponents & e.getComponentsIds()) == usedComponents && membership.remove(e)) {
+                notifySystem(Notification.SYSTEM_ENTITY_REMOVED, membership.system, e, null);
             }
         }
     }
 
     /**
-     * Removes entity from system, invalidates cache for all entity components and disposes of entity components.
+     * <p>Removes entity from system, invalidates cache for all entity components and disposes of entity components.</p>
+     * <p>If entity is not registered or is being removed by other thread nothing is done. Pooled entity is returned to pool.
+     * If manager is concurrent, entity is disposed, pooled and its ID released when removal is delivered on processing thread.</p>
      *
      * @param e Entity to remove.
+     * @return true if entity has been removed by this call.
      */
-    protected void removeEntity(final Entity e) {
+    protected boolean removeEntity(final Entity e) {
+        return removeEntity(e, false);
+    }
+
+    /**
+     * <p>Removes entity like {@link #removeEntity(Entity)}, optionally keeping its ID reserved.</p>
+     * <p>Kept ID is not returned to ID generator, so it stays reserved until it is released with {@link #releaseId(long)}
+     * and no other thread can take it in between.</p>
+     *
+     * @param e      Entity to remove.
+     * @param keepId flag if entity ID should stay reserved.
+     * @return true if entity has been removed by this call.
+     */
+    protected boolean removeEntity(final Entity e, final boolean keepId) {
         if (!initialized) {
             throw new IllegalStateException("Manager not initialized");
         }
-        removeFromCache(e);
-        entityIdGenerator.removeId(e.getEntityId());
-        if (e.getReference() != null) {
-            referencedEntities.remove(e.getReference());
+        checkOwner();
+        synchronized (e) {
+            if (!e.isAttached() || !entities.replaceHandle(e.getEntityId(), e, null)) {
+                return false;
+            }
+            notifyListeners(Notification.ENTITY_REMOVED, e.getEntityId(), e, null);
+            removeFromCache(e);
+            bufferedEntities.remove(e);
+            if (e.getReference() != null) {
+                referencedEntities.remove(e.getReference());
+            }
+            e.detach();
+            if (notifications != null) {
+                notifications.add(new Notification(keepId ? Notification.ENTITY_DISPOSED : Notification.ENTITY_RELEASED,
+                        e, e.getEntityId()));
+            }
+        }
+        if (notifications == null) {
+            release(e, e.getEntityId(), keepId);
+        }
+        return true;
+    }
+
+    /**
+     * <p>Removes entity with given ID like {@link #removeEntity(Entity, boolean)}.</p>
+     * <p>Entity used only by ID is removed without creating entity object unless there are listeners to notify,
+     * its components are disposed and its ID released immediately as no system or listener can hold it.</p>
+     *
+     * @param id     entity ID.
+     * @param keepId flag if entity ID should stay reserved.
+     * @return true if entity has been removed by this call.
+     */
+    protected final boolean removeEntity(final long id, final boolean keepId) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        checkOwner();
+        while (true) {
+            final Object handle = entities.handle(id);
+            if (handle == null) {
+                return false;
+            }
+            if (handle instanceof Entity || !listeners.isEmpty()) {
+                final Entity e = facade(id);
+                if (e != null) {
+                    return removeEntity(e, keepId);
+                }
+            } else if (entities.replaceHandle(id, handle, null)) {
+                disposeComponents(id);
+                entities.clearRow(id);
+                if (!keepId) {
+                    entityIdGenerator.removeId(id);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Disposes components of registered entity.
+     *
+     * @param id entity ID.
+     */
+    private void disposeComponents(final long id) {
+        for (long bits = entities.bits(id); bits != 0; bits &= bits - 1) {
+            Object component = entities.component(id, Long.numberOfTrailingZeros(bits));
+            if (component instanceof Disposable) {
+                ((Disposable) component).dispose();
+            }
         }
-        entityMap.remove(e.getEntityId());
+    }
+
+    /**
+     * <p>Disposes removed entity, returns it to pool if it is pooled and releases its ID unless ID is kept.</p>
+     * <p>If manager is concurrent, called on processing thread after removal has been delivered to systems and listeners.</p>
+     *
+     * @param e      removed entity.
+     * @param id     ID entity had when it was removed.
+     * @param keepId flag if ID should stay reserved.
+     */
+    private void release(final Entity e, final long id, final boolean keepId) {
         e.dispose();
+        if (!keepId) {
+            entityIdGenerator.removeId(id);
+        }
+        if (e.isPooled()) {
+            core.getPoolManager().destroyPooledEntity(e);
+        }
+    }
+
+    /**
+     * <p>Copies state of double buffered components written during tick into buffers which are not visible to readers.</p>
+     * <p>Called by {@link Core} at the end of each tick before buffers are published.
+     * Entities without double buffered components in either buffer are no longer tracked.</p>
+     *
+     * @param back index of buffer to prepare.
+     */
+    protected final void prepareBuffers(final int back) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        for (Iterator<Entity> it = bufferedEntities.iterator(); it.hasNext(); ) {
+            if (!it.next().prepareBuffer(back)) {
+                it.remove();
+            }
+        }
     }
 
     /**
      * Returns entity by its ID.
      *
      * @param id Entity ID
-     * @return Entity by given ID
-     * @throws IllegalArgumentException if entity does not exist.
+     * @return Entity by given ID or null if entity does not exist.
      */
-    public Entity getEntity(final Long id) {
+    public Entity getEntity(final long id) {
         if (!initialized) {
             throw new IllegalStateException("Manager not initialized");
         }
-        if (!entityMap.containsKey(id)) {
-            return null;
-        }
-        return entityMap.get(id);
+        return facade(id);
     }
 
     /**
-     * Returns all entities in current framework.
+     * Returns all entities in current framework in order of their IDs.
      *
      * @return immutable set of entities.
      */
     public final ImmutableSet<Entity> getAllEntities() {
-        return ImmutableSet.copyOf(entityMap.values());
+        final ImmutableSet.Builder<Entity> builder = ImmutableSet.builder();
+        for (long id = entities.next(0); id >= 0; id = entities.next(id + 1)) {
+            Entity e = facade(id);
+            if (e != null) {
+                builder.add(e);
+            }
+        }
+        return builder.build();
     }
 
     /**
@@ -248,13 +1016,124 @@ public class EntityManager implements Manager {
         long id = core.getComponentId(componentType);
         if (id == 0) return null;
         List<Entity> list = new ArrayList<Entity>();
-        for (Entity e : entityMap.values()) {
-            if ((e.getComponentsIds() & id) != 0) {
+        for (long entityId = entities.next(0); entityId >= 0; entityId = entities.next(entityId + 1)) {
+            Entity e;
+            if ((entities.bits(entityId) & id) != 0 && (e = facade(entityId)) != null) {
                 list.add(e);
             }
         }
         return ImmutableSet.copyOf(list);
 
     }
-}
 
+    /**
+     * Entities of single system with cached immutable view of them.
+     */
+    private static final class Membership {
+        /**
+         * System owning this membership.
+         */
+        private final EntitySystem system;
+        /**
+         * Entities of the system.
+         */
+        private final Set<Entity> entities;
+        /**
+         * Incremented after each change of entities.
+         */
+        private final AtomicInteger version = new AtomicInteger();
+        /**
+         * Last created view, null if none has been created yet.
+         */
+        private volatile View view;
+
+        private Membership(final EntitySystem system, final boolean concurrent) {
+            this.system = system;
+            this.entities = concurrent
+                    ? Collections.newSetFromMap(new ConcurrentHashMap<Entity, Boolean>())
+                    : new HashSet<Entity>();
+        }
+
+        private boolean add(final Entity e) {
+            if (entities.add(e)) {
+                version.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean remove(final Entity e) {
+            if (entities.remove(e)) {
+                version.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns immutable view of entities, view is recreated only if entities have changed since last call.
+         *
+         * @return immutable set of entities.
+         */
+        private ImmutableSet<Entity> view() {
+            final int currentVersion = version.get();
+            View v = view;
+            if (v == null || v.version != currentVersion) {
+                v = new View(ImmutableSet.copyOf(entities), currentVersion);
+                view = v;
+            }
+            return v.entities;
+        }
+    }
+
+    /**
+     * Immutable set of system entities created at given membership version.
+     */
+    private static final class View {
+        private final ImmutableSet<Entity> entities;
+        private final int version;
+
+        private View(final ImmutableSet<Entity> entities, final int version) {
+            this.entities = entities;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Entity change waiting to be delivered to system or listeners.
+     */
+    private static final class Notification {
+        private static final int SYSTEM_ENTITY_ADDED = 0;
+        private static final int SYSTEM_ENTITY_REMOVED = 1;
+        private static final int SYSTEM_ENTITY_MODIFIED = 2;
+        private static final int ENTITY_ADDED = 3;
+        private static final int ENTITY_REMOVED = 4;
+        private static final int COMPONENT_ADDED = 5;
+        private static final int COMPONENT_REMOVED = 6;
+        private static final int COMPONENT_MODIFIED = 7;
+        private static final int ENTITY_RELEASED = 8;
+        private static final int ENTITY_DISPOSED = 9;
+
+        private final int type;
+        private final EntitySystem system;
+        private final Entity entity;
+        private final Object component;
+        private final long id;
+
+        private Notification(final int type, final EntitySystem system, final Entity entity, final Object component) {
+            this.type = type;
+            this.system = system;
+            this.entity = entity;
+            this.component = component;
+            this.id = entity.getEntityId();
+        }
+
+        private Notification(final int type, final Entity entity, final long id) {
+            this.type = type;
+            this.system = null;
+            this.entity = entity;
+            this.component = null;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.core;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Table of registered entities and their components indexed directly by entity ID.</p>
+ * <p>Entity IDs are assigned densely and reused, so entities are kept in fixed size pages of rows instead of
+ * map with boxed keys. Row of ID consists of handle, component bitmap and one slot in column of each used component type,
+ * columns are allocated when first entity of page gets component of that type. Pages are allocated when first ID of page
+ * is used and are never released until table is cleared.</p>
+ * <p>Handle is {@link #ALIVE} for entity used only by ID and its {@link Entity} once entity object has been created,
+ * handles are updated atomically, so table can be used from several threads.</p>
+ *
+ * @author Kristaps Kohs
+ */
+final class EntityTable {
+    /**
+     * Handle of registered entity which has no {@link Entity} object.
+     */
+    static final Object ALIVE = new Object();
+    /**
+     * Number of ID bits addressing row inside page.
+     */
+    private static final int PAGE_BITS = 10;
+    /**
+     * Number of rows in single page.
+     */
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    /**
+     * Mask of ID bits addressing row inside page.
+     */
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    /**
+     * Number of component columns, one for each bit of component bitmap.
+     */
+    private static final int COLUMNS = 64;
+    /**
+     * Pages of rows, replaced with larger array when table grows.
+     */
+    private volatile Page[] pages;
+
+    /**
+     * Constructor for creating empty table.
+     */
+    EntityTable() {
+        pages = new Page[0];
+    }
+
+    /**
+     * Returns handle of given ID.
+     *
+     * @param id entity ID.
+     * @return {@link Entity}, {@link #ALIVE} or null if no entity is registered with given ID.
+     */
+    Object handle(final long id) {
+        final Page page = find(id);
+        return page == null ? null : page.handles.get(row(id));
+    }
+
+    /**
+     * Checks if entity is registered with given ID.
+     *
+     * @param id entity ID.
+     * @return true if row of ID is used.
+     */
+    boolean contains(final long id) {
+        return handle(id) != null;
+    }
+
+    /**
+     * Sets handle of given ID.
+     *
+     * @param id     entity ID.
+     * @param handle {@link Entity} or {@link #ALIVE}.
+     */
+    void setHandle(final long id, final Object handle) {
+        page(id).handles.set(row(id), handle);
+    }
+
+    /**
+     * Replaces handle of given ID if it is still the expected one.
+     *
+     * @param id       entity ID.
+     * @param expected expected handle.
+     * @param handle   new handle, null to free row.
+     * @return true if handle has been replaced by this call.
+     */
+    boolean replaceHandle(final long id, final Object expected, final Object handle) {
+        final Page page = find(id);
+        return page != null && page.handles.compareAndSet(row(id), expected, handle);
+    }
+
+    /**
+     * Returns component bitmap of given ID.
+     *
+     * @param id entity ID.
+     * @return bitmap of components stored in row.
+     */
+    long bits(final long id) {
+        final Page page = find(id);
+        return page == null ? 0 : page.bits[row(id)];
+    }
+
+    /**
+     * Sets component bitmap of given ID.
+     *
+     * @param id   entity ID.
+     * @param bits bitmap of components stored in row.
+     */
+    void setBits(final long id, final long bits) {
+        page(id).bits[row(id)] = bits;
+    }
+
+    /**
+     * Returns component stored in given column of ID.
+     *
+     * @param id     entity ID.
+     * @param column component column, number of trailing zeros of component ID.
+     * @return component or null.
+     */
+    Object component(final long id, final int column) {
+        final Page page = find(id);
+        if (page == null) {
+            return null;
+        }
+        final Object[] slots = page.columns.get(column);
+        return slots == null ? null : slots[row(id)];
+    }
+
+    /**
+     * Stores component in given column of ID, column is created if needed.
+     *
+     * @param id        entity ID.
+     * @param column    component column, number of trailing zeros of component ID.
+     * @param component component or null to clear slot.
+     */
+    void setComponent(final long id, final int column, final Object component) {
+        final Page page = page(id);
+        Object[] slots = page.columns.get(column);
+        if (slots == null) {
+            if (component == null) {
+                return;
+            }
+            page.columns.compareAndSet(column, null, new Object[PAGE_SIZE]);
+            slots = page.columns.get(column);
+        }
+        slots[row(id)] = component;
+    }
+
+    /**
+     * Clears component bitmap and all component slots of given ID.
+     *
+     * @param id entity ID.
+     */
+    void clearRow(final long id) {
+        final Page page = find(id);
+        if (page == null) {
+            return;
+        }
+        final int row = row(id);
+        for (long bits = page.bits[row]; bits != 0; bits &= bits - 1) {
+            page.columns.get(Long.numberOfTrailingZeros(bits))[row] = null;
+        }
+        page.bits[row] = 0;
+    }
+
+    /**
+     * Returns lowest registered ID which is not lower than given ID.
+     *
+     * @param from ID to start from.
+     * @return registered ID or -1 if there is none.
+     */
+    long next(final long from) {
+        final Page[] current = pages;
+        for (long id = Math.max(from, 0); (id >>> PAGE_BITS) < current.length; ) {
+            final Page page = current[(int) (id >>> PAGE_BITS)];
+            if (page == null) {
+                id = ((id >>> PAGE_BITS) + 1) << PAGE_BITS;
+                continue;
+            }
+            if (page.handles.get(row(id)) != null) {
+                return id;
+            }
+            id++;
+        }
+        return -1;
+    }
+
+    /**
+     * Removes all entities and releases pages.
+     */
+    synchronized void clear() {
+        pages = new Page[0];
+    }
+
+    /**
+     * Returns row of ID inside its page.
+     *
+     * @param id entity ID.
+     * @return row index.
+     */
+    private static int row(final long id) {
+        return (int) id & PAGE_MASK;
+    }
+
+    /**
+     * Returns page containing row of given ID.
+     *
+     * @param id entity ID.
+     * @return page or null if page has not been created.
+     */
+    private Page find(final long id) {
+        final Page[] current = pages;
+        final long page = id >>> PAGE_BITS;
+        if (id < 0 || page >= current.length) {
+            return null;
+        }
+        return current[(int) page];
+    }
+
+    /**
+     * Returns page containing row of given ID, page and larger page array are created if needed.
+     *
+     * @param id entity ID.
+     * @return page of ID.
+     * @throws IllegalArgumentException if ID can not be stored in table.
+     */
+    private Page page(final long id) {
+        final long page = id >>> PAGE_BITS;
+        if (id < 0 || page >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Entity ID " + id + " is out of range.");
+        }
+        final Page[] current = pages;
+        if (page < current.length && current[(int) page] != null) {
+            return current[(int) page];
+        }
+        synchronized (this) {
+            Page[] grown = pages;
+            if (page >= grown.length) {
+                Page[] copy = new Page[(int) Math.min(Integer.MAX_VALUE, Math.max(page + 1, grown.length * 2L))];
+                System.arraycopy(grown, 0, copy, 0, grown.length);
+                grown = copy;
+            }
+            if (grown[(int) page] == null) {
+                grown[(int) page] = new Page();
+            }
+            pages = grown;
+            return grown[(int) page];
+        }
+    }
+
+    /**
+     * Rows of {@link #PAGE_SIZE} consecutive IDs.
+     */
+    private static final class Page {
+        /**
+         * Handles of rows, null if row is free.
+         */
+        private final AtomicReferenceArray<Object> handles = new AtomicReferenceArray<Object>(PAGE_SIZE);
+        /**
+         * Component bitmaps of rows.
+         */
+        private final long[] bits = new long[PAGE_SIZE];
+        /**
+         * Component columns indexed by component bit, null until first component of that type is stored in page.
+         */
+        private final AtomicReferenceArray<Object[]> columns = new AtomicReferenceArray<Object[]>(COLUMNS);
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Map;
 
 /**
  * Manager for pooling entities to be reused later to avoid allocating new memory for creating new entities that are used often..
+ * Pool access is synchronized so pooled entities can be created and destroyed from several threads.
  * Date: 13.1.2
  * Time: 12:37
  *
@@ -76,7 +77,7 @@ public class PoolManager implements Manager {
      * @param components array of components
      * @return Entity from pool.
      */
-    protected Entity createPooledEntity(Class<?>... components) {
+    protected synchronized Entity createPooledEntity(Class<?>... components) {
         if (!initialized) {
             throw new IllegalStateException("Manager not initialized");
         }
@@ -103,7 +104,7 @@ public class PoolManager implements Manager {
      *
      * @param entity to be destroyed.
      */
-    public void destroyPooledEntity(Entity entity) {
+    public synchronized void destroyPooledEntity(Entity entity) {
         if (!initialized) {
             throw new IllegalStateException("Manager not initialized");
         }
@@ -122,13 +123,15 @@ public class PoolManager implements Manager {
         }
         Entity e = frameWorkCore.createEntity();
         e.setPooled(true);
-        for (Class<?> component : components) {
+        Object[] instances = new Object[components.length];
+        for (int i = 0; i < components.length; i++) {
             try {
-                e.addComponent(component.newInstance());
+                instances[i] = components[i].newInstance();
             } catch (Exception e1) {
                 throw new IllegalStateException("Failed to create pooled component", e1);
             }
         }
+        e.addComponents(instances);
         return e;
     }
 
@@ -137,7 +140,7 @@ public class PoolManager implements Manager {
      *
      * @param delta time passed in milliseconds.
      */
-    public void cleanUpPool(final float delta) {
+    public synchronized void cleanUpPool(final float delta) {
         if (!initialized) {
             throw new IllegalStateException("Manager not initialized");
         }
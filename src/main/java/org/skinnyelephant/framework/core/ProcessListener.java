@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.core;
+
+/**
+ * <p>Interface for {@link Manager}s which should be notified when {@link Core} processes tick.</p>
+ * <p>Managers implementing this interface are registered automatically by {@link Core#addManager(Manager)}.</p>
+ */
+public interface ProcessListener {
+    /**
+     * Called at the start of {@link Core#process(float)} before any system is processed.
+     *
+     * @param delta delta time.
+     */
+    void beforeProcess(float delta);
+
+    /**
+     * Called at the end of {@link Core#process(float)} after all systems have been processed.
+     *
+     * @param delta delta time.
+     */
+    void afterProcess(float delta);
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.encoding;
+
+import org.skinnyelephant.framework.replay.VarInts;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Registry of component types encoded by {@link FrameEncoder}.</p>
+ * <p>Every registered type gets bit in archetype mask, so at most 64 types can be registered, in the same order
+ * for encoder and decoder. Primitive fields of component are found with reflection once and stored as 64 bit values:
+ * integral values zigzag encoded, floating point values as their bits.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class ComponentLayouts {
+    /**
+     * Maximal number of registered types.
+     */
+    public static final int MAX_TYPES = 64;
+    /**
+     * Type IDs by component class.
+     */
+    private final Map<Class<?>, Integer> ids = new HashMap<Class<?>, Integer>();
+    /**
+     * Layouts by type ID.
+     */
+    private final List<Layout> layouts = new ArrayList<Layout>();
+
+    /**
+     * Registers component type.
+     *
+     * @param type component class with no argument constructor and primitive fields only.
+     * @return type ID.
+     * @throws IllegalStateException    if type is registered or too many types are registered.
+     * @throws IllegalArgumentException if component has unsupported fields.
+     */
+    public int register(final Class<?> type) {
+        if (ids.containsKey(type)) {
+            throw new IllegalStateException("Component " + type.getName() + " is already registered.");
+        }
+        if (layouts.size() == MAX_TYPES) {
+            throw new IllegalStateException("At most " + MAX_TYPES + " component types can be registered.");
+        }
+        int id = layouts.size();
+        layouts.add(new Layout(type));
+        ids.put(type, id);
+        return id;
+    }
+
+    /**
+     * Returns type ID of component class.
+     *
+     * @param type component class.
+     * @return type ID or -1 if type is not registered.
+     */
+    public int getId(final Class<?> type) {
+        Integer id = ids.get(type);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns number of registered types.
+     *
+     * @return type count.
+     */
+    public int size() {
+        return layouts.size();
+    }
+
+    /**
+     * Returns layout of type ID.
+     *
+     * @param id type ID.
+     * @return layout.
+     */
+    Layout getLayout(final int id) {
+        return layouts.get(id);
+    }
+
+    /**
+     * Returns number of fields of all types in archetype mask.
+     *
+     * @param mask archetype mask.
+     * @return field count.
+     */
+    int getFieldCount(long mask) {
+        int count = 0;
+        while (mask != 0) {
+            count += layouts.get(Long.numberOfTrailingZeros(mask)).fields.length;
+            mask &= mask - 1;
+        }
+        return count;
+    }
+
+    /**
+     * Primitive fields of single component type.
+     */
+    static final class Layout {
+        /**
+         * Component class.
+         */
+        final Class<?> type;
+        /**
+         * Component constructor.
+         */
+        private final Constructor<?> constructor;
+        /**
+         * Fields in order of their names.
+         */
+        final Field[] fields;
+
+        private Layout(final Class<?> type) {
+            this.type = type;
+            try {
+                constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("Component " + type.getName() + " needs no argument constructor.", e);
+            }
+            List<Field> list = new ArrayList<Field>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    if (!field.getType().isPrimitive()) {
+                        throw new IllegalArgumentException("Field " + field.getName() + " of " + type.getName() + " is not primitive.");
+                    }
+                    field.setAccessible(true);
+                    list.add(field);
+                }
+            }
+            fields = list.toArray(new Field[list.size()]);
+            Arrays.sort(fields, new Comparator<Field>() {
+                @Override
+                public int compare(final Field o1, final Field o2) {
+                    int result = o1.getName().compareTo(o2.getName());
+                    return result != 0 ? result : o1.getDeclaringClass().getName().compareTo(o2.getDeclaringClass().getName());
+                }
+            });
+        }
+
+        /**
+         * Writes field values of component.
+         *
+         * @param component component.
+         * @param values    value array.
+         * @param offset    index of first value.
+         */
+        void read(final Object component, final long[] values, final int offset) {
+            try {
+                for (int i = 0; i < fields.length; i++) {
+                    Field field = fields[i];
+                    Class<?> type = field.getType();
+                    long value;
+                    if (type == float.class) {
+                        value = Float.floatToRawIntBits(field.getFloat(component)) & 0xFFFFFFFFL;
+                    } else if (type == double.class) {
+                        value = Double.doubleToRawLongBits(field.getDouble(component));
+                    } else if (type == boolean.class) {
+                        value = field.getBoolean(component) ? 1 : 0;
+                    } else if (type == char.class) {
+                        value = field.getChar(component);
+                    } else {
+                        value = VarInts.zigzag(field.getLong(component));
+                    }
+                    values[offset + i] = value;
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Failed to read field of " + component.getClass().getName(), e);
+            }
+        }
+
+        /**
+         * Creates component from field values.
+         *
+         * @param values value array.
+         * @param offset index of first value.
+         * @return new component.
+         */
+        Object create(final long[] values, final int offset) {
+            Object component;
+            try {
+                component = constructor.newInstance();
+                for (int i = 0; i < fields.length; i++) {
+                    Field field = fields[i];
+                    Class<?> type = field.getType();
+                    long value = values[offset + i];
+                    long number = VarInts.unzigzag(value);
+                    if (type == float.class) {
+                        field.setFloat(component, Float.intBitsToFloat((int) value));
+                    } else if (type == double.class) {
+                        field.setDouble(component, Double.longBitsToDouble(value));
+                    } else if (type == boolean.class) {
+                        field.setBoolean(component, value != 0);
+                    } else if (type == char.class) {
+                        field.setChar(component, (char) value);
+                    } else if (type == long.class) {
+                        field.setLong(component, number);
+                    } else if (type == int.class) {
+                        field.setInt(component, (int) number);
+                    } else if (type == short.class) {
+                        field.setShort(component, (short) number);
+                    } else {
+                        field.setByte(component, (byte) number);
+                    }
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to create component " + constructor.getDeclaringClass().getName(), e);
+            }
+            return component;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.encoding;
+
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * <p>Immutable state of world at single tick, as encoded by {@link FrameEncoder}.</p>
+ * <p>Frame holds entities in order of their IDs, each with archetype mask of its registered component types and
+ * field values of those components. Components of types not registered in {@link ComponentLayouts} are not captured.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public final class Frame {
+    /**
+     * Registered component types.
+     */
+    final ComponentLayouts layouts;
+    /**
+     * Entity IDs in ascending order.
+     */
+    final long[] ids;
+    /**
+     * Archetype masks of entities.
+     */
+    final long[] masks;
+    /**
+     * Index of first value of each entity, with total value count at the end.
+     */
+    final int[] offsets;
+    /**
+     * Field values of entities.
+     */
+    final long[] values;
+    /**
+     * Number of entities.
+     */
+    final int size;
+
+    /**
+     * Constructor for creating frame.
+     *
+     * @param layouts registered component types.
+     * @param ids     entity IDs in ascending order.
+     * @param masks   archetype masks.
+     * @param offsets value offsets.
+     * @param values  field values.
+     * @param size    number of entities.
+     */
+    Frame(final ComponentLayouts layouts, final long[] ids, final long[] masks, final int[] offsets,
+          final long[] values, final int size) {
+        this.layouts = layouts;
+        this.ids = ids;
+        this.masks = masks;
+        this.offsets = offsets;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Captures state of world.
+     *
+     * @param core    core.
+     * @param layouts registered component types.
+     * @return frame.
+     */
+    public static Frame capture(final Core core, final ComponentLayouts layouts) {
+        Entity[] entities = core.getEntityManager().getAllEntities().toArray(new Entity[0]);
+        Arrays.sort(entities, new Comparator<Entity>() {
+            @Override
+            public int compare(final Entity o1, final Entity o2) {
+                return o1.getEntityId() < o2.getEntityId() ? -1 : (o1.getEntityId() == o2.getEntityId() ? 0 : 1);
+            }
+        });
+        int size = entities.length;
+        long[] ids = new long[size];
+        long[] masks = new long[size];
+        int[] offsets = new int[size + 1];
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            long mask = 0;
+            for (Object component : entities[i].getComponents()) {
+                int type = layouts.getId(component.getClass());
+                if (type >= 0) {
+                    mask |= 1L << type;
+                }
+            }
+            ids[i] = entities[i].getEntityId();
+            masks[i] = mask;
+            offsets[i] = total;
+            total += layouts.getFieldCount(mask);
+        }
+        offsets[size] = total;
+        long[] values = new long[total];
+        for (int i = 0; i < size; i++) {
+            int offset = offsets[i];
+            long mask = masks[i];
+            while (mask != 0) {
+                ComponentLayouts.Layout layout = layouts.getLayout(Long.numberOfTrailingZeros(mask));
+                layout.read(entities[i].getComponent(layout.type), values, offset);
+                offset += layout.fields.length;
+                mask &= mask - 1;
+            }
+        }
+        return new Frame(layouts, ids, masks, offsets, values, size);
+    }
+
+    /**
+     * Returns number of entities.
+     *
+     * @return entity count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns ID of entity.
+     *
+     * @param index entity index.
+     * @return entity ID.
+     */
+    public long getId(final int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns archetype mask of entity, bits are type IDs of {@link ComponentLayouts}.
+     *
+     * @param index entity index.
+     * @return archetype mask.
+     */
+    public long getMask(final int index) {
+        return masks[index];
+    }
+
+    /**
+     * Returns index of entity.
+     *
+     * @param id entity ID.
+     * @return entity index or negative value if entity is not in frame.
+     */
+    public int indexOf(final long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    /**
+     * Creates component of entity from frame values.
+     *
+     * @param index entity index.
+     * @param type  component class.
+     * @param <T>   component class.
+     * @return new component or null if entity has no such component.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getComponent(final int index, final Class<T> type) {
+        int id = layouts.getId(type);
+        if (id < 0 || (masks[index] & (1L << id)) == 0) {
+            return null;
+        }
+        int offset = offsets[index] + layouts.getFieldCount(masks[index] & ((1L << id) - 1));
+        return (T) layouts.getLayout(id).create(values, offset);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Frame)) {
+            return false;
+        }
+        Frame other = (Frame) o;
+        if (size != other.size || offsets[size] != other.offsets[other.size]) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (ids[i] != other.ids[i] || masks[i] != other.masks[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < offsets[size]; i++) {
+            if (values[i] != other.values[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + (int) (ids[i] ^ (ids[i] >>> 32));
+        }
+        return hash;
+    }
+}
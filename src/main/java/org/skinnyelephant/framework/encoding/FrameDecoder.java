@@ -0,0 +1,265 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.encoding;
+
+import org.skinnyelephant.framework.core.Disposable;
+import org.skinnyelephant.framework.replay.VarInts;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decodes {@link Frame}s written by {@link FrameEncoder}.
+ *
+ * @author Kristaps Kohs
+ */
+public class FrameDecoder implements Disposable {
+    /**
+     * Registered component types, the same as for encoder.
+     */
+    private final ComponentLayouts layouts;
+    /**
+     * Decompressor.
+     */
+    private final Inflater inflater = new Inflater(true);
+    /**
+     * Buffer for decompressed payload.
+     */
+    private byte[] inflated = new byte[1024];
+
+    /**
+     * Constructor for creating decoder.
+     *
+     * @param layouts component types registered in the same order as for encoder.
+     */
+    public FrameDecoder(final ComponentLayouts layouts) {
+        this.layouts = layouts;
+    }
+
+    /**
+     * Decodes next frame of buffer.
+     *
+     * @param previous previously decoded frame, required for delta frames.
+     * @param in       input buffer, position is moved after frame.
+     * @return decoded frame.
+     * @throws IllegalArgumentException if frame is malformed.
+     * @throws IllegalStateException    if delta frame is decoded without previous frame.
+     */
+    public Frame decode(final Frame previous, final ByteBuffer in) {
+        int flags = in.get();
+        int length = (int) VarInts.readUnsigned(in);
+        ByteBuffer payload;
+        if ((flags & FrameFormat.COMPRESSED) != 0) {
+            int rawLength = (int) VarInts.readUnsigned(in);
+            payload = inflate(in, length, rawLength);
+        } else {
+            payload = in.slice();
+            payload.limit(length);
+            in.position(in.position() + length);
+        }
+        if ((flags & FrameFormat.KEYFRAME) != 0) {
+            return readKeyframe(payload);
+        }
+        if (previous == null) {
+            throw new IllegalStateException("Delta frame requires previous frame.");
+        }
+        return readDelta(previous, payload);
+    }
+
+    private Frame readKeyframe(final ByteBuffer payload) {
+        long[] archetypes = readArchetypes(payload);
+        int size = (int) VarInts.readUnsigned(payload);
+        FrameBuilder builder = new FrameBuilder(size, 0);
+        long id = 0;
+        for (int i = 0; i < size; i++) {
+            id += VarInts.readUnsigned(payload);
+            readEntity(payload, builder, id, archetypes);
+        }
+        return builder.build(layouts);
+    }
+
+    private Frame readDelta(final Frame previous, final ByteBuffer payload) {
+        long[] archetypes = readArchetypes(payload);
+        int removedCount = (int) VarInts.readUnsigned(payload);
+        long[] removed = new long[removedCount];
+        long id = 0;
+        for (int i = 0; i < removedCount; i++) {
+            id += VarInts.readUnsigned(payload);
+            removed[i] = id;
+        }
+        int spawnedCount = (int) VarInts.readUnsigned(payload);
+        FrameBuilder spawned = new FrameBuilder(spawnedCount, 0);
+        id = 0;
+        for (int i = 0; i < spawnedCount; i++) {
+            id += VarInts.readUnsigned(payload);
+            readEntity(payload, spawned, id, archetypes);
+        }
+        int changedCount = (int) VarInts.readUnsigned(payload);
+        long[] changedIds = new long[changedCount];
+        long[] changedValues = new long[previous.values.length];
+        int changedValueCount = 0;
+        id = 0;
+        int p = 0;
+        for (int i = 0; i < changedCount; i++) {
+            id += VarInts.readUnsigned(payload);
+            changedIds[i] = id;
+            while (p < previous.size && previous.ids[p] < id) {
+                p++;
+            }
+            if (p == previous.size || previous.ids[p] != id) {
+                throw new IllegalArgumentException("Changed entity " + id + " is not in previous frame.");
+            }
+            for (int v = previous.offsets[p]; v < previous.offsets[p + 1]; v++) {
+                changedValues[changedValueCount++] = previous.values[v] ^ VarInts.readUnsigned(payload);
+            }
+        }
+
+        FrameBuilder builder = new FrameBuilder(previous.size + spawnedCount, previous.offsets[previous.size]);
+        int r = 0;
+        int s = 0;
+        int c = 0;
+        int changedOffset = 0;
+        p = 0;
+        while (p < previous.size || s < spawned.size) {
+            long previousId = p < previous.size ? previous.ids[p] : Long.MAX_VALUE;
+            if (s < spawned.size && spawned.ids[s] <= previousId) {
+                builder.add(spawned.ids[s], spawned.masks[s], spawned.values, spawned.offsets[s], spawned.offsets[s + 1]);
+                if (spawned.ids[s] == previousId) {
+                    p++;
+                }
+                s++;
+            } else if (r < removedCount && removed[r] == previousId) {
+                r++;
+                p++;
+            } else if (c < changedCount && changedIds[c] == previousId) {
+                int count = previous.offsets[p + 1] - previous.offsets[p];
+                builder.add(previousId, previous.masks[p], changedValues, changedOffset, changedOffset + count);
+                changedOffset += count;
+                c++;
+                p++;
+            } else {
+                builder.add(previousId, previous.masks[p], previous.values, previous.offsets[p], previous.offsets[p + 1]);
+                p++;
+            }
+        }
+        return builder.build(layouts);
+    }
+
+    private void readEntity(final ByteBuffer payload, final FrameBuilder builder, final long id, final long[] archetypes) {
+        int archetype = (int) VarInts.readUnsigned(payload);
+        if (archetype >= archetypes.length) {
+            throw new IllegalArgumentException("Unknown archetype " + archetype + ".");
+        }
+        long mask = archetypes[archetype];
+        int count = layouts.getFieldCount(mask);
+        builder.begin(id, mask, count);
+        for (int v = 0; v < count; v++) {
+            builder.value(VarInts.readUnsigned(payload));
+        }
+    }
+
+    private static long[] readArchetypes(final ByteBuffer payload) {
+        long[] archetypes = new long[(int) VarInts.readUnsigned(payload)];
+        for (int i = 0; i < archetypes.length; i++) {
+            archetypes[i] = VarInts.readUnsigned(payload);
+        }
+        return archetypes;
+    }
+
+    private ByteBuffer inflate(final ByteBuffer in, final int length, final int rawLength) {
+        if (inflated.length < rawLength) {
+            inflated = new byte[rawLength];
+        }
+        byte[] input = new byte[length];
+        in.get(input);
+        inflater.reset();
+        inflater.setInput(input);
+        try {
+            if (inflater.inflate(inflated, 0, rawLength) != rawLength) {
+                throw new IllegalArgumentException("Compressed frame is truncated.");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Compressed frame is malformed.", e);
+        }
+        return ByteBuffer.wrap(inflated, 0, rawLength);
+    }
+
+    @Override
+    public void dispose() {
+        inflater.end();
+    }
+
+    /**
+     * Growable arrays of frame being decoded.
+     */
+    private static final class FrameBuilder {
+        private long[] ids;
+        private long[] masks;
+        private int[] offsets;
+        private long[] values;
+        private int size;
+        private int valueCount;
+
+        private FrameBuilder(final int entities, final int values) {
+            ids = new long[Math.max(entities, 1)];
+            masks = new long[ids.length];
+            offsets = new int[ids.length + 1];
+            this.values = new long[Math.max(values, 1)];
+        }
+
+        private void begin(final long id, final long mask, final int count) {
+            if (size == ids.length) {
+                ids = grow(ids, size * 2);
+                masks = grow(masks, size * 2);
+                int[] grown = new int[size * 2 + 1];
+                System.arraycopy(offsets, 0, grown, 0, offsets.length);
+                offsets = grown;
+            }
+            if (valueCount + count > values.length) {
+                values = grow(values, Math.max(values.length * 2, valueCount + count));
+            }
+            ids[size] = id;
+            masks[size] = mask;
+            offsets[size] = valueCount;
+            size++;
+            offsets[size] = valueCount;
+        }
+
+        private void value(final long value) {
+            values[valueCount++] = value;
+            offsets[size] = valueCount;
+        }
+
+        private void add(final long id, final long mask, final long[] source, final int from, final int to) {
+            begin(id, mask, to - from);
+            System.arraycopy(source, from, values, valueCount, to - from);
+            valueCount += to - from;
+            offsets[size] = valueCount;
+        }
+
+        private Frame build(final ComponentLayouts layouts) {
+            return new Frame(layouts, ids, masks, offsets, values, size);
+        }
+
+        private static long[] grow(final long[] array, final int length) {
+            long[] grown = new long[length];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            return grown;
+        }
+    }
+}
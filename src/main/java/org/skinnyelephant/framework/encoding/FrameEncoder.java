@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.encoding;
+
+import org.skinnyelephant.framework.core.Disposable;
+import org.skinnyelephant.framework.replay.VarInts;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * <p>Encodes {@link Frame}s into {@link ByteBuffer} as keyframes or as deltas against previous frame.</p>
+ * <p>Frames are written one after another, so buffer can hold stream of frames read back by {@link FrameDecoder}.
+ * With compression enabled, payload is deflate compressed when it gets smaller.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class FrameEncoder implements Disposable {
+    /**
+     * Flag if payloads are compressed.
+     */
+    private final boolean compress;
+    /**
+     * Compressor, null if compression is disabled.
+     */
+    private final Deflater deflater;
+    /**
+     * Archetype indexes of frame being encoded.
+     */
+    private final Map<Long, Integer> archetypes = new HashMap<Long, Integer>();
+    /**
+     * Buffer for payload.
+     */
+    private ByteBuffer payload = ByteBuffer.allocate(1024);
+    /**
+     * Buffer for compressed payload.
+     */
+    private byte[] compressed = new byte[1024];
+    /**
+     * Indexes of entities removed since previous frame.
+     */
+    private int[] removed = new int[16];
+    /**
+     * Indexes of entities added or with changed archetype.
+     */
+    private int[] spawned = new int[16];
+    /**
+     * Indexes of entities with changed values.
+     */
+    private int[] changed = new int[16];
+
+    /**
+     * Constructor for creating encoder.
+     *
+     * @param compress flag if payloads should be compressed.
+     */
+    public FrameEncoder(final boolean compress) {
+        this.compress = compress;
+        this.deflater = compress ? new Deflater(Deflater.BEST_SPEED, true) : null;
+    }
+
+    /**
+     * Encodes frame.
+     *
+     * @param previous frame known to decoder, or null to write keyframe.
+     * @param current  frame to encode.
+     * @param out      output buffer, position is moved after written frame.
+     * @return number of written bytes.
+     * @throws BufferOverflowException if frame does not fit into buffer, buffer is not changed then.
+     */
+    public int encode(final Frame previous, final Frame current, final ByteBuffer out) {
+        if (previous == null) {
+            writeKeyframe(current);
+        } else {
+            writeDelta(previous, current);
+        }
+        int rawLength = payload.position();
+        byte[] data = payload.array();
+        int length = rawLength;
+        int flags = previous == null ? FrameFormat.KEYFRAME : 0;
+        if (compress && rawLength > 0) {
+            if (compressed.length < rawLength) {
+                compressed = new byte[rawLength];
+            }
+            deflater.reset();
+            deflater.setInput(data, 0, rawLength);
+            deflater.finish();
+            int compressedLength = deflater.deflate(compressed, 0, compressed.length);
+            if (deflater.finished() && compressedLength < rawLength) {
+                flags |= FrameFormat.COMPRESSED;
+                data = compressed;
+                length = compressedLength;
+            }
+        }
+        if (out.remaining() < 1 + 2 * FrameFormat.MAX_VARINT + length) {
+            throw new BufferOverflowException();
+        }
+        int start = out.position();
+        out.put((byte) flags);
+        VarInts.writeUnsigned(out, length);
+        if ((flags & FrameFormat.COMPRESSED) != 0) {
+            VarInts.writeUnsigned(out, rawLength);
+        }
+        out.put(data, 0, length);
+        return out.position() - start;
+    }
+
+    /**
+     * Writes payload of keyframe.
+     *
+     * @param frame frame.
+     */
+    private void writeKeyframe(final Frame frame) {
+        reset(FrameFormat.MAX_VARINT * (3L * frame.size + frame.offsets[frame.size] + 2));
+        archetypes.clear();
+        for (int i = 0; i < frame.size; i++) {
+            archetype(frame.masks[i]);
+        }
+        writeArchetypes();
+        VarInts.writeUnsigned(payload, frame.size);
+        long id = 0;
+        for (int i = 0; i < frame.size; i++) {
+            id = writeEntity(frame, i, id);
+        }
+    }
+
+    /**
+     * Writes payload of delta frame.
+     *
+     * @param previous previous frame.
+     * @param current  current frame.
+     */
+    private void writeDelta(final Frame previous, final Frame current) {
+        int removedCount = 0;
+        int spawnedCount = 0;
+        int changedCount = 0;
+        int p = 0;
+        int c = 0;
+        while (p < previous.size || c < current.size) {
+            if (c == current.size || (p < previous.size && previous.ids[p] < current.ids[c])) {
+                removed = add(removed, removedCount++, p++);
+            } else if (p == previous.size || current.ids[c] < previous.ids[p]) {
+                spawned = add(spawned, spawnedCount++, c++);
+            } else {
+                if (previous.masks[p] != current.masks[c]) {
+                    spawned = add(spawned, spawnedCount++, c);
+                } else if (!sameValues(previous, p, current, c)) {
+                    changed = add(changed, changedCount++, c);
+                }
+                p++;
+                c++;
+            }
+        }
+        reset(FrameFormat.MAX_VARINT * (3L * current.size + previous.size + current.offsets[current.size] + 4));
+        archetypes.clear();
+        for (int i = 0; i < spawnedCount; i++) {
+            archetype(current.masks[spawned[i]]);
+        }
+        writeArchetypes();
+
+        VarInts.writeUnsigned(payload, removedCount);
+        long id = 0;
+        for (int i = 0; i < removedCount; i++) {
+            VarInts.writeUnsigned(payload, previous.ids[removed[i]] - id);
+            id = previous.ids[removed[i]];
+        }
+        VarInts.writeUnsigned(payload, spawnedCount);
+        id = 0;
+        for (int i = 0; i < spawnedCount; i++) {
+            id = writeEntity(current, spawned[i], id);
+        }
+        VarInts.writeUnsigned(payload, changedCount);
+        id = 0;
+        p = 0;
+        for (int i = 0; i < changedCount; i++) {
+            int index = changed[i];
+            VarInts.writeUnsigned(payload, current.ids[index] - id);
+            id = current.ids[index];
+            while (previous.ids[p] != id) {
+                p++;
+            }
+            int previousOffset = previous.offsets[p];
+            for (int v = current.offsets[index]; v < current.offsets[index + 1]; v++) {
+                VarInts.writeUnsigned(payload, current.values[v] ^ previous.values[previousOffset++]);
+            }
+        }
+    }
+
+    /**
+     * Writes entity with archetype index and values.
+     *
+     * @param frame  frame.
+     * @param index  entity index.
+     * @param lastId ID of previous entity of the list.
+     * @return ID of entity.
+     */
+    private long writeEntity(final Frame frame, final int index, final long lastId) {
+        VarInts.writeUnsigned(payload, frame.ids[index] - lastId);
+        VarInts.writeUnsigned(payload, archetypes.get(frame.masks[index]));
+        for (int v = frame.offsets[index]; v < frame.offsets[index + 1]; v++) {
+            VarInts.writeUnsigned(payload, frame.values[v]);
+        }
+        return frame.ids[index];
+    }
+
+    /**
+     * Writes table of collected archetypes in order of their indexes.
+     */
+    private void writeArchetypes() {
+        long[] masks = new long[archetypes.size()];
+        for (Map.Entry<Long, Integer> entry : archetypes.entrySet()) {
+            masks[entry.getValue()] = entry.getKey();
+        }
+        VarInts.writeUnsigned(payload, masks.length);
+        for (long mask : masks) {
+            VarInts.writeUnsigned(payload, mask);
+        }
+    }
+
+    private void archetype(final long mask) {
+        if (!archetypes.containsKey(mask)) {
+            archetypes.put(mask, archetypes.size());
+        }
+    }
+
+    private static boolean sameValues(final Frame previous, final int p, final Frame current, final int c) {
+        int previousOffset = previous.offsets[p];
+        for (int v = current.offsets[c]; v < current.offsets[c + 1]; v++) {
+            if (current.values[v] != previous.values[previousOffset++]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] add(int[] array, final int index, final int value) {
+        if (index == array.length) {
+            int[] grown = new int[array.length * 2];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            array = grown;
+        }
+        array[index] = value;
+        return array;
+    }
+
+    /**
+     * Clears payload buffer, making sure it can hold given number of bytes.
+     *
+     * @param capacity required capacity.
+     */
+    private void reset(final long capacity) {
+        long required = capacity + FrameFormat.MAX_VARINT * (ComponentLayouts.MAX_TYPES + 1L);
+        if (required > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Frame is too large to encode.");
+        }
+        if (payload.capacity() < required) {
+            payload = ByteBuffer.allocate((int) required);
+        }
+        payload.clear();
+    }
+
+    @Override
+    public void dispose() {
+        if (deflater != null) {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.encoding;
+
+/**
+ * <p>Constants of encoded frames.</p>
+ * <p>Frame starts with flags byte and length of stored payload, compressed frame also holds length of uncompressed payload.
+ * Payload starts with table of archetype masks, entities refer to archetypes by index in table.
+ * Entity IDs are written as differences to previous ID of the same list. Keyframe lists all entities with their values,
+ * delta frame lists removed entities, entities added or with changed archetype with their values,
+ * and entities with changed values, which are written as XOR with values of previous frame.
+ * All numbers are written as variable length integers.</p>
+ *
+ * @author Kristaps Kohs
+ */
+final class FrameFormat {
+    /**
+     * Frame holds all entities.
+     */
+    static final int KEYFRAME = 1;
+    /**
+     * Payload is deflate compressed.
+     */
+    static final int COMPRESSED = 2;
+    /**
+     * Maximal size of variable length integer.
+     */
+    static final int MAX_VARINT = 10;
+
+    private FrameFormat() {
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.events;
+
+/**
+ * Point in {@link org.skinnyelephant.framework.core.Core#process(float)} at which subscribed {@link EventHandler} is drained.
+ */
+public enum DrainPoint {
+    /**
+     * Events are drained before any system is processed.
+     */
+    BEFORE_SYSTEMS,
+    /**
+     * Events are drained after all systems have been processed.
+     */
+    AFTER_SYSTEMS,
+    /**
+     * Events are drained only when {@link EventCursor#drain(EventHandler)} is called, see {@link EventBus#subscribe(Class)}.
+     */
+    MANUAL
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.events;
+
+import org.skinnyelephant.framework.core.Manager;
+import org.skinnyelephant.framework.core.ProcessListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Manager for passing typed events between systems without creating temporary components.</p>
+ * <p>Every event type has its own preallocated {@link EventRing}. Writer fills event returned by {@link #claim(Class)}
+ * and publishes it with {@link #publish(Class)}. Handlers subscribed with {@link #subscribe(Class, EventHandler, DrainPoint)}
+ * are drained in batches at given point of {@link org.skinnyelephant.framework.core.Core#process(float)},
+ * readers can also drain their own {@link EventCursor}s returned by {@link #subscribe(Class)} whenever needed.</p>
+ * <p>To add bus to core call {@code core.addManager(new EventBus())}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class EventBus implements Manager, ProcessListener {
+    /**
+     * Default capacity of event ring.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Event rings by event class.
+     */
+    private final Map<Class<?>, EventRing<?>> rings = new HashMap<Class<?>, EventRing<?>>();
+    /**
+     * Handlers drained before systems are processed.
+     */
+    private final List<Subscription<?>> beforeSystems = new ArrayList<Subscription<?>>();
+    /**
+     * Handlers drained after systems are processed.
+     */
+    private final List<Subscription<?>> afterSystems = new ArrayList<Subscription<?>>();
+
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        initialized = true;
+    }
+
+    /**
+     * Registers event type with ring of given capacity.
+     *
+     * @param type     event class with public no argument constructor.
+     * @param capacity number of events in ring, rounded up to power of two.
+     * @param <E>      event class.
+     * @return ring of the event type.
+     * @throws IllegalStateException if event type is already registered.
+     */
+    public <E> EventRing<E> register(final Class<E> type, final int capacity) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        if (rings.containsKey(type)) {
+            throw new IllegalStateException("Event " + type.getName() + " already registered.");
+        }
+        EventRing<E> ring = new EventRing<E>(type, capacity);
+        rings.put(type, ring);
+        return ring;
+    }
+
+    /**
+     * Returns ring of given event type, registering it with {@link #DEFAULT_CAPACITY} if needed.
+     *
+     * @param type event class.
+     * @param <E>  event class.
+     * @return ring of the event type.
+     */
+    @SuppressWarnings("unchecked")
+    public <E> EventRing<E> getRing(final Class<E> type) {
+        EventRing<E> ring = (EventRing<E>) rings.get(type);
+        if (ring == null) {
+            ring = register(type, DEFAULT_CAPACITY);
+        }
+        return ring;
+    }
+
+    /**
+     * Returns event to be filled and published with {@link #publish(Class)}.
+     *
+     * @param type event class.
+     * @param <E>  event class.
+     * @return event to fill.
+     */
+    public <E> E claim(final Class<E> type) {
+        return getRing(type).claim();
+    }
+
+    /**
+     * Publishes event returned by last {@link #claim(Class)} of given type.
+     *
+     * @param type event class.
+     */
+    public void publish(final Class<?> type) {
+        getRing(type).publish();
+    }
+
+    /**
+     * Creates cursor for reading events of given type published after this call.
+     *
+     * @param type event class.
+     * @param <E>  event class.
+     * @return cursor.
+     */
+    public <E> EventCursor<E> newCursor(final Class<E> type) {
+        return getRing(type).newCursor();
+    }
+
+    /**
+     * <p>Subscribes to events of given type with {@link DrainPoint#MANUAL} drain point.</p>
+     * <p>No handler is stored, events are read by draining returned cursor, same as cursor created by {@link #newCursor(Class)}.</p>
+     *
+     * @param type event class.
+     * @param <E>  event class.
+     * @return cursor of the subscription.
+     */
+    public <E> EventCursor<E> subscribe(final Class<E> type) {
+        return newCursor(type);
+    }
+
+    /**
+     * Subscribes handler to events of given type.
+     *
+     * @param type    event class.
+     * @param handler handler.
+     * @param point   point in processing at which handler is drained.
+     * @param <E>     event class.
+     * @return cursor of the handler.
+     * @throws IllegalArgumentException if drain point is {@link DrainPoint#MANUAL}, use {@link #subscribe(Class)} instead.
+     */
+    public <E> EventCursor<E> subscribe(final Class<E> type, final EventHandler<? super E> handler, final DrainPoint point) {
+        if (point == DrainPoint.MANUAL) {
+            throw new IllegalArgumentException("Handler can not be subscribed with manual drain point, drain cursor of subscribe(type) instead.");
+        }
+        EventCursor<E> cursor = newCursor(type);
+        Subscription<E> subscription = new Subscription<E>(cursor, handler);
+        if (point == DrainPoint.BEFORE_SYSTEMS) {
+            beforeSystems.add(subscription);
+        } else {
+            afterSystems.add(subscription);
+        }
+        return cursor;
+    }
+
+    /**
+     * Removes subscription of given handler.
+     *
+     * @param handler handler to remove.
+     */
+    public void unsubscribe(final EventHandler<?> handler) {
+        remove(beforeSystems, handler);
+        remove(afterSystems, handler);
+    }
+
+    private static void remove(final List<Subscription<?>> subscriptions, final EventHandler<?> handler) {
+        for (int i = subscriptions.size() - 1; i >= 0; i--) {
+            if (subscriptions.get(i).handler == handler) {
+                subscriptions.remove(i);
+            }
+        }
+    }
+
+    @Override
+    public void beforeProcess(final float delta) {
+        drain(beforeSystems);
+    }
+
+    @Override
+    public void afterProcess(final float delta) {
+        drain(afterSystems);
+    }
+
+    private static void drain(final List<Subscription<?>> subscriptions) {
+        for (int i = 0; i < subscriptions.size(); i++) {
+            subscriptions.get(i).drain();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        rings.clear();
+        beforeSystems.clear();
+        afterSystems.clear();
+        initialized = false;
+    }
+
+    /**
+     * Handler subscribed to event type with its cursor.
+     *
+     * @param <E> event class.
+     */
+    private static final class Subscription<E> {
+        private final EventCursor<E> cursor;
+        private final EventHandler<? super E> handler;
+
+        private Subscription(final EventCursor<E> cursor, final EventHandler<? super E> handler) {
+            this.cursor = cursor;
+            this.handler = handler;
+        }
+
+        private void drain() {
+            cursor.drain(handler);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.events;
+
+/**
+ * Reader position in {@link EventRing}, each reader should use its own cursor.
+ *
+ * @param <E> event class.
+ * @author Kristaps Kohs
+ */
+public final class EventCursor<E> {
+    /**
+     * Ring this cursor reads.
+     */
+    private final EventRing<E> ring;
+    /**
+     * Sequence of next event to read.
+     */
+    private long sequence;
+    /**
+     * Number of events overwritten before this cursor read them.
+     */
+    private long dropped;
+
+    /**
+     * Constructor for creating cursor.
+     *
+     * @param ring     ring to read.
+     * @param sequence sequence of first event to read.
+     */
+    EventCursor(final EventRing<E> ring, final long sequence) {
+        this.ring = ring;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Passes all events published since last drain to given handler.
+     *
+     * @param handler event handler.
+     * @return number of handled events.
+     */
+    public int drain(final EventHandler<? super E> handler) {
+        final long published = ring.getPublished();
+        if (published - sequence > ring.getCapacity()) {
+            long skipped = published - ring.getCapacity();
+            dropped += skipped - sequence;
+            sequence = skipped;
+        }
+        int count = 0;
+        while (sequence < published) {
+            handler.handle(ring.get(sequence++));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns number of events waiting for this cursor.
+     *
+     * @return available events.
+     */
+    public int available() {
+        return (int) Math.min(ring.getPublished() - sequence, ring.getCapacity());
+    }
+
+    /**
+     * Getter for number of events overwritten before this cursor read them.
+     *
+     * @return dropped events.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.events;
+
+/**
+ * <p>Preallocated ring buffer of single event type.</p>
+ * <p>All event objects are created when ring is created and reused afterwards. Ring has single writer which
+ * fills event returned by {@link #claim()} and makes it visible to readers with {@link #publish()}.
+ * Every reader has its own {@link EventCursor}. If writer gets more than capacity events ahead of reader,
+ * oldest events are overwritten and counted as dropped by that reader's cursor.</p>
+ *
+ * @param <E> event class.
+ * @author Kristaps Kohs
+ */
+public final class EventRing<E> {
+    /**
+     * Event class.
+     */
+    private final Class<E> type;
+    /**
+     * Preallocated events.
+     */
+    private final E[] events;
+    /**
+     * Mask for converting sequence into index.
+     */
+    private final int mask;
+    /**
+     * Sequence of next event to be published.
+     */
+    private volatile long published;
+
+    /**
+     * Constructor for creating ring.
+     *
+     * @param type     event class with public no argument constructor.
+     * @param capacity number of events, rounded up to power of two.
+     */
+    @SuppressWarnings("unchecked")
+    EventRing(final Class<E> type, final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be positive.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.type = type;
+        this.events = (E[]) new Object[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            try {
+                events[i] = type.newInstance();
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Failed to create event " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns event object to be filled by writer. Same object is returned until {@link #publish()} is called.
+     *
+     * @return event to fill.
+     */
+    public E claim() {
+        return events[(int) (published & mask)];
+    }
+
+    /**
+     * Publishes event returned by last {@link #claim()}.
+     */
+    public void publish() {
+        published++;
+    }
+
+    /**
+     * Creates new cursor positioned after last published event.
+     *
+     * @return cursor.
+     */
+    public EventCursor<E> newCursor() {
+        return new EventCursor<E>(this, published);
+    }
+
+    /**
+     * Getter for event class.
+     *
+     * @return event class.
+     */
+    public Class<E> getType() {
+        return type;
+    }
+
+    /**
+     * Getter for ring capacity.
+     *
+     * @return capacity.
+     */
+    public int getCapacity() {
+        return events.length;
+    }
+
+    /**
+     * Getter for sequence of next event to be published.
+     *
+     * @return number of events published so far.
+     */
+    long getPublished() {
+        return published;
+    }
+
+    /**
+     * Returns event with given sequence.
+     *
+     * @param sequence event sequence.
+     * @return event.
+     */
+    E get(final long sequence) {
+        return events[(int) (sequence & mask)];
+    }
+}
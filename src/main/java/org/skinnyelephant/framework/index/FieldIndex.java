@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.index;
+
+import com.google.common.base.Function;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Base class of indexes over key computed from component of entity.</p>
+ * <p>Index remembers key of each indexed entity, so entity can be moved to new key without scanning index.
+ * Entities whose component was requested with {@link Entity#modifyComponent(Class)} are re-indexed before next lookup.</p>
+ *
+ * @param <T> component class.
+ * @param <K> key class.
+ * @author Kristaps Kohs
+ */
+public abstract class FieldIndex<T, K> {
+    /**
+     * Indexed component class.
+     */
+    private final Class<T> type;
+    /**
+     * Key extractor.
+     */
+    private final Function<? super T, ? extends K> key;
+    /**
+     * Current key of each indexed entity.
+     */
+    private final Map<Entity, K> keys = new HashMap<Entity, K>();
+    /**
+     * Entities waiting for re-index.
+     */
+    private final Set<Entity> dirty = new LinkedHashSet<Entity>();
+
+    /**
+     * Constructor for creating index.
+     *
+     * @param type indexed component class.
+     * @param key  key extractor.
+     */
+    FieldIndex(final Class<T> type, final Function<? super T, ? extends K> key) {
+        this.type = type;
+        this.key = key;
+    }
+
+    /**
+     * Adds entity under key.
+     *
+     * @param key    key.
+     * @param entity entity.
+     */
+    abstract void add(K key, Entity entity);
+
+    /**
+     * Removes entity from key.
+     *
+     * @param key    key.
+     * @param entity entity.
+     */
+    abstract void remove(K key, Entity entity);
+
+    /**
+     * Checks if key can be stored in this index.
+     *
+     * @param key key.
+     * @return true if key can be stored.
+     */
+    boolean accepts(final K key) {
+        return true;
+    }
+
+    /**
+     * Indexes entity under current key of its component, or removes it if component is missing.
+     *
+     * @param entity entity.
+     */
+    final void update(final Entity entity) {
+        dirty.remove(entity);
+        T component = entity.getComponent(type);
+        K newKey = component == null ? null : key.apply(component);
+        boolean indexed = keys.containsKey(entity);
+        K oldKey = keys.get(entity);
+        if (component == null || !accepts(newKey)) {
+            if (indexed) {
+                keys.remove(entity);
+                remove(oldKey, entity);
+            }
+            return;
+        }
+        if (indexed) {
+            if (oldKey == null ? newKey == null : oldKey.equals(newKey)) {
+                return;
+            }
+            remove(oldKey, entity);
+        }
+        keys.put(entity, newKey);
+        add(newKey, entity);
+    }
+
+    /**
+     * Removes entity from index.
+     *
+     * @param entity entity.
+     */
+    final void unindex(final Entity entity) {
+        dirty.remove(entity);
+        if (keys.containsKey(entity)) {
+            remove(keys.remove(entity), entity);
+        }
+    }
+
+    /**
+     * Marks entity for re-index before next lookup.
+     *
+     * @param entity entity.
+     */
+    final void markDirty(final Entity entity) {
+        dirty.add(entity);
+    }
+
+    /**
+     * Re-indexes entities marked as modified.
+     */
+    final void flush() {
+        while (!dirty.isEmpty()) {
+            update(dirty.iterator().next());
+        }
+    }
+
+    /**
+     * Getter for indexed component class.
+     *
+     * @return component class.
+     */
+    public final Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Returns number of indexed entities.
+     *
+     * @return number of entities.
+     */
+    public final int size() {
+        flush();
+        return keys.size();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.index;
+
+import com.google.common.base.Function;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index for looking up entities by equal key, created with {@link IndexManager#registerHashIndex(Class, Function)}.
+ *
+ * @param <T> component class.
+ * @param <K> key class.
+ * @author Kristaps Kohs
+ */
+public final class HashIndex<T, K> extends FieldIndex<T, K> {
+    /**
+     * Entities by key.
+     */
+    private final Map<K, Set<Entity>> entities = new HashMap<K, Set<Entity>>();
+
+    /**
+     * Constructor for creating hash index.
+     *
+     * @param type indexed component class.
+     * @param key  key extractor.
+     */
+    HashIndex(final Class<T> type, final Function<? super T, ? extends K> key) {
+        super(type, key);
+    }
+
+    /**
+     * Returns entities with given key.
+     *
+     * @param key key.
+     * @return unmodifiable view of entities, valid until index changes.
+     */
+    public Set<Entity> get(final K key) {
+        flush();
+        Set<Entity> set = entities.get(key);
+        return set == null ? Collections.<Entity>emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    @Override
+    void add(final K key, final Entity entity) {
+        Set<Entity> set = entities.get(key);
+        if (set == null) {
+            set = new LinkedHashSet<Entity>();
+            entities.put(key, set);
+        }
+        set.add(entity);
+    }
+
+    @Override
+    void remove(final K key, final Entity entity) {
+        Set<Entity> set = entities.get(key);
+        if (set != null && set.remove(entity) && set.isEmpty()) {
+            entities.remove(key);
+        }
+    }
+}
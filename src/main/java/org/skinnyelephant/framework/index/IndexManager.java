@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.index;
+
+import com.google.common.base.Function;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.EntityListener;
+import org.skinnyelephant.framework.core.Manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Manager maintaining secondary indexes over values of component fields.</p>
+ * <p>{@link HashIndex} answers equality lookups, {@link SortedIndex} answers range lookups, both without scanning
+ * entities. Indexes are updated when indexed component is added or removed. Entities whose component was requested
+ * with {@link Entity#modifyComponent(Class)} are re-indexed before next lookup, changes written directly to component
+ * have to be reported with {@link #fieldChanged(Entity, Class)}.</p>
+ * <p>To add manager to core call {@code core.addManager(new IndexManager(core))}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class IndexManager implements Manager, EntityListener {
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Core which entities are indexed.
+     */
+    private final Core core;
+    /**
+     * Indexes by component class.
+     */
+    private final Map<Class<?>, List<FieldIndex<?, ?>>> indexes = new HashMap<Class<?>, List<FieldIndex<?, ?>>>();
+
+    /**
+     * Constructor for creating index manager.
+     *
+     * @param core core which entities are indexed.
+     */
+    public IndexManager(final Core core) {
+        this.core = core;
+    }
+
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        initialized = true;
+        core.getEntityManager().addEntityListener(this);
+    }
+
+    /**
+     * Registers index for equality lookups, existing entities are indexed immediately.
+     *
+     * @param type component class.
+     * @param key  function computing key from component.
+     * @param <T>  component class.
+     * @param <K>  key class.
+     * @return created index.
+     */
+    public <T, K> HashIndex<T, K> registerHashIndex(final Class<T> type, final Function<? super T, ? extends K> key) {
+        return register(new HashIndex<T, K>(type, key));
+    }
+
+    /**
+     * Registers index for range lookups, existing entities are indexed immediately.
+     *
+     * @param type component class.
+     * @param key  function computing key from component.
+     * @param <T>  component class.
+     * @param <K>  key class.
+     * @return created index.
+     */
+    public <T, K extends Comparable<? super K>> SortedIndex<T, K> registerSortedIndex(final Class<T> type,
+                                                                                     final Function<? super T, ? extends K> key) {
+        return register(new SortedIndex<T, K>(type, key));
+    }
+
+    /**
+     * Removes index.
+     *
+     * @param index index to remove.
+     */
+    public void unregisterIndex(final FieldIndex<?, ?> index) {
+        List<FieldIndex<?, ?>> list = indexes.get(index.getType());
+        if (list != null && list.remove(index) && list.isEmpty()) {
+            indexes.remove(index.getType());
+        }
+    }
+
+    /**
+     * Re-indexes entity after field of its component was changed.
+     *
+     * @param entity entity.
+     * @param type   changed component class.
+     */
+    public void fieldChanged(final Entity entity, final Class<?> type) {
+        List<FieldIndex<?, ?>> list = indexes.get(type);
+        if (list != null) {
+            for (int i = 0; i < list.size(); i++) {
+                list.get(i).update(entity);
+            }
+        }
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+        for (List<FieldIndex<?, ?>> list : indexes.values()) {
+            for (int i = 0; i < list.size(); i++) {
+                list.get(i).update(entity);
+            }
+        }
+    }
+
+    @Override
+    public void entityRemoved(final Entity entity) {
+        for (List<FieldIndex<?, ?>> list : indexes.values()) {
+            for (int i = 0; i < list.size(); i++) {
+                list.get(i).unindex(entity);
+            }
+        }
+    }
+
+    @Override
+    public void componentAdded(final Entity entity, final Object component) {
+        fieldChanged(entity, component.getClass());
+    }
+
+    @Override
+    public void componentRemoved(final Entity entity, final Object component) {
+        List<FieldIndex<?, ?>> list = indexes.get(component.getClass());
+        if (list != null) {
+            for (int i = 0; i < list.size(); i++) {
+                list.get(i).unindex(entity);
+            }
+        }
+    }
+
+    @Override
+    public void componentModified(final Entity entity, final Object component) {
+        List<FieldIndex<?, ?>> list = indexes.get(component.getClass());
+        if (list != null) {
+            for (int i = 0; i < list.size(); i++) {
+                list.get(i).markDirty(entity);
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        core.getEntityManager().removeEntityListener(this);
+        indexes.clear();
+    }
+
+    /**
+     * Adds index and fills it with existing entities.
+     */
+    private <I extends FieldIndex<?, ?>> I register(final I index) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        List<FieldIndex<?, ?>> list = indexes.get(index.getType());
+        if (list == null) {
+            list = new ArrayList<FieldIndex<?, ?>>();
+            indexes.put(index.getType(), list);
+        }
+        list.add(index);
+        Set<Entity> existing = core.getEntityManager().getEntitiesByComponent(index.getType());
+        if (existing != null) {
+            for (Entity e : existing) {
+                index.update(e);
+            }
+        }
+        return index;
+    }
+}
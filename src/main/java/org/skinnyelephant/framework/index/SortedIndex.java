@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.index;
+
+import com.google.common.base.Function;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <p>Index for looking up entities by key range, created with {@link IndexManager#registerSortedIndex(Class, Function)}.</p>
+ * <p>Entities with null key are not indexed.</p>
+ *
+ * @param <T> component class.
+ * @param <K> key class.
+ * @author Kristaps Kohs
+ */
+public final class SortedIndex<T, K extends Comparable<? super K>> extends FieldIndex<T, K> {
+    /**
+     * Entities by key.
+     */
+    private final TreeMap<K, Set<Entity>> entities = new TreeMap<K, Set<Entity>>();
+
+    /**
+     * Constructor for creating sorted index.
+     *
+     * @param type indexed component class.
+     * @param key  key extractor.
+     */
+    SortedIndex(final Class<T> type, final Function<? super T, ? extends K> key) {
+        super(type, key);
+    }
+
+    /**
+     * Returns entities with key in given range, ordered by key.
+     *
+     * @param from          lower bound.
+     * @param fromInclusive flag if lower bound is included.
+     * @param to            upper bound.
+     * @param toInclusive   flag if upper bound is included.
+     * @return entities.
+     */
+    public List<Entity> range(final K from, final boolean fromInclusive, final K to, final boolean toInclusive) {
+        flush();
+        return collect(entities.subMap(from, fromInclusive, to, toInclusive));
+    }
+
+    /**
+     * Returns entities with key lower than given key, ordered by key.
+     *
+     * @param to        upper bound.
+     * @param inclusive flag if upper bound is included.
+     * @return entities.
+     */
+    public List<Entity> below(final K to, final boolean inclusive) {
+        flush();
+        return collect(entities.headMap(to, inclusive));
+    }
+
+    /**
+     * Returns entities with key greater than given key, ordered by key.
+     *
+     * @param from      lower bound.
+     * @param inclusive flag if lower bound is included.
+     * @return entities.
+     */
+    public List<Entity> above(final K from, final boolean inclusive) {
+        flush();
+        return collect(entities.tailMap(from, inclusive));
+    }
+
+    /**
+     * Returns lowest indexed key.
+     *
+     * @return key or null if index is empty.
+     */
+    public K firstKey() {
+        flush();
+        return entities.isEmpty() ? null : entities.firstKey();
+    }
+
+    /**
+     * Returns highest indexed key.
+     *
+     * @return key or null if index is empty.
+     */
+    public K lastKey() {
+        flush();
+        return entities.isEmpty() ? null : entities.lastKey();
+    }
+
+    @Override
+    boolean accepts(final K key) {
+        return key != null;
+    }
+
+    @Override
+    void add(final K key, final Entity entity) {
+        Set<Entity> set = entities.get(key);
+        if (set == null) {
+            set = new LinkedHashSet<Entity>();
+            entities.put(key, set);
+        }
+        set.add(entity);
+    }
+
+    @Override
+    void remove(final K key, final Entity entity) {
+        Set<Entity> set = entities.get(key);
+        if (set != null && set.remove(entity) && set.isEmpty()) {
+            entities.remove(key);
+        }
+    }
+
+    /**
+     * Collects entities of sub map.
+     */
+    private static <K> List<Entity> collect(final NavigableMap<K, Set<Entity>> map) {
+        List<Entity> result = new ArrayList<Entity>();
+        for (Set<Entity> set : map.values()) {
+            result.addAll(set);
+        }
+        return result;
+    }
+}
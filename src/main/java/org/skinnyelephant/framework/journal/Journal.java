@@ -0,0 +1,502 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.journal;
+
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.EntityListener;
+import org.skinnyelephant.framework.core.Manager;
+import org.skinnyelephant.framework.core.ProcessListener;
+import org.skinnyelephant.framework.replay.CodecRegistry;
+import org.skinnyelephant.framework.replay.VarInts;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Manager appending structural changes of world to memory mapped journal, so world can be rebuilt after crash
+ * from last snapshot and journal with {@link JournalReader}.</p>
+ * <p>Entities added and removed and components added, removed or requested with {@link Entity#modifyComponent(Class)}
+ * are collected during tick and encoded into single record at the end of tick, components with state they have at that time.
+ * Records are written to segment files by background thread, so tick thread only encodes changes.
+ * When record does not fit into current segment, new segment is started. Each run of journal starts new segment,
+ * so segment left incomplete by crash is never appended to.</p>
+ * <p>{@link #checkpoint(OutputStream)} writes snapshot of whole world between ticks, segments written before it can be
+ * deleted with {@link #deleteObsoleteSegments()} once snapshot is stored.</p>
+ * <p>To add manager to core call {@code core.addManager(new Journal(core, registry, directory))}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class Journal implements Manager, EntityListener, ProcessListener {
+    /**
+     * Default segment size.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Journaled core.
+     */
+    private final Core core;
+    /**
+     * Codecs of journaled components.
+     */
+    private final CodecRegistry registry;
+    /**
+     * Journal directory.
+     */
+    private final File directory;
+    /**
+     * Size of segment files.
+     */
+    private final int segmentSize;
+    /**
+     * Opcodes of changes collected in current tick.
+     */
+    private final List<Integer> pendingOps = new ArrayList<Integer>();
+    /**
+     * Entity IDs of changes collected in current tick.
+     */
+    private final List<Long> pendingIds = new ArrayList<Long>();
+    /**
+     * Entities or components of changes collected in current tick.
+     */
+    private final List<Object> pendingValues = new ArrayList<Object>();
+    /**
+     * Buffer for encoding records.
+     */
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    /**
+     * Output encoding into buffer.
+     */
+    private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+    /**
+     * Thread writing records.
+     */
+    private ExecutorService writer;
+    /**
+     * Number of processed ticks.
+     */
+    private long tick;
+    /**
+     * Segment being written, accessed by writer thread.
+     */
+    private MappedByteBuffer segment;
+    /**
+     * Sequence number of segment being written, accessed by writer thread.
+     */
+    private long sequence;
+    /**
+     * Sequence number of first segment written after last checkpoint.
+     */
+    private volatile long checkpointSequence;
+    /**
+     * Failure of writer thread.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Constructor for creating journal with default segment size.
+     *
+     * @param core      journaled core.
+     * @param registry  codecs of journaled components.
+     * @param directory journal directory.
+     */
+    public Journal(final Core core, final CodecRegistry registry, final File directory) {
+        this(core, registry, directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructor for creating journal.
+     *
+     * @param core        journaled core.
+     * @param registry    codecs of journaled components.
+     * @param directory   journal directory.
+     * @param segmentSize size of segment files in bytes.
+     */
+    public Journal(final Core core, final CodecRegistry registry, final File directory, final int segmentSize) {
+        if (segmentSize <= JournalFormat.RECORD_HEADER) {
+            throw new IllegalArgumentException("Segment size is too small.");
+        }
+        this.core = core;
+        this.registry = registry;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * <p>Initializes journal, continuing tick count and segment numbering of journal found in directory.</p>
+     * <p>If directory contains no journal, entities present in core are journaled as added. Otherwise core is expected
+     * to be rebuilt from that journal with {@link JournalReader}, so its entities are already journaled.</p>
+     */
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Failed to create journal directory " + directory);
+        }
+        try {
+            tick = new JournalReader(registry, directory).getLastTick();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read journal.", e);
+        }
+        File[] segments = JournalFormat.segments(directory);
+        sequence = segments.length == 0 ? 0 : JournalFormat.sequence(segments[segments.length - 1]);
+        checkpointSequence = 0;
+        writer = Executors.newSingleThreadExecutor(new WriterFactory());
+        initialized = true;
+        core.getEntityManager().addEntityListener(this);
+        if (segments.length == 0) {
+            for (Entity e : core.getEntityManager().getAllEntities()) {
+                entityAdded(e);
+            }
+        }
+    }
+
+    /**
+     * Writes pending records, waits for writer thread and releases segment.
+     */
+    @Override
+    public void dispose() {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        core.getEntityManager().removeEntityListener(this);
+        flush();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment = null;
+        initialized = false;
+    }
+
+    @Override
+    public void beforeProcess(final float delta) {
+    }
+
+    @Override
+    public void afterProcess(final float delta) {
+        tick++;
+        submitRecord();
+    }
+
+    /**
+     * Writes changes collected since last tick and waits until all records are written and forced to storage.
+     */
+    public void flush() {
+        submitRecord();
+        await(new Runnable() {
+            @Override
+            public void run() {
+                if (segment != null) {
+                    segment.force();
+                }
+            }
+        });
+    }
+
+    /**
+     * <p>Starts new segment and writes snapshot of whole world.</p>
+     * <p>Should be called between ticks. Changes made before the call are contained in snapshot, changes made after it
+     * are written to new segment and applied on top of snapshot by {@link JournalReader} regardless of their tick.</p>
+     *
+     * @param out snapshot output, not closed by journal.
+     * @return tick of snapshot.
+     * @throws IOException if writing snapshot fails.
+     */
+    public long checkpoint(final OutputStream out) throws IOException {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        submitRecord();
+        await(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    roll(segmentSize);
+                } catch (IOException e) {
+                    failure = e;
+                }
+                checkpointSequence = sequence;
+            }
+        });
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(JournalFormat.SNAPSHOT_MAGIC);
+        data.writeLong(tick);
+        data.writeLong(checkpointSequence);
+        for (Entity e : core.getEntityManager().getAllEntities()) {
+            writeChange(data, JournalFormat.ADD_ENTITY, e.getEntityId(), e);
+            for (Object component : e.getComponents()) {
+                writeChange(data, JournalFormat.ADD_COMPONENT, e.getEntityId(), component);
+            }
+        }
+        data.writeByte(JournalFormat.END);
+        data.flush();
+        return tick;
+    }
+
+    /**
+     * Deletes segments written before last {@link #checkpoint(OutputStream)}, which are not needed when its snapshot is stored.
+     *
+     * @return number of deleted segments.
+     */
+    public int deleteObsoleteSegments() {
+        int deleted = 0;
+        for (File file : JournalFormat.segments(directory)) {
+            if (JournalFormat.sequence(file) < checkpointSequence && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Returns number of processed ticks, continued from journal found in directory.
+     *
+     * @return tick.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    @Override
+    public void entityAdded(final Entity e) {
+        if (isRegistered(e)) {
+            queue(JournalFormat.ADD_ENTITY, e.getEntityId(), e);
+            for (Object component : e.getComponents()) {
+                queue(JournalFormat.ADD_COMPONENT, e.getEntityId(), component);
+            }
+        }
+    }
+
+    @Override
+    public void entityRemoved(final Entity e) {
+        queue(JournalFormat.REMOVE_ENTITY, e.getEntityId(), null);
+    }
+
+    @Override
+    public void componentAdded(final Entity e, final Object component) {
+        if (isRegistered(e)) {
+            queue(JournalFormat.ADD_COMPONENT, e.getEntityId(), component);
+        }
+    }
+
+    @Override
+    public void componentRemoved(final Entity e, final Object component) {
+        if (isRegistered(e) && e.getComponent(component.getClass()) == null) {
+            queue(JournalFormat.REMOVE_COMPONENT, e.getEntityId(), component);
+        }
+    }
+
+    @Override
+    public void componentModified(final Entity e, final Object component) {
+        if (isRegistered(e)) {
+            queue(JournalFormat.ADD_COMPONENT, e.getEntityId(), component);
+        }
+    }
+
+    /**
+     * Checks if entity is registered to core, changes of pooled entities are journaled when they are added.
+     *
+     * @param e entity.
+     * @return true if entity is registered.
+     */
+    private boolean isRegistered(final Entity e) {
+        return core.getEntityManager().getEntity(e.getEntityId()) == e;
+    }
+
+    /**
+     * Collects change to be written at the end of tick.
+     *
+     * @param op    opcode.
+     * @param id    entity ID.
+     * @param value entity, component or null.
+     */
+    private void queue(final int op, final long id, final Object value) {
+        if (op == JournalFormat.ADD_COMPONENT || op == JournalFormat.REMOVE_COMPONENT) {
+            registry.getId(value.getClass());
+        }
+        pendingOps.add(op);
+        pendingIds.add(id);
+        pendingValues.add(value);
+    }
+
+    /**
+     * Encodes collected changes into record of current tick and passes it to writer thread.
+     */
+    private void submitRecord() {
+        if (failure != null) {
+            throw new IllegalStateException("Failed to write journal.", failure);
+        }
+        if (pendingOps.isEmpty()) {
+            return;
+        }
+        buffer.reset();
+        try {
+            for (int i = 0; i < pendingOps.size(); i++) {
+                writeChange(bufferOut, pendingOps.get(i), pendingIds.get(i), pendingValues.get(i));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode journal record.", e);
+        }
+        pendingOps.clear();
+        pendingIds.clear();
+        pendingValues.clear();
+        final byte[] payload = buffer.toByteArray();
+        final long recordTick = tick;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    append(recordTick, payload);
+                } catch (Throwable t) {
+                    failure = t;
+                }
+            }
+        });
+    }
+
+    /**
+     * Encodes single change.
+     *
+     * @param out   output.
+     * @param op    opcode.
+     * @param id    entity ID.
+     * @param value entity, component or null.
+     * @throws IOException if writing fails.
+     */
+    private void writeChange(final DataOutput out, final int op, final long id, final Object value) throws IOException {
+        out.writeByte(op);
+        VarInts.writeUnsigned(out, id);
+        switch (op) {
+            case JournalFormat.ADD_ENTITY: {
+                String reference = ((Entity) value).getReference();
+                out.writeBoolean(reference != null);
+                if (reference != null) {
+                    out.writeUTF(reference);
+                }
+                break;
+            }
+            case JournalFormat.ADD_COMPONENT: {
+                int type = registry.getId(value.getClass());
+                VarInts.writeUnsigned(out, type);
+                registry.<Object>getCodec(type).write(value, out);
+                break;
+            }
+            case JournalFormat.REMOVE_COMPONENT:
+                VarInts.writeUnsigned(out, registry.getId(value.getClass()));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Appends record to current segment, starting new segment if record does not fit. Called by writer thread.
+     *
+     * @param recordTick tick of record.
+     * @param payload    encoded changes.
+     * @throws IOException if segment can not be created.
+     */
+    private void append(final long recordTick, final byte[] payload) throws IOException {
+        int size = JournalFormat.RECORD_HEADER + payload.length;
+        if (segment == null || segment.remaining() < size) {
+            roll(Math.max(segmentSize, size));
+        }
+        int start = segment.position();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        segment.putLong(start + 4, recordTick);
+        segment.putInt(start + 12, (int) crc.getValue());
+        segment.position(start + JournalFormat.RECORD_HEADER);
+        segment.put(payload);
+        segment.putInt(start, payload.length);
+    }
+
+    /**
+     * Forces current segment and maps new one. Called by writer thread.
+     *
+     * @param size size of new segment.
+     * @throws IOException if segment can not be created.
+     */
+    private void roll(final int size) throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        sequence++;
+        RandomAccessFile file = new RandomAccessFile(new File(directory, JournalFormat.segmentName(sequence)), "rw");
+        try {
+            file.setLength(size);
+            segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Runs task on writer thread after all submitted records and waits for it.
+     *
+     * @param task task.
+     */
+    private void await(final Runnable task) {
+        try {
+            writer.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to write journal.", e.getCause());
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Failed to write journal.", failure);
+        }
+    }
+
+    /**
+     * Factory of journal writer thread.
+     */
+    private static final class WriterFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(r, "journal-writer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.journal;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+
+/**
+ * <p>Constants of journal segments and snapshots.</p>
+ * <p>Segment is file of fixed size filled with records, each record holds changes of one tick:
+ * payload length, tick, CRC32 of payload and payload. Zero length marks end of written records.
+ * Payload is sequence of changes, each starting with opcode byte followed by entity ID written as variable length integer.
+ * Snapshot starts with {@link #SNAPSHOT_MAGIC}, tick and sequence number of first segment written after snapshot,
+ * followed by entity and component changes and {@link #END}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+final class JournalFormat {
+    /**
+     * Snapshot header.
+     */
+    static final int SNAPSHOT_MAGIC = 0x53454A53;
+    /**
+     * Size of record header.
+     */
+    static final int RECORD_HEADER = 16;
+    /**
+     * Entity added, followed by optional reference.
+     */
+    static final int ADD_ENTITY = 1;
+    /**
+     * Entity removed.
+     */
+    static final int REMOVE_ENTITY = 2;
+    /**
+     * Component added or replaced, followed by type ID and component state.
+     */
+    static final int ADD_COMPONENT = 3;
+    /**
+     * Component removed, followed by type ID.
+     */
+    static final int REMOVE_COMPONENT = 4;
+    /**
+     * End of snapshot.
+     */
+    static final int END = 5;
+    /**
+     * Segment file name prefix.
+     */
+    static final String SEGMENT_PREFIX = "journal-";
+    /**
+     * Segment file name suffix.
+     */
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private JournalFormat() {
+    }
+
+    /**
+     * Returns name of segment file.
+     *
+     * @param sequence segment sequence number.
+     * @return file name.
+     */
+    static String segmentName(final long sequence) {
+        return SEGMENT_PREFIX + String.format("%016d", sequence) + SEGMENT_SUFFIX;
+    }
+
+    /**
+     * Returns sequence number of segment file.
+     *
+     * @param file segment file.
+     * @return sequence number.
+     */
+    static long sequence(final File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Lists segment files of directory in order they were written.
+     *
+     * @param directory journal directory.
+     * @return segment files.
+     */
+    static File[] segments(final File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+}
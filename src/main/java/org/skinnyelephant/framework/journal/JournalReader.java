@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.journal;
+
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.replay.CodecRegistry;
+import org.skinnyelephant.framework.replay.VarInts;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Rebuilds world from snapshot and journal written by {@link Journal}.</p>
+ * <p>Segments written before snapshot are skipped, records of later segments are applied in order they were written.
+ * Reading of segment stops at first incomplete or corrupted record, which is left by crash during write.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class JournalReader {
+    /**
+     * Codecs of journaled components.
+     */
+    private final CodecRegistry registry;
+    /**
+     * Journal directory.
+     */
+    private final File directory;
+
+    /**
+     * Constructor for creating journal reader.
+     *
+     * @param registry  codecs registered in the same order as for journal.
+     * @param directory journal directory.
+     */
+    public JournalReader(final CodecRegistry registry, final File directory) {
+        this.registry = registry;
+        this.directory = directory;
+    }
+
+    /**
+     * Rebuilds world into core without systems processing it.
+     *
+     * @param core     initialized core receiving entities.
+     * @param snapshot snapshot written by {@link Journal#checkpoint(java.io.OutputStream)}, or null to rebuild from journal only.
+     * @return tick of last applied change.
+     * @throws IOException if reading fails or snapshot is malformed.
+     */
+    public long recover(final Core core, final InputStream snapshot) throws IOException {
+        long tick = 0;
+        long firstSequence = 0;
+        if (snapshot != null) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(snapshot));
+            if (in.readInt() != JournalFormat.SNAPSHOT_MAGIC) {
+                throw new IOException("Input is not journal snapshot.");
+            }
+            tick = in.readLong();
+            firstSequence = in.readLong();
+            int op;
+            while ((op = in.readUnsignedByte()) != JournalFormat.END) {
+                apply(core, op, in);
+            }
+        }
+        long lastTick = tick;
+        for (File file : JournalFormat.segments(directory)) {
+            if (JournalFormat.sequence(file) < firstSequence) {
+                continue;
+            }
+            MappedByteBuffer segment = map(file);
+            int start = segment.position();
+            byte[] payload;
+            while ((payload = nextRecord(segment)) != null) {
+                long recordTick = segment.getLong(start + 4);
+                start = segment.position();
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                while (in.available() > 0) {
+                    apply(core, in.readUnsignedByte(), in);
+                }
+                lastTick = Math.max(lastTick, recordTick);
+            }
+        }
+        return lastTick;
+    }
+
+    /**
+     * Returns tick of last complete record in journal.
+     *
+     * @return tick or 0 if journal is empty.
+     * @throws IOException if reading fails.
+     */
+    public long getLastTick() throws IOException {
+        long lastTick = 0;
+        for (File file : JournalFormat.segments(directory)) {
+            MappedByteBuffer segment = map(file);
+            int start = segment.position();
+            while (nextRecord(segment) != null) {
+                lastTick = Math.max(lastTick, segment.getLong(start + 4));
+                start = segment.position();
+            }
+        }
+        return lastTick;
+    }
+
+    /**
+     * Reads payload of next record and moves segment position after it.
+     *
+     * @param segment mapped segment.
+     * @return payload or null if there are no more complete records.
+     */
+    private static byte[] nextRecord(final MappedByteBuffer segment) {
+        if (segment.remaining() < JournalFormat.RECORD_HEADER) {
+            return null;
+        }
+        int start = segment.position();
+        int length = segment.getInt(start);
+        if (length <= 0 || length > segment.remaining() - JournalFormat.RECORD_HEADER) {
+            return null;
+        }
+        int crc = segment.getInt(start + 12);
+        byte[] payload = new byte[length];
+        segment.position(start + JournalFormat.RECORD_HEADER);
+        segment.get(payload);
+        CRC32 check = new CRC32();
+        check.update(payload);
+        if ((int) check.getValue() != crc) {
+            segment.position(start);
+            return null;
+        }
+        return payload;
+    }
+
+    /**
+     * Maps segment file for reading.
+     *
+     * @param file segment file.
+     * @return mapped segment.
+     * @throws IOException if mapping fails.
+     */
+    static MappedByteBuffer map(final File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Applies single change to core.
+     *
+     * @param core core.
+     * @param op   opcode.
+     * @param in   input positioned after opcode.
+     * @throws IOException if reading fails or change is malformed.
+     */
+    private void apply(final Core core, final int op, final DataInput in) throws IOException {
+        long id = VarInts.readUnsigned(in);
+        Entity e = core.getEntityManager().getEntity(id);
+        switch (op) {
+            case JournalFormat.ADD_ENTITY:
+                if (e != null) {
+                    core.removeEntity(id);
+                }
+                core.createEntity(in.readBoolean() ? in.readUTF() : null, id);
+                break;
+            case JournalFormat.REMOVE_ENTITY:
+                core.removeEntity(id);
+                break;
+            case JournalFormat.ADD_COMPONENT: {
+                Object component = registry.getCodec((int) VarInts.readUnsigned(in)).read(in);
+                entity(e, id).addComponent(component);
+                break;
+            }
+            case JournalFormat.REMOVE_COMPONENT:
+                entity(e, id).removeComponent(registry.getType((int) VarInts.readUnsigned(in)));
+                break;
+            default:
+                throw new IOException("Unknown journal change " + op + ".");
+        }
+    }
+
+    /**
+     * Checks that entity referenced by change exists.
+     *
+     * @param e  entity or null.
+     * @param id entity ID.
+     * @return entity.
+     * @throws IOException if entity does not exist.
+     */
+    private static Entity entity(final Entity e, final long id) throws IOException {
+        if (e == null) {
+            throw new IOException("Entity " + id + " of journal does not exist.");
+        }
+        return e;
+    }
+}
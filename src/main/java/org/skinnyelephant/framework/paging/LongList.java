@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.paging;
+
+/**
+ * Growable list of long values.
+ *
+ * @author Kristaps Kohs
+ */
+final class LongList {
+    private long[] values = new long[8];
+    private int size;
+
+    void add(final long value) {
+        if (size == values.length) {
+            long[] grown = new long[size * 2];
+            System.arraycopy(values, 0, grown, 0, size);
+            values = grown;
+        }
+        values[size++] = value;
+    }
+
+    long get(final int index) {
+        return values[index];
+    }
+
+    int size() {
+        return size;
+    }
+}
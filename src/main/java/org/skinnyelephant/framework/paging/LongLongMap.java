@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.paging;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from non negative long keys to long values, without boxing.
+ *
+ * @author Kristaps Kohs
+ */
+final class LongLongMap {
+    /**
+     * Marker of empty slot.
+     */
+    private static final long EMPTY = -1;
+    /**
+     * Keys by slot.
+     */
+    private long[] keys;
+    /**
+     * Values by slot.
+     */
+    private long[] values;
+    /**
+     * Number of entries.
+     */
+    private int size;
+
+    LongLongMap() {
+        allocate(16);
+    }
+
+    long get(final long key, final long missing) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? missing : values[slot];
+    }
+
+    boolean containsKey(final long key) {
+        return keys[find(key)] != EMPTY;
+    }
+
+    void put(final long key, final long value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Key cannot be negative.");
+        }
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Removes key, shifting following entries of probe sequence back.
+     *
+     * @param key key.
+     * @return true if key was present.
+     */
+    boolean remove(final long key) {
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            return false;
+        }
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns number of slots, used with {@link #keyAt(int)} and {@link #valueAt(int)} for iteration.
+     *
+     * @return slot count.
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns key of slot.
+     *
+     * @param slot slot.
+     * @return key or negative value if slot is empty.
+     */
+    long keyAt(final int slot) {
+        return keys[slot];
+    }
+
+    long valueAt(final int slot) {
+        return values[slot];
+    }
+
+    void setValueAt(final int slot, final long value) {
+        values[slot] = value;
+    }
+
+    private int find(final long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(final int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private static int hash(final long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.paging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Append only store of records in memory mapped file.</p>
+ * <p>File is mapped in segments of fixed size, record is never split between segments. Freed records are only counted,
+ * space is reclaimed by copying live records into new store.</p>
+ *
+ * @author Kristaps Kohs
+ */
+final class PageStore {
+    /**
+     * Backing file.
+     */
+    private final File file;
+    /**
+     * Size of mapped segments.
+     */
+    private final int segmentSize;
+    /**
+     * Open backing file.
+     */
+    private final RandomAccessFile raf;
+    /**
+     * Mapped segments.
+     */
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    /**
+     * Bytes of live records, including length prefix.
+     */
+    private long liveBytes;
+    /**
+     * Bytes of freed records, including length prefix.
+     */
+    private long freedBytes;
+
+    PageStore(final File file, final int segmentSize) throws IOException {
+        this.file = file;
+        this.segmentSize = segmentSize;
+        this.raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+    }
+
+    /**
+     * Appends record.
+     *
+     * @param record record bytes.
+     * @param length record length.
+     * @return position of record.
+     * @throws IOException if segment can not be mapped.
+     */
+    long write(final byte[] record, final int length) throws IOException {
+        if (length + 4 > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit into segment.");
+        }
+        MappedByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.remaining() < length + 4) {
+            segment = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * segmentSize, segmentSize);
+            segments.add(segment);
+        }
+        long position = (long) (segments.size() - 1) * segmentSize + segment.position();
+        segment.putInt(length);
+        segment.put(record, 0, length);
+        liveBytes += length + 4;
+        return position;
+    }
+
+    /**
+     * Returns view of record.
+     *
+     * @param position position of record.
+     * @return buffer positioned at record start and limited to record end.
+     */
+    ByteBuffer read(final long position) {
+        ByteBuffer segment = segments.get((int) (position / segmentSize)).duplicate();
+        int offset = (int) (position % segmentSize);
+        int length = segment.getInt(offset);
+        segment.limit(offset + 4 + length);
+        segment.position(offset + 4);
+        return segment;
+    }
+
+    /**
+     * Marks record as free.
+     *
+     * @param position position of record.
+     */
+    void free(final long position) {
+        int length = segments.get((int) (position / segmentSize)).getInt((int) (position % segmentSize)) + 4;
+        liveBytes -= length;
+        freedBytes += length;
+    }
+
+    long getLiveBytes() {
+        return liveBytes;
+    }
+
+    long getFreedBytes() {
+        return freedBytes;
+    }
+
+    /**
+     * Closes and deletes backing file, mapped segments are released by garbage collector.
+     */
+    void delete() {
+        segments.clear();
+        try {
+            raf.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to close page file " + file, e);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.paging;
+
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.Manager;
+import org.skinnyelephant.framework.core.ProcessListener;
+import org.skinnyelephant.framework.replay.CodecRegistry;
+import org.skinnyelephant.framework.replay.VarInts;
+import org.skinnyelephant.framework.systems.PartitionedEntitySystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Manager moving dormant entities out of core into memory mapped page file and back on demand.</p>
+ * <p>Paged out entity is encoded with {@link CodecRegistry} and removed from core, so it leaves system caches and
+ * listeners see it as removed. Its ID stays reserved and entity is restored with the same ID and reference when it is
+ * paged in, listeners then see it as added. Core keeps only ID to file position mapping of paged out entities.</p>
+ * <p>Entities marked with {@link #markDormant(Entity)} are paged out at the end of tick, whole regions of
+ * {@link PartitionedEntitySystem} can be paged out with {@link #pageOutRegion(PartitionedEntitySystem, int)} and back in with {@link #pageInRegion(int)}. Page file is rewritten when more
+ * than half of it is occupied by entities which were paged in. Page file is deleted when manager is disposed, paging does
+ * not make world persistent.</p>
+ * <p>To add manager to core call {@code core.addManager(new PagingManager(core, registry, directory))}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class PagingManager implements Manager, ProcessListener {
+    /**
+     * Default size of mapped page file segments.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Core which entities are paged.
+     */
+    private final Core core;
+    /**
+     * Codecs of paged components.
+     */
+    private final CodecRegistry registry;
+    /**
+     * Directory of page file.
+     */
+    private final File directory;
+    /**
+     * Size of mapped page file segments.
+     */
+    private final int segmentSize;
+    /**
+     * File positions by ID of paged out entity.
+     */
+    private LongLongMap index = new LongLongMap();
+    /**
+     * IDs of entities paged out by region.
+     */
+    private final Map<Integer, LongList> regions = new HashMap<Integer, LongList>();
+    /**
+     * Entities to be paged out at the end of tick.
+     */
+    private final List<Entity> dormant = new ArrayList<Entity>();
+    /**
+     * Buffer for encoding entities.
+     */
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    /**
+     * Output encoding into buffer.
+     */
+    private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+    /**
+     * Page file store.
+     */
+    private PageStore store;
+    /**
+     * Generation of page file, incremented when file is rewritten.
+     */
+    private int generation;
+
+    /**
+     * Constructor for creating paging manager with default segment size.
+     *
+     * @param core      core which entities are paged.
+     * @param registry  codecs of paged components.
+     * @param directory directory of page file.
+     */
+    public PagingManager(final Core core, final CodecRegistry registry, final File directory) {
+        this(core, registry, directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructor for creating paging manager.
+     *
+     * @param core        core which entities are paged.
+     * @param registry    codecs of paged components.
+     * @param directory   directory of page file.
+     * @param segmentSize size of mapped page file segments, limits size of single encoded entity.
+     */
+    public PagingManager(final Core core, final CodecRegistry registry, final File directory, final int segmentSize) {
+        this.core = core;
+        this.registry = registry;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Failed to create page directory " + directory);
+        }
+        store = openStore();
+        initialized = true;
+    }
+
+    /**
+     * Deletes page file, paged out entities are lost and their IDs stay reserved.
+     */
+    @Override
+    public void dispose() {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        store.delete();
+        store = null;
+        index = new LongLongMap();
+        regions.clear();
+        dormant.clear();
+        initialized = false;
+    }
+
+    @Override
+    public void beforeProcess(final float delta) {
+    }
+
+    @Override
+    public void afterProcess(final float delta) {
+        for (int i = 0; i < dormant.size(); i++) {
+            pageOut(dormant.get(i));
+        }
+        dormant.clear();
+    }
+
+    /**
+     * Marks entity to be paged out at the end of tick.
+     *
+     * @param entity dormant entity.
+     */
+    public void markDormant(final Entity entity) {
+        dormant.add(entity);
+    }
+
+    /**
+     * Pages entity out of core.
+     *
+     * @param entity entity.
+     * @return true if entity was paged out, false if it is not registered to core.
+     * @throws IllegalArgumentException if entity has component without codec.
+     */
+    public boolean pageOut(final Entity entity) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        long id = entity.getEntityId();
+        if (core.getEntityManager().getEntity(id) != entity) {
+            return false;
+        }
+        buffer.reset();
+        long position;
+        try {
+            bufferOut.writeBoolean(entity.getReference() != null);
+            if (entity.getReference() != null) {
+                bufferOut.writeUTF(entity.getReference());
+            }
+            Collection<Object> components = entity.getComponents();
+            VarInts.writeUnsigned(bufferOut, components.size());
+            for (Object component : components) {
+                int type = registry.getId(component.getClass());
+                VarInts.writeUnsigned(bufferOut, type);
+                registry.<Object>getCodec(type).write(component, bufferOut);
+            }
+            position = store.write(buffer.toByteArray(), buffer.size());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write page file.", e);
+        }
+        if (!core.removeEntity(entity, true)) {
+            store.free(position);
+            return false;
+        }
+        index.put(id, position);
+        return true;
+    }
+
+    /**
+     * <p>Pages out all entities placed in region of partitioned system.</p>
+     * <p>Entities are taken from regions maintained by system, so only entities of the region are visited.</p>
+     *
+     * @param system partitioned system.
+     * @param region region of system.
+     * @return number of paged out entities.
+     */
+    public int pageOutRegion(final PartitionedEntitySystem system, final int region) {
+        LongList ids = regions.get(region);
+        if (ids == null) {
+            ids = new LongList();
+            regions.put(region, ids);
+        }
+        int count = 0;
+        for (Entity e : system.getEntities(region)) {
+            if (pageOut(e)) {
+                ids.add(e.getEntityId());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Pages in all entities paged out with region.
+     *
+     * @param region region.
+     * @return number of paged in entities.
+     */
+    public int pageInRegion(final int region) {
+        LongList ids = regions.remove(region);
+        if (ids == null) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            if (pageIn(ids.get(i)) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Pages entity back into core with its original ID.
+     *
+     * @param id entity ID.
+     * @return restored entity or null if entity is not paged out.
+     */
+    public Entity pageIn(final long id) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        long position = index.get(id, -1);
+        if (position < 0) {
+            return null;
+        }
+        ByteBuffer record = store.read(position);
+        byte[] bytes = new byte[record.remaining()];
+        record.get(bytes);
+        Entity e;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            String reference = in.readBoolean() ? in.readUTF() : null;
+            Object[] components = new Object[(int) VarInts.readUnsigned(in)];
+            for (int i = 0; i < components.length; i++) {
+                components[i] = registry.getCodec((int) VarInts.readUnsigned(in)).read(in);
+            }
+            e = core.createReservedEntity(reference, id);
+            e.addComponents(components);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to read page file.", ex);
+        }
+        index.remove(id);
+        store.free(position);
+        if (store.getFreedBytes() > store.getLiveBytes() && store.getFreedBytes() > segmentSize) {
+            compact();
+        }
+        return e;
+    }
+
+    /**
+     * Returns entity, paging it in if it is paged out.
+     *
+     * @param id entity ID.
+     * @return entity or null if entity does not exist.
+     */
+    public Entity getEntity(final long id) {
+        Entity e = core.getEntityManager().getEntity(id);
+        return e != null ? e : pageIn(id);
+    }
+
+    /**
+     * Checks if entity is paged out.
+     *
+     * @param id entity ID.
+     * @return true if entity is paged out.
+     */
+    public boolean isPagedOut(final long id) {
+        return index.containsKey(id);
+    }
+
+    /**
+     * Returns number of paged out entities.
+     *
+     * @return entity count.
+     */
+    public int getPagedCount() {
+        return index.size();
+    }
+
+    /**
+     * Returns bytes of page file occupied by paged out entities.
+     *
+     * @return byte count.
+     */
+    public long getPagedBytes() {
+        return store.getLiveBytes();
+    }
+
+    /**
+     * Rewrites page file so it contains only paged out entities.
+     */
+    public void compact() {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        PageStore old = store;
+        store = openStore();
+        try {
+            for (int slot = 0; slot < index.capacity(); slot++) {
+                if (index.keyAt(slot) >= 0) {
+                    ByteBuffer record = old.read(index.valueAt(slot));
+                    byte[] bytes = new byte[record.remaining()];
+                    record.get(bytes);
+                    index.setValueAt(slot, store.write(bytes, bytes.length));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write page file.", e);
+        }
+        old.delete();
+    }
+
+    /**
+     * Creates page file of next generation.
+     *
+     * @return store.
+     */
+    private PageStore openStore() {
+        try {
+            return new PageStore(new File(directory, "pages-" + generation++ + ".dat"), segmentSize);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create page file.", e);
+        }
+    }
+}
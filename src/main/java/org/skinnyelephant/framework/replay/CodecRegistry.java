@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.replay;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Registry of {@link ComponentCodec}s with compact type IDs used in binary logs.</p>
+ * <p>Type IDs are assigned in registration order, so writer and reader have to register component types in the same order.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class CodecRegistry {
+    /**
+     * Type IDs by component class.
+     */
+    private final Map<Class<?>, Integer> ids = new HashMap<Class<?>, Integer>();
+    /**
+     * Component classes by type ID.
+     */
+    private final List<Class<?>> types = new ArrayList<Class<?>>();
+    /**
+     * Codecs by type ID.
+     */
+    private final List<ComponentCodec<?>> codecs = new ArrayList<ComponentCodec<?>>();
+
+    /**
+     * Registers component type with {@link FieldCodec}.
+     *
+     * @param type component class.
+     * @param <T>  component class.
+     * @return type ID.
+     */
+    public <T> int register(final Class<T> type) {
+        return register(type, new FieldCodec<T>(type));
+    }
+
+    /**
+     * Registers component type with given codec.
+     *
+     * @param type  component class.
+     * @param codec codec.
+     * @param <T>   component class.
+     * @return type ID.
+     * @throws IllegalStateException if type is already registered.
+     */
+    public <T> int register(final Class<T> type, final ComponentCodec<T> codec) {
+        if (ids.containsKey(type)) {
+            throw new IllegalStateException("Component " + type.getName() + " is already registered.");
+        }
+        int id = types.size();
+        ids.put(type, id);
+        types.add(type);
+        codecs.add(codec);
+        return id;
+    }
+
+    /**
+     * Returns type ID of component class.
+     *
+     * @param type component class.
+     * @return type ID.
+     * @throws IllegalArgumentException if type is not registered.
+     */
+    public int getId(final Class<?> type) {
+        Integer id = ids.get(type);
+        if (id == null) {
+            throw new IllegalArgumentException("Component " + type.getName() + " has no registered codec.");
+        }
+        return id;
+    }
+
+    /**
+     * Checks if component class is registered.
+     *
+     * @param type component class.
+     * @return true if type is registered.
+     */
+    public boolean contains(final Class<?> type) {
+        return ids.containsKey(type);
+    }
+
+    /**
+     * Returns component class of type ID.
+     *
+     * @param id type ID.
+     * @return component class.
+     */
+    public Class<?> getType(final int id) {
+        return types.get(id);
+    }
+
+    /**
+     * Returns codec of type ID.
+     *
+     * @param id  type ID.
+     * @param <T> component class.
+     * @return codec.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ComponentCodec<T> getCodec(final int id) {
+        return (ComponentCodec<T>) codecs.get(id);
+    }
+}
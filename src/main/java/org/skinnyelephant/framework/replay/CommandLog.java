@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.replay;
+
+/**
+ * <p>Constants of binary command log written by {@link CommandRecorder} and read by {@link CommandReplayer}.</p>
+ * <p>Log starts with {@link #MAGIC} and {@link #VERSION}, followed by commands, each starting with opcode byte.
+ * Entity IDs and type IDs are written as variable length integers, components with their {@link ComponentCodec}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+final class CommandLog {
+    /**
+     * Log header.
+     */
+    static final int MAGIC = 0x53454C47;
+    /**
+     * Log format version.
+     */
+    static final int VERSION = 2;
+    /**
+     * Entity created, followed by ID and optional reference.
+     */
+    static final int CREATE_ENTITY = 1;
+    /**
+     * Entity removed, followed by ID.
+     */
+    static final int REMOVE_ENTITY = 2;
+    /**
+     * Component added or replaced, followed by entity ID, type ID and component state.
+     */
+    static final int ADD_COMPONENT = 3;
+    /**
+     * Component removed, followed by entity ID and type ID.
+     */
+    static final int REMOVE_COMPONENT = 4;
+    /**
+     * Tick processed, followed by delta.
+     */
+    static final int TICK = 5;
+    /**
+     * Tick processed with the same delta as previous tick.
+     */
+    static final int TICK_SAME_DELTA = 6;
+    /**
+     * End of log.
+     */
+    static final int END = 7;
+    /**
+     * Component requested for modification, followed by entity ID, type ID and component state.
+     * Replayed with {@link org.skinnyelephant.framework.core.Core#modifyComponent(long, Class)} and copying state into component.
+     */
+    static final int MODIFY_COMPONENT = 8;
+
+    private CommandLog() {
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.replay;
+
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.EntityListener;
+import org.skinnyelephant.framework.core.Manager;
+import org.skinnyelephant.framework.core.ProcessListener;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Manager recording external commands applied to {@link Core} into compact binary log, which can be fed into fresh
+ * core with {@link CommandReplayer}.</p>
+ * <p>Only changes made between ticks are recorded: entities created and removed, components added, removed and requested
+ * with {@link Entity#modifyComponent(Class)}, together with delta of each tick. Changes made during
+ * {@link Core#process(float)} are results of simulation and are reproduced by replay, so systems have to be deterministic.
+ * Components are written at the start of next tick, so their state set after adding or modifying is recorded as well.
+ * Replaced components are recorded as added only, component modified several times between ticks is recorded once.</p>
+ * <p>Entities present when manager is initialized are recorded as created. Call {@link #finish()} to complete log.</p>
+ * <p>To add manager to core call {@code core.addManager(new CommandRecorder(core, registry, out))}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class CommandRecorder implements Manager, EntityListener, ProcessListener {
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Recorded core.
+     */
+    private final Core core;
+    /**
+     * Codecs of recorded components.
+     */
+    private final CodecRegistry registry;
+    /**
+     * Log output.
+     */
+    private final DataOutputStream out;
+    /**
+     * Opcodes of commands waiting to be written.
+     */
+    private final List<Integer> pendingOps = new ArrayList<Integer>();
+    /**
+     * Entity IDs of commands waiting to be written, taken when command is queued.
+     */
+    private final List<Long> pendingIds = new ArrayList<Long>();
+    /**
+     * Components of commands waiting to be written, entity reference of created entity or null.
+     */
+    private final List<Object> pendingComponents = new ArrayList<Object>();
+    /**
+     * Components with modification waiting to be written.
+     */
+    private final Set<Modification> pendingModifications = new HashSet<Modification>();
+    /**
+     * Flag if systems are being processed.
+     */
+    private boolean processing;
+    /**
+     * Flag if log is finished.
+     */
+    private boolean finished;
+    /**
+     * Delta of previous tick.
+     */
+    private float lastDelta = Float.NaN;
+    /**
+     * Number of recorded ticks.
+     */
+    private int ticks;
+    /**
+     * Number of recorded commands, without ticks.
+     */
+    private int commands;
+
+    /**
+     * Constructor for creating command recorder.
+     *
+     * @param core     recorded core.
+     * @param registry codecs of recorded components.
+     * @param out      log output, not closed by recorder.
+     */
+    public CommandRecorder(final Core core, final CodecRegistry registry, final OutputStream out) {
+        this.core = core;
+        this.registry = registry;
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        initialized = true;
+        try {
+            out.writeInt(CommandLog.MAGIC);
+            out.writeByte(CommandLog.VERSION);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write command log.", e);
+        }
+        core.getEntityManager().addEntityListener(this);
+        for (Entity e : core.getEntityManager().getAllEntities()) {
+            entityAdded(e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        core.getEntityManager().removeEntityListener(this);
+        initialized = false;
+    }
+
+    @Override
+    public void beforeProcess(final float delta) {
+        if (finished) {
+            return;
+        }
+        try {
+            writePending();
+            if (delta == lastDelta) {
+                out.writeByte(CommandLog.TICK_SAME_DELTA);
+            } else {
+                out.writeByte(CommandLog.TICK);
+                out.writeFloat(delta);
+                lastDelta = delta;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write command log.", e);
+        }
+        ticks++;
+        processing = true;
+    }
+
+    @Override
+    public void afterProcess(final float delta) {
+        processing = false;
+    }
+
+    /**
+     * Writes commands recorded since last tick, end of log and flushes output. Changes made afterwards are not recorded.
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        try {
+            writePending();
+            out.writeByte(CommandLog.END);
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write command log.", e);
+        }
+        finished = true;
+    }
+
+    @Override
+    public void entityAdded(final Entity e) {
+        if (record(e)) {
+            queue(CommandLog.CREATE_ENTITY, e.getEntityId(), e.getReference());
+            for (Object component : e.getComponents()) {
+                queue(CommandLog.ADD_COMPONENT, e.getEntityId(), component);
+            }
+        }
+    }
+
+    @Override
+    public void entityRemoved(final Entity e) {
+        if (!processing && !finished) {
+            queue(CommandLog.REMOVE_ENTITY, e.getEntityId(), null);
+        }
+    }
+
+    @Override
+    public void componentAdded(final Entity e, final Object component) {
+        if (record(e)) {
+            queue(CommandLog.ADD_COMPONENT, e.getEntityId(), component);
+        }
+    }
+
+    @Override
+    public void componentRemoved(final Entity e, final Object component) {
+        if (record(e) && e.getComponent(component.getClass()) == null) {
+            queue(CommandLog.REMOVE_COMPONENT, e.getEntityId(), component);
+        }
+    }
+
+    @Override
+    public void componentModified(final Entity e, final Object component) {
+        if (record(e) && pendingModifications.add(new Modification(e.getEntityId(), component))) {
+            queue(CommandLog.MODIFY_COMPONENT, e.getEntityId(), component);
+        }
+    }
+
+    /**
+     * Returns number of recorded ticks.
+     *
+     * @return tick count.
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns number of recorded entity and component commands.
+     *
+     * @return command count.
+     */
+    public int getCommands() {
+        return commands;
+    }
+
+    /**
+     * Checks if change of entity should be recorded.
+     *
+     * @param e entity.
+     * @return true if change is made between ticks to entity registered to core.
+     */
+    private boolean record(final Entity e) {
+        return !processing && !finished && core.getEntityManager().getEntity(e.getEntityId()) == e;
+    }
+
+    /**
+     * Queues command to be written at the start of next tick.
+     *
+     * @param op    opcode.
+     * @param id    entity ID.
+     * @param value component, entity reference of created entity or null.
+     */
+    private void queue(final int op, final long id, final Object value) {
+        if (op != CommandLog.CREATE_ENTITY && value != null) {
+            registry.getId(value.getClass());
+        }
+        pendingOps.add(op);
+        pendingIds.add(id);
+        pendingComponents.add(value);
+        commands++;
+    }
+
+    /**
+     * Writes queued commands.
+     *
+     * @throws IOException if writing fails.
+     */
+    private void writePending() throws IOException {
+        for (int i = 0; i < pendingOps.size(); i++) {
+            int op = pendingOps.get(i);
+            Object value = pendingComponents.get(i);
+            out.writeByte(op);
+            VarInts.writeUnsigned(out, pendingIds.get(i));
+            switch (op) {
+                case CommandLog.CREATE_ENTITY:
+                    out.writeBoolean(value != null);
+                    if (value != null) {
+                        out.writeUTF((String) value);
+                    }
+                    break;
+                case CommandLog.ADD_COMPONENT:
+                case CommandLog.MODIFY_COMPONENT:
+                    writeComponent(value);
+                    break;
+                case CommandLog.REMOVE_COMPONENT:
+                    VarInts.writeUnsigned(out, registry.getId(value.getClass()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        pendingOps.clear();
+        pendingIds.clear();
+        pendingComponents.clear();
+        pendingModifications.clear();
+    }
+
+    /**
+     * Writes type ID and state of component.
+     *
+     * @param component component.
+     * @throws IOException if writing fails.
+     */
+    private void writeComponent(final Object component) throws IOException {
+        int id = registry.getId(component.getClass());
+        VarInts.writeUnsigned(out, id);
+        registry.<Object>getCodec(id).write(component, out);
+    }
+
+    /**
+     * Component of entity with modification waiting to be written, components are compared by identity.
+     */
+    private static final class Modification {
+        private final long id;
+        private final Object component;
+
+        private Modification(final long id, final Object component) {
+            this.id = id;
+            this.component = component;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Modification)) {
+                return false;
+            }
+            Modification other = (Modification) o;
+            return id == other.id && component == other.component;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (id ^ (id >>> 32)) + System.identityHashCode(component);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.replay;
+
+import org.skinnyelephant.framework.core.Copyable;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>Feeds command log written by {@link CommandRecorder} into {@link Core}, processing recorded ticks back to back
+ * without waiting, so recorded sessions can be used as repeatable throughput benchmarks.</p>
+ * <p>Core should be fresh and have the same systems as recorded core. Entities are created with their recorded IDs,
+ * so systems have to create and remove entities in the same order as during recording.</p>
+ * <p>Modified component is requested with {@link Core#modifyComponent(long, Class)} and recorded state is copied into it,
+ * which needs {@link FieldCodec} or component implementing {@link Copyable}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class CommandReplayer {
+    /**
+     * Core receiving commands.
+     */
+    private final Core core;
+    /**
+     * Codecs of recorded components.
+     */
+    private final CodecRegistry registry;
+    /**
+     * Number of replayed commands, without ticks.
+     */
+    private int commands;
+
+    /**
+     * Constructor for creating replayer.
+     *
+     * @param core     initialized core receiving commands.
+     * @param registry codecs registered in the same order as for recording.
+     */
+    public CommandReplayer(final Core core, final CodecRegistry registry) {
+        this.core = core;
+        this.registry = registry;
+    }
+
+    /**
+     * Replays whole log.
+     *
+     * @param in log input, not closed by replayer.
+     * @return number of processed ticks.
+     * @throws IOException if reading fails or log is malformed.
+     */
+    public int replay(final InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != CommandLog.MAGIC) {
+            throw new IOException("Input is not command log.");
+        }
+        int version = data.readUnsignedByte();
+        if (version != CommandLog.VERSION) {
+            throw new IOException("Unsupported command log version " + version + ".");
+        }
+        int ticks = 0;
+        float delta = 0;
+        while (true) {
+            int op;
+            try {
+                op = data.readUnsignedByte();
+            } catch (EOFException e) {
+                throw new IOException("Command log is truncated.", e);
+            }
+            switch (op) {
+                case CommandLog.TICK:
+                    delta = data.readFloat();
+                    core.process(delta);
+                    ticks++;
+                    break;
+                case CommandLog.TICK_SAME_DELTA:
+                    core.process(delta);
+                    ticks++;
+                    break;
+                case CommandLog.END:
+                    return ticks;
+                default:
+                    apply(op, VarInts.readUnsigned(data), data);
+                    commands++;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Returns number of replayed entity and component commands.
+     *
+     * @return command count.
+     */
+    public int getCommands() {
+        return commands;
+    }
+
+    /**
+     * Applies entity or component command.
+     *
+     * @param op   opcode.
+     * @param id   entity ID.
+     * @param data log input.
+     * @throws IOException if reading fails or command refers to missing entity.
+     */
+    private void apply(final int op, final long id, final DataInputStream data) throws IOException {
+        switch (op) {
+            case CommandLog.CREATE_ENTITY:
+                core.createEntity(data.readBoolean() ? data.readUTF() : null, id);
+                break;
+            case CommandLog.REMOVE_ENTITY:
+                core.removeEntity(id);
+                break;
+            case CommandLog.ADD_COMPONENT: {
+                int type = (int) VarInts.readUnsigned(data);
+                Object component = registry.getCodec(type).read(data);
+                entity(id).addComponent(component);
+                break;
+            }
+            case CommandLog.REMOVE_COMPONENT:
+                entity(id).removeComponent(registry.getType((int) VarInts.readUnsigned(data)));
+                break;
+            case CommandLog.MODIFY_COMPONENT:
+                modify(id, (int) VarInts.readUnsigned(data), data);
+                break;
+            default:
+                throw new IOException("Unknown command " + op + ".");
+        }
+    }
+
+    /**
+     * Requests component for modification and copies recorded state into it.
+     *
+     * @param id   entity ID.
+     * @param type type ID.
+     * @param data log input.
+     * @throws IOException if reading fails or component does not exist or can not receive state.
+     */
+    @SuppressWarnings("unchecked")
+    private void modify(final long id, final int type, final DataInputStream data) throws IOException {
+        if (!core.isAlive(id)) {
+            throw new IOException("Entity " + id + " of command log does not exist.");
+        }
+        Object component = core.modifyComponent(id, registry.getType(type));
+        if (component == null) {
+            throw new IOException("Component " + registry.getType(type).getName() + " of entity " + id + " of command log does not exist.");
+        }
+        ComponentCodec<Object> codec = registry.getCodec(type);
+        if (codec instanceof FieldCodec) {
+            ((FieldCodec<Object>) codec).readInto(component, data);
+        } else if (component instanceof Copyable) {
+            ((Copyable<Object>) component).copyFrom(codec.read(data));
+        } else {
+            throw new IOException("Component " + component.getClass().getName() + " needs field codec or has to be copyable to be modified.");
+        }
+    }
+
+    /**
+     * Returns entity with given ID.
+     *
+     * @param id entity ID.
+     * @return entity.
+     * @throws IOException if entity does not exist.
+     */
+    private Entity entity(final long id) throws IOException {
+        Entity e = core.getEntityManager().getEntity(id);
+        if (e == null) {
+            throw new IOException("Entity " + id + " of command log does not exist.");
+        }
+        return e;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.replay;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads state of component in binary form.
+ *
+ * @param <T> component class.
+ */
+public interface ComponentCodec<T> {
+    /**
+     * Writes component state.
+     *
+     * @param component component.
+     * @param out       output.
+     * @throws IOException if writing fails.
+     */
+    void write(T component, DataOutput out) throws IOException;
+
+    /**
+     * Reads component written by {@link #write(Object, DataOutput)}.
+     *
+     * @param in input.
+     * @return new component.
+     * @throws IOException if reading fails.
+     */
+    T read(DataInput in) throws IOException;
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.replay;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>{@link ComponentCodec} writing primitive and {@link String} fields of component, found with reflection once.</p>
+ * <p>Fields are written in order of their names, integral values as variable length integers.
+ * Component needs no argument constructor, static and transient fields are skipped.</p>
+ *
+ * @param <T> component class.
+ * @author Kristaps Kohs
+ */
+public final class FieldCodec<T> implements ComponentCodec<T> {
+    /**
+     * Component constructor.
+     */
+    private final Constructor<T> constructor;
+    /**
+     * Written fields.
+     */
+    private final Field[] fields;
+
+    /**
+     * Constructor for creating codec of given component class.
+     *
+     * @param type component class.
+     * @throws IllegalArgumentException if component has unsupported fields or no argument constructor is missing.
+     */
+    public FieldCodec(final Class<T> type) {
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Component " + type.getName() + " needs no argument constructor.", e);
+        }
+        List<Field> list = new ArrayList<Field>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                if (!field.getType().isPrimitive() && field.getType() != String.class) {
+                    throw new IllegalArgumentException("Field " + field.getName() + " of " + type.getName() + " is not supported.");
+                }
+                field.setAccessible(true);
+                list.add(field);
+            }
+        }
+        fields = list.toArray(new Field[list.size()]);
+        Arrays.sort(fields, new Comparator<Field>() {
+            @Override
+            public int compare(final Field o1, final Field o2) {
+                int result = o1.getName().compareTo(o2.getName());
+                return result != 0 ? result : o1.getDeclaringClass().getName().compareTo(o2.getDeclaringClass().getName());
+            }
+        });
+    }
+
+    @Override
+    public void write(final T component, final DataOutput out) throws IOException {
+        try {
+            for (Field field : fields) {
+                Class<?> type = field.getType();
+                if (type == int.class) {
+                    VarInts.writeSigned(out, field.getInt(component));
+                } else if (type == long.class) {
+                    VarInts.writeSigned(out, field.getLong(component));
+                } else if (type == short.class) {
+                    VarInts.writeSigned(out, field.getShort(component));
+                } else if (type == byte.class) {
+                    out.writeByte(field.getByte(component));
+                } else if (type == char.class) {
+                    VarInts.writeUnsigned(out, field.getChar(component));
+                } else if (type == boolean.class) {
+                    out.writeBoolean(field.getBoolean(component));
+                } else if (type == float.class) {
+                    out.writeFloat(field.getFloat(component));
+                } else if (type == double.class) {
+                    out.writeDouble(field.getDouble(component));
+                } else {
+                    String value = (String) field.get(component);
+                    out.writeBoolean(value != null);
+                    if (value != null) {
+                        out.writeUTF(value);
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to read field of " + component.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public T read(final DataInput in) throws IOException {
+        T component;
+        try {
+            component = constructor.newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to create component " + constructor.getDeclaringClass().getName(), e);
+        }
+        readInto(component, in);
+        return component;
+    }
+
+    /**
+     * Reads state written by {@link #write(Object, DataOutput)} into existing component.
+     *
+     * @param component component receiving state.
+     * @param in        input.
+     * @throws IOException if reading fails.
+     */
+    public void readInto(final T component, final DataInput in) throws IOException {
+        try {
+            for (Field field : fields) {
+                Class<?> type = field.getType();
+                if (type == int.class) {
+                    field.setInt(component, (int) VarInts.readSigned(in));
+                } else if (type == long.class) {
+                    field.setLong(component, VarInts.readSigned(in));
+                } else if (type == short.class) {
+                    field.setShort(component, (short) VarInts.readSigned(in));
+                } else if (type == byte.class) {
+                    field.setByte(component, in.readByte());
+                } else if (type == char.class) {
+                    field.setChar(component, (char) VarInts.readUnsigned(in));
+                } else if (type == boolean.class) {
+                    field.setBoolean(component, in.readBoolean());
+                } else if (type == float.class) {
+                    field.setFloat(component, in.readFloat());
+                } else if (type == double.class) {
+                    field.setDouble(component, in.readDouble());
+                } else {
+                    field.set(component, in.readBoolean() ? in.readUTF() : null);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to write field of " + component.getClass().getName(), e);
+        }
+    }
+}
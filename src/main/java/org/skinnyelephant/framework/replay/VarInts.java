@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.replay;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length encoding of integers, 7 bits per byte, signed values are zigzag encoded so small negative values stay short.
+ *
+ * @author Kristaps Kohs
+ */
+public final class VarInts {
+    private VarInts() {
+    }
+
+    /**
+     * Writes unsigned value.
+     *
+     * @param out   output.
+     * @param value value, treated as unsigned.
+     * @throws IOException if writing fails.
+     */
+    public static void writeUnsigned(final DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads unsigned value.
+     *
+     * @param in input.
+     * @return value.
+     * @throws IOException if reading fails or value is malformed.
+     */
+    public static long readUnsigned(final DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer.");
+    }
+
+    /**
+     * Writes signed value.
+     *
+     * @param out   output.
+     * @param value value.
+     * @throws IOException if writing fails.
+     */
+    public static void writeSigned(final DataOutput out, final long value) throws IOException {
+        writeUnsigned(out, zigzag(value));
+    }
+
+    /**
+     * Reads signed value.
+     *
+     * @param in input.
+     * @return value.
+     * @throws IOException if reading fails or value is malformed.
+     */
+    public static long readSigned(final DataInput in) throws IOException {
+        return unzigzag(readUnsigned(in));
+    }
+
+    /**
+     * Writes unsigned value into buffer.
+     *
+     * @param out   buffer.
+     * @param value value, treated as unsigned.
+     * @throws java.nio.BufferOverflowException if buffer is full.
+     */
+    public static void writeUnsigned(final ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Reads unsigned value from buffer.
+     *
+     * @param in buffer.
+     * @return value.
+     * @throws IllegalArgumentException if value is malformed.
+     */
+    public static long readUnsigned(final ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable length integer.");
+    }
+
+    /**
+     * Maps signed value to unsigned, so values close to zero stay small.
+     *
+     * @param value value.
+     * @return zigzag encoded value.
+     */
+    public static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reverses {@link #zigzag(long)}.
+     *
+     * @param value zigzag encoded value.
+     * @return value.
+     */
+    public static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.rollback;
+
+import org.skinnyelephant.framework.core.Copyable;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Disposable;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.EntityListener;
+import org.skinnyelephant.framework.core.Manager;
+import org.skinnyelephant.framework.core.ProcessListener;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Manager recording changes of world in ring buffer of ticks, so world can be rolled back to state of one of
+ * previous ticks and resimulated.</p>
+ * <p>Each tick record is undo log of structural changes (entities and components added or removed) and of values of
+ * components before their first modification in the tick. Values are captured when component is requested with
+ * {@link Entity#modifyComponent(Class)}, so such components have to implement {@link Copyable} and have public no argument
+ * constructor. Changes written directly to components are not recorded. Copies are pooled and reused by later ticks.</p>
+ * <p>{@link #rollback(int)} undoes records from newest to oldest, so its cost depends only on number of recorded changes
+ * and not on world size. Restored entities get back their original IDs.</p>
+ * <p>Components of removed entities which do not implement {@link Copyable} are kept by reference. Removed entity
+ * disposes its {@link Disposable} components, so if such component is not copyable, ticks in which its entity
+ * was removed can not be rolled back.</p>
+ * <p>To add manager to core call {@code core.addManager(new RollbackManager(core, 16))}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class RollbackManager implements Manager, EntityListener, ProcessListener {
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Recorded core.
+     */
+    private final Core core;
+    /**
+     * Records of completed ticks and record of current tick.
+     */
+    private final TickRecord[] records;
+    /**
+     * Index of record of current tick.
+     */
+    private int current;
+    /**
+     * Number of completed ticks available for rollback.
+     */
+    private int available;
+    /**
+     * Number of completed ticks.
+     */
+    private long tick;
+    /**
+     * Flag indicating if systems are being processed.
+     */
+    private boolean processing;
+    /**
+     * Flag indicating if rollback is in progress, changes made by rollback are not recorded.
+     */
+    private boolean restoring;
+    /**
+     * Unused component copies by component class.
+     */
+    private final Map<Class<?>, ArrayDeque<Object>> spareCopies = new HashMap<Class<?>, ArrayDeque<Object>>();
+
+    /**
+     * Constructor for creating rollback manager.
+     *
+     * @param core     recorded core.
+     * @param capacity maximum number of ticks which can be rolled back.
+     */
+    public RollbackManager(final Core core, final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be at least 1.");
+        }
+        this.core = core;
+        this.records = new TickRecord[capacity + 1];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new TickRecord();
+        }
+    }
+
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        initialized = true;
+        core.getEntityManager().addEntityListener(this);
+    }
+
+    /**
+     * <p>Restores world to state it had at the end of tick which completed given number of ticks ago.</p>
+     * <p>Changes made after last completed tick are undone as well, rollback of 0 ticks undoes only them.</p>
+     *
+     * @param ticks number of completed ticks to undo.
+     * @throws IllegalArgumentException if not enough ticks are recorded.
+     * @throws IllegalStateException    if called while systems are processed or if entity with disposed component
+     *                                  which is not copyable has been removed in one of ticks.
+     */
+    public void rollback(final int ticks) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        if (processing) {
+            throw new IllegalStateException("Cannot roll back while systems are processed.");
+        }
+        if (ticks < 0 || ticks > available) {
+            throw new IllegalArgumentException("Only " + available + " ticks can be rolled back.");
+        }
+        for (int i = 0; i <= ticks; i++) {
+            Class<?> disposed = records[(current + records.length - i) % records.length].disposed;
+            if (disposed != null) {
+                throw new IllegalStateException("Component " + disposed.getName()
+                        + " must implement Copyable to roll back removal of its entity.");
+            }
+        }
+        restoring = true;
+        try {
+            undo(records[current]);
+            for (int i = 0; i < ticks; i++) {
+                current = (current + records.length - 1) % records.length;
+                undo(records[current]);
+            }
+        } finally {
+            restoring = false;
+        }
+        available -= ticks;
+        tick -= ticks;
+    }
+
+    /**
+     * Getter for number of completed ticks available for rollback.
+     *
+     * @return number of ticks.
+     */
+    public int getAvailableTicks() {
+        return available;
+    }
+
+    /**
+     * Getter for maximum number of ticks which can be rolled back.
+     *
+     * @return capacity.
+     */
+    public int getCapacity() {
+        return records.length - 1;
+    }
+
+    /**
+     * Getter for number of completed ticks, decreased by rollback.
+     *
+     * @return tick number.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Getter for number of changes recorded since last completed tick.
+     *
+     * @return number of changes.
+     */
+    public int getPendingChanges() {
+        return records[current].size;
+    }
+
+    @Override
+    public void beforeProcess(final float delta) {
+        processing = true;
+    }
+
+    @Override
+    public void afterProcess(final float delta) {
+        processing = false;
+        tick++;
+        if (available < records.length - 1) {
+            available++;
+        }
+        current = (current + 1) % records.length;
+        clear(records[current]);
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+        if (!restoring) {
+            records[current].add(TickRecord.ENTITY_ADDED, entity.getEntityId(), null);
+        }
+    }
+
+    @Override
+    public void entityRemoved(final Entity entity) {
+        if (!restoring) {
+            Object[] components = new Object[entity.getComponents().size()];
+            int i = 0;
+            for (Object component : entity.getComponents()) {
+                if (component instanceof Disposable && !(component instanceof Copyable)) {
+                    if (records[current].disposed == null) {
+                        records[current].disposed = component.getClass();
+                    }
+                    i++;
+                } else {
+                    components[i++] = copy(component, false);
+                }
+            }
+            records[current].add(TickRecord.ENTITY_REMOVED, entity.getEntityId(), new RemovedEntity(entity.getReference(), components));
+        }
+    }
+
+    @Override
+    public void componentAdded(final Entity entity, final Object component) {
+        if (!restoring && isRegistered(entity)) {
+            records[current].add(TickRecord.COMPONENT_ADDED, entity.getEntityId(), component.getClass());
+        }
+    }
+
+    @Override
+    public void componentRemoved(final Entity entity, final Object component) {
+        if (!restoring && isRegistered(entity)) {
+            records[current].add(TickRecord.COMPONENT_REMOVED, entity.getEntityId(), copy(component, false));
+        }
+    }
+
+    @Override
+    public void componentModified(final Entity entity, final Object component) {
+        if (!restoring && isRegistered(entity) && records[current].captured.add(component)) {
+            records[current].add(TickRecord.COMPONENT_MODIFIED, entity.getEntityId(), copy(component, true));
+        }
+    }
+
+    @Override
+    public void dispose() {
+        core.getEntityManager().removeEntityListener(this);
+        for (TickRecord record : records) {
+            record.reset();
+        }
+        spareCopies.clear();
+        available = 0;
+    }
+
+    /**
+     * Undoes changes of record in reverse order.
+     *
+     * @param record tick record.
+     */
+    @SuppressWarnings("unchecked")
+    private void undo(final TickRecord record) {
+        for (int i = record.size - 1; i >= 0; i--) {
+            long id = record.ids[i];
+            Object payload = record.payloads[i];
+            switch (record.types[i]) {
+                case TickRecord.ENTITY_ADDED:
+                    core.removeEntity(id);
+                    break;
+                case TickRecord.ENTITY_REMOVED:
+                    RemovedEntity removed = (RemovedEntity) payload;
+                    core.createEntity(removed.reference, id).addComponents(removed.components);
+                    break;
+                case TickRecord.COMPONENT_ADDED:
+                    entity(id).removeComponent((Class<?>) payload);
+                    break;
+                case TickRecord.COMPONENT_REMOVED:
+                    entity(id).addComponent(payload);
+                    break;
+                case TickRecord.COMPONENT_MODIFIED:
+                    Copyable<Object> target = entity(id).modifyComponent(payload.getClass());
+                    target.copyFrom(payload);
+                    release(payload);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown change type " + record.types[i]);
+            }
+            record.payloads[i] = null;
+        }
+        record.reset();
+    }
+
+    /**
+     * Releases copies held by record and resets it.
+     *
+     * @param record tick record.
+     */
+    private void clear(final TickRecord record) {
+        for (int i = 0; i < record.size; i++) {
+            Object payload = record.payloads[i];
+            if (record.types[i] == TickRecord.ENTITY_REMOVED) {
+                for (Object component : ((RemovedEntity) payload).components) {
+                    release(component);
+                }
+            } else if (record.types[i] != TickRecord.COMPONENT_ADDED) {
+                release(payload);
+            }
+        }
+        record.reset();
+    }
+
+    /**
+     * Returns registered entity with given ID.
+     */
+    private Entity entity(final long id) {
+        Entity e = core.getEntityManager().getEntity(id);
+        if (e == null) {
+            throw new IllegalStateException("Entity " + id + " missing during rollback.");
+        }
+        return e;
+    }
+
+    /**
+     * Checks if entity is registered, changes of entities not yet added to core are not recorded.
+     */
+    private boolean isRegistered(final Entity entity) {
+        return core.getEntityManager().getEntity(entity.getEntityId()) == entity;
+    }
+
+    /**
+     * Creates copy of component.
+     *
+     * @param component component.
+     * @param required  flag if component must be copyable, otherwise component itself is kept.
+     * @return copy of component.
+     */
+    @SuppressWarnings("unchecked")
+    private Object copy(final Object component, final boolean required) {
+        if (!(component instanceof Copyable)) {
+            if (required) {
+                throw new IllegalStateException("Component " + component.getClass().getName()
+                        + " must implement Copyable to be rolled back.");
+            }
+            return component;
+        }
+        ArrayDeque<Object> spare = spareCopies.get(component.getClass());
+        Object copy = spare == null ? null : spare.poll();
+        if (copy == null) {
+            try {
+                copy = component.getClass().newInstance();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to copy component " + component.getClass().getName(), e);
+            }
+        }
+        ((Copyable<Object>) copy).copyFrom(component);
+        return copy;
+    }
+
+    /**
+     * Returns copy to pool, components which are not copyable are not pooled.
+     */
+    private void release(final Object copy) {
+        if (!(copy instanceof Copyable)) {
+            return;
+        }
+        ArrayDeque<Object> spare = spareCopies.get(copy.getClass());
+        if (spare == null) {
+            spare = new ArrayDeque<Object>();
+            spareCopies.put(copy.getClass(), spare);
+        }
+        spare.add(copy);
+    }
+
+    /**
+     * Undo log of single tick.
+     */
+    private static final class TickRecord {
+        private static final byte ENTITY_ADDED = 0;
+        private static final byte ENTITY_REMOVED = 1;
+        private static final byte COMPONENT_ADDED = 2;
+        private static final byte COMPONENT_REMOVED = 3;
+        private static final byte COMPONENT_MODIFIED = 4;
+
+        /**
+         * Change types.
+         */
+        private byte[] types = new byte[64];
+        /**
+         * Entity IDs of changes.
+         */
+        private long[] ids = new long[64];
+        /**
+         * Change data, component class, component copy or removed entity.
+         */
+        private Object[] payloads = new Object[64];
+        /**
+         * Number of changes.
+         */
+        private int size;
+        /**
+         * Class of disposable component which is not copyable and has been disposed with its entity in this tick,
+         * record can not be undone if set.
+         */
+        private Class<?> disposed;
+        /**
+         * Components which value has been captured in this tick.
+         */
+        private final Set<Object> captured = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+        private void add(final byte type, final long id, final Object payload) {
+            if (size == types.length) {
+                types = Arrays.copyOf(types, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+                payloads = Arrays.copyOf(payloads, size * 2);
+            }
+            types[size] = type;
+            ids[size] = id;
+            payloads[size] = payload;
+            size++;
+        }
+
+        private void reset() {
+            Arrays.fill(payloads, 0, size, null);
+            size = 0;
+            disposed = null;
+            captured.clear();
+        }
+    }
+
+    /**
+     * Removed entity with copies of its components.
+     */
+    private static final class RemovedEntity {
+        private final String reference;
+        private final Object[] components;
+
+        private RemovedEntity(final String reference, final Object[] components) {
+            this.reference = reference;
+            this.components = components;
+        }
+    }
+}
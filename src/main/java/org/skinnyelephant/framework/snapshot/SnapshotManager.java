@@ -0,0 +1,375 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.snapshot;
+
+import org.skinnyelephant.framework.core.Copyable;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.EntityListener;
+import org.skinnyelephant.framework.core.Manager;
+import org.skinnyelephant.framework.core.ProcessListener;
+
+import java.util.Collection;
+
+/**
+ * <p>Manager taking snapshots of world which can be read on other thread while core keeps processing.</p>
+ * <p>Manager mirrors entity references and component lists in chunks of {@value #CHUNK_SIZE} entity IDs.
+ * {@link #freeze()} only starts new epoch, so snapshot is taken in constant time. Before first change of chunk after
+ * freeze, chunk is copied for snapshot, components implementing {@link Copyable} are copied, other components are kept
+ * by reference and should be immutable. Chunks which are not changed are read directly by snapshot.</p>
+ * <p>Component state has to be changed through {@link Entity#modifyComponent(Class)}, changes written directly to
+ * components are not seen by manager and may be visible in snapshot.</p>
+ * <p>To add manager to core call {@code core.addManager(new SnapshotManager(core))}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class SnapshotManager implements Manager, EntityListener, ProcessListener {
+    /**
+     * Number of entity IDs in chunk.
+     */
+    public static final int CHUNK_SIZE = 256;
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Core which world is mirrored.
+     */
+    private final Core core;
+    /**
+     * Chunks by chunk index, never replaced once created.
+     */
+    private Chunk[] chunks = new Chunk[0];
+    /**
+     * Open snapshot or null.
+     */
+    private volatile WorldSnapshot current;
+    /**
+     * Epoch of last snapshot.
+     */
+    private long epoch;
+    /**
+     * Number of mirrored entities.
+     */
+    private int entityCount;
+    /**
+     * Number of processed ticks.
+     */
+    private long tick;
+    /**
+     * Flag if systems are being processed.
+     */
+    private boolean processing;
+    /**
+     * Number of chunks copied for snapshots.
+     */
+    private long preservedChunks;
+
+    /**
+     * Constructor for creating snapshot manager.
+     *
+     * @param core core which world is mirrored.
+     */
+    public SnapshotManager(final Core core) {
+        this.core = core;
+    }
+
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        initialized = true;
+        core.getEntityManager().addEntityListener(this);
+        for (Entity e : core.getEntityManager().getAllEntities()) {
+            entityAdded(e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        WorldSnapshot snapshot = current;
+        if (snapshot != null) {
+            snapshot.close();
+        }
+        core.getEntityManager().removeEntityListener(this);
+        chunks = new Chunk[0];
+        entityCount = 0;
+        initialized = false;
+    }
+
+    @Override
+    public void beforeProcess(final float delta) {
+        processing = true;
+    }
+
+    @Override
+    public void afterProcess(final float delta) {
+        processing = false;
+        tick++;
+    }
+
+    /**
+     * <p>Freezes current state of world.</p>
+     * <p>Should be called between ticks or from {@link ProcessListener#afterProcess(float)} of other manager.</p>
+     *
+     * @return snapshot which can be read on other thread.
+     * @throws IllegalStateException if systems are being processed or previous snapshot is not closed.
+     */
+    public WorldSnapshot freeze() {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        if (processing) {
+            throw new IllegalStateException("Snapshot can not be taken while systems are processed.");
+        }
+        if (current != null) {
+            throw new IllegalStateException("Previous snapshot is not closed.");
+        }
+        epoch++;
+        WorldSnapshot snapshot = new WorldSnapshot(this, chunks, epoch, tick, entityCount);
+        current = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Returns open snapshot.
+     *
+     * @return snapshot or null.
+     */
+    public WorldSnapshot getOpenSnapshot() {
+        return current;
+    }
+
+    /**
+     * Returns number of chunks copied for snapshots.
+     *
+     * @return chunk count.
+     */
+    public long getPreservedChunks() {
+        return preservedChunks;
+    }
+
+    @Override
+    public void entityAdded(final Entity e) {
+        if (isRegistered(e)) {
+            Chunk chunk = chunk(slot(e), true);
+            beforeChange(chunk);
+            int index = slot(e) - chunk.base;
+            chunk.references[index] = e.getReference();
+            chunk.components[index] = components(e);
+            entityCount++;
+        }
+    }
+
+    @Override
+    public void entityRemoved(final Entity e) {
+        Chunk chunk = chunk(slot(e), false);
+        if (chunk != null && chunk.components[slot(e) - chunk.base] != null) {
+            beforeChange(chunk);
+            chunk.references[slot(e) - chunk.base] = null;
+            chunk.components[slot(e) - chunk.base] = null;
+            entityCount--;
+        }
+    }
+
+    @Override
+    public void componentAdded(final Entity e, final Object component) {
+        componentsChanged(e);
+    }
+
+    @Override
+    public void componentRemoved(final Entity e, final Object component) {
+        componentsChanged(e);
+    }
+
+    @Override
+    public void componentModified(final Entity e, final Object component) {
+        if (isRegistered(e)) {
+            beforeChange(chunk(slot(e), false));
+        }
+    }
+
+    /**
+     * Updates mirrored components of entity.
+     *
+     * @param e entity.
+     */
+    private void componentsChanged(final Entity e) {
+        if (isRegistered(e)) {
+            Chunk chunk = chunk(slot(e), false);
+            beforeChange(chunk);
+            chunk.components[slot(e) - chunk.base] = components(e);
+        }
+    }
+
+    /**
+     * Copies chunk for open snapshot if chunk is changed for the first time since freeze and was not read yet.
+     *
+     * @param chunk chunk about to change.
+     */
+    private void beforeChange(final Chunk chunk) {
+        WorldSnapshot snapshot = current;
+        if (snapshot == null || chunk.checkedEpoch == snapshot.getEpoch()) {
+            return;
+        }
+        chunk.checkedEpoch = snapshot.getEpoch();
+        synchronized (chunk) {
+            if (chunk.visitedEpoch != snapshot.getEpoch() && !snapshot.isClosed()) {
+                chunk.preserve(snapshot.getEpoch());
+                preservedChunks++;
+            }
+        }
+    }
+
+    /**
+     * Called by snapshot when it is closed.
+     *
+     * @param snapshot closed snapshot.
+     */
+    void closed(final WorldSnapshot snapshot) {
+        if (current == snapshot) {
+            current = null;
+        }
+    }
+
+    /**
+     * Returns chunk of slot.
+     *
+     * @param slot   entity slot.
+     * @param create flag if missing chunks should be created.
+     * @return chunk or null if chunk does not exist.
+     */
+    private Chunk chunk(final int slot, final boolean create) {
+        int index = slot / CHUNK_SIZE;
+        if (index >= chunks.length) {
+            if (!create) {
+                return null;
+            }
+            Chunk[] grown = new Chunk[Math.max(index + 1, chunks.length * 2)];
+            System.arraycopy(chunks, 0, grown, 0, chunks.length);
+            for (int i = chunks.length; i < grown.length; i++) {
+                grown[i] = new Chunk(i * CHUNK_SIZE);
+            }
+            chunks = grown;
+        }
+        return chunks[index];
+    }
+
+    private boolean isRegistered(final Entity e) {
+        return core.getEntityManager().getEntity(e.getEntityId()) == e;
+    }
+
+    private static Object[] components(final Entity e) {
+        Collection<Object> components = e.getComponents();
+        return components.toArray(new Object[components.size()]);
+    }
+
+    private static int slot(final Entity entity) {
+        long id = entity.getEntityId();
+        if (id < 0 || id > Integer.MAX_VALUE - CHUNK_SIZE) {
+            throw new IllegalStateException("Entity ID " + id + " cannot be mirrored.");
+        }
+        return (int) id;
+    }
+
+    /**
+     * Mirrored entities of {@value #CHUNK_SIZE} consecutive IDs. Copies for snapshot are guarded by chunk monitor.
+     */
+    static final class Chunk {
+        /**
+         * First entity ID of chunk.
+         */
+        final int base;
+        /**
+         * Entity references.
+         */
+        final String[] references = new String[CHUNK_SIZE];
+        /**
+         * Entity components, null if entity does not exist.
+         */
+        final Object[][] components = new Object[CHUNK_SIZE][];
+        /**
+         * Copied entity references.
+         */
+        String[] preservedReferences;
+        /**
+         * Copied entity components.
+         */
+        Object[][] preservedComponents;
+        /**
+         * Epoch for which chunk was copied.
+         */
+        long preservedEpoch;
+        /**
+         * Epoch of snapshot which read chunk.
+         */
+        long visitedEpoch;
+        /**
+         * Epoch for which core checked chunk, accessed only by core thread.
+         */
+        long checkedEpoch;
+
+        Chunk(final int base) {
+            this.base = base;
+        }
+
+        /**
+         * Copies chunk for snapshot of given epoch.
+         *
+         * @param epoch snapshot epoch.
+         */
+        @SuppressWarnings("unchecked")
+        void preserve(final long epoch) {
+            preservedReferences = references.clone();
+            preservedComponents = new Object[CHUNK_SIZE][];
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                Object[] source = components[i];
+                if (source == null) {
+                    continue;
+                }
+                Object[] copy = new Object[source.length];
+                for (int j = 0; j < source.length; j++) {
+                    Object component = source[j];
+                    if (component instanceof Copyable) {
+                        try {
+                            copy[j] = component.getClass().newInstance();
+                        } catch (Exception e) {
+                            throw new IllegalStateException("Failed to copy component " + component.getClass().getName(), e);
+                        }
+                        ((Copyable<Object>) copy[j]).copyFrom(component);
+                    } else {
+                        copy[j] = component;
+                    }
+                }
+                preservedComponents[i] = copy;
+            }
+            preservedEpoch = epoch;
+        }
+
+        /**
+         * Releases copy of chunk.
+         */
+        void release() {
+            preservedReferences = null;
+            preservedComponents = null;
+        }
+    }
+}
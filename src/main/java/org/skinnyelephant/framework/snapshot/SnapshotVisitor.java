@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.snapshot;
+
+import java.util.List;
+
+/**
+ * Receives entities of {@link WorldSnapshot}.
+ *
+ * @author Kristaps Kohs
+ */
+public interface SnapshotVisitor {
+    /**
+     * Called for every entity of snapshot. Components should only be read and not kept after the call.
+     *
+     * @param id         entity ID.
+     * @param reference  entity reference or null.
+     * @param components components of entity.
+     */
+    void visitEntity(long id, String reference, List<Object> components);
+}
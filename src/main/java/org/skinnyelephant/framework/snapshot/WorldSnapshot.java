@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.snapshot;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * <p>Logical view of world frozen by {@link SnapshotManager#freeze()} at tick boundary.</p>
+ * <p>View can be read once with {@link #accept(SnapshotVisitor)} on any thread while core keeps processing,
+ * entities are visited in order of their IDs. Chunks of entities not changed since freeze are read directly,
+ * holding lock of the chunk, so core changing the same chunk waits only until it is read.</p>
+ * <p>Snapshot should be closed after reading, so changes of core are no longer copied.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class WorldSnapshot {
+    /**
+     * Manager which created snapshot.
+     */
+    private final SnapshotManager manager;
+    /**
+     * Chunks of world at freeze.
+     */
+    private final SnapshotManager.Chunk[] chunks;
+    /**
+     * Epoch of snapshot.
+     */
+    private final long epoch;
+    /**
+     * Tick at which snapshot was frozen.
+     */
+    private final long tick;
+    /**
+     * Number of entities in snapshot.
+     */
+    private final int entityCount;
+    /**
+     * Flag if snapshot was read.
+     */
+    private boolean read;
+    /**
+     * Flag if snapshot is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor for creating snapshot.
+     *
+     * @param manager     manager which created snapshot.
+     * @param chunks      chunks of world at freeze.
+     * @param epoch       epoch of snapshot.
+     * @param tick        tick at which snapshot was frozen.
+     * @param entityCount number of entities in snapshot.
+     */
+    WorldSnapshot(final SnapshotManager manager, final SnapshotManager.Chunk[] chunks, final long epoch,
+                  final long tick, final int entityCount) {
+        this.manager = manager;
+        this.chunks = chunks;
+        this.epoch = epoch;
+        this.tick = tick;
+        this.entityCount = entityCount;
+    }
+
+    /**
+     * Passes every entity of snapshot to visitor.
+     *
+     * @param visitor visitor.
+     * @throws IllegalStateException if snapshot was already read or is closed.
+     */
+    public synchronized void accept(final SnapshotVisitor visitor) {
+        if (closed) {
+            throw new IllegalStateException("Snapshot is closed.");
+        }
+        if (read) {
+            throw new IllegalStateException("Snapshot can be read only once.");
+        }
+        read = true;
+        for (SnapshotManager.Chunk chunk : chunks) {
+            synchronized (chunk) {
+                boolean preserved = chunk.preservedEpoch == epoch;
+                String[] references = preserved ? chunk.preservedReferences : chunk.references;
+                Object[][] components = preserved ? chunk.preservedComponents : chunk.components;
+                for (int i = 0; i < components.length; i++) {
+                    if (components[i] != null) {
+                        visitor.visitEntity(chunk.base + i, references[i], Collections.unmodifiableList(Arrays.asList(components[i])));
+                    }
+                }
+                chunk.visitedEpoch = epoch;
+                if (preserved) {
+                    chunk.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes snapshot, core stops copying chunks for it.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        manager.closed(this);
+        for (SnapshotManager.Chunk chunk : chunks) {
+            synchronized (chunk) {
+                if (chunk.preservedEpoch == epoch) {
+                    chunk.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if snapshot is closed.
+     *
+     * @return true if closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns tick at which snapshot was frozen.
+     *
+     * @return number of ticks processed before freeze.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns number of entities in snapshot.
+     *
+     * @return entity count.
+     */
+    public int getEntityCount() {
+        return entityCount;
+    }
+
+    /**
+     * Returns epoch of snapshot.
+     *
+     * @return epoch.
+     */
+    long getEpoch() {
+        return epoch;
+    }
+}
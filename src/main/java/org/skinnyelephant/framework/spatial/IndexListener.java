@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.spatial;
+
+import org.skinnyelephant.framework.core.Entity;
+
+/**
+ * Listener notified by {@link SpatialIndex} when indexed position of entity changes.
+ *
+ * @author Kristaps Kohs
+ */
+interface IndexListener {
+    /**
+     * Called after entity was added to index or moved to new position.
+     *
+     * @param entity     entity.
+     * @param wasIndexed true if entity was indexed before, false if it was added.
+     * @param oldX       previous x coordinate, valid only if entity was indexed.
+     * @param oldY       previous y coordinate, valid only if entity was indexed.
+     * @param x          new x coordinate.
+     * @param y          new y coordinate.
+     */
+    void entityMoved(Entity entity, boolean wasIndexed, float oldX, float oldY, float x, float y);
+
+    /**
+     * Called after entity was removed from index.
+     *
+     * @param entity entity.
+     * @param x      last indexed x coordinate.
+     * @param y      last indexed y coordinate.
+     */
+    void entityRemoved(Entity entity, float x, float y);
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.spatial;
+
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Area of interest of single observer maintained by {@link InterestManager}.</p>
+ * <p>Membership of area is updated by {@link InterestManager} as entities move, are added and removed.
+ * Entities are tracked by identity, so entity removed and replaced by new entity with the same ID is reported as left
+ * and entered. After each update entities in area are split into those which entered area, stayed in it and left it
+ * since previous update. IDs are kept in ascending order in reused primitive arrays.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public final class Interest {
+    /**
+     * Observer entity, center of area is its position.
+     */
+    private final Entity observer;
+    /**
+     * Radius of area.
+     */
+    private volatile float radius;
+    /**
+     * Flag indicating that area has to be queried again at next update.
+     */
+    private volatile boolean stale = true;
+    /**
+     * X coordinate of center area was last queried with.
+     */
+    private float centerX;
+    /**
+     * Y coordinate of center area was last queried with.
+     */
+    private float centerY;
+    /**
+     * Radius area was last queried with.
+     */
+    private float queriedRadius;
+    /**
+     * Entities in area.
+     */
+    private final Set<Entity> members = new HashSet<Entity>();
+    /**
+     * Entities which entered area since previous update.
+     */
+    private final Set<Entity> enteredMembers = new HashSet<Entity>();
+    /**
+     * Entities which were in area at previous update and moved out of it, with their IDs.
+     */
+    private final Map<Entity, Long> movedOut = new HashMap<Entity, Long>();
+    /**
+     * IDs of entities which were in area at previous update and were removed.
+     */
+    private long[] removed = new long[16];
+    /**
+     * Number of removed entities.
+     */
+    private int removedCount;
+    /**
+     * Entities in area, sorted.
+     */
+    private long[] current = new long[16];
+    /**
+     * Number of entities in area.
+     */
+    private int currentCount;
+    /**
+     * Entities which entered area.
+     */
+    private long[] entered = new long[16];
+    /**
+     * Number of entities which entered area.
+     */
+    private int enteredCount;
+    /**
+     * Entities which stayed in area.
+     */
+    private long[] stayed = new long[16];
+    /**
+     * Number of entities which stayed in area.
+     */
+    private int stayedCount;
+    /**
+     * Entities which left area.
+     */
+    private long[] left = new long[16];
+    /**
+     * Number of entities which left area.
+     */
+    private int leftCount;
+
+    /**
+     * Constructor for creating area of interest.
+     *
+     * @param observer observer entity.
+     * @param radius   radius of area.
+     */
+    Interest(final Entity observer, final float radius) {
+        this.observer = observer;
+        setRadius(radius);
+    }
+
+    /**
+     * Queries whole area around current position of observer and updates membership.
+     *
+     * @param index spatial index.
+     * @return true if observer is indexed and area has center.
+     */
+    boolean query(final SpatialIndex<?> index) {
+        stale = false;
+        if (!index.contains(observer)) {
+            for (Entity e : members.toArray(new Entity[members.size()])) {
+                moveOut(e);
+            }
+            return false;
+        }
+        centerX = index.getX(observer);
+        centerY = index.getY(observer);
+        queriedRadius = radius;
+        int count = index.queryRadius(centerX, centerY, queriedRadius, current);
+        if (count > current.length) {
+            current = new long[Integer.highestOneBit(count) << 1];
+            count = index.queryRadius(centerX, centerY, queriedRadius, current);
+        }
+        Set<Entity> found = new HashSet<Entity>();
+        for (int i = 0; i < count; i++) {
+            found.add(index.getIndexedEntity(current[i]));
+        }
+        for (Entity e : members.toArray(new Entity[members.size()])) {
+            if (!found.contains(e)) {
+                moveOut(e);
+            }
+        }
+        for (Entity e : found) {
+            enter(e, false);
+        }
+        return true;
+    }
+
+    /**
+     * Updates membership of entity after it moved.
+     *
+     * @param e      entity.
+     * @param x      x coordinate of entity.
+     * @param y      y coordinate of entity.
+     * @param reborn true if entity was removed and added again since previous update.
+     */
+    void moved(final Entity e, final float x, final float y, final boolean reborn) {
+        if (inside(x, y)) {
+            enter(e, reborn);
+        } else {
+            moveOut(e);
+        }
+    }
+
+    /**
+     * Removes entity which was removed from index.
+     *
+     * @param e entity.
+     */
+    void removed(final Entity e) {
+        if (members.remove(e) && !enteredMembers.remove(e)) {
+            removed = append(removed, removedCount++, e.getEntityId());
+        }
+    }
+
+    /**
+     * Checks if point is inside area, using the same test as {@link SpatialIndex#queryRadius(float, float, float, long[])}.
+     */
+    private boolean inside(final float x, final float y) {
+        if (x < centerX - queriedRadius || x > centerX + queriedRadius
+                || y < centerY - queriedRadius || y > centerY + queriedRadius) {
+            return false;
+        }
+        float dx = x - centerX;
+        float dy = y - centerY;
+        return dx * dx + dy * dy <= queriedRadius * queriedRadius;
+    }
+
+    /**
+     * Adds entity to area.
+     *
+     * @param e      entity.
+     * @param reborn true if entity was removed and added again since previous update.
+     */
+    private void enter(final Entity e, final boolean reborn) {
+        if (members.add(e) && (reborn || movedOut.remove(e) == null)) {
+            enteredMembers.add(e);
+        }
+    }
+
+    /**
+     * Removes entity which moved out of area.
+     *
+     * @param e entity.
+     */
+    private void moveOut(final Entity e) {
+        if (members.remove(e) && !enteredMembers.remove(e)) {
+            movedOut.put(e, e.getEntityId());
+        }
+    }
+
+    /**
+     * Publishes entities in area and their changes since previous update.
+     */
+    void publish() {
+        currentCount = 0;
+        enteredCount = 0;
+        stayedCount = 0;
+        for (Entity e : members) {
+            current = append(current, currentCount++, e.getEntityId());
+            if (enteredMembers.contains(e)) {
+                entered = append(entered, enteredCount++, e.getEntityId());
+            } else {
+                stayed = append(stayed, stayedCount++, e.getEntityId());
+            }
+        }
+        leftCount = 0;
+        for (Long id : movedOut.values()) {
+            left = append(left, leftCount++, id);
+        }
+        for (int i = 0; i < removedCount; i++) {
+            left = append(left, leftCount++, removed[i]);
+        }
+        Arrays.sort(current, 0, currentCount);
+        Arrays.sort(entered, 0, enteredCount);
+        Arrays.sort(stayed, 0, stayedCount);
+        Arrays.sort(left, 0, leftCount);
+        enteredMembers.clear();
+        movedOut.clear();
+        removedCount = 0;
+    }
+
+    /**
+     * Writes value to array position, growing array when needed.
+     */
+    private static long[] append(final long[] array, final int position, final long value) {
+        long[] target = position < array.length ? array : Arrays.copyOf(array, array.length * 2);
+        target[position] = value;
+        return target;
+    }
+
+    /**
+     * Checks if area has to be queried again.
+     */
+    boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Marks area to be queried again at next update.
+     */
+    void markStale() {
+        stale = true;
+    }
+
+    /**
+     * Getter for x coordinate of area center.
+     */
+    float getCenterX() {
+        return centerX;
+    }
+
+    /**
+     * Getter for y coordinate of area center.
+     */
+    float getCenterY() {
+        return centerY;
+    }
+
+    /**
+     * Getter for radius area was queried with.
+     */
+    float getQueriedRadius() {
+        return queriedRadius;
+    }
+
+    /**
+     * Checks if entity was in area at last update.
+     *
+     * @param id entity ID.
+     * @return true if entity is in area.
+     */
+    public boolean contains(final long id) {
+        return Arrays.binarySearch(current, 0, currentCount, id) >= 0;
+    }
+
+    /**
+     * Getter for observer entity.
+     *
+     * @return observer.
+     */
+    public Entity getObserver() {
+        return observer;
+    }
+
+    /**
+     * Getter for radius of area.
+     *
+     * @return radius.
+     */
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * Setter for radius of area, applied at next update.
+     *
+     * @param radius radius.
+     */
+    public void setRadius(final float radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius cannot be negative.");
+        }
+        this.radius = radius;
+        this.stale = true;
+    }
+
+    /**
+     * Getter for number of entities in area.
+     *
+     * @return number of entities.
+     */
+    public int getCount() {
+        return currentCount;
+    }
+
+    /**
+     * Returns ID of entity in area.
+     *
+     * @param index position from 0 to {@link #getCount()} - 1.
+     * @return entity ID.
+     */
+    public long get(final int index) {
+        return current[checkIndex(index, currentCount)];
+    }
+
+    /**
+     * Getter for number of entities which entered area at last update.
+     *
+     * @return number of entities.
+     */
+    public int getEnteredCount() {
+        return enteredCount;
+    }
+
+    /**
+     * Returns ID of entity which entered area.
+     *
+     * @param index position from 0 to {@link #getEnteredCount()} - 1.
+     * @return entity ID.
+     */
+    public long getEntered(final int index) {
+        return entered[checkIndex(index, enteredCount)];
+    }
+
+    /**
+     * Getter for number of entities which stayed in area at last update.
+     *
+     * @return number of entities.
+     */
+    public int getStayedCount() {
+        return stayedCount;
+    }
+
+    /**
+     * Returns ID of entity which stayed in area.
+     *
+     * @param index position from 0 to {@link #getStayedCount()} - 1.
+     * @return entity ID.
+     */
+    public long getStayed(final int index) {
+        return stayed[checkIndex(index, stayedCount)];
+    }
+
+    /**
+     * Getter for number of entities which left area at last update.
+     *
+     * @return number of entities.
+     */
+    public int getLeftCount() {
+        return leftCount;
+    }
+
+    /**
+     * Returns ID of entity which left area.
+     *
+     * @param index position from 0 to {@link #getLeftCount()} - 1.
+     * @return entity ID.
+     */
+    public long getLeft(final int index) {
+        return left[checkIndex(index, leftCount)];
+    }
+
+    /**
+     * Validates index against number of values.
+     */
+    private static int checkIndex(final int index, final int count) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + count);
+        }
+        return index;
+    }
+}
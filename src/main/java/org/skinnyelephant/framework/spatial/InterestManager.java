@@ -0,0 +1,314 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.spatial;
+
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.Manager;
+import org.skinnyelephant.framework.core.ProcessListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Manager maintaining area of interest of observers, for example connected players.</p>
+ * <p>Area of every observer is circle around its indexed position. Areas are registered in grid cells they overlap,
+ * so when {@link SpatialIndex} reports entity moved, added or removed only areas registered in its old and new cell are
+ * updated. Area is queried again only when its observer moved or its radius changed, so cost per tick depends on
+ * number of changed entities and not on world size or number of entities in areas.</p>
+ * <p>Index has to be added to core before this manager.
+ * To add manager call {@code core.addManager(new InterestManager(index))}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class InterestManager implements Manager, ProcessListener {
+    /**
+     * Maximum number of cells area is registered in, larger areas are checked for every change.
+     */
+    private static final int MAX_CELLS = 1024;
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Spatial index used for queries.
+     */
+    private final SpatialIndex<?> index;
+    /**
+     * Registered areas of interest.
+     */
+    private final List<Interest> interests = new ArrayList<Interest>();
+    /**
+     * Areas of interest by observer.
+     */
+    private final Map<Entity, List<Interest>> observers = new HashMap<Entity, List<Interest>>();
+    /**
+     * Areas of interest by key of cell they overlap.
+     */
+    private final Map<Long, List<Interest>> cells = new HashMap<Long, List<Interest>>();
+    /**
+     * Cell range of each area registered in cells, as minimal x, minimal y, maximal x and maximal y cell.
+     */
+    private final Map<Interest, int[]> ranges = new HashMap<Interest, int[]>();
+    /**
+     * Areas overlapping too many cells.
+     */
+    private final List<Interest> wideInterests = new ArrayList<Interest>();
+    /**
+     * Entities removed from index since previous update.
+     */
+    private final Set<Entity> removedEntities = new HashSet<Entity>();
+    /**
+     * Listener of index changes.
+     */
+    private final IndexListener listener = new IndexListener() {
+        @Override
+        public void entityMoved(final Entity entity, final boolean wasIndexed, final float oldX, final float oldY,
+                                final float x, final float y) {
+            markObserved(entity);
+            boolean reborn = removedEntities.contains(entity);
+            if (wasIndexed) {
+                moved(cells.get(key(cell(oldX), cell(oldY))), entity, x, y, reborn);
+            }
+            moved(cells.get(key(cell(x), cell(y))), entity, x, y, reborn);
+            moved(wideInterests, entity, x, y, reborn);
+        }
+
+        @Override
+        public void entityRemoved(final Entity entity, final float x, final float y) {
+            markObserved(entity);
+            removedEntities.add(entity);
+            removed(cells.get(key(cell(x), cell(y))), entity);
+            removed(wideInterests, entity);
+        }
+    };
+
+    /**
+     * Constructor for creating interest manager.
+     *
+     * @param index spatial index of observed entities.
+     */
+    public InterestManager(final SpatialIndex<?> index) {
+        this.index = index;
+    }
+
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        initialized = true;
+        index.addIndexListener(listener);
+    }
+
+    /**
+     * Registers observer. Its area is filled at next update, all entities in it are then reported as entered.
+     *
+     * @param observer observer entity with position component.
+     * @param radius   radius of area.
+     * @return area of interest of observer.
+     */
+    public Interest addObserver(final Entity observer, final float radius) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        Interest interest = new Interest(observer, radius);
+        interests.add(interest);
+        List<Interest> list = observers.get(observer);
+        if (list == null) {
+            list = new ArrayList<Interest>(1);
+            observers.put(observer, list);
+        }
+        list.add(interest);
+        return interest;
+    }
+
+    /**
+     * Removes observer.
+     *
+     * @param interest area of interest returned by {@link #addObserver(Entity, float)}.
+     */
+    public void removeObserver(final Interest interest) {
+        if (interests.remove(interest)) {
+            unregister(interest);
+            List<Interest> list = observers.get(interest.getObserver());
+            list.remove(interest);
+            if (list.isEmpty()) {
+                observers.remove(interest.getObserver());
+            }
+        }
+    }
+
+    /**
+     * Queries areas which observer moved or radius changed and publishes changes of all areas.
+     * Called automatically after systems are processed.
+     */
+    public void update() {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        for (int i = 0; i < interests.size(); i++) {
+            Interest interest = interests.get(i);
+            if (interest.isStale()) {
+                unregister(interest);
+                if (interest.query(index)) {
+                    register(interest);
+                }
+            }
+        }
+        for (int i = 0; i < interests.size(); i++) {
+            interests.get(i).publish();
+        }
+        removedEntities.clear();
+    }
+
+    /**
+     * Getter for registered areas of interest.
+     *
+     * @return unmodifiable list of areas of interest.
+     */
+    public List<Interest> getInterests() {
+        return Collections.unmodifiableList(interests);
+    }
+
+    /**
+     * Marks areas of observer to be queried again.
+     *
+     * @param entity entity which position changed.
+     */
+    private void markObserved(final Entity entity) {
+        List<Interest> list = observers.get(entity);
+        if (list != null) {
+            for (int i = 0; i < list.size(); i++) {
+                list.get(i).markStale();
+            }
+        }
+    }
+
+    /**
+     * Updates membership of moved entity in given areas.
+     */
+    private static void moved(final List<Interest> list, final Entity entity, final float x, final float y, final boolean reborn) {
+        if (list != null) {
+            for (int i = 0; i < list.size(); i++) {
+                list.get(i).moved(entity, x, y, reborn);
+            }
+        }
+    }
+
+    /**
+     * Removes entity from given areas.
+     */
+    private static void removed(final List<Interest> list, final Entity entity) {
+        if (list != null) {
+            for (int i = 0; i < list.size(); i++) {
+                list.get(i).removed(entity);
+            }
+        }
+    }
+
+    /**
+     * Registers area in cells it overlaps.
+     *
+     * @param interest queried area.
+     */
+    private void register(final Interest interest) {
+        float radius = interest.getQueriedRadius();
+        int minX = cell(interest.getCenterX() - radius);
+        int minY = cell(interest.getCenterY() - radius);
+        int maxX = cell(interest.getCenterX() + radius);
+        int maxY = cell(interest.getCenterY() + radius);
+        if (((long) maxX - minX + 1) * ((long) maxY - minY + 1) > MAX_CELLS) {
+            wideInterests.add(interest);
+            return;
+        }
+        ranges.put(interest, new int[]{minX, minY, maxX, maxY});
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                Long key = key(x, y);
+                List<Interest> list = cells.get(key);
+                if (list == null) {
+                    list = new ArrayList<Interest>(2);
+                    cells.put(key, list);
+                }
+                list.add(interest);
+            }
+        }
+    }
+
+    /**
+     * Removes area from cells it was registered in.
+     *
+     * @param interest area.
+     */
+    private void unregister(final Interest interest) {
+        int[] range = ranges.remove(interest);
+        if (range == null) {
+            wideInterests.remove(interest);
+            return;
+        }
+        for (int y = range[1]; y <= range[3]; y++) {
+            for (int x = range[0]; x <= range[2]; x++) {
+                Long key = key(x, y);
+                List<Interest> list = cells.get(key);
+                list.remove(interest);
+                if (list.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns cell coordinate of position coordinate.
+     */
+    private int cell(final float coordinate) {
+        return (int) Math.floor(coordinate / index.getCellSize());
+    }
+
+    /**
+     * Returns key of cell.
+     */
+    private static Long key(final int cellX, final int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public void beforeProcess(final float delta) {
+    }
+
+    @Override
+    public void afterProcess(final float delta) {
+        update();
+    }
+
+    @Override
+    public void dispose() {
+        index.removeIndexListener(listener);
+        interests.clear();
+        observers.clear();
+        cells.clear();
+        ranges.clear();
+        wideInterests.clear();
+        removedEntities.clear();
+        initialized = false;
+    }
+}
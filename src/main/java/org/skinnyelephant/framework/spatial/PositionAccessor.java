@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.spatial;
+
+/**
+ * Reads two dimensional position from position component.
+ *
+ * @param <T> position component class.
+ */
+public interface PositionAccessor<T> {
+    /**
+     * Returns x coordinate of position.
+     *
+     * @param position position component.
+     * @return x coordinate.
+     */
+    float getX(T position);
+
+    /**
+     * Returns y coordinate of position.
+     *
+     * @param position position component.
+     * @return y coordinate.
+     */
+    float getY(T position);
+}
@@ -0,0 +1,573 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.spatial;
+
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.EntityListener;
+import org.skinnyelephant.framework.core.Manager;
+import org.skinnyelephant.framework.core.ProcessListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Manager indexing entities with position component in uniform hash grid.</p>
+ * <p>Space is divided into square cells, cells are hashed into fixed number of buckets and every bucket keeps linked
+ * list of entities. All per entity data is kept in primitive arrays indexed by entity ID, so radius and box queries
+ * do not allocate and write IDs of found entities into buffer given by caller.</p>
+ * <p>Index follows entities through {@link EntityListener} hooks. Position changes must be requested with
+ * {@link Entity#modifyComponent(Class)}, such entities are re-indexed lazily before next query and at the end of tick.
+ * Changes written directly to component have to be reported with {@link #update(Entity)}.</p>
+ * <p>To add index to core call {@code core.addManager(new SpatialIndex<Position>(core, Position.class, accessor, 16))}.</p>
+ *
+ * @param <T> position component class.
+ * @author Kristaps Kohs
+ */
+public class SpatialIndex<T> implements Manager, EntityListener, ProcessListener {
+    /**
+     * Default number of buckets.
+     */
+    public static final int DEFAULT_BUCKETS = 4096;
+    /**
+     * Value marking missing link.
+     */
+    private static final int NONE = -1;
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Indexed core.
+     */
+    private final Core core;
+    /**
+     * Position component class.
+     */
+    private final Class<T> positionType;
+    /**
+     * Position reader.
+     */
+    private final PositionAccessor<T> accessor;
+    /**
+     * Cell size.
+     */
+    private final float cellSize;
+    /**
+     * First entity slot of every bucket.
+     */
+    private final int[] heads;
+    /**
+     * Mask for mapping cell hash to bucket.
+     */
+    private final int mask;
+    /**
+     * Indexed entities by slot.
+     */
+    private Entity[] entities = new Entity[0];
+    /**
+     * Indexed x coordinates by slot.
+     */
+    private float[] xs = new float[0];
+    /**
+     * Indexed y coordinates by slot.
+     */
+    private float[] ys = new float[0];
+    /**
+     * Cell x coordinates by slot.
+     */
+    private int[] cellXs = new int[0];
+    /**
+     * Cell y coordinates by slot.
+     */
+    private int[] cellYs = new int[0];
+    /**
+     * Next slot in bucket by slot.
+     */
+    private int[] next = new int[0];
+    /**
+     * Previous slot in bucket by slot.
+     */
+    private int[] previous = new int[0];
+    /**
+     * Flags of slots waiting for re-index.
+     */
+    private boolean[] dirty = new boolean[0];
+    /**
+     * Slots waiting for re-index.
+     */
+    private int[] dirtySlots = new int[16];
+    /**
+     * Number of slots waiting for re-index.
+     */
+    private int dirtyCount;
+    /**
+     * Number of indexed entities.
+     */
+    private int size;
+    /**
+     * Listeners notified about position changes.
+     */
+    private final List<IndexListener> listeners = new ArrayList<IndexListener>();
+
+    /**
+     * Constructor for creating spatial index with default number of buckets.
+     *
+     * @param core         indexed core.
+     * @param positionType position component class.
+     * @param accessor     position reader.
+     * @param cellSize     size of grid cell, should be close to typical query radius.
+     */
+    public SpatialIndex(final Core core, final Class<T> positionType, final PositionAccessor<T> accessor, final float cellSize) {
+        this(core, positionType, accessor, cellSize, DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Constructor for creating spatial index.
+     *
+     * @param core         indexed core.
+     * @param positionType position component class.
+     * @param accessor     position reader.
+     * @param cellSize     size of grid cell, should be close to typical query radius.
+     * @param buckets      number of buckets, rounded up to power of two.
+     */
+    public SpatialIndex(final Core core, final Class<T> positionType, final PositionAccessor<T> accessor,
+                        final float cellSize, final int buckets) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size should be positive.");
+        }
+        if (buckets < 1) {
+            throw new IllegalArgumentException("Index needs at least one bucket.");
+        }
+        this.core = core;
+        this.positionType = positionType;
+        this.accessor = accessor;
+        this.cellSize = cellSize;
+        int length = 1;
+        while (length < buckets) {
+            length <<= 1;
+        }
+        this.heads = new int[length];
+        this.mask = heads.length - 1;
+        Arrays.fill(heads, NONE);
+    }
+
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        initialized = true;
+        core.getEntityManager().addEntityListener(this);
+        Set<Entity> existing = core.getEntityManager().getEntitiesByComponent(positionType);
+        if (existing != null) {
+            for (Entity e : existing) {
+                insert(e);
+            }
+        }
+    }
+
+    /**
+     * Writes IDs of entities within given distance from point into result buffer.
+     *
+     * @param x      x coordinate of center.
+     * @param y      y coordinate of center.
+     * @param radius query radius.
+     * @param result buffer for entity IDs.
+     * @return number of found entities, only first result.length of them are written if buffer is too small.
+     */
+    public int queryRadius(final float x, final float y, final float radius, final long[] result) {
+        return query(x - radius, y - radius, x + radius, y + radius, x, y, radius * radius, true, result);
+    }
+
+    /**
+     * Writes IDs of entities within axis aligned box into result buffer.
+     *
+     * @param minX   minimal x coordinate.
+     * @param minY   minimal y coordinate.
+     * @param maxX   maximal x coordinate.
+     * @param maxY   maximal y coordinate.
+     * @param result buffer for entity IDs.
+     * @return number of found entities, only first result.length of them are written if buffer is too small.
+     */
+    public int queryBox(final float minX, final float minY, final float maxX, final float maxY, final long[] result) {
+        return query(minX, minY, maxX, maxY, 0, 0, 0, false, result);
+    }
+
+    /**
+     * Re-indexes entity after its position was written without {@link Entity#modifyComponent(Class)}.
+     *
+     * @param entity entity.
+     */
+    public void update(final Entity entity) {
+        insert(entity);
+    }
+
+    /**
+     * Returns indexed entity with given ID.
+     *
+     * @param id entity ID.
+     * @return entity or null if entity with given ID is not indexed.
+     */
+    Entity getIndexedEntity(final long id) {
+        return id >= 0 && id < entities.length ? entities[(int) id] : null;
+    }
+
+    /**
+     * Registers listener notified about position changes.
+     *
+     * @param listener listener.
+     */
+    void addIndexListener(final IndexListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes listener of position changes.
+     *
+     * @param listener listener.
+     */
+    void removeIndexListener(final IndexListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Checks if entity is indexed.
+     *
+     * @param entity entity.
+     * @return true if entity has position component and is indexed.
+     */
+    public boolean contains(final Entity entity) {
+        int slot = slot(entity);
+        return slot < entities.length && entities[slot] == entity;
+    }
+
+    /**
+     * Returns indexed x coordinate of entity.
+     *
+     * @param entity indexed entity.
+     * @return x coordinate.
+     * @throws IllegalArgumentException if entity is not indexed.
+     */
+    public float getX(final Entity entity) {
+        flush();
+        return xs[indexedSlot(entity)];
+    }
+
+    /**
+     * Returns indexed y coordinate of entity.
+     *
+     * @param entity indexed entity.
+     * @return y coordinate.
+     * @throws IllegalArgumentException if entity is not indexed.
+     */
+    public float getY(final Entity entity) {
+        flush();
+        return ys[indexedSlot(entity)];
+    }
+
+    /**
+     * Getter for number of indexed entities.
+     *
+     * @return number of indexed entities.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter for cell size.
+     *
+     * @return cell size.
+     */
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+        if (entity.getComponent(positionType) != null) {
+            insert(entity);
+        }
+    }
+
+    @Override
+    public void entityRemoved(final Entity entity) {
+        remove(entity);
+    }
+
+    @Override
+    public void componentAdded(final Entity entity, final Object component) {
+        if (positionType.isInstance(component)) {
+            insert(entity);
+        }
+    }
+
+    @Override
+    public void componentRemoved(final Entity entity, final Object component) {
+        if (positionType.isInstance(component)) {
+            remove(entity);
+        }
+    }
+
+    @Override
+    public void componentModified(final Entity entity, final Object component) {
+        if (positionType.isInstance(component)) {
+            int slot = slot(entity);
+            if (slot < entities.length && entities[slot] == entity && !dirty[slot]) {
+                dirty[slot] = true;
+                if (dirtyCount == dirtySlots.length) {
+                    dirtySlots = Arrays.copyOf(dirtySlots, dirtyCount * 2);
+                }
+                dirtySlots[dirtyCount++] = slot;
+            }
+        }
+    }
+
+    @Override
+    public void beforeProcess(final float delta) {
+        flush();
+    }
+
+    @Override
+    public void afterProcess(final float delta) {
+        flush();
+    }
+
+    @Override
+    public void dispose() {
+        core.getEntityManager().removeEntityListener(this);
+        entities = new Entity[0];
+        Arrays.fill(heads, NONE);
+        dirtyCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Runs query over cells overlapping given box.
+     */
+    private int query(final float minX, final float minY, final float maxX, final float maxY,
+                      final float x, final float y, final float radiusSquared, final boolean circle, final long[] result) {
+        flush();
+        int minCellX = cell(minX);
+        int minCellY = cell(minY);
+        int maxCellX = cell(maxX);
+        int maxCellY = cell(maxY);
+        int count = 0;
+        long cells = ((long) maxCellX - minCellX + 1) * ((long) maxCellY - minCellY + 1);
+        if (cells > heads.length) {
+            for (int slot = 0; slot < entities.length; slot++) {
+                if (entities[slot] != null && matches(slot, minX, minY, maxX, maxY, x, y, radiusSquared, circle)) {
+                    if (count < result.length) {
+                        result[count] = entities[slot].getEntityId();
+                    }
+                    count++;
+                }
+            }
+            return count;
+        }
+        for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int slot = heads[bucket(cellX, cellY)]; slot != NONE; slot = next[slot]) {
+                    if (cellXs[slot] == cellX && cellYs[slot] == cellY
+                            && matches(slot, minX, minY, maxX, maxY, x, y, radiusSquared, circle)) {
+                        if (count < result.length) {
+                            result[count] = entities[slot].getEntityId();
+                        }
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if indexed position is inside query area.
+     */
+    private boolean matches(final int slot, final float minX, final float minY, final float maxX, final float maxY,
+                            final float x, final float y, final float radiusSquared, final boolean circle) {
+        float px = xs[slot];
+        float py = ys[slot];
+        if (px < minX || px > maxX || py < minY || py > maxY) {
+            return false;
+        }
+        if (circle) {
+            float dx = px - x;
+            float dy = py - y;
+            return dx * dx + dy * dy <= radiusSquared;
+        }
+        return true;
+    }
+
+    /**
+     * Re-indexes entities which position was requested for modification.
+     */
+    private void flush() {
+        for (int i = 0; i < dirtyCount; i++) {
+            int slot = dirtySlots[i];
+            dirty[slot] = false;
+            if (entities[slot] != null) {
+                insert(entities[slot]);
+            }
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Adds entity to index or moves it to its current cell.
+     *
+     * @param entity entity with position component.
+     */
+    private void insert(final Entity entity) {
+        T position = entity.getComponent(positionType);
+        if (position == null) {
+            remove(entity);
+            return;
+        }
+        int slot = slot(entity);
+        ensureCapacity(slot + 1);
+        final boolean wasIndexed = entities[slot] == entity;
+        final float oldX = xs[slot];
+        final float oldY = ys[slot];
+        if (!wasIndexed) {
+            if (entities[slot] != null) {
+                unlink(slot);
+                size--;
+            }
+            entities[slot] = entity;
+            size++;
+        } else {
+            unlink(slot);
+        }
+        float x = accessor.getX(position);
+        float y = accessor.getY(position);
+        xs[slot] = x;
+        ys[slot] = y;
+        cellXs[slot] = cell(x);
+        cellYs[slot] = cell(y);
+        link(slot);
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).entityMoved(entity, wasIndexed, oldX, oldY, x, y);
+        }
+    }
+
+    /**
+     * Removes entity from index.
+     *
+     * @param entity entity.
+     */
+    private void remove(final Entity entity) {
+        int slot = slot(entity);
+        if (slot < entities.length && entities[slot] == entity) {
+            unlink(slot);
+            entities[slot] = null;
+            size--;
+            for (int i = 0; i < listeners.size(); i++) {
+                listeners.get(i).entityRemoved(entity, xs[slot], ys[slot]);
+            }
+        }
+    }
+
+    /**
+     * Adds slot to the head of its bucket list.
+     */
+    private void link(final int slot) {
+        int bucket = bucket(cellXs[slot], cellYs[slot]);
+        int head = heads[bucket];
+        next[slot] = head;
+        previous[slot] = NONE;
+        if (head != NONE) {
+            previous[head] = slot;
+        }
+        heads[bucket] = slot;
+    }
+
+    /**
+     * Removes slot from its bucket list.
+     */
+    private void unlink(final int slot) {
+        if (previous[slot] != NONE) {
+            next[previous[slot]] = next[slot];
+        } else {
+            heads[bucket(cellXs[slot], cellYs[slot])] = next[slot];
+        }
+        if (next[slot] != NONE) {
+            previous[next[slot]] = previous[slot];
+        }
+        next[slot] = NONE;
+        previous[slot] = NONE;
+    }
+
+    /**
+     * Grows per slot arrays.
+     */
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= entities.length) {
+            return;
+        }
+        int length = Math.max(capacity, Math.max(64, entities.length * 2));
+        entities = Arrays.copyOf(entities, length);
+        xs = Arrays.copyOf(xs, length);
+        ys = Arrays.copyOf(ys, length);
+        cellXs = Arrays.copyOf(cellXs, length);
+        cellYs = Arrays.copyOf(cellYs, length);
+        dirty = Arrays.copyOf(dirty, length);
+        int old = next.length;
+        next = Arrays.copyOf(next, length);
+        previous = Arrays.copyOf(previous, length);
+        Arrays.fill(next, old, length, NONE);
+        Arrays.fill(previous, old, length, NONE);
+    }
+
+    /**
+     * Returns slot of entity.
+     */
+    private static int slot(final Entity entity) {
+        long id = entity.getEntityId();
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Entity ID " + id + " cannot be indexed.");
+        }
+        return (int) id;
+    }
+
+    /**
+     * Returns slot of indexed entity.
+     */
+    private int indexedSlot(final Entity entity) {
+        if (!contains(entity)) {
+            throw new IllegalArgumentException("Entity is not indexed.");
+        }
+        return slot(entity);
+    }
+
+    /**
+     * Returns cell coordinate of position coordinate.
+     */
+    private int cell(final float coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    /**
+     * Returns bucket of cell.
+     */
+    private int bucket(final int cellX, final int cellY) {
+        return (cellX * 73856093 ^ cellY * 19349663) & mask;
+    }
+}
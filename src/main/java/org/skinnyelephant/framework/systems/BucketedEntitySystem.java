@@ -0,0 +1,298 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+import com.google.common.collect.ImmutableSet;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Entity system processing its entities with per entity update interval.</p>
+ * <p>Each entity is placed into frequency bucket by its update interval (processed every tick, every 2nd tick,
+ * every 8th tick, ...). Entities of bucket with interval N are spread evenly over N phases and only one phase of
+ * every bucket is processed in single tick, so amount of work per tick stays flat.</p>
+ * <p>Update interval of new entity is taken from {@link #getUpdateInterval(Entity)} and can be changed later with
+ * {@link #setUpdateInterval(Entity, int)}. Membership changes made while system is processing are applied after
+ * processing is finished.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public abstract class BucketedEntitySystem extends EntitySystem {
+    /**
+     * Buckets by their update interval.
+     */
+    private final Map<Integer, Bucket> buckets = new HashMap<Integer, Bucket>();
+    /**
+     * Buckets in order they were created, used for processing.
+     */
+    private final List<Bucket> bucketList = new ArrayList<Bucket>();
+    /**
+     * Placement of each entity in this system.
+     */
+    private final Map<Entity, Slot> slots = new HashMap<Entity, Slot>();
+    /**
+     * Entities that should be placed after current processing finishes, with their update interval.
+     */
+    private final Map<Entity, Integer> pendingPlacements = new HashMap<Entity, Integer>();
+    /**
+     * Entities that should be removed after current processing finishes.
+     */
+    private final Set<Entity> pendingRemovals = new HashSet<Entity>();
+    /**
+     * Number of ticks this system has been processed.
+     */
+    private long tick;
+    /**
+     * Flag indicating if system is currently processing entities.
+     */
+    private boolean processing;
+
+    /**
+     * Constructor for creating bucketed entity system.
+     */
+    public BucketedEntitySystem() {
+        super();
+    }
+
+    /**
+     * Constructor for creating periodic or not bucketed entity system.
+     *
+     * @param periodic flag indicating if system is periodic.
+     * @param period   system processing period.
+     */
+    public BucketedEntitySystem(boolean periodic, float period) {
+        super(periodic, period);
+    }
+
+    /**
+     * Method for getting update interval in ticks of entity added to this system.
+     *
+     * @param entity entity added to system.
+     * @return update interval, 1 for processing every tick.
+     */
+    protected int getUpdateInterval(final Entity entity) {
+        return 1;
+    }
+
+    /**
+     * Moves entity to bucket with given update interval.
+     *
+     * @param entity   entity of this system.
+     * @param interval update interval in ticks, 1 for processing every tick.
+     */
+    public final void setUpdateInterval(final Entity entity, final int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Update interval should be positive.");
+        }
+        Slot slot = slots.get(entity);
+        if (slot == null && !pendingPlacements.containsKey(entity)) {
+            throw new IllegalArgumentException("Entity is not processed by this system.");
+        }
+        if (processing) {
+            if (!pendingRemovals.contains(entity)) {
+                pendingPlacements.put(entity, interval);
+            }
+            return;
+        }
+        if (slot.bucket.interval == interval) {
+            return;
+        }
+        unplace(entity);
+        place(entity, interval);
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+        int interval = getUpdateInterval(entity);
+        if (interval < 1) {
+            throw new IllegalArgumentException("Update interval should be positive.");
+        }
+        if (processing) {
+            pendingRemovals.remove(entity);
+            pendingPlacements.put(entity, interval);
+        } else {
+            place(entity, interval);
+        }
+    }
+
+    @Override
+    public void entityRemoved(final Entity entity) {
+        if (processing) {
+            pendingPlacements.remove(entity);
+            pendingRemovals.add(entity);
+        } else {
+            unplace(entity);
+        }
+    }
+
+    /**
+     * <p>Processes current phase of every bucket.</p>
+     * <p>Given set is not used, entities are taken from buckets maintained by this system.</p>
+     *
+     * @param entities set of entities of this system.
+     */
+    @Override
+    public void processEntities(final ImmutableSet<Entity> entities) {
+        processing = true;
+        try {
+            for (Bucket bucket : bucketList) {
+                List<Entity> phase = bucket.phases[(int) (tick % bucket.interval)];
+                for (int i = 0; i < phase.size(); i++) {
+                    Entity e = phase.get(i);
+                    if (pendingRemovals.isEmpty() || !pendingRemovals.contains(e)) {
+                        processEntity(e);
+                    }
+                }
+            }
+        } finally {
+            processing = false;
+            tick++;
+            applyPending();
+        }
+    }
+
+    /**
+     * Applies membership changes made during processing.
+     */
+    private void applyPending() {
+        if (!pendingRemovals.isEmpty()) {
+            for (Entity e : pendingRemovals) {
+                unplace(e);
+            }
+            pendingRemovals.clear();
+        }
+        if (!pendingPlacements.isEmpty()) {
+            for (Map.Entry<Entity, Integer> entry : pendingPlacements.entrySet()) {
+                Slot slot = slots.get(entry.getKey());
+                if (slot == null || slot.bucket.interval != entry.getValue()) {
+                    unplace(entry.getKey());
+                    place(entry.getKey(), entry.getValue());
+                }
+            }
+            pendingPlacements.clear();
+        }
+    }
+
+    /**
+     * Places entity into least loaded phase of bucket with given interval.
+     *
+     * @param entity   entity to place.
+     * @param interval update interval.
+     */
+    private void place(final Entity entity, final int interval) {
+        Bucket bucket = buckets.get(interval);
+        if (bucket == null) {
+            bucket = new Bucket(interval);
+            buckets.put(interval, bucket);
+            bucketList.add(bucket);
+        }
+        int phase = 0;
+        for (int i = 1; i < interval; i++) {
+            if (bucket.phases[i].size() < bucket.phases[phase].size()) {
+                phase = i;
+            }
+        }
+        List<Entity> list = bucket.phases[phase];
+        slots.put(entity, new Slot(bucket, phase, list.size()));
+        list.add(entity);
+    }
+
+    /**
+     * Removes entity from its phase by moving last entity of the phase in its place.
+     *
+     * @param entity entity to remove.
+     */
+    private void unplace(final Entity entity) {
+        Slot slot = slots.remove(entity);
+        if (slot == null) {
+            return;
+        }
+        List<Entity> list = slot.bucket.phases[slot.phase];
+        Entity last = list.remove(list.size() - 1);
+        if (last != entity) {
+            list.set(slot.index, last);
+            slots.get(last).index = slot.index;
+        }
+    }
+
+    /**
+     * Returns number of entities which are processed in given tick.
+     *
+     * @param tick tick number.
+     * @return number of entities.
+     */
+    public final int getEntityCount(final long tick) {
+        int count = 0;
+        for (Bucket bucket : bucketList) {
+            count += bucket.phases[(int) (tick % bucket.interval)].size();
+        }
+        return count;
+    }
+
+    /**
+     * Getter for number of ticks this system has been processed.
+     *
+     * @return processed ticks.
+     */
+    public final long getTick() {
+        return tick;
+    }
+
+    /**
+     * Entities with the same update interval split into phases.
+     */
+    private static final class Bucket {
+        /**
+         * Update interval of the bucket.
+         */
+        private final int interval;
+        /**
+         * Entities processed in each phase.
+         */
+        private final List<Entity>[] phases;
+
+        @SuppressWarnings("unchecked")
+        private Bucket(final int interval) {
+            this.interval = interval;
+            this.phases = (List<Entity>[]) new List<?>[interval];
+            for (int i = 0; i < interval; i++) {
+                phases[i] = new ArrayList<Entity>();
+            }
+        }
+    }
+
+    /**
+     * Position of entity in bucket phase.
+     */
+    private static final class Slot {
+        private final Bucket bucket;
+        private final int phase;
+        private int index;
+
+        private Slot(final Bucket bucket, final int phase, final int index) {
+            this.bucket = bucket;
+            this.phase = phase;
+            this.index = index;
+        }
+    }
+}
@@ -52,6 +52,18 @@ public abstract class EntitySystem implements Disposable {
      * Accumulated delta time since last processing.
      */
     private float accumulatedDelta;
+    /**
+     * Flag indicating if system is enabled.
+     */
+    private boolean enabled = true;
+    /**
+     * Phase in which system is processed.
+     */
+    private Phase phase = Phase.SIMULATE;
+    /**
+     * Group of this system, null if system does not belong to group.
+     */
+    private SystemGroup group;
 
     /**
      * Constructor for creating active entity system.
@@ -115,6 +127,42 @@ public abstract class EntitySystem implements Disposable {
         }
     }
 
+    /**
+     * Method called by {@link org.skinnyelephant.framework.core.EntityManager} when entity starts to match components used by this system.
+     *
+     * @param entity entity added to this system.
+     */
+    public void entityAdded(final Entity entity) {
+    }
+
+    /**
+     * Method called by {@link org.skinnyelephant.framework.core.EntityManager} when entity no longer matches components used by this system
+     * or is removed from framework.
+     *
+     * @param entity entity removed from this system.
+     */
+    public void entityRemoved(final Entity entity) {
+    }
+
+    /**
+     * Method called by {@link org.skinnyelephant.framework.core.EntityManager} when component used by this system is requested for
+     * modification with {@link Entity#modifyComponent(Class)}. Called only if {@link #isTrackingChanges()} returns true.
+     *
+     * @param entity    entity of this system.
+     * @param component component to be modified.
+     */
+    public void entityModified(final Entity entity, final Object component) {
+    }
+
+    /**
+     * Flag indicating if system should be notified about modifications of its components.
+     *
+     * @return true if {@link #entityModified(Entity, Object)} should be called.
+     */
+    public boolean isTrackingChanges() {
+        return false;
+    }
+
     /**
      * Method for processing system.
      */
@@ -173,6 +221,65 @@ public abstract class EntitySystem implements Disposable {
         return false;
     }
 
+    /**
+     * Getter for enabled flag, system is enabled if it is enabled itself and its group is enabled.
+     *
+     * @return true if system should be processed.
+     */
+    public final boolean isEnabled() {
+        return enabled && (group == null || group.isEnabled());
+    }
+
+    /**
+     * <p>Enables or disables system.</p>
+     * <p>Disabled system is not processed but its entities are kept up to date.</p>
+     *
+     * @param enabled flag.
+     */
+    public final void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Getter for phase in which system is processed.
+     *
+     * @return phase.
+     */
+    public final Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Setter for phase in which system is processed, can be set only before system is added to core.
+     *
+     * @param phase phase.
+     * @throws IllegalStateException if system is added to core.
+     */
+    public final void setPhase(final Phase phase) {
+        if (core != null) {
+            throw new IllegalStateException("Phase cannot be changed after system is added to core.");
+        }
+        this.phase = phase;
+    }
+
+    /**
+     * Getter for group of this system.
+     *
+     * @return group or null if system does not belong to group.
+     */
+    public final SystemGroup getGroup() {
+        return group;
+    }
+
+    /**
+     * Setter for group of this system, called by {@link SystemGroup}.
+     *
+     * @param group group.
+     */
+    final void setGroup(final SystemGroup group) {
+        this.group = group;
+    }
+
     protected <T extends Manager> T getManager(final Class<? extends Manager> type) {
         return core.getManager(type);
     }
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.EntityManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>Entity system splitting its entities into spatial regions which are processed in parallel.</p>
+ * <p>Region of each entity is given by {@link RegionLocator}. Every region keeps its own entity list and is passed
+ * to {@link #processRegion(int, List)} on worker thread. After all regions are processed, entities whose region changed
+ * are moved to their new regions, so region membership changes only at tick boundary.</p>
+ * <p>While regions are processed, {@link #processEntity(Entity)} may write only to components of processed entity.
+ * Entities of other regions should be read only through {@link Entity#getFrontComponent(Class)} of double buffered
+ * components, which holds state of previous tick and does not change until core swaps buffers after tick.
+ * Entities and components can be added or removed from worker threads only in concurrent {@link org.skinnyelephant.framework.core.Core}
+ * mode, which queues their membership changes until system is processed. Otherwise such change fails with {@link IllegalStateException}
+ * before entity is changed, as entity manager is not thread safe, see {@link EntityManager#setOwnerThread(Thread)}.
+ * Membership changes made on core thread during processing are applied after all regions are processed.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public abstract class PartitionedEntitySystem extends EntitySystem {
+    /**
+     * Region locator.
+     */
+    private final RegionLocator locator;
+    /**
+     * Regions of this system.
+     */
+    private final Region[] regions;
+    /**
+     * Region tasks submitted to executor.
+     */
+    private final List<Region> tasks;
+    /**
+     * Placement of each entity.
+     */
+    private final Map<Entity, Slot> slots = new HashMap<Entity, Slot>();
+    /**
+     * Entities that should be placed after current processing finishes.
+     */
+    private final Set<Entity> pendingPlacements = new LinkedHashSet<Entity>();
+    /**
+     * Entities that should be removed after current processing finishes.
+     */
+    private final Set<Entity> pendingRemovals = new HashSet<Entity>();
+    /**
+     * Thread processing this system, null if system is not processing.
+     */
+    private volatile Thread processingThread;
+    /**
+     * Executor processing regions, null if regions are processed on core thread.
+     */
+    private final ExecutorService executor;
+    /**
+     * Flag indicating if executor was created by this system.
+     */
+    private final boolean ownExecutor;
+    /**
+     * Number of entities moved between regions after last processing.
+     */
+    private int lastMigrations;
+
+    /**
+     * Constructor for creating partitioned entity system with own worker pool.
+     *
+     * @param locator     region locator.
+     * @param regionCount number of regions.
+     * @param threads     number of worker threads, 1 for processing regions on core thread.
+     */
+    public PartitionedEntitySystem(final RegionLocator locator, final int regionCount, final int threads) {
+        this(locator, regionCount, threads > 1 ? Executors.newFixedThreadPool(threads, new WorkerFactory()) : null, true);
+    }
+
+    /**
+     * Constructor for creating partitioned entity system using shared executor, which is not shut down by this system.
+     *
+     * @param locator     region locator.
+     * @param regionCount number of regions.
+     * @param executor    executor processing regions.
+     */
+    public PartitionedEntitySystem(final RegionLocator locator, final int regionCount, final ExecutorService executor) {
+        this(locator, regionCount, executor, false);
+    }
+
+    private PartitionedEntitySystem(final RegionLocator locator, final int regionCount,
+                                    final ExecutorService executor, final boolean ownExecutor) {
+        super();
+        if (regionCount < 1) {
+            throw new IllegalArgumentException("System needs at least one region.");
+        }
+        this.locator = locator;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.regions = new Region[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            regions[i] = new Region(i);
+        }
+        this.tasks = Collections.unmodifiableList(Arrays.asList(regions));
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+        if (processingThread != null) {
+            pendingRemovals.remove(entity);
+            pendingPlacements.add(entity);
+        } else {
+            place(entity, locate(entity));
+        }
+    }
+
+    @Override
+    public void entityRemoved(final Entity entity) {
+        if (processingThread != null) {
+            pendingPlacements.remove(entity);
+            pendingRemovals.add(entity);
+        } else {
+            unplace(entity);
+        }
+    }
+
+    /**
+     * <p>Processes all regions in parallel and moves entities which changed region.</p>
+     * <p>Given set is not used, entities are taken from regions maintained by this system.
+     * While regions are processed, entities can be changed only from core thread unless core is concurrent.</p>
+     *
+     * @param entities set of entities of this system.
+     */
+    @Override
+    public void processEntities(final ImmutableSet<Entity> entities) {
+        final EntityManager entityManager = core.getEntityManager();
+        processingThread = Thread.currentThread();
+        entityManager.setOwnerThread(processingThread);
+        try {
+            processRegions();
+        } finally {
+            entityManager.setOwnerThread(null);
+            processingThread = null;
+            applyPending();
+        }
+        migrate();
+    }
+
+    /**
+     * Processes all regions on core thread or worker pool.
+     */
+    private void processRegions() {
+        if (executor == null) {
+            for (Region region : regions) {
+                region.call();
+            }
+        } else {
+            try {
+                for (Future<Void> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while processing regions.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException("Failed to process region.", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Applies membership changes made during processing.
+     */
+    private void applyPending() {
+        if (!pendingRemovals.isEmpty()) {
+            for (Entity e : pendingRemovals) {
+                unplace(e);
+            }
+            pendingRemovals.clear();
+        }
+        if (!pendingPlacements.isEmpty()) {
+            for (Entity e : pendingPlacements) {
+                if (!slots.containsKey(e)) {
+                    place(e, locate(e));
+                }
+            }
+            pendingPlacements.clear();
+        }
+    }
+
+    /**
+     * <p>Processes entities of single region, called from worker thread.</p>
+     * <p>By default passes every entity to {@link #processEntity(Entity)}, except entities removed during processing.</p>
+     *
+     * @param region   region index.
+     * @param entities entities of region, list should not be modified.
+     */
+    protected void processRegion(final int region, final List<Entity> entities) {
+        for (int i = 0; i < entities.size(); i++) {
+            Entity e = entities.get(i);
+            if (pendingRemovals.isEmpty() || !pendingRemovals.contains(e)) {
+                processEntity(e);
+            }
+        }
+    }
+
+    /**
+     * Moves entities found in wrong region during processing to their new regions.
+     */
+    private void migrate() {
+        int migrations = 0;
+        for (Region region : regions) {
+            for (int i = 0; i < region.moved.size(); i++) {
+                Entity e = region.moved.get(i);
+                Slot slot = slots.get(e);
+                if (slot != null) {
+                    int target = locate(e);
+                    if (target != slot.region.index) {
+                        unplace(e);
+                        place(e, target);
+                        migrations++;
+                    }
+                }
+            }
+            region.moved.clear();
+        }
+        lastMigrations = migrations;
+    }
+
+    /**
+     * Returns region of entity reported by locator.
+     *
+     * @param entity entity.
+     * @return region index.
+     */
+    private int locate(final Entity entity) {
+        int region = locator.getRegion(entity);
+        if (region < 0 || region >= regions.length) {
+            throw new IllegalArgumentException("Region " + region + " is out of range.");
+        }
+        return region;
+    }
+
+    /**
+     * Adds entity to the end of region list.
+     *
+     * @param entity entity.
+     * @param region region index.
+     */
+    private void place(final Entity entity, final int region) {
+        List<Entity> list = regions[region].entities;
+        slots.put(entity, new Slot(regions[region], list.size()));
+        list.add(entity);
+    }
+
+    /**
+     * Removes entity from its region by moving last entity of the region in its place.
+     *
+     * @param entity entity.
+     */
+    private void unplace(final Entity entity) {
+        Slot slot = slots.remove(entity);
+        if (slot == null) {
+            return;
+        }
+        List<Entity> list = slot.region.entities;
+        Entity last = list.remove(list.size() - 1);
+        if (last != entity) {
+            list.set(slot.index, last);
+            slots.get(last).index = slot.index;
+        }
+    }
+
+    /**
+     * Returns region entity is currently placed in.
+     *
+     * @param entity entity.
+     * @return region index or -1 if entity does not belong to this system.
+     */
+    public final int getRegion(final Entity entity) {
+        Slot slot = slots.get(entity);
+        return slot == null ? -1 : slot.region.index;
+    }
+
+    /**
+     * Getter for number of regions.
+     *
+     * @return number of regions.
+     */
+    public final int getRegionCount() {
+        return regions.length;
+    }
+
+    /**
+     * Returns number of entities in region.
+     *
+     * @param region region index.
+     * @return number of entities.
+     */
+    public final int getEntityCount(final int region) {
+        return regions[region].entities.size();
+    }
+
+    /**
+     * Returns entities currently placed in region.
+     *
+     * @param region region index.
+     * @return immutable copy of region entities.
+     */
+    public final ImmutableList<Entity> getEntities(final int region) {
+        return ImmutableList.copyOf(regions[region].entities);
+    }
+
+    /**
+     * Getter for number of entities moved between regions after last processing.
+     *
+     * @return number of moved entities.
+     */
+    public final int getLastMigrations() {
+        return lastMigrations;
+    }
+
+    /**
+     * Shuts down worker pool if it was created by this system.
+     */
+    @Override
+    public void dispose() {
+        if (ownExecutor && executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Region entities and entities found outside of region during processing.
+     */
+    private final class Region implements Callable<Void> {
+        private final int index;
+        private final List<Entity> entities = new ArrayList<Entity>();
+        private final List<Entity> view = Collections.unmodifiableList(entities);
+        private final List<Entity> moved = new ArrayList<Entity>();
+
+        private Region(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Void call() {
+            processRegion(index, view);
+            for (int i = 0; i < entities.size(); i++) {
+                Entity e = entities.get(i);
+                if ((pendingRemovals.isEmpty() || !pendingRemovals.contains(e)) && locator.getRegion(e) != index) {
+                    moved.add(e);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Position of entity in region list.
+     */
+    private static final class Slot {
+        private final Region region;
+        private int index;
+
+        private Slot(final Region region, final int index) {
+            this.region = region;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Factory creating daemon worker threads.
+     */
+    private static final class WorkerFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(final Runnable r) {
+            Thread thread = new Thread(r, "region-worker");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
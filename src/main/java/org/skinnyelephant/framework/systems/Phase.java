@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+/**
+ * <p>Processing phases of {@link org.skinnyelephant.framework.core.Core}, processed in declaration order.</p>
+ * <p>Every phase can have its own processing period, see {@link org.skinnyelephant.framework.core.Core#setPhasePeriod(Phase, float)}.</p>
+ */
+public enum Phase {
+    /**
+     * Phase for processing input.
+     */
+    INPUT,
+    /**
+     * Phase for simulation, default phase of systems.
+     */
+    SIMULATE,
+    /**
+     * Phase for systems depending on results of simulation.
+     */
+    LATE,
+    /**
+     * Phase for exporting world state, rendering, replication etc.
+     */
+    EXPORT
+}
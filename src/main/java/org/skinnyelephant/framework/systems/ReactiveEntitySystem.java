@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+import com.google.common.collect.ImmutableSet;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Entity system processing only entities which changed since its previous processing.</p>
+ * <p>Entities which were added to system or had one of system components modified with
+ * {@link Entity#modifyComponent(Class)} are passed to {@link #processEntity(Entity)},
+ * entities which left system are passed to {@link #processRemovedEntity(Entity)}.
+ * Entity added and removed between two runs is not reported at all.</p>
+ * <p>{@link #processEntities(ImmutableSet)} ignores entities passed by {@link org.skinnyelephant.framework.core.Core}
+ * and calls {@link #processChanges()}, so processing cost depends only on number of changes.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public abstract class ReactiveEntitySystem extends EntitySystem {
+    /**
+     * Entities added since last run.
+     */
+    private final Set<Entity> added = new LinkedHashSet<Entity>();
+    /**
+     * Entities modified since last run.
+     */
+    private final Set<Entity> modified = new LinkedHashSet<Entity>();
+    /**
+     * Entities removed since last run.
+     */
+    private final Set<Entity> removed = new LinkedHashSet<Entity>();
+    /**
+     * Entities being processed, reused between runs.
+     */
+    private final List<Entity> batch = new ArrayList<Entity>();
+
+    /**
+     * Constructor for creating reactive entity system.
+     */
+    public ReactiveEntitySystem() {
+        super();
+    }
+
+    /**
+     * Constructor for creating periodic or not reactive entity system.
+     *
+     * @param periodic flag indicating if system is periodic.
+     * @param period   system processing period.
+     */
+    public ReactiveEntitySystem(boolean periodic, float period) {
+        super(periodic, period);
+    }
+
+    @Override
+    public final boolean isTrackingChanges() {
+        return true;
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+        removed.remove(entity);
+        added.add(entity);
+    }
+
+    @Override
+    public void entityRemoved(final Entity entity) {
+        modified.remove(entity);
+        if (!added.remove(entity)) {
+            removed.add(entity);
+        }
+    }
+
+    @Override
+    public void entityModified(final Entity entity, final Object component) {
+        if (!added.contains(entity)) {
+            modified.add(entity);
+        }
+    }
+
+    /**
+     * <p>Processes entities changed since previous run.</p>
+     * <p>Removed entities are processed first, then added and modified ones.
+     * Changes made during processing are reported in the next run.</p>
+     */
+    public void processChanges() {
+        if (!removed.isEmpty()) {
+            batch.addAll(removed);
+            removed.clear();
+            for (int i = 0; i < batch.size(); i++) {
+                processRemovedEntity(batch.get(i));
+            }
+            batch.clear();
+        }
+        if (!added.isEmpty() || !modified.isEmpty()) {
+            batch.addAll(added);
+            batch.addAll(modified);
+            added.clear();
+            modified.clear();
+            for (int i = 0; i < batch.size(); i++) {
+                processEntity(batch.get(i));
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Processes only entities changed since previous run, given set is not used.
+     *
+     * @param entities set of entities of this system.
+     */
+    @Override
+    public void processEntities(final ImmutableSet<Entity> entities) {
+        processChanges();
+    }
+
+    /**
+     * Method for processing entity which no longer belongs to this system.
+     *
+     * @param entity removed entity.
+     */
+    protected void processRemovedEntity(final Entity entity) {
+    }
+
+    /**
+     * Returns number of changes waiting to be processed.
+     *
+     * @return number of added, modified and removed entities.
+     */
+    public final int getPendingChanges() {
+        return added.size() + modified.size() + removed.size();
+    }
+}
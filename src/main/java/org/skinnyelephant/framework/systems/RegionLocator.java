@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+import org.skinnyelephant.framework.core.Entity;
+
+/**
+ * Maps entity to spatial region used by {@link PartitionedEntitySystem}.
+ */
+public interface RegionLocator {
+    /**
+     * Returns region entity belongs to, usually computed from its position component.
+     * Method is called from worker threads and should only read entity state.
+     *
+     * @param entity entity.
+     * @return region index from 0 to region count - 1.
+     */
+    int getRegion(Entity entity);
+}
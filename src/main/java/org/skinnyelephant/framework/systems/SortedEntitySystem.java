@@ -0,0 +1,341 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+import com.google.common.collect.ImmutableSet;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Entity system processing its entities ordered by sort key, for example render layer or priority.</p>
+ * <p>Order is kept incrementally instead of sorting every tick. New entities are inserted at position found with binary
+ * search, entities whose components were requested with {@link Entity#modifyComponent(Class)} get their key recomputed
+ * and are moved to new position by shifting only entities between old and new position.
+ * Entities with equal keys keep order in which they got their key.</p>
+ * <p>Key changes written without {@link Entity#modifyComponent(Class)} have to be reported with {@link #resort(Entity)}.
+ * Changes made while system is processing are applied after processing is finished.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public abstract class SortedEntitySystem extends EntitySystem {
+    /**
+     * Entities ordered by key.
+     */
+    private Entity[] entities = new Entity[16];
+    /**
+     * Keys of entities in the same order.
+     */
+    private double[] keys = new double[16];
+    /**
+     * Number of entities.
+     */
+    private int size;
+    /**
+     * Current key of each entity.
+     */
+    private final Map<Entity, Double> sortKeys = new HashMap<Entity, Double>();
+    /**
+     * Entities which key should be recomputed.
+     */
+    private final Set<Entity> dirty = new LinkedHashSet<Entity>();
+    /**
+     * Entities added during processing.
+     */
+    private final Set<Entity> pendingAdditions = new LinkedHashSet<Entity>();
+    /**
+     * Entities removed during processing.
+     */
+    private final Set<Entity> pendingRemovals = new LinkedHashSet<Entity>();
+    /**
+     * Flag indicating if system is currently processing entities.
+     */
+    private boolean processing;
+
+    /**
+     * Constructor for creating sorted entity system.
+     */
+    public SortedEntitySystem() {
+        super();
+    }
+
+    /**
+     * Constructor for creating periodic or not sorted entity system.
+     *
+     * @param periodic flag indicating if system is periodic.
+     * @param period   system processing period.
+     */
+    public SortedEntitySystem(boolean periodic, float period) {
+        super(periodic, period);
+    }
+
+    /**
+     * Method computing sort key of entity, usually from one of its components.
+     *
+     * @param entity entity of this system.
+     * @return sort key, entities are processed in ascending key order.
+     */
+    protected abstract double getSortKey(Entity entity);
+
+    @Override
+    public boolean isTrackingChanges() {
+        return true;
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+        if (processing) {
+            pendingRemovals.remove(entity);
+            pendingAdditions.add(entity);
+        } else {
+            insert(entity);
+        }
+    }
+
+    @Override
+    public void entityRemoved(final Entity entity) {
+        if (processing) {
+            pendingAdditions.remove(entity);
+            pendingRemovals.add(entity);
+        } else {
+            remove(entity);
+        }
+    }
+
+    @Override
+    public void entityModified(final Entity entity, final Object component) {
+        if (sortKeys.containsKey(entity)) {
+            dirty.add(entity);
+        }
+    }
+
+    /**
+     * Requests recomputing sort key of entity before next processing.
+     *
+     * @param entity entity of this system.
+     */
+    public final void resort(final Entity entity) {
+        if (sortKeys.containsKey(entity)) {
+            dirty.add(entity);
+        }
+    }
+
+    /**
+     * <p>Passes entities to {@link #processEntity(Entity)} in ascending key order.</p>
+     * <p>Given set is not used, entities are taken from ordered view maintained by this system.</p>
+     *
+     * @param entities set of entities of this system.
+     */
+    @Override
+    public void processEntities(final ImmutableSet<Entity> entities) {
+        applyChanges();
+        processing = true;
+        try {
+            for (int i = 0; i < size; i++) {
+                processEntity(this.entities[i]);
+            }
+        } finally {
+            processing = false;
+        }
+        applyChanges();
+    }
+
+    /**
+     * Getter for number of entities in this system.
+     *
+     * @return number of entities.
+     */
+    public final int getEntityCount() {
+        return size;
+    }
+
+    /**
+     * Returns entity at given position of ordered view, pending key changes are applied first.
+     *
+     * @param index position from 0 to {@link #getEntityCount()} - 1.
+     * @return entity.
+     */
+    public final Entity getEntity(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+        }
+        if (!processing) {
+            applyChanges();
+        }
+        return entities[index];
+    }
+
+    /**
+     * Applies membership and key changes.
+     */
+    private void applyChanges() {
+        if (!pendingRemovals.isEmpty()) {
+            for (Entity e : pendingRemovals) {
+                remove(e);
+            }
+            pendingRemovals.clear();
+        }
+        if (!pendingAdditions.isEmpty()) {
+            for (Entity e : pendingAdditions) {
+                insert(e);
+            }
+            pendingAdditions.clear();
+        }
+        if (!dirty.isEmpty()) {
+            for (Entity e : dirty) {
+                move(e);
+            }
+            dirty.clear();
+        }
+    }
+
+    /**
+     * Inserts entity after all entities with lower or equal key.
+     *
+     * @param entity entity.
+     */
+    private void insert(final Entity entity) {
+        if (sortKeys.containsKey(entity)) {
+            move(entity);
+            return;
+        }
+        double key = key(entity);
+        int position = upperBound(key);
+        if (size == entities.length) {
+            entities = Arrays.copyOf(entities, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        System.arraycopy(entities, position, entities, position + 1, size - position);
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        entities[position] = entity;
+        keys[position] = key;
+        size++;
+        sortKeys.put(entity, key);
+    }
+
+    /**
+     * Removes entity from ordered view.
+     *
+     * @param entity entity.
+     */
+    private void remove(final Entity entity) {
+        dirty.remove(entity);
+        if (!sortKeys.containsKey(entity)) {
+            return;
+        }
+        int position = indexOf(entity);
+        System.arraycopy(entities, position + 1, entities, position, size - position - 1);
+        System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+        size--;
+        entities[size] = null;
+        sortKeys.remove(entity);
+    }
+
+    /**
+     * Moves entity to position of its current key, shifting only entities between old and new position.
+     *
+     * @param entity entity.
+     */
+    private void move(final Entity entity) {
+        Double oldKey = sortKeys.get(entity);
+        if (oldKey == null) {
+            return;
+        }
+        double key = key(entity);
+        if (key == oldKey) {
+            return;
+        }
+        int from = indexOf(entity);
+        int to;
+        if (key > oldKey) {
+            to = upperBound(key) - 1;
+            System.arraycopy(entities, from + 1, entities, from, to - from);
+            System.arraycopy(keys, from + 1, keys, from, to - from);
+        } else {
+            to = upperBound(key);
+            System.arraycopy(entities, to, entities, to + 1, from - to);
+            System.arraycopy(keys, to, keys, to + 1, from - to);
+        }
+        entities[to] = entity;
+        keys[to] = key;
+        sortKeys.put(entity, key);
+    }
+
+    /**
+     * Returns current position of entity.
+     *
+     * @param entity entity in ordered view.
+     * @return position.
+     */
+    private int indexOf(final Entity entity) {
+        double key = sortKeys.get(entity);
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < size && keys[i] == key; i++) {
+            if (entities[i] == entity) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Entity is missing from ordered view.");
+    }
+
+    /**
+     * Returns number of entities with key lower or equal to given key.
+     *
+     * @param key key.
+     * @return position after last entity with lower or equal key.
+     */
+    private int upperBound(final double key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Computes and validates sort key of entity.
+     *
+     * @param entity entity.
+     * @return sort key.
+     */
+    private double key(final Entity entity) {
+        double key = getSortKey(entity);
+        if (Double.isNaN(key)) {
+            throw new IllegalArgumentException("Sort key cannot be NaN.");
+        }
+        return key;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Named group of {@link EntitySystem}s which can be enabled or disabled together.</p>
+ * <p>Disabled systems are not processed, but stay registered in {@link org.skinnyelephant.framework.core.Core}
+ * and their entities are kept up to date, so enabling group again does not require rebuilding anything.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public final class SystemGroup {
+    /**
+     * Group name.
+     */
+    private final String name;
+    /**
+     * Systems of this group.
+     */
+    private final List<EntitySystem> systems = new ArrayList<EntitySystem>();
+    /**
+     * Flag indicating if group is enabled.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Constructor for creating group.
+     *
+     * @param name group name.
+     */
+    public SystemGroup(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds system to this group, removing it from its previous group.
+     *
+     * @param system system to add.
+     * @return this group.
+     */
+    public SystemGroup add(final EntitySystem system) {
+        if (system.getGroup() != null) {
+            system.getGroup().remove(system);
+        }
+        systems.add(system);
+        system.setGroup(this);
+        return this;
+    }
+
+    /**
+     * Removes system from this group.
+     *
+     * @param system system to remove.
+     */
+    public void remove(final EntitySystem system) {
+        if (systems.remove(system)) {
+            system.setGroup(null);
+        }
+    }
+
+    /**
+     * Getter for group name.
+     *
+     * @return name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for systems of this group.
+     *
+     * @return unmodifiable list of systems.
+     */
+    public List<EntitySystem> getSystems() {
+        return Collections.unmodifiableList(systems);
+    }
+
+    /**
+     * Getter for enabled flag.
+     *
+     * @return true if group is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables all systems of this group.
+     *
+     * @param enabled flag.
+     */
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+import com.google.common.collect.ImmutableSet;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Entity system processing only part of its entities in each tick.</p>
+ * <p>Each call to {@link #processEntities(ImmutableSet)} processes entities until entity or time budget is used up
+ * and next call resumes from the same place, cycling round-robin through system entities.
+ * Pass is completed when the end of entity set is reached, number of ticks pass took is reported to
+ * {@link #passCompleted(int)} and available through {@link #getLastPassTicks()}.</p>
+ * <p>Entities are kept in order they were added, entities added during pass are processed in the same pass and
+ * entities removed during pass do not cause other entities to be skipped or processed twice.</p>
+ * <p>At least one entity is processed in every tick, so system always makes progress.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public abstract class TimeSlicedEntitySystem extends EntitySystem {
+    /**
+     * Maximum number of entities processed in single tick, 0 if not limited.
+     */
+    private final int entityBudget;
+    /**
+     * Maximum time spent processing entities in single tick in nanoseconds, 0 if not limited.
+     */
+    private final long timeBudget;
+    /**
+     * Entities of this system, entities before cursor have been processed in current pass.
+     */
+    private final List<Entity> order = new ArrayList<Entity>();
+    /**
+     * Position of each entity in order.
+     */
+    private final Map<Entity, Integer> positions = new HashMap<Entity, Integer>();
+    /**
+     * Position of next entity to process.
+     */
+    private int cursor;
+    /**
+     * Ticks spent in current pass.
+     */
+    private int passTicks;
+    /**
+     * Ticks spent in last completed pass.
+     */
+    private int lastPassTicks;
+    /**
+     * Number of completed passes.
+     */
+    private long completedPasses;
+
+    /**
+     * Constructor for creating time sliced entity system.
+     *
+     * @param entityBudget maximum number of entities processed in single tick, 0 if not limited.
+     * @param timeBudget   maximum time spent processing entities in single tick in milliseconds, 0 if not limited.
+     */
+    public TimeSlicedEntitySystem(int entityBudget, float timeBudget) {
+        this(false, 0, entityBudget, timeBudget);
+    }
+
+    /**
+     * Constructor for creating periodic or not time sliced entity system.
+     *
+     * @param periodic     flag indicating if system is periodic.
+     * @param period       system processing period.
+     * @param entityBudget maximum number of entities processed in single tick, 0 if not limited.
+     * @param timeBudget   maximum time spent processing entities in single tick in milliseconds, 0 if not limited.
+     */
+    public TimeSlicedEntitySystem(boolean periodic, float period, int entityBudget, float timeBudget) {
+        super(false, periodic, period);
+        if (entityBudget < 0 || timeBudget < 0) {
+            throw new IllegalArgumentException("Budget cannot be negative.");
+        }
+        this.entityBudget = entityBudget;
+        this.timeBudget = (long) (timeBudget * 1000000L);
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+        if (!positions.containsKey(entity)) {
+            positions.put(entity, order.size());
+            order.add(entity);
+        }
+    }
+
+    /**
+     * Removes entity by moving last entity in its place. If removed entity was already processed in current pass,
+     * last processed entity takes its place first, so unprocessed entities stay after cursor.
+     *
+     * @param entity removed entity.
+     */
+    @Override
+    public void entityRemoved(final Entity entity) {
+        Integer position = positions.remove(entity);
+        if (position == null) {
+            return;
+        }
+        int index = position;
+        if (index < cursor) {
+            cursor--;
+            move(cursor, index);
+            index = cursor;
+        }
+        move(order.size() - 1, index);
+        order.remove(order.size() - 1);
+    }
+
+    /**
+     * Moves entity between positions of order, entity previously at target position is overwritten.
+     *
+     * @param from source position.
+     * @param to   target position.
+     */
+    private void move(final int from, final int to) {
+        if (from != to) {
+            Entity e = order.get(from);
+            order.set(to, e);
+            positions.put(e, to);
+        }
+    }
+
+    /**
+     * <p>Processes entities from position where previous tick stopped.</p>
+     * <p>Given set is not used, entities are taken from order maintained by this system.</p>
+     *
+     * @param entities set of entities of this system.
+     */
+    @Override
+    public void processEntities(final ImmutableSet<Entity> entities) {
+        passTicks++;
+        if (cursor >= order.size()) {
+            completePass();
+            return;
+        }
+        final long start = timeBudget > 0 ? System.nanoTime() : 0;
+        int processed = 0;
+        while (cursor < order.size()) {
+            processEntity(order.get(cursor++));
+            processed++;
+            if (entityBudget > 0 && processed >= entityBudget) {
+                break;
+            }
+            if (timeBudget > 0 && System.nanoTime() - start >= timeBudget) {
+                break;
+            }
+        }
+        if (cursor >= order.size()) {
+            completePass();
+        }
+    }
+
+    /**
+     * Resets cursor and pass statistics after reaching the end of entity set.
+     */
+    private void completePass() {
+        lastPassTicks = passTicks;
+        passTicks = 0;
+        cursor = 0;
+        completedPasses++;
+        passCompleted(lastPassTicks);
+    }
+
+    /**
+     * Method called each time full pass through system entities is completed.
+     *
+     * @param ticks number of ticks pass took.
+     */
+    protected void passCompleted(int ticks) {
+    }
+
+    /**
+     * Getter for number of ticks last completed pass took.
+     *
+     * @return ticks of last pass or 0 if no pass has been completed.
+     */
+    public final int getLastPassTicks() {
+        return lastPassTicks;
+    }
+
+    /**
+     * Getter for number of completed passes.
+     *
+     * @return completed passes.
+     */
+    public final long getCompletedPasses() {
+        return completedPasses;
+    }
+
+    /**
+     * Getter for entity budget.
+     *
+     * @return maximum number of entities processed in single tick, 0 if not limited.
+     */
+    public final int getEntityBudget() {
+        return entityBudget;
+    }
+}
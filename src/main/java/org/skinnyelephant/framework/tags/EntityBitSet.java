@@ -0,0 +1,304 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tags;
+
+import java.util.Arrays;
+
+/**
+ * <p>Sparse bit set indexed by entity ID.</p>
+ * <p>Bits are stored in chunks of {@value #CHUNK_BITS} bits, chunks without set bits are not allocated, so memory grows
+ * only with chunks containing set bits. Set operations skip missing chunks.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public final class EntityBitSet {
+    /**
+     * Number of bits in chunk.
+     */
+    public static final int CHUNK_BITS = 4096;
+    /**
+     * Number of words in chunk.
+     */
+    private static final int CHUNK_WORDS = CHUNK_BITS / 64;
+    /**
+     * Shift for getting chunk of bit.
+     */
+    private static final int CHUNK_SHIFT = 12;
+    /**
+     * Chunks of bits, null for chunks without set bits.
+     */
+    private long[][] chunks;
+    /**
+     * Number of set bits in each chunk.
+     */
+    private int[] counts;
+    /**
+     * Number of set bits.
+     */
+    private int cardinality;
+
+    /**
+     * Constructor for creating empty bit set.
+     */
+    public EntityBitSet() {
+        this.chunks = new long[1][];
+        this.counts = new int[1];
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param source bit set to copy.
+     */
+    public EntityBitSet(final EntityBitSet source) {
+        this.chunks = new long[source.chunks.length][];
+        for (int i = 0; i < chunks.length; i++) {
+            if (source.chunks[i] != null) {
+                chunks[i] = source.chunks[i].clone();
+            }
+        }
+        this.counts = source.counts.clone();
+        this.cardinality = source.cardinality;
+    }
+
+    /**
+     * Sets bit.
+     *
+     * @param id entity ID.
+     * @return true if bit was not set before.
+     */
+    public boolean set(final int id) {
+        int chunk = chunkOf(id);
+        if (chunk >= chunks.length) {
+            int length = Math.max(chunk + 1, chunks.length * 2);
+            chunks = Arrays.copyOf(chunks, length);
+            counts = Arrays.copyOf(counts, length);
+        }
+        long[] words = chunks[chunk];
+        if (words == null) {
+            words = new long[CHUNK_WORDS];
+            chunks[chunk] = words;
+        }
+        int word = (id >>> 6) & (CHUNK_WORDS - 1);
+        long bit = 1L << id;
+        if ((words[word] & bit) != 0) {
+            return false;
+        }
+        words[word] |= bit;
+        counts[chunk]++;
+        cardinality++;
+        return true;
+    }
+
+    /**
+     * Clears bit.
+     *
+     * @param id entity ID.
+     * @return true if bit was set before.
+     */
+    public boolean clear(final int id) {
+        int chunk = chunkOf(id);
+        if (chunk >= chunks.length || chunks[chunk] == null) {
+            return false;
+        }
+        long[] words = chunks[chunk];
+        int word = (id >>> 6) & (CHUNK_WORDS - 1);
+        long bit = 1L << id;
+        if ((words[word] & bit) == 0) {
+            return false;
+        }
+        words[word] &= ~bit;
+        cardinality--;
+        if (--counts[chunk] == 0) {
+            chunks[chunk] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if bit is set.
+     *
+     * @param id entity ID.
+     * @return true if bit is set.
+     */
+    public boolean get(final int id) {
+        int chunk = chunkOf(id);
+        if (chunk >= chunks.length || chunks[chunk] == null) {
+            return false;
+        }
+        return (chunks[chunk][(id >>> 6) & (CHUNK_WORDS - 1)] & (1L << id)) != 0;
+    }
+
+    /**
+     * Returns first set bit starting from given ID.
+     *
+     * @param from first ID to check.
+     * @return ID of set bit or -1 if there is none.
+     */
+    public int nextSetBit(final int from) {
+        if (from < 0) {
+            throw new IndexOutOfBoundsException("Index cannot be negative: " + from);
+        }
+        int chunk = from >>> CHUNK_SHIFT;
+        int word = (from >>> 6) & (CHUNK_WORDS - 1);
+        long mask = -1L << from;
+        for (; chunk < chunks.length; chunk++, word = 0, mask = -1L) {
+            long[] words = chunks[chunk];
+            if (words == null) {
+                continue;
+            }
+            for (; word < CHUNK_WORDS; word++, mask = -1L) {
+                long value = words[word] & mask;
+                if (value != 0) {
+                    return (chunk << CHUNK_SHIFT) + (word << 6) + Long.numberOfTrailingZeros(value);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Keeps only bits also set in other set.
+     *
+     * @param other other set.
+     * @return this set.
+     */
+    public EntityBitSet and(final EntityBitSet other) {
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            long[] words = chunks[chunk];
+            if (words == null) {
+                continue;
+            }
+            long[] others = chunk < other.chunks.length ? other.chunks[chunk] : null;
+            if (others == null) {
+                removeChunk(chunk);
+            } else {
+                for (int i = 0; i < CHUNK_WORDS; i++) {
+                    words[i] &= others[i];
+                }
+                recount(chunk);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds bits set in other set.
+     *
+     * @param other other set.
+     * @return this set.
+     */
+    public EntityBitSet or(final EntityBitSet other) {
+        if (other.chunks.length > chunks.length) {
+            chunks = Arrays.copyOf(chunks, other.chunks.length);
+            counts = Arrays.copyOf(counts, other.chunks.length);
+        }
+        for (int chunk = 0; chunk < other.chunks.length; chunk++) {
+            long[] others = other.chunks[chunk];
+            if (others == null) {
+                continue;
+            }
+            long[] words = chunks[chunk];
+            if (words == null) {
+                chunks[chunk] = others.clone();
+                counts[chunk] = other.counts[chunk];
+                cardinality += counts[chunk];
+            } else {
+                for (int i = 0; i < CHUNK_WORDS; i++) {
+                    words[i] |= others[i];
+                }
+                recount(chunk);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Clears bits set in other set.
+     *
+     * @param other other set.
+     * @return this set.
+     */
+    public EntityBitSet andNot(final EntityBitSet other) {
+        int length = Math.min(chunks.length, other.chunks.length);
+        for (int chunk = 0; chunk < length; chunk++) {
+            long[] words = chunks[chunk];
+            long[] others = other.chunks[chunk];
+            if (words == null || others == null) {
+                continue;
+            }
+            for (int i = 0; i < CHUNK_WORDS; i++) {
+                words[i] &= ~others[i];
+            }
+            recount(chunk);
+        }
+        return this;
+    }
+
+    /**
+     * Getter for number of set bits.
+     *
+     * @return number of set bits.
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Checks if no bits are set.
+     *
+     * @return true if set is empty.
+     */
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Updates bit count of chunk after bulk operation.
+     */
+    private void recount(final int chunk) {
+        long[] words = chunks[chunk];
+        int count = 0;
+        for (int i = 0; i < CHUNK_WORDS; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        cardinality += count - counts[chunk];
+        counts[chunk] = count;
+        if (count == 0) {
+            chunks[chunk] = null;
+        }
+    }
+
+    /**
+     * Drops whole chunk.
+     */
+    private void removeChunk(final int chunk) {
+        cardinality -= counts[chunk];
+        counts[chunk] = 0;
+        chunks[chunk] = null;
+    }
+
+    /**
+     * Returns chunk of ID.
+     */
+    private static int chunkOf(final int id) {
+        if (id < 0) {
+            throw new IndexOutOfBoundsException("Index cannot be negative: " + id);
+        }
+        return id >>> CHUNK_SHIFT;
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tags;
+
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.EntityListener;
+import org.skinnyelephant.framework.core.Manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Manager for many to many tags of entities, for example "enemy", "team-red" or "selected".</p>
+ * <p>Tag names are interned to int IDs, membership of every tag is stored in {@link EntityBitSet} indexed by entity ID.
+ * Unlike marker components, tagging does not change entity component bitmap, so system caches are not updated.
+ * Tags of removed entities are cleared automatically.</p>
+ * <p>To add manager to core call {@code core.addManager(new TagManager(core))}.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class TagManager implements Manager, EntityListener {
+    /**
+     * Flag if manager is initialized.
+     */
+    private boolean initialized;
+    /**
+     * Core which entities are tagged.
+     */
+    private final Core core;
+    /**
+     * Tag IDs by name.
+     */
+    private final Map<String, Integer> tagIds = new HashMap<String, Integer>();
+    /**
+     * Tag names by ID.
+     */
+    private final List<String> tagNames = new ArrayList<String>();
+    /**
+     * Members of tags by tag ID.
+     */
+    private final List<EntityBitSet> members = new ArrayList<EntityBitSet>();
+
+    /**
+     * Constructor for creating tag manager.
+     *
+     * @param core core which entities are tagged.
+     */
+    public TagManager(final Core core) {
+        this.core = core;
+    }
+
+    @Override
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Manager already initialized");
+        }
+        initialized = true;
+        core.getEntityManager().addEntityListener(this);
+    }
+
+    /**
+     * Returns ID of tag, registering tag if needed.
+     *
+     * @param tag tag name.
+     * @return tag ID.
+     */
+    public int getTagId(final String tag) {
+        Integer id = tagIds.get(tag);
+        if (id == null) {
+            if (tag == null) {
+                throw new NullPointerException("Tag cannot be null.");
+            }
+            id = tagNames.size();
+            tagIds.put(tag, id);
+            tagNames.add(tag);
+            members.add(new EntityBitSet());
+        }
+        return id;
+    }
+
+    /**
+     * Returns name of tag.
+     *
+     * @param tagId tag ID.
+     * @return tag name.
+     */
+    public String getTagName(final int tagId) {
+        return tagNames.get(tagId);
+    }
+
+    /**
+     * Adds tag to entity.
+     *
+     * @param entity entity.
+     * @param tag    tag name.
+     * @return true if entity did not have tag before.
+     */
+    public boolean addTag(final Entity entity, final String tag) {
+        return addTag(entity, getTagId(tag));
+    }
+
+    /**
+     * Adds tag to entity.
+     *
+     * @param entity entity.
+     * @param tagId  tag ID.
+     * @return true if entity did not have tag before.
+     */
+    public boolean addTag(final Entity entity, final int tagId) {
+        if (!initialized) {
+            throw new IllegalStateException("Manager not initialized");
+        }
+        return members.get(tagId).set(slot(entity));
+    }
+
+    /**
+     * Removes tag from entity.
+     *
+     * @param entity entity.
+     * @param tag    tag name.
+     * @return true if entity had tag.
+     */
+    public boolean removeTag(final Entity entity, final String tag) {
+        Integer id = tagIds.get(tag);
+        return id != null && removeTag(entity, id);
+    }
+
+    /**
+     * Removes tag from entity.
+     *
+     * @param entity entity.
+     * @param tagId  tag ID.
+     * @return true if entity had tag.
+     */
+    public boolean removeTag(final Entity entity, final int tagId) {
+        return members.get(tagId).clear(slot(entity));
+    }
+
+    /**
+     * Checks if entity has tag.
+     *
+     * @param entity entity.
+     * @param tag    tag name.
+     * @return true if entity has tag.
+     */
+    public boolean hasTag(final Entity entity, final String tag) {
+        Integer id = tagIds.get(tag);
+        return id != null && hasTag(entity, id);
+    }
+
+    /**
+     * Checks if entity has tag.
+     *
+     * @param entity entity.
+     * @param tagId  tag ID.
+     * @return true if entity has tag.
+     */
+    public boolean hasTag(final Entity entity, final int tagId) {
+        return members.get(tagId).get(slot(entity));
+    }
+
+    /**
+     * Removes all tags from entity.
+     *
+     * @param entity entity.
+     */
+    public void removeTags(final Entity entity) {
+        int slot = slot(entity);
+        for (int i = 0; i < members.size(); i++) {
+            members.get(i).clear(slot);
+        }
+    }
+
+    /**
+     * Returns copy of members of tag.
+     *
+     * @param tag tag name.
+     * @return IDs of entities with tag.
+     */
+    public EntityBitSet getTagged(final String tag) {
+        Integer id = tagIds.get(tag);
+        return id == null ? new EntityBitSet() : new EntityBitSet(members.get(id));
+    }
+
+    /**
+     * Returns entities having all given tags.
+     *
+     * @param tags tag names.
+     * @return IDs of entities.
+     */
+    public EntityBitSet and(final String... tags) {
+        if (tags.length == 0) {
+            return new EntityBitSet();
+        }
+        EntityBitSet result = getTagged(tags[0]);
+        for (int i = 1; i < tags.length && !result.isEmpty(); i++) {
+            Integer id = tagIds.get(tags[i]);
+            if (id == null) {
+                return new EntityBitSet();
+            }
+            result.and(members.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Returns entities having any of given tags.
+     *
+     * @param tags tag names.
+     * @return IDs of entities.
+     */
+    public EntityBitSet or(final String... tags) {
+        EntityBitSet result = new EntityBitSet();
+        for (String tag : tags) {
+            Integer id = tagIds.get(tag);
+            if (id != null) {
+                result.or(members.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns entities having tag but none of excluded tags.
+     *
+     * @param tag      tag name.
+     * @param excluded excluded tag names.
+     * @return IDs of entities.
+     */
+    public EntityBitSet andNot(final String tag, final String... excluded) {
+        EntityBitSet result = getTagged(tag);
+        for (int i = 0; i < excluded.length && !result.isEmpty(); i++) {
+            Integer id = tagIds.get(excluded[i]);
+            if (id != null) {
+                result.andNot(members.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns number of entities with tag.
+     *
+     * @param tag tag name.
+     * @return number of entities.
+     */
+    public int count(final String tag) {
+        Integer id = tagIds.get(tag);
+        return id == null ? 0 : members.get(id).cardinality();
+    }
+
+    @Override
+    public void entityAdded(final Entity entity) {
+    }
+
+    @Override
+    public void entityRemoved(final Entity entity) {
+        removeTags(entity);
+    }
+
+    @Override
+    public void componentAdded(final Entity entity, final Object component) {
+    }
+
+    @Override
+    public void componentRemoved(final Entity entity, final Object component) {
+    }
+
+    @Override
+    public void componentModified(final Entity entity, final Object component) {
+    }
+
+    @Override
+    public void dispose() {
+        core.getEntityManager().removeEntityListener(this);
+        tagIds.clear();
+        tagNames.clear();
+        members.clear();
+    }
+
+    /**
+     * Returns bit index of entity.
+     */
+    private static int slot(final Entity entity) {
+        long id = entity.getEntityId();
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Entity ID " + id + " cannot be tagged.");
+        }
+        return (int) id;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tick;
+
+/**
+ * Source of time used by {@link TickDriver}, can be replaced with {@link VirtualClock} in tests and benchmarks.
+ */
+public interface Clock {
+    /**
+     * Returns current time in nanoseconds, only difference between two values is meaningful.
+     *
+     * @return current time in nanoseconds.
+     */
+    long nanoTime();
+
+    /**
+     * Waits for given amount of time.
+     *
+     * @param nanos time to wait in nanoseconds.
+     * @throws InterruptedException if waiting thread is interrupted.
+     */
+    void sleep(long nanos) throws InterruptedException;
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tick;
+
+import org.skinnyelephant.framework.core.Core;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>World scheduled by {@link WorldHost}, holds its tick rate, next deadline and timing statistics.</p>
+ * <p>Statistics are written by the worker processing the world and can be read from any thread.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public final class HostedWorld {
+    /**
+     * Hosted core.
+     */
+    private final Core core;
+    /**
+     * Tick period in nanoseconds.
+     */
+    private final long period;
+    /**
+     * Delta passed to core in milliseconds.
+     */
+    private final float delta;
+    /**
+     * Guard against processing world by two threads at the same time.
+     */
+    private final AtomicBoolean processing = new AtomicBoolean();
+    /**
+     * Order in which world was added, used to break deadline ties.
+     */
+    final long sequence;
+    /**
+     * Time when next tick is due, in clock nanoseconds.
+     */
+    long deadline;
+    /**
+     * Flag indicating if world has been removed from host.
+     */
+    volatile boolean removed;
+    /**
+     * Exception which failed the world, null if world did not fail.
+     */
+    volatile Throwable failure;
+    /**
+     * Number of processed ticks.
+     */
+    private volatile long ticks;
+    /**
+     * Total time spent processing ticks in nanoseconds.
+     */
+    private volatile long totalTime;
+    /**
+     * Longest tick in nanoseconds.
+     */
+    private volatile long maxTime;
+    /**
+     * Number of ticks which took longer than tick period.
+     */
+    private volatile long overruns;
+    /**
+     * Number of ticks skipped because world fell too far behind.
+     */
+    private volatile long droppedTicks;
+    /**
+     * Delay between deadline and start of last tick in nanoseconds.
+     */
+    private volatile long lastLag;
+
+    /**
+     * Constructor for creating hosted world.
+     *
+     * @param core           hosted core.
+     * @param ticksPerSecond target tick rate.
+     * @param sequence       order in which world was added.
+     * @param deadline       time of first tick.
+     */
+    HostedWorld(final Core core, final float ticksPerSecond, final long sequence, final long deadline) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("Tick rate should be positive.");
+        }
+        this.core = core;
+        this.period = (long) (1000000000L / ticksPerSecond);
+        this.delta = period / 1000000f;
+        this.sequence = sequence;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Processes single tick of the world and schedules next one.
+     *
+     * @param clock           time source.
+     * @param maxCatchUpTicks maximum number of due ticks world may fall behind, older ticks are dropped.
+     * @throws IllegalStateException if world is already being processed by another thread.
+     */
+    void process(final Clock clock, final int maxCatchUpTicks) {
+        if (!processing.compareAndSet(false, true)) {
+            throw new IllegalStateException("World is already being processed.");
+        }
+        try {
+            long start = clock.nanoTime();
+            lastLag = start - deadline;
+            core.process(delta);
+            long duration = clock.nanoTime() - start;
+            ticks++;
+            totalTime += duration;
+            if (duration > maxTime) {
+                maxTime = duration;
+            }
+            if (duration > period) {
+                overruns++;
+            }
+            deadline += period;
+            long end = start + duration;
+            if (end >= deadline) {
+                long due = (end - deadline) / period + 1;
+                if (due > maxCatchUpTicks) {
+                    droppedTicks += due - maxCatchUpTicks;
+                    deadline += (due - maxCatchUpTicks) * period;
+                }
+            }
+        } finally {
+            processing.set(false);
+        }
+    }
+
+    /**
+     * Getter for exception thrown by core while processing tick, world is removed from host when it fails.
+     *
+     * @return exception or null if world did not fail.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Getter for hosted core.
+     *
+     * @return core.
+     */
+    public Core getCore() {
+        return core;
+    }
+
+    /**
+     * Getter for tick period.
+     *
+     * @return tick period in nanoseconds.
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Getter for number of processed ticks.
+     *
+     * @return processed ticks.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Getter for average tick duration.
+     *
+     * @return average tick duration in nanoseconds, 0 if no ticks were processed.
+     */
+    public long getAverageTickTime() {
+        long count = ticks;
+        return count == 0 ? 0 : totalTime / count;
+    }
+
+    /**
+     * Getter for longest tick duration.
+     *
+     * @return longest tick duration in nanoseconds.
+     */
+    public long getMaxTickTime() {
+        return maxTime;
+    }
+
+    /**
+     * Getter for number of ticks which took longer than tick period.
+     *
+     * @return overrun ticks.
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * Getter for number of ticks skipped because world fell too far behind.
+     *
+     * @return dropped ticks.
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Getter for delay between scheduled and actual start of last tick.
+     *
+     * @return lag in nanoseconds.
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    /**
+     * Getter for removed flag.
+     *
+     * @return true if world has been removed from host.
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+}
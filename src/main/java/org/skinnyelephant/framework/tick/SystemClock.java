@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tick;
+
+/**
+ * {@link Clock} backed by {@link System#nanoTime()}.
+ *
+ * @author Kristaps Kohs
+ */
+public final class SystemClock implements Clock {
+    /**
+     * Shared instance.
+     */
+    public static final SystemClock INSTANCE = new SystemClock();
+
+    private SystemClock() {
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void sleep(final long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            Thread.sleep(nanos / 1000000L, (int) (nanos % 1000000L));
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tick;
+
+import org.skinnyelephant.framework.core.Core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>Runs {@link Core} at fixed tick rate.</p>
+ * <p>Every tick calls {@link Core#process(float)} with fixed delta in milliseconds. If driver falls behind,
+ * missed ticks are processed back to back, but not more than {@link #getMaxCatchUpTicks()} at once,
+ * remaining ticks are dropped so driver does not spiral after long stall.
+ * Ticks taking longer than tick period are reported to {@link TickListener#tickOverrun(long, long, long)}.</p>
+ * <p>{@link #run()} blocks until {@link #stop()} is called, {@link #advance()} can be used to drive loop manually.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class TickDriver implements Runnable {
+    /**
+     * Driven core.
+     */
+    private final Core core;
+    /**
+     * Time source.
+     */
+    private final Clock clock;
+    /**
+     * Tick period in nanoseconds.
+     */
+    private final long period;
+    /**
+     * Delta passed to core in milliseconds.
+     */
+    private final float delta;
+    /**
+     * Registered listeners.
+     */
+    private final List<TickListener> listeners = new CopyOnWriteArrayList<TickListener>();
+    /**
+     * Maximum number of ticks processed back to back when catching up.
+     */
+    private int maxCatchUpTicks = 5;
+    /**
+     * Time when next tick is due, in clock nanoseconds.
+     */
+    private long nextTick;
+    /**
+     * Flag indicating if schedule has been started.
+     */
+    private boolean started;
+    /**
+     * Flag indicating if {@link #run()} loop should continue.
+     */
+    private volatile boolean running;
+    /**
+     * Number of processed ticks.
+     */
+    private volatile long tick;
+    /**
+     * Number of dropped ticks.
+     */
+    private volatile long droppedTicks;
+    /**
+     * Number of overrun ticks.
+     */
+    private volatile long overruns;
+
+    /**
+     * Constructor for creating driver using {@link SystemClock}.
+     *
+     * @param core          core to drive.
+     * @param ticksPerSecond tick rate.
+     */
+    public TickDriver(final Core core, final float ticksPerSecond) {
+        this(core, ticksPerSecond, SystemClock.INSTANCE);
+    }
+
+    /**
+     * Constructor for creating driver.
+     *
+     * @param core           core to drive.
+     * @param ticksPerSecond tick rate.
+     * @param clock          time source.
+     */
+    public TickDriver(final Core core, final float ticksPerSecond, final Clock clock) {
+        if (ticksPerSecond <= 0) {
+            throw new IllegalArgumentException("Tick rate should be positive.");
+        }
+        this.core = core;
+        this.clock = clock;
+        this.period = (long) (1000000000L / ticksPerSecond);
+        this.delta = period / 1000000f;
+    }
+
+    /**
+     * Runs tick loop on calling thread until {@link #stop()} is called or thread is interrupted.
+     */
+    @Override
+    public void run() {
+        running = true;
+        try {
+            while (running) {
+                long wait = advance();
+                if (wait > 0 && running) {
+                    clock.sleep(wait);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Stops loop started by {@link #run()} after current tick.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * <p>Processes all ticks that are due at current clock time, respecting catch up limit.</p>
+     * <p>First call starts schedule and processes first tick.</p>
+     *
+     * @return time in nanoseconds until next tick is due.
+     */
+    public long advance() {
+        long now = clock.nanoTime();
+        if (!started) {
+            started = true;
+            nextTick = now;
+        }
+        if (now < nextTick) {
+            return nextTick - now;
+        }
+        long due = (now - nextTick) / period + 1;
+        if (due > maxCatchUpTicks) {
+            long dropped = due - maxCatchUpTicks;
+            nextTick += dropped * period;
+            droppedTicks += dropped;
+            for (TickListener listener : listeners) {
+                listener.ticksDropped(dropped);
+            }
+            due = maxCatchUpTicks;
+        }
+        for (long i = 0; i < due; i++) {
+            processTick();
+            nextTick += period;
+        }
+        now = clock.nanoTime();
+        return nextTick > now ? nextTick - now : 0;
+    }
+
+    /**
+     * Processes single tick and measures its duration.
+     */
+    private void processTick() {
+        long start = clock.nanoTime();
+        core.process(delta);
+        long duration = clock.nanoTime() - start;
+        long current = tick++;
+        if (duration > period) {
+            overruns++;
+            for (TickListener listener : listeners) {
+                listener.tickOverrun(current, duration, period);
+            }
+        }
+        for (TickListener listener : listeners) {
+            listener.tickProcessed(current, duration);
+        }
+    }
+
+    /**
+     * Registers tick listener.
+     *
+     * @param listener listener.
+     */
+    public void addListener(final TickListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes tick listener.
+     *
+     * @param listener listener.
+     */
+    public void removeListener(final TickListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Getter for maximum number of ticks processed back to back when catching up.
+     *
+     * @return catch up limit.
+     */
+    public int getMaxCatchUpTicks() {
+        return maxCatchUpTicks;
+    }
+
+    /**
+     * Setter for maximum number of ticks processed back to back when catching up.
+     *
+     * @param maxCatchUpTicks catch up limit, at least 1.
+     */
+    public void setMaxCatchUpTicks(final int maxCatchUpTicks) {
+        if (maxCatchUpTicks < 1) {
+            throw new IllegalArgumentException("Catch up limit should be at least 1.");
+        }
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * Getter for tick period.
+     *
+     * @return tick period in nanoseconds.
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Getter for number of processed ticks.
+     *
+     * @return processed ticks.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Getter for number of dropped ticks.
+     *
+     * @return dropped ticks.
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Getter for number of ticks which took longer than tick period.
+     *
+     * @return overrun ticks.
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * Getter for running flag.
+     *
+     * @return true if {@link #run()} loop is running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tick;
+
+/**
+ * Listener notified by {@link TickDriver} about processed ticks and timing problems.
+ */
+public interface TickListener {
+    /**
+     * Called after tick has been processed.
+     *
+     * @param tick     tick number.
+     * @param duration time spent processing tick in nanoseconds.
+     */
+    void tickProcessed(long tick, long duration);
+
+    /**
+     * Called when processing of tick took longer than tick period.
+     *
+     * @param tick     tick number.
+     * @param duration time spent processing tick in nanoseconds.
+     * @param period   tick period in nanoseconds.
+     */
+    void tickOverrun(long tick, long duration, long period);
+
+    /**
+     * Called when driver fell behind more than allowed catch up and skipped ticks.
+     *
+     * @param count number of skipped ticks.
+     */
+    void ticksDropped(long count);
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tick;
+
+/**
+ * <p>Deterministic {@link Clock} which time moves only when it is advanced.</p>
+ * <p>Sleeping advances time by requested amount and returns immediately.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public final class VirtualClock implements Clock {
+    /**
+     * Current time in nanoseconds.
+     */
+    private volatile long time;
+
+    @Override
+    public long nanoTime() {
+        return time;
+    }
+
+    @Override
+    public void sleep(final long nanos) {
+        if (nanos > 0) {
+            advance(nanos);
+        }
+    }
+
+    /**
+     * Moves time forward.
+     *
+     * @param nanos time in nanoseconds.
+     */
+    public synchronized void advance(final long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Time cannot move backwards.");
+        }
+        time += nanos;
+    }
+}
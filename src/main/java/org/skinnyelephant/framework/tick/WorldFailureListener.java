@@ -0,0 +1,30 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tick;
+
+/**
+ * Listener notified by {@link WorldHost} when processing of hosted world fails.
+ */
+public interface WorldFailureListener {
+    /**
+     * Called after world failed and was removed from host. Called on thread which processed the world.
+     *
+     * @param world   failed world.
+     * @param failure exception thrown while processing tick.
+     */
+    void worldFailed(HostedWorld world, Throwable failure);
+}
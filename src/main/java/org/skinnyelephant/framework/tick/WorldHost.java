@@ -0,0 +1,334 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tick;
+
+import org.skinnyelephant.framework.core.Core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Runs many {@link Core} instances on shared pool of worker threads.</p>
+ * <p>Each world has its own tick rate. Worlds are processed in order of their next tick deadline, so world which
+ * is most behind is always processed first and no world is starved. World is kept in schedule at most once and
+ * taken out of it while processed, so it is never processed by two threads at the same time.</p>
+ * <p>Worker threads are started with {@link #start()}, alternatively {@link #processDue()} processes due worlds on
+ * calling thread, which together with {@link VirtualClock} gives deterministic scheduling.</p>
+ * <p>World which throws exception while processing tick is removed from host, exception is kept in
+ * {@link HostedWorld#getFailure()} and reported to {@link WorldFailureListener}. Other worlds and workers keep running.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class WorldHost {
+    /**
+     * Time source.
+     */
+    private final Clock clock;
+    /**
+     * Number of worker threads.
+     */
+    private final int threads;
+    /**
+     * Worlds ordered by next deadline.
+     */
+    private final PriorityQueue<HostedWorld> schedule = new PriorityQueue<HostedWorld>(16, new Comparator<HostedWorld>() {
+        @Override
+        public int compare(final HostedWorld o1, final HostedWorld o2) {
+            if (o1.deadline != o2.deadline) {
+                return o1.deadline < o2.deadline ? -1 : 1;
+            }
+            return o1.sequence < o2.sequence ? -1 : (o1.sequence == o2.sequence ? 0 : 1);
+        }
+    });
+    /**
+     * Lock guarding schedule.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Signalled when schedule changes.
+     */
+    private final Condition scheduleChanged = lock.newCondition();
+    /**
+     * Started worker threads.
+     */
+    private final List<Thread> workers = new ArrayList<Thread>();
+    /**
+     * Number of ticks world may fall behind before ticks are dropped.
+     */
+    private volatile int maxCatchUpTicks = 5;
+    /**
+     * Listener notified about failed worlds, null if not set.
+     */
+    private volatile WorldFailureListener failureListener;
+    /**
+     * Number of added worlds.
+     */
+    private long sequence;
+    /**
+     * Flag indicating if workers are running.
+     */
+    private volatile boolean running;
+
+    /**
+     * Constructor for creating host with one worker per available processor.
+     */
+    public WorldHost() {
+        this(Runtime.getRuntime().availableProcessors(), SystemClock.INSTANCE);
+    }
+
+    /**
+     * Constructor for creating host.
+     *
+     * @param threads number of worker threads.
+     * @param clock   time source.
+     */
+    public WorldHost(final int threads, final Clock clock) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Host needs at least one thread.");
+        }
+        this.threads = threads;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds world to host, its first tick is due immediately.
+     *
+     * @param core           initialized core.
+     * @param ticksPerSecond target tick rate of the world.
+     * @return hosted world handle with timing statistics.
+     */
+    public HostedWorld addWorld(final Core core, final float ticksPerSecond) {
+        lock.lock();
+        try {
+            HostedWorld world = new HostedWorld(core, ticksPerSecond, sequence++, clock.nanoTime());
+            schedule.add(world);
+            scheduleChanged.signal();
+            return world;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes world from host. Tick already in progress is completed, but no further ticks are processed.
+     *
+     * @param world world to remove.
+     */
+    public void removeWorld(final HostedWorld world) {
+        lock.lock();
+        try {
+            world.removed = true;
+            schedule.remove(world);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts worker threads.
+     *
+     * @throws IllegalStateException if host is already running.
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (running) {
+                throw new IllegalStateException("Host is already running.");
+            }
+            running = true;
+            for (int i = 0; i < threads; i++) {
+                Thread worker = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        work();
+                    }
+                }, "world-host-" + i);
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops worker threads and waits until they finish current ticks.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void shutdown() throws InterruptedException {
+        List<Thread> stopped;
+        lock.lock();
+        try {
+            running = false;
+            scheduleChanged.signalAll();
+            stopped = new ArrayList<Thread>(workers);
+            workers.clear();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread worker : stopped) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Processes on calling thread all worlds which are due at current clock time, one tick each.
+     *
+     * @return number of processed ticks.
+     */
+    public int processDue() {
+        long now = clock.nanoTime();
+        List<HostedWorld> due = new ArrayList<HostedWorld>();
+        lock.lock();
+        try {
+            while (!schedule.isEmpty() && schedule.peek().deadline <= now) {
+                due.add(schedule.poll());
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (HostedWorld world : due) {
+            process(world);
+        }
+        return due.size();
+    }
+
+    /**
+     * Worker loop, takes world with earliest deadline once it is due.
+     */
+    private void work() {
+        while (true) {
+            HostedWorld world;
+            lock.lock();
+            try {
+                while (true) {
+                    if (!running) {
+                        return;
+                    }
+                    world = schedule.peek();
+                    if (world == null) {
+                        scheduleChanged.await();
+                        continue;
+                    }
+                    long wait = world.deadline - clock.nanoTime();
+                    if (wait > 0) {
+                        scheduleChanged.awaitNanos(Math.min(wait, TimeUnit.MILLISECONDS.toNanos(10)));
+                        continue;
+                    }
+                    schedule.poll();
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            process(world);
+        }
+    }
+
+    /**
+     * Processes single tick of world taken from schedule and puts it back.
+     *
+     * @param world world to process.
+     */
+    private void process(final HostedWorld world) {
+        Throwable failure = null;
+        try {
+            world.process(clock, maxCatchUpTicks);
+        } catch (Throwable t) {
+            failure = t;
+        }
+        lock.lock();
+        try {
+            if (failure != null) {
+                world.failure = failure;
+                world.removed = true;
+            } else if (!world.removed) {
+                schedule.add(world);
+                scheduleChanged.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        WorldFailureListener listener = failureListener;
+        if (failure != null && listener != null) {
+            listener.worldFailed(world, failure);
+        }
+    }
+
+    /**
+     * Setter for listener notified when world fails.
+     *
+     * @param failureListener listener or null.
+     */
+    public void setFailureListener(final WorldFailureListener failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * Getter for number of ticks world may fall behind before ticks are dropped.
+     *
+     * @return catch up limit.
+     */
+    public int getMaxCatchUpTicks() {
+        return maxCatchUpTicks;
+    }
+
+    /**
+     * Setter for number of ticks world may fall behind before ticks are dropped.
+     *
+     * @param maxCatchUpTicks catch up limit, at least 1.
+     */
+    public void setMaxCatchUpTicks(final int maxCatchUpTicks) {
+        if (maxCatchUpTicks < 1) {
+            throw new IllegalArgumentException("Catch up limit should be at least 1.");
+        }
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * Getter for number of hosted worlds waiting in schedule.
+     *
+     * @return number of scheduled worlds.
+     */
+    public int getScheduledWorlds() {
+        lock.lock();
+        try {
+            return schedule.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for running flag.
+     *
+     * @return true if worker threads are running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+}
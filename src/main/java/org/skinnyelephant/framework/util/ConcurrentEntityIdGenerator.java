@@ -0,0 +1,105 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.util;
+
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Id generator which can be used from several threads.</p>
+ * <p>Ids are taken and released without locking. Free ids are kept in concurrent set, so specific free id is reserved
+ * in constant time, queue of free ids gives order of reuse and ids reserved while queued are skipped. Reserving id above
+ * all generated ids is done under lock, so ids it skips are free before other reservation can look for them.</p>
+ *
+ * @author Kristaps Kohs
+ */
+public class ConcurrentEntityIdGenerator implements EntityIdGenerator {
+    /**
+     * Already generated but not used ids.
+     */
+    private final Set<Long> freeIds;
+    /**
+     * Free ids in order of reuse, may contain ids which have been reserved since.
+     */
+    private final Queue<Long> idQueue;
+    /**
+     * Next id to be assigned.
+     */
+    private final AtomicLong nextId;
+
+    /**
+     * Constructor for this generator.
+     */
+    public ConcurrentEntityIdGenerator() {
+        freeIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        idQueue = new ConcurrentLinkedQueue<Long>();
+        nextId = new AtomicLong();
+    }
+
+    @Override
+    public long getId() {
+        Long id;
+        while ((id = idQueue.poll()) != null) {
+            if (freeIds.remove(id)) {
+                return id;
+            }
+        }
+        return nextId.getAndIncrement();
+    }
+
+    @Override
+    public void removeId(final long id) {
+        if (freeIds.add(id)) {
+            idQueue.add(id);
+        }
+    }
+
+    @Override
+    public boolean reserveId(final long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Id cannot be negative.");
+        }
+        if (freeIds.remove(id)) {
+            return true;
+        }
+        synchronized (this) {
+            while (true) {
+                long next = nextId.get();
+                if (id < next) {
+                    return freeIds.remove(id);
+                }
+                if (nextId.compareAndSet(next, id + 1)) {
+                    for (long i = next; i < id; i++) {
+                        removeId(i);
+                    }
+                    return true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void reset() {
+        freeIds.clear();
+        idQueue.clear();
+        nextId.set(0);
+    }
+}
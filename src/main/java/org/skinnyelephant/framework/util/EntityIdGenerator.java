@@ -34,6 +34,14 @@ public interface EntityIdGenerator {
      */
     public void removeId(long id);
 
+    /**
+     * Method for claiming specific id, used when removed entity is restored.
+     *
+     * @param id id to be claimed.
+     * @return true if id was free and is now claimed, false if it is in use.
+     */
+    public boolean reserveId(long id);
+
     /**
      * Method for resetting generator.
      */
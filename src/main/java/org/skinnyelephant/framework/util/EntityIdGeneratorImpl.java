@@ -16,18 +16,26 @@
 
 package org.skinnyelephant.framework.util;
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
- * Simple class for generating and reusing ids.
+ * <p>Simple class for generating and reusing ids.</p>
+ * <p>Free ids are kept in set, so specific id is reserved in constant time. Stack of free ids gives order of reuse,
+ * ids reserved while on stack are skipped when they are popped.</p>
  *
  * @author Kristaps Kohs
  */
 public class EntityIdGeneratorImpl implements EntityIdGenerator {
     /**
-     * List of already generated but not used ids.
+     * Already generated but not used ids.
      */
-    private final LinkedList<Long> idList;
+    private final Set<Long> freeIds;
+    /**
+     * Free ids in order of reuse, may contain ids which have been reserved since.
+     */
+    private final ArrayDeque<Long> idStack;
     /**
      * Next id to be assigned.
      */
@@ -37,25 +45,47 @@ public class EntityIdGeneratorImpl implements EntityIdGenerator {
      * Constructor for this generator.
      */
     public EntityIdGeneratorImpl() {
-        idList = new LinkedList<Long>();
+        freeIds = new HashSet<Long>();
+        idStack = new ArrayDeque<Long>();
     }
 
     @Override
     public long getId() {
-        if (!idList.isEmpty()) {
-            return idList.removeLast();
+        Long id;
+        while ((id = idStack.poll()) != null) {
+            if (freeIds.remove(id)) {
+                return id;
+            }
         }
         return nextId++;
     }
 
     @Override
     public void removeId(final long id) {
-        idList.add(id);
+        if (freeIds.add(id)) {
+            idStack.push(id);
+        }
+    }
+
+    @Override
+    public boolean reserveId(final long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Id cannot be negative.");
+        }
+        if (id >= nextId) {
+            for (long i = nextId; i < id; i++) {
+                removeId(i);
+            }
+            nextId = id + 1;
+            return true;
+        }
+        return freeIds.remove(id);
     }
 
     @Override
     public void reset() {
-        idList.clear();
+        freeIds.clear();
+        idStack.clear();
         nextId = 0;
     }
 }
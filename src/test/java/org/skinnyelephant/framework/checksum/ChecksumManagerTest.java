@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.checksum;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class ChecksumManagerTest {
+    @Test
+    public void testDesyncDetection() throws Exception {
+        Core local = createWorld(false);
+        Core remote = createWorld(true);
+        ChecksumManager localChecksum = local.getManager(ChecksumManager.class);
+        ChecksumManager remoteChecksum = remote.getManager(ChecksumManager.class);
+        assertEquals(localChecksum.getChecksum(), remoteChecksum.getChecksum());
+        assertNull(localChecksum.findDesync(remoteChecksum.snapshot()));
+
+        Entity entity = remote.getEntityManager().getEntity(7L);
+        entity.<HealthComponent>modifyComponent(HealthComponent.class).value = 1;
+        remote.process(16);
+        assertTrue(localChecksum.getChecksum() != remoteChecksum.getChecksum());
+        DesyncReport report = localChecksum.findDesync(remoteChecksum.snapshot());
+        assertNotNull(report);
+        assertEquals(7L, report.getEntityId());
+        assertEquals(HealthComponent.class, report.getComponentType());
+
+        local.getEntityManager().getEntity(7L).<HealthComponent>modifyComponent(HealthComponent.class).value = 1;
+        local.getEntityManager().getEntity(3L).removeComponent(TeamComponent.class);
+        report = localChecksum.findDesync(remoteChecksum.snapshot());
+        assertEquals(3L, report.getEntityId());
+        assertEquals(TeamComponent.class, report.getComponentType());
+
+        try {
+            local.createEntity().addComponent(new NameComponent());
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIncrementalMatchesFull() throws Exception {
+        Core core = createWorld(false);
+        ChecksumManager checksum = core.getManager(ChecksumManager.class);
+        Random random = new Random(11);
+        List<Entity> entities = new ArrayList<Entity>(core.getEntityManager().getAllEntities());
+        for (int i = 0; i < 500; i++) {
+            Entity e = entities.get(random.nextInt(entities.size()));
+            switch (random.nextInt(4)) {
+                case 0:
+                    HealthComponent health = e.modifyComponent(HealthComponent.class);
+                    if (health != null) {
+                        health.value = random.nextInt(100);
+                    }
+                    break;
+                case 1:
+                    e.addComponent(new TeamComponent(random.nextInt(3)));
+                    break;
+                case 2:
+                    e.removeComponent(TeamComponent.class);
+                    break;
+                default:
+                    core.removeEntity(e.getEntityId());
+                    entities.remove(e);
+                    entities.add(core.createEntity().addComponent(new HealthComponent(random.nextInt(100))));
+                    break;
+            }
+            if (i % 50 == 0) {
+                core.process(16);
+            }
+        }
+        assertEquals(checksum.computeFullChecksum(), checksum.getChecksum());
+    }
+
+    private static Core createWorld(final boolean reversed) {
+        Core core = new Core();
+        core.initialize();
+        core.addManager(new ChecksumManager(core));
+        for (int i = 0; i < 20; i++) {
+            Entity e = core.createEntity();
+            if (reversed) {
+                e.addComponent(new TeamComponent(i % 2)).addComponent(new HealthComponent(100 - i));
+            } else {
+                e.addComponent(new HealthComponent(100 - i)).addComponent(new TeamComponent(i % 2));
+            }
+        }
+        return core;
+    }
+
+    @Component
+    public static class HealthComponent implements Checksummable {
+        private int value;
+
+        public HealthComponent(final int value) {
+            this.value = value;
+        }
+
+        @Override
+        public long checksum() {
+            return value;
+        }
+    }
+
+    @Component
+    public static class NameComponent {
+    }
+
+    @Component
+    public static class TeamComponent implements Checksummable {
+        private final int team;
+
+        public TeamComponent(final int team) {
+            this.team = team;
+        }
+
+        @Override
+        public long checksum() {
+            return team;
+        }
+    }
+}
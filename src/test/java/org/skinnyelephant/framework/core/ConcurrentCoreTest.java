@@ -0,0 +1,251 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.core;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.systems.EntitySystem;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class ConcurrentCoreTest {
+    private static final int THREADS = 8;
+    private static final int ENTITIES_PER_THREAD = 5000;
+
+    @Test
+    public void testConcurrentCreateAndRemove() throws Exception {
+        final Core core = new Core(true);
+        core.initialize();
+        final CountingSystem system = new CountingSystem();
+        core.addSystem(system);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Entity>>> futures = new ArrayList<Future<List<Entity>>>();
+        for (int t = 0; t < THREADS; t++) {
+            final boolean pooled = t % 2 == 0;
+            futures.add(executor.submit(new java.util.concurrent.Callable<List<Entity>>() {
+                @Override
+                public List<Entity> call() throws Exception {
+                    start.await();
+                    List<Entity> kept = new ArrayList<Entity>();
+                    for (int i = 0; i < ENTITIES_PER_THREAD; i++) {
+                        Entity e = pooled
+                                ? core.createPooledEntity(ConcurrentComponent.class)
+                                : core.createEntity().addComponents(new ConcurrentComponent());
+                        if (i % 2 == 0) {
+                            core.removeEntity(e.getEntityId());
+                        } else {
+                            kept.add(e);
+                        }
+                    }
+                    return kept;
+                }
+            }));
+        }
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        start.countDown();
+        Thread processor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    core.process(1);
+                }
+            }
+        });
+        processor.start();
+
+        Set<Long> ids = new HashSet<Long>();
+        Set<Entity> kept = new HashSet<Entity>();
+        for (Future<List<Entity>> future : futures) {
+            for (Entity e : future.get()) {
+                assertTrue("Duplicate id " + e.getEntityId(), ids.add(e.getEntityId()));
+                kept.add(e);
+            }
+        }
+        running.set(false);
+        processor.join();
+        executor.shutdown();
+        core.process(1);
+
+        int expected = THREADS * ENTITIES_PER_THREAD / 2;
+        EntityManager manager = core.getEntityManager();
+        assertEquals(expected, kept.size());
+        assertEquals(expected, manager.getAllEntities().size());
+        assertEquals(kept, manager.getEntitiesForSystem(system));
+        for (Entity e : kept) {
+            assertEquals(e, manager.getEntity(e.getEntityId()));
+        }
+        assertEquals(expected, system.added.size() - system.removed.size());
+    }
+
+    @Test
+    public void testRemovalDuringRegistration() throws Exception {
+        final Core core = new Core(true);
+        core.initialize();
+        final RegistrationSystem system = new RegistrationSystem();
+        core.addSystem(system);
+        final Entity pooled = core.createPooledEntity(ConcurrentComponent.class);
+        core.removeEntity(pooled.getEntityId());
+        core.process(1);
+
+        Thread creator = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                core.createPooledEntity(ConcurrentComponent.class);
+            }
+        });
+        system.blocked = creator;
+        creator.start();
+        system.registering.await();
+        Thread remover = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                core.removeEntity(pooled.getEntityId());
+                system.released.countDown();
+            }
+        });
+        remover.start();
+        creator.join();
+        remover.join();
+        core.process(1);
+
+        assertFalse(core.isAlive(pooled.getEntityId()));
+        assertTrue(core.getEntityManager().getEntitiesForSystem(system).isEmpty());
+        CountingSystem counting = system;
+        assertEquals(counting.added.size(), counting.removed.size());
+    }
+
+    @Test
+    public void testRemovedEntityIsDisposedAfterDelivery() throws Exception {
+        final Core core = new Core(true);
+        core.initialize();
+        final DisposalSystem system = new DisposalSystem();
+        core.addSystem(system);
+        final Entity entity = core.createEntity().addComponents(new ConcurrentComponent(), new ResourceComponent());
+        core.process(1);
+
+        Thread remover = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                core.removeEntity(entity.getEntityId());
+            }
+        });
+        remover.start();
+        remover.join();
+        ResourceComponent resource = entity.getComponent(ResourceComponent.class);
+        assertFalse(resource.disposed);
+        assertFalse(core.reserveEntityId(entity.getEntityId()));
+
+        core.process(1);
+        assertEquals(Boolean.FALSE, system.disposedOnRemoval);
+        assertTrue(resource.disposed);
+        assertTrue(core.reserveEntityId(entity.getEntityId()));
+    }
+
+    @Component
+    public static class ConcurrentComponent {
+
+    }
+
+    @Component
+    public static class ResourceComponent implements Disposable {
+        private volatile boolean disposed;
+
+        @Override
+        public void dispose() {
+            disposed = true;
+        }
+    }
+
+    private static class DisposalSystem extends CountingSystem {
+        private Boolean disposedOnRemoval;
+
+        @Override
+        public void entityRemoved(final Entity entity) {
+            super.entityRemoved(entity);
+            disposedOnRemoval = entity.<ResourceComponent>getComponent(ResourceComponent.class).disposed;
+        }
+    }
+
+    private static class RegistrationSystem extends CountingSystem {
+        private final CountDownLatch registering = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile Thread blocked;
+
+        @Override
+        public long getUsedComponents() {
+            if (Thread.currentThread() == blocked) {
+                blocked = null;
+                registering.countDown();
+                try {
+                    released.await(200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.getUsedComponents();
+        }
+    }
+
+    private static class CountingSystem extends EntitySystem {
+        private final List<Entity> added = new ArrayList<Entity>();
+        private final List<Entity> removed = new ArrayList<Entity>();
+
+        @Override
+        public void initialize() {
+            addUsedComponent(ConcurrentComponent.class);
+        }
+
+        @Override
+        public void entityAdded(final Entity entity) {
+            added.add(entity);
+        }
+
+        @Override
+        public void entityRemoved(final Entity entity) {
+            removed.add(entity);
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+}
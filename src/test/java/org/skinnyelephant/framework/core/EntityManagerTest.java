@@ -22,7 +22,13 @@ import org.skinnyelephant.framework.annotations.Component;
 import org.skinnyelephant.framework.systems.EntitySystem;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Kristaps Kohs
@@ -76,6 +82,163 @@ public class EntityManagerTest {
 
     }
 
+    @Test
+    public void testBulkComponents() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        EntitySystem system = new TestSystem();
+        EntitySystem system2 = new TestSystem2();
+        core.addSystem(system);
+        core.addSystem(system2);
+        EntityManager manager = core.getEntityManager();
+
+        Entity e = core.createEntity().addComponents(new TestComponent(), new TestComponent2());
+        assertEquals(1, manager.getEntitiesForSystem(system).size());
+        assertEquals(1, manager.getEntitiesForSystem(system2).size());
+
+        e.removeComponents(TestComponent2.class);
+        assertNull(e.getComponent(TestComponent2.class));
+        assertEquals(1, manager.getEntitiesForSystem(system).size());
+        assertEquals(0, manager.getEntitiesForSystem(system2).size());
+
+        e.edit().remove(TestComponent.class).add(new TestComponent2()).add(new TestComponent()).commit();
+        assertNotNull(e.getComponent(TestComponent.class));
+        assertNotNull(e.getComponent(TestComponent2.class));
+        assertEquals(1, manager.getEntitiesForSystem(system2).size());
+
+        TestComponent replaced = new TestComponent();
+        e.edit().add(new TestComponent()).remove(TestComponent2.class).add(replaced).commit();
+        assertSame(replaced, e.getComponent(TestComponent.class));
+        assertEquals(1, e.getComponents().size());
+        assertEquals(0, manager.getEntitiesForSystem(system2).size());
+    }
+
+    @Test
+    public void testDoubleBufferedComponents() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        Entity e = core.createEntity().addComponent(new BufferedComponent());
+        BufferedComponent back = e.getComponent(BufferedComponent.class);
+        assertNull(e.getFrontComponent(BufferedComponent.class));
+        core.process(1);
+        BufferedComponent front = e.getFrontComponent(BufferedComponent.class);
+        assertNotSame(back, front);
+
+        back.value = 1;
+        assertEquals(0, front.value);
+        core.process(1);
+        assertEquals(1, e.<BufferedComponent>getFrontComponent(BufferedComponent.class).value);
+        assertEquals(0, front.value);
+        assertSame(back, e.getComponent(BufferedComponent.class));
+
+        back.value = 2;
+        core.getFrontBufferLock().lock();
+        try {
+            core.process(1);
+            assertEquals(1, e.<BufferedComponent>getFrontComponent(BufferedComponent.class).value);
+        } finally {
+            core.getFrontBufferLock().unlock();
+        }
+        core.process(1);
+        assertEquals(2, e.<BufferedComponent>getFrontComponent(BufferedComponent.class).value);
+
+        e.removeComponent(BufferedComponent.class);
+        assertNotNull(e.getFrontComponent(BufferedComponent.class));
+        core.process(1);
+        assertNull(e.getFrontComponent(BufferedComponent.class));
+
+        e.addComponent(new TestComponent());
+        assertSame(e.getComponent(TestComponent.class), e.getFrontComponent(TestComponent.class));
+    }
+
+    @Test
+    public void testEntityHandles() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        EntitySystem system = new TestSystem2();
+        core.addSystem(system);
+        long id = core.createEntityId();
+        assertTrue(core.isAlive(id));
+        TestComponent component = new TestComponent();
+        core.addComponent(id, component);
+        core.addComponent(id, new TestComponent2());
+        assertSame(component, core.getComponent(id, TestComponent.class));
+        assertSame(component, core.modifyComponent(id, TestComponent.class));
+        assertEquals(1, core.getEntityManager().getEntitiesForSystem(system).size());
+        assertEquals(2, core.getEntityManager().getEntity(id).getComponents().size());
+
+        core.removeComponent(id, TestComponent.class);
+        assertNull(core.getComponent(id, TestComponent.class));
+        assertNotNull(core.getComponent(id, TestComponent2.class));
+        assertEquals(0, core.getEntityManager().getEntitiesForSystem(system).size());
+        core.removeComponent(id, BufferedComponent.class);
+
+        long restored = 5000;
+        core.createEntity(null, restored);
+        assertTrue(core.isAlive(restored));
+        assertFalse(core.isAlive(restored + 1));
+        assertEquals(restored, core.getEntityManager().getAllEntities().asList().get(1).getEntityId());
+
+        Entity kept = core.getEntityManager().getEntity(restored);
+        assertTrue(core.removeEntity(kept, true));
+        assertFalse(core.removeEntity(kept, true));
+        assertFalse(core.reserveEntityId(restored));
+        core.releaseEntityId(restored);
+        assertTrue(core.reserveEntityId(restored));
+
+        long plain = core.createEntityId();
+        core.addComponent(plain, component);
+        assertTrue(core.removeEntityId(plain));
+        assertFalse(core.removeEntityId(plain));
+        assertFalse(core.isAlive(plain));
+
+        core.removeEntity(id);
+        assertFalse(core.isAlive(id));
+        assertNull(core.getComponent(id, TestComponent2.class));
+        try {
+            core.addComponent(id, component);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEntityMemory() {
+        final int count = 1000000;
+        final TestComponent component = new TestComponent();
+
+        Core core = new Core();
+        core.initialize();
+        long before = usedMemory();
+        for (int i = 0; i < count; i++) {
+            core.createEntity().addComponent(component);
+        }
+        long objects = usedMemory() - before;
+        core.dispose();
+
+        core = new Core();
+        core.initialize();
+        before = usedMemory();
+        for (int i = 0; i < count; i++) {
+            core.addComponent(core.createEntityId(), component);
+        }
+        long ids = usedMemory() - before;
+        assertTrue(core.isAlive(count - 1));
+        core.dispose();
+
+        System.out.println("Memory of " + count + " entities, entity objects: " + objects / 1024 + " KB, IDs only: " + ids / 1024 + " KB");
+        assertTrue(ids < objects);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
     @Test
     public void testPerformance() {
         Core core = new Core();
@@ -132,6 +295,16 @@ public class EntityManagerTest {
 
     }
 
+    @Component(doubleBuffered = true)
+    public static class BufferedComponent implements Copyable<BufferedComponent> {
+        private int value;
+
+        @Override
+        public void copyFrom(final BufferedComponent source) {
+            value = source.value;
+        }
+    }
+
     private static class TestSystem extends EntitySystem {
 
         public TestSystem() {
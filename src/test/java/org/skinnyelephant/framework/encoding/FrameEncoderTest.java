@@ -0,0 +1,202 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.encoding;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class FrameEncoderTest {
+    private static final int ENTITIES = 10000;
+    private static final int FRAMES = 30;
+
+    @Test
+    public void testStreamRoundTrip() throws Exception {
+        for (boolean compress : new boolean[]{false, true}) {
+            ComponentLayouts layouts = createLayouts();
+            List<Frame> frames = simulate(layouts);
+            FrameEncoder encoder = new FrameEncoder(compress);
+            ByteBuffer stream = ByteBuffer.allocate(16 * 1024 * 1024);
+            for (int i = 0; i < frames.size(); i++) {
+                encoder.encode(i % 10 == 0 ? null : frames.get(i - 1), frames.get(i), stream);
+            }
+            encoder.dispose();
+            stream.flip();
+
+            FrameDecoder decoder = new FrameDecoder(createLayouts());
+            Frame previous = null;
+            for (Frame expected : frames) {
+                previous = decoder.decode(previous, stream);
+                assertEquals(expected, previous);
+            }
+            assertEquals(0, stream.remaining());
+            decoder.dispose();
+
+            int index = previous.indexOf(frames.get(frames.size() - 1).getId(5));
+            PositionComponent position = previous.getComponent(index, PositionComponent.class);
+            assertEquals(frames.get(frames.size() - 1).getComponent(5, PositionComponent.class).x, position.x, 0);
+            assertNull(previous.getComponent(index, String.class));
+        }
+    }
+
+    @Test
+    public void testSizeAndThroughput() throws Exception {
+        ComponentLayouts layouts = createLayouts();
+        List<Frame> frames = simulate(layouts);
+        ByteBuffer buffer = ByteBuffer.allocate(4 * 1024 * 1024);
+        for (boolean compress : new boolean[]{false, true}) {
+            FrameEncoder encoder = new FrameEncoder(compress);
+            FrameDecoder decoder = new FrameDecoder(layouts);
+            buffer.clear();
+            int keyframe = encoder.encode(null, frames.get(0), buffer);
+            long deltaBytes = 0;
+            long encodeTime = 0;
+            long decodeTime = 0;
+            for (int i = 1; i < frames.size(); i++) {
+                buffer.clear();
+                long start = System.nanoTime();
+                deltaBytes += encoder.encode(frames.get(i - 1), frames.get(i), buffer);
+                encodeTime += System.nanoTime() - start;
+                buffer.flip();
+                start = System.nanoTime();
+                decoder.decode(frames.get(i - 1), buffer);
+                decodeTime += System.nanoTime() - start;
+            }
+            int deltas = frames.size() - 1;
+            System.out.println((compress ? "Compressed" : "Uncompressed") + " frames of " + ENTITIES + " entities: keyframe "
+                    + keyframe + " bytes, delta " + deltaBytes / deltas + " bytes, encode " + encodeTime / deltas / 1000
+                    + " us, decode " + decodeTime / deltas / 1000 + " us per delta");
+            assertTrue(deltaBytes / deltas < keyframe / 4);
+            encoder.dispose();
+            decoder.dispose();
+        }
+    }
+
+    private static ComponentLayouts createLayouts() {
+        ComponentLayouts layouts = new ComponentLayouts();
+        layouts.register(PositionComponent.class);
+        layouts.register(VelocityComponent.class);
+        layouts.register(HealthComponent.class);
+        return layouts;
+    }
+
+    private static List<Frame> simulate(ComponentLayouts layouts) {
+        Core core = new Core();
+        core.initialize();
+        Random random = new Random(21);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < ENTITIES; i++) {
+            entities.add(spawn(core, random));
+        }
+        List<Frame> frames = new ArrayList<Frame>();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            frames.add(Frame.capture(core, layouts));
+            for (int i = 0; i < ENTITIES / 10; i++) {
+                Entity e = entities.get(random.nextInt(entities.size()));
+                PositionComponent position = e.getComponent(PositionComponent.class);
+                VelocityComponent velocity = e.getComponent(VelocityComponent.class);
+                if (velocity != null) {
+                    position.x += velocity.dx;
+                    position.y += velocity.dy;
+                }
+                HealthComponent health = e.getComponent(HealthComponent.class);
+                if (health != null && random.nextInt(4) == 0) {
+                    health.value -= random.nextInt(5);
+                }
+            }
+            for (int i = 0; i < ENTITIES / 100; i++) {
+                Entity e = entities.remove(random.nextInt(entities.size()));
+                core.removeEntity(e.getEntityId());
+                entities.add(spawn(core, random));
+            }
+            for (int i = 0; i < ENTITIES / 200; i++) {
+                Entity e = entities.get(random.nextInt(entities.size()));
+                if (e.getComponent(VelocityComponent.class) == null) {
+                    e.addComponent(new VelocityComponent(random.nextFloat(), random.nextFloat()));
+                } else {
+                    e.removeComponent(VelocityComponent.class);
+                }
+            }
+        }
+        return frames;
+    }
+
+    private static Entity spawn(Core core, Random random) {
+        Entity e = core.createEntity();
+        e.addComponent(new PositionComponent(random.nextInt(1000), random.nextInt(1000)));
+        if (random.nextBoolean()) {
+            e.addComponent(new VelocityComponent(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f));
+        }
+        if (random.nextInt(3) > 0) {
+            e.addComponent(new HealthComponent(100));
+        }
+        return e;
+    }
+
+    @Component
+    private static class PositionComponent {
+        private float x;
+        private float y;
+
+        private PositionComponent() {
+        }
+
+        private PositionComponent(float x, float y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    @Component
+    private static class VelocityComponent {
+        private float dx;
+        private float dy;
+
+        private VelocityComponent() {
+        }
+
+        private VelocityComponent(float dx, float dy) {
+            this.dx = dx;
+            this.dy = dy;
+        }
+    }
+
+    @Component
+    private static class HealthComponent {
+        private int value;
+
+        private HealthComponent() {
+        }
+
+        private HealthComponent(int value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.events;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.systems.EntitySystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class EventBusTest {
+    @Test
+    public void testDrainPoints() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        EventBus bus = new EventBus();
+        core.addManager(bus);
+        bus.register(DamageEvent.class, 4);
+
+        final List<Integer> received = new ArrayList<Integer>();
+        bus.subscribe(DamageEvent.class, new EventHandler<DamageEvent>() {
+            @Override
+            public void handle(final DamageEvent event) {
+                received.add(event.amount);
+            }
+        }, DrainPoint.AFTER_SYSTEMS);
+        EventCursor<DamageEvent> cursor = bus.newCursor(DamageEvent.class);
+
+        for (int i = 0; i < 3; i++) {
+            bus.claim(DamageEvent.class).amount = i;
+            bus.publish(DamageEvent.class);
+        }
+        assertEquals(0, received.size());
+        core.process(1);
+        assertEquals(3, received.size());
+        assertEquals(Integer.valueOf(2), received.get(2));
+
+        for (int i = 3; i < 6; i++) {
+            bus.claim(DamageEvent.class).amount = i;
+            bus.publish(DamageEvent.class);
+        }
+        final List<Integer> manual = new ArrayList<Integer>();
+        int drained = cursor.drain(new EventHandler<DamageEvent>() {
+            @Override
+            public void handle(final DamageEvent event) {
+                manual.add(event.amount);
+            }
+        });
+        assertEquals(4, drained);
+        assertEquals(2, cursor.getDropped());
+        assertEquals(Integer.valueOf(2), manual.get(0));
+    }
+
+    @Test
+    public void testOverrun() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        EventBus bus = new EventBus();
+        core.addManager(bus);
+        bus.register(DamageEvent.class, 4);
+        Recorder handler = new Recorder("after");
+        EventCursor<DamageEvent> subscribed = bus.subscribe(DamageEvent.class, handler, DrainPoint.AFTER_SYSTEMS);
+        EventCursor<DamageEvent> cursor = bus.subscribe(DamageEvent.class);
+
+        for (int i = 0; i < 10; i++) {
+            bus.claim(DamageEvent.class).amount = i;
+            bus.publish(DamageEvent.class);
+        }
+        assertEquals(4, cursor.available());
+        core.process(1);
+        assertEquals(Arrays.asList("after6", "after7", "after8", "after9"), handler.received);
+        assertEquals(6, subscribed.getDropped());
+
+        Recorder manual = new Recorder("manual");
+        assertEquals(4, cursor.drain(manual));
+        assertEquals(6, cursor.getDropped());
+        assertEquals("manual6", manual.received.get(0));
+
+        bus.claim(DamageEvent.class).amount = 10;
+        bus.publish(DamageEvent.class);
+        assertEquals(1, cursor.drain(manual));
+        assertEquals(6, cursor.getDropped());
+        assertEquals(0, cursor.drain(manual));
+    }
+
+    @Test
+    public void testDrainPointOrder() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        final EventBus bus = new EventBus();
+        core.addManager(bus);
+        final List<String> order = new ArrayList<String>();
+        bus.subscribe(DamageEvent.class, new Recorder("after", order), DrainPoint.AFTER_SYSTEMS);
+        bus.subscribe(DamageEvent.class, new Recorder("before", order), DrainPoint.BEFORE_SYSTEMS);
+        core.addSystem(new EntitySystem(true) {
+            private int tick;
+
+            @Override
+            public void initialize() {
+            }
+
+            @Override
+            public void processSystem() {
+                order.add("system");
+                bus.claim(DamageEvent.class).amount = ++tick;
+                bus.publish(DamageEvent.class);
+            }
+
+            @Override
+            public void processEntity(final Entity entity) {
+            }
+
+            @Override
+            public void dispose() {
+            }
+        });
+
+        bus.claim(DamageEvent.class).amount = 0;
+        bus.publish(DamageEvent.class);
+        core.process(1);
+        assertEquals(Arrays.asList("before0", "system", "after0", "after1"), order);
+        order.clear();
+        core.process(1);
+        assertEquals(Arrays.asList("before1", "system", "after2"), order);
+
+        try {
+            bus.subscribe(DamageEvent.class, new Recorder("manual"), DrainPoint.MANUAL);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static class Recorder implements EventHandler<DamageEvent> {
+        private final String name;
+        private final List<String> received;
+
+        private Recorder(final String name) {
+            this(name, new ArrayList<String>());
+        }
+
+        private Recorder(final String name, final List<String> received) {
+            this.name = name;
+            this.received = received;
+        }
+
+        @Override
+        public void handle(final DamageEvent event) {
+            received.add(name + event.amount);
+        }
+    }
+
+    public static class DamageEvent {
+        private int amount;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.index;
+
+import com.google.common.base.Function;
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class IndexManagerTest {
+    @Test
+    public void testIndexes() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        Entity first = createEntity(core, 1, 50);
+        IndexManager manager = new IndexManager(core);
+        core.addManager(manager);
+        HashIndex<UnitComponent, Integer> byOwner = manager.registerHashIndex(UnitComponent.class,
+                new Function<UnitComponent, Integer>() {
+                    @Override
+                    public Integer apply(final UnitComponent input) {
+                        return input.owner;
+                    }
+                });
+        SortedIndex<UnitComponent, Integer> byHealth = manager.registerSortedIndex(UnitComponent.class,
+                new Function<UnitComponent, Integer>() {
+                    @Override
+                    public Integer apply(final UnitComponent input) {
+                        return input.health;
+                    }
+                });
+        Entity second = createEntity(core, 1, 5);
+        Entity third = createEntity(core, 2, 8);
+
+        assertEquals(2, byOwner.get(1).size());
+        assertTrue(byOwner.get(3).isEmpty());
+        assertEquals(Arrays.asList(second, third), byHealth.below(10, false));
+        assertEquals(Arrays.asList(third, first), byHealth.range(8, true, 50, true));
+
+        first.<UnitComponent>modifyComponent(UnitComponent.class).health = 3;
+        assertEquals(Arrays.asList(first, second, third), byHealth.below(10, false));
+        assertEquals(Integer.valueOf(3), byHealth.firstKey());
+
+        UnitComponent unit = second.getComponent(UnitComponent.class);
+        unit.owner = 2;
+        manager.fieldChanged(second, UnitComponent.class);
+        assertEquals(1, byOwner.get(1).size());
+        assertEquals(2, byOwner.get(2).size());
+
+        third.removeComponent(UnitComponent.class);
+        assertEquals(1, byOwner.get(2).size());
+        core.removeEntity(first.getEntityId());
+        assertEquals(1, byHealth.size());
+        assertEquals(Arrays.asList(second), byHealth.above(0, true));
+
+        manager.unregisterIndex(byOwner);
+        createEntity(core, 2, 1);
+        assertEquals(1, byOwner.get(2).size());
+        assertEquals(2, byHealth.size());
+    }
+
+    private static Entity createEntity(final Core core, final int owner, final int health) {
+        UnitComponent unit = new UnitComponent();
+        unit.owner = owner;
+        unit.health = health;
+        return core.createEntity().addComponent(unit);
+    }
+
+    @Component
+    public static class UnitComponent {
+        private int owner;
+        private int health;
+    }
+}
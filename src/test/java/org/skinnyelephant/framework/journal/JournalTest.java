@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.replay.WorldFixture.PositionComponent;
+import org.skinnyelephant.framework.replay.WorldFixture.VelocityComponent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.skinnyelephant.framework.replay.WorldFixture.createRegistry;
+import static org.skinnyelephant.framework.replay.WorldFixture.createWorld;
+import static org.skinnyelephant.framework.replay.WorldFixture.state;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class JournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecoverFromSnapshotAndJournal() throws Exception {
+        File directory = folder.newFolder("journal");
+        Core core = createWorld();
+        Journal journal = new Journal(core, createRegistry(), directory, 4096);
+        core.addManager(journal);
+        Random random = new Random(9);
+        List<Entity> entities = new ArrayList<Entity>();
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        for (int tick = 0; tick < 100; tick++) {
+            change(core, entities, random);
+            core.process(16);
+            if (tick == 60) {
+                assertEquals(61, journal.checkpoint(snapshot));
+                change(core, entities, random);
+            }
+        }
+        journal.flush();
+        assertTrue(JournalFormat.segments(directory).length > 2);
+        String expected = state(core);
+
+        Core recovered = new Core();
+        recovered.initialize();
+        JournalReader reader = new JournalReader(createRegistry(), directory);
+        assertEquals(100, reader.recover(recovered, null));
+        assertEquals(expected, state(recovered));
+
+        assertTrue(journal.deleteObsoleteSegments() > 0);
+        recovered = new Core();
+        recovered.initialize();
+        assertEquals(100, reader.recover(recovered, new ByteArrayInputStream(snapshot.toByteArray())));
+        assertEquals(expected, state(recovered));
+        core.dispose();
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        File directory = folder.newFolder("torn");
+        Core core = createWorld();
+        Journal journal = new Journal(core, createRegistry(), directory, 1 << 16);
+        core.addManager(journal);
+        core.createEntity().addComponent(new PositionComponent(1, 1));
+        core.process(16);
+        journal.flush();
+        String expected = state(core);
+        core.createEntity().addComponent(new PositionComponent(2, 2));
+        core.process(16);
+        journal.dispose();
+
+        File[] segments = JournalFormat.segments(directory);
+        RandomAccessFile file = new RandomAccessFile(segments[segments.length - 1], "rw");
+        try {
+            long second = JournalFormat.RECORD_HEADER + file.readInt();
+            file.seek(second + JournalFormat.RECORD_HEADER);
+            int value = file.readByte();
+            file.seek(second + JournalFormat.RECORD_HEADER);
+            file.writeByte(value ^ 0xFF);
+        } finally {
+            file.close();
+        }
+
+        Core recovered = new Core();
+        recovered.initialize();
+        assertEquals(1, new JournalReader(createRegistry(), directory).recover(recovered, null));
+        assertEquals(expected, state(recovered));
+
+        Journal resumed = new Journal(recovered, createRegistry(), directory, 1 << 16);
+        recovered.addManager(resumed);
+        assertEquals(1, resumed.getTick());
+        recovered.process(16);
+        resumed.flush();
+        assertEquals(segments.length, JournalFormat.segments(directory).length);
+        recovered.createEntity().addComponent(new PositionComponent(3, 3));
+        recovered.process(16);
+        resumed.dispose();
+        assertEquals(JournalFormat.segments(directory).length, segments.length + 1);
+        expected = state(recovered);
+
+        recovered = new Core();
+        recovered.initialize();
+        assertEquals(3, new JournalReader(createRegistry(), directory).recover(recovered, null));
+        assertEquals(expected, state(recovered));
+    }
+
+    @Test
+    public void testChangesAfterCheckpointAreRecovered() throws Exception {
+        File directory = folder.newFolder("checkpoint");
+        Core core = createWorld();
+        Journal journal = new Journal(core, createRegistry(), directory, 4096);
+        core.addManager(journal);
+        Entity e = core.createEntity().addComponent(new PositionComponent(1, 1));
+        core.process(16);
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        assertEquals(1, journal.checkpoint(snapshot));
+        e.<PositionComponent>modifyComponent(PositionComponent.class).x = 5;
+        core.createEntity("admin").addComponent(new PositionComponent(7, 7));
+        journal.dispose();
+        String expected = state(core);
+
+        Core recovered = new Core();
+        recovered.initialize();
+        new JournalReader(createRegistry(), directory).recover(recovered, new ByteArrayInputStream(snapshot.toByteArray()));
+        assertEquals(expected, state(recovered));
+    }
+
+    private static void change(Core core, List<Entity> entities, Random random) {
+        for (int i = 0; i < 4; i++) {
+            Entity e = core.createEntity(random.nextInt(8) == 0 ? "ref" + random.nextInt() : null);
+            e.addComponent(new PositionComponent(random.nextInt(100), random.nextInt(100)));
+            if (random.nextBoolean()) {
+                e.addComponent(new VelocityComponent(random.nextInt(3) - 1));
+            }
+            entities.add(e);
+        }
+        for (int i = 0; i < 3; i++) {
+            Entity e = entities.get(random.nextInt(entities.size()));
+            if (core.getEntityManager().getEntity(e.getEntityId()) != e) {
+                continue;
+            }
+            switch (random.nextInt(3)) {
+                case 0:
+                    core.removeEntity(e.getEntityId());
+                    break;
+                case 1:
+                    e.removeComponent(VelocityComponent.class);
+                    break;
+                default:
+                    e.addComponent(new VelocityComponent(2));
+                    break;
+            }
+        }
+    }
+}
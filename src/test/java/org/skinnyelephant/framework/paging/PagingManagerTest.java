@@ -0,0 +1,238 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.paging;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.replay.WorldFixture.PositionComponent;
+import org.skinnyelephant.framework.systems.EntitySystem;
+import org.skinnyelephant.framework.systems.PartitionedEntitySystem;
+import org.skinnyelephant.framework.systems.RegionLocator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.skinnyelephant.framework.replay.WorldFixture.createRegistry;
+import static org.skinnyelephant.framework.replay.WorldFixture.state;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class PagingManagerTest {
+    private static final int THREADS = 4;
+    private static final int ENTITIES = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDormantEntitiesKeepIds() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        PagingManager paging = new PagingManager(core, createRegistry(), folder.newFolder("pages"));
+        core.addManager(paging);
+        PositionSystem system = new PositionSystem();
+        core.addSystem(system);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < 1000; i++) {
+            entities.add(core.createEntity(i == 10 ? "named" : null).addComponent(new PositionComponent(i, -i)));
+        }
+        String expected = state(core);
+        for (int i = 0; i < 1000; i += 2) {
+            paging.markDormant(entities.get(i));
+        }
+        core.process(16);
+        assertEquals(500, paging.getPagedCount());
+        assertEquals(500, core.getEntityManager().getAllEntities().size());
+        assertEquals(500, core.getEntityManager().getEntitiesForSystem(system).size());
+        assertTrue(paging.isPagedOut(10));
+
+        for (int i = 0; i < 100; i++) {
+            Entity e = core.createEntity();
+            assertFalse(paging.isPagedOut(e.getEntityId()));
+            core.removeEntity(e.getEntityId());
+        }
+
+        Entity restored = paging.getEntity(10);
+        assertEquals(10, restored.getEntityId());
+        assertEquals("named", restored.getReference());
+        assertEquals(10, restored.<PositionComponent>getComponent(PositionComponent.class).x);
+        assertNull(paging.pageIn(10));
+        for (int i = 0; i < 1000; i += 2) {
+            paging.getEntity(i);
+        }
+        assertEquals(0, paging.getPagedCount());
+        assertEquals(1000, core.getEntityManager().getEntitiesForSystem(system).size());
+        assertEquals(expected, state(core));
+    }
+
+    @Test
+    public void testRegionsAndCompaction() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        PagingManager paging = new PagingManager(core, createRegistry(), folder.newFolder("regions"), 4096);
+        core.addManager(paging);
+        RegionSystem system = new RegionSystem();
+        core.addSystem(system);
+        for (int i = 0; i < 2000; i++) {
+            core.createEntity().addComponent(new PositionComponent(i % 100, i / 100));
+        }
+        String expected = state(core);
+        for (int round = 0; round < 5; round++) {
+            for (int region = 0; region < 10; region++) {
+                assertEquals(200, paging.pageOutRegion(system, region));
+            }
+            assertEquals(0, core.getEntityManager().getAllEntities().size());
+            assertEquals(0, system.getEntityCount(0));
+            for (int region = 9; region >= 0; region--) {
+                assertEquals(200, paging.pageInRegion(region));
+            }
+            assertEquals(0, paging.getPagedBytes());
+            assertEquals(200, system.getEntityCount(9));
+        }
+        assertEquals(expected, state(core));
+        assertEquals(1, folder.getRoot().listFiles()[0].listFiles().length);
+    }
+
+    @Test
+    public void testPageInWhileCreatingConcurrently() throws Exception {
+        final Core core = new Core(true);
+        core.initialize();
+        PagingManager paging = new PagingManager(core, createRegistry(), folder.newFolder("concurrent"));
+        core.addManager(paging);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < ENTITIES; i++) {
+            entities.add(core.createEntity().addComponent(new PositionComponent(i, i)));
+        }
+        for (Entity e : entities) {
+            assertTrue(paging.pageOut(e));
+        }
+        core.process(16);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    while (running.get()) {
+                        Entity e = core.createEntity();
+                        assertTrue(e.getEntityId() >= ENTITIES);
+                        core.removeEntity(e.getEntityId());
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        try {
+            for (int round = 0; round < 20; round++) {
+                for (Entity e : entities) {
+                    Entity restored = paging.pageIn(e.getEntityId());
+                    assertEquals(e.getEntityId(), restored.getEntityId());
+                    assertTrue(paging.pageOut(restored));
+                }
+                core.process(16);
+            }
+        } finally {
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+        }
+        assertEquals(ENTITIES, paging.getPagedCount());
+    }
+
+    @Test
+    public void testLongLongMap() throws Exception {
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        Random random = new Random(4);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                map.put(key, i);
+                expected.put(key, (long) i);
+            } else {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 5000; key++) {
+            Long value = expected.get(key);
+            assertEquals(value == null ? -1 : value, map.get(key, -1));
+        }
+    }
+
+    private static class RegionSystem extends PartitionedEntitySystem {
+        private RegionSystem() {
+            super(new RegionLocator() {
+                @Override
+                public int getRegion(final Entity entity) {
+                    return entity.<PositionComponent>getComponent(PositionComponent.class).x / 10;
+                }
+            }, 10, 1);
+        }
+
+        @Override
+        public void initialize() {
+            addUsedComponent(PositionComponent.class);
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+
+        }
+    }
+
+    private static class PositionSystem extends EntitySystem {
+        @Override
+        public void initialize() {
+            addUsedComponent(PositionComponent.class);
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+}
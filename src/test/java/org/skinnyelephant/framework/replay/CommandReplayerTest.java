@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.replay;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.core.EntityListener;
+import org.skinnyelephant.framework.replay.WorldFixture.PositionComponent;
+import org.skinnyelephant.framework.replay.WorldFixture.VelocityComponent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.skinnyelephant.framework.replay.WorldFixture.createRegistry;
+import static org.skinnyelephant.framework.replay.WorldFixture.createWorld;
+import static org.skinnyelephant.framework.replay.WorldFixture.state;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class CommandReplayerTest {
+    @Test
+    public void testReplayReproducesSession() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        Core recorded = createWorld();
+        CommandRecorder recorder = new CommandRecorder(recorded, createRegistry(), log);
+        recorded.addManager(recorder);
+
+        Random random = new Random(5);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int tick = 0; tick < 200; tick++) {
+            for (int i = 0; i < 5; i++) {
+                Entity e = recorded.createEntity(random.nextInt(10) == 0 ? "unit" + tick + "_" + i : null);
+                PositionComponent position = new PositionComponent();
+                e.addComponent(position);
+                position.x = random.nextInt(100);
+                if (random.nextBoolean()) {
+                    e.addComponent(new VelocityComponent(random.nextInt(5) - 2, "v" + i));
+                }
+                entities.add(e);
+            }
+            for (int i = 0; i < 3 && !entities.isEmpty(); i++) {
+                Entity e = entities.get(random.nextInt(entities.size()));
+                if (recorded.getEntityManager().getEntity(e.getEntityId()) != e) {
+                    entities.remove(e);
+                    continue;
+                }
+                switch (random.nextInt(3)) {
+                    case 0:
+                        recorded.removeEntity(e.getEntityId());
+                        entities.remove(e);
+                        break;
+                    case 1:
+                        e.removeComponent(VelocityComponent.class);
+                        break;
+                    default:
+                        e.<PositionComponent>modifyComponent(PositionComponent.class).y = random.nextInt(100);
+                        break;
+                }
+            }
+            recorded.process(tick % 50 == 0 ? 32 : 16);
+        }
+        recorder.finish();
+        assertEquals(200, recorder.getTicks());
+
+        Core replayed = createWorld();
+        CommandReplayer replayer = new CommandReplayer(replayed, createRegistry());
+        assertEquals(200, replayer.replay(new ByteArrayInputStream(log.toByteArray())));
+        assertEquals(recorder.getCommands(), replayer.getCommands());
+        assertEquals(state(recorded), state(replayed));
+    }
+
+    @Test
+    public void testModifiedComponentReplayedInPlace() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        Core recorded = createWorld();
+        CommandRecorder recorder = new CommandRecorder(recorded, createRegistry(), log);
+        recorded.addManager(recorder);
+        Entity entity = recorded.createEntity().addComponent(new PositionComponent(1, 2));
+        long id = entity.getEntityId();
+        recorded.process(16);
+
+        int commands = recorder.getCommands();
+        for (int i = 0; i < 3; i++) {
+            entity.<PositionComponent>modifyComponent(PositionComponent.class).y += 10;
+        }
+        assertEquals(commands + 1, recorder.getCommands());
+        recorded.removeEntity(id);
+        recorded.createEntity().addComponent(new PositionComponent(5, 5));
+        recorded.process(16);
+        recorder.finish();
+
+        Core replayed = createWorld();
+        final List<Object> added = new ArrayList<Object>();
+        final List<Object> modified = new ArrayList<Object>();
+        replayed.getEntityManager().addEntityListener(new EntityListener() {
+            @Override
+            public void entityAdded(final Entity e) {
+            }
+
+            @Override
+            public void entityRemoved(final Entity e) {
+            }
+
+            @Override
+            public void componentAdded(final Entity e, final Object component) {
+                added.add(component);
+            }
+
+            @Override
+            public void componentRemoved(final Entity e, final Object component) {
+            }
+
+            @Override
+            public void componentModified(final Entity e, final Object component) {
+                modified.add(component);
+            }
+        });
+        CommandReplayer replayer = new CommandReplayer(replayed, createRegistry());
+        assertEquals(2, replayer.replay(new ByteArrayInputStream(log.toByteArray())));
+        assertEquals(1, modified.size());
+        assertSame(added.get(0), modified.get(0));
+        assertEquals(32, ((PositionComponent) modified.get(0)).y);
+        assertEquals(state(recorded), state(replayed));
+    }
+
+    @Test
+    public void testVarInts() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        long[] values = {0, 1, -1, 63, -64, 300, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            VarInts.writeSigned(out, value);
+        }
+        VarInts.writeUnsigned(out, -1L);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, VarInts.readSigned(in));
+        }
+        assertEquals(-1L, VarInts.readUnsigned(in));
+        assertEquals(1 + 1 + 1 + 1 + 1 + 2 + 10 + 10 + 10, bytes.size());
+    }
+}
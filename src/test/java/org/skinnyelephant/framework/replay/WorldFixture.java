@@ -0,0 +1,133 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.replay;
+
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.systems.EntitySystem;
+
+import java.util.TreeMap;
+
+/**
+ * Shared world of tests encoding entities with {@link CodecRegistry}: moving entities with position and optional velocity.
+ *
+ * @author Kristaps Kohs
+ */
+public final class WorldFixture {
+    private WorldFixture() {
+    }
+
+    /**
+     * Creates registry with codecs of fixture components.
+     *
+     * @return codec registry.
+     */
+    public static CodecRegistry createRegistry() {
+        CodecRegistry registry = new CodecRegistry();
+        registry.register(PositionComponent.class);
+        registry.register(VelocityComponent.class);
+        return registry;
+    }
+
+    /**
+     * Creates initialized core with {@link MoveSystem}.
+     *
+     * @return core.
+     */
+    public static Core createWorld() {
+        Core core = new Core();
+        core.initialize();
+        core.addSystem(new MoveSystem());
+        return core;
+    }
+
+    /**
+     * Describes references and components of all entities ordered by entity ID.
+     *
+     * @param core core.
+     * @return state of world.
+     */
+    public static String state(Core core) {
+        TreeMap<Long, String> state = new TreeMap<Long, String>();
+        for (Entity e : core.getEntityManager().getAllEntities()) {
+            PositionComponent position = e.getComponent(PositionComponent.class);
+            VelocityComponent velocity = e.getComponent(VelocityComponent.class);
+            state.put(e.getEntityId(), e.getReference() + " " + (position == null ? "-" : position.x + "," + position.y)
+                    + " " + (velocity == null ? "-" : velocity.dx + " " + velocity.name));
+        }
+        return state.toString();
+    }
+
+    @Component
+    public static class PositionComponent {
+        public int x;
+        public int y;
+
+        public PositionComponent() {
+        }
+
+        public PositionComponent(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    @Component
+    public static class VelocityComponent {
+        public int dx;
+        public String name;
+
+        public VelocityComponent() {
+        }
+
+        public VelocityComponent(int dx) {
+            this.dx = dx;
+        }
+
+        public VelocityComponent(int dx, String name) {
+            this.dx = dx;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Moves entities by their velocity, entity moved too far stops and spawns new entity.
+     */
+    public static class MoveSystem extends EntitySystem {
+        @Override
+        public void initialize() {
+            addUsedComponent(PositionComponent.class);
+            addUsedComponent(VelocityComponent.class);
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+            int dx = entity.<VelocityComponent>getComponent(VelocityComponent.class).dx;
+            entity.<PositionComponent>modifyComponent(PositionComponent.class).x += dx;
+            if (Math.abs(entity.<PositionComponent>getComponent(PositionComponent.class).x) > 110) {
+                entity.removeComponent(VelocityComponent.class);
+                core.createEntity().addComponent(new PositionComponent(0, 0));
+            }
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.rollback;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Copyable;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Disposable;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.systems.EntitySystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class RollbackManagerTest {
+    @Test
+    public void testRollbackAndResimulate() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        RollbackManager rollback = new RollbackManager(core, 4);
+        core.addManager(rollback);
+        ChurnSystem system = new ChurnSystem(7, Integer.MAX_VALUE);
+        core.addSystem(system);
+        for (int i = 0; i < 200; i++) {
+            core.createEntity().addComponent(new StateComponent(i));
+        }
+        core.process(16);
+        core.process(16);
+        Map<Long, Long> saved = snapshot(core);
+
+        for (int i = 0; i < 3; i++) {
+            core.process(16);
+        }
+        Map<Long, Long> expected = snapshot(core);
+        core.createEntity().addComponent(new StateComponent(-1));
+
+        rollback.rollback(3);
+        assertEquals(saved, snapshot(core));
+        assertEquals(2, rollback.getTick());
+        assertEquals(0, rollback.getPendingChanges());
+
+        system.tick = rollback.getTick();
+        for (int i = 0; i < 3; i++) {
+            core.process(16);
+        }
+        assertEquals(values(expected), values(snapshot(core)));
+    }
+
+    @Test
+    public void testDisposedComponentsAreNotRestored() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        RollbackManager rollback = new RollbackManager(core, 4);
+        core.addManager(rollback);
+        Entity entity = core.createEntity().addComponents(new StateComponent(1), new ResourceComponent());
+        core.process(16);
+        core.removeEntity(entity.getEntityId());
+        core.process(16);
+        try {
+            rollback.rollback(1);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertFalse(core.isAlive(entity.getEntityId()));
+        assertEquals(2, rollback.getAvailableTicks());
+
+        core.process(16);
+        core.createEntity().addComponent(new StateComponent(2));
+        rollback.rollback(0);
+        assertTrue(snapshot(core).isEmpty());
+    }
+
+    @Test
+    public void testRollbackBenchmark() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        RollbackManager rollback = new RollbackManager(core, 8);
+        core.addManager(rollback);
+        core.addSystem(new ChurnSystem(20, 500));
+        for (int i = 0; i < 50000; i++) {
+            core.createEntity().addComponent(new StateComponent(i));
+        }
+        core.process(16);
+        Map<Long, Long> saved = snapshot(core);
+        for (int i = 0; i < 8; i++) {
+            core.process(16);
+        }
+        assertEquals(8, rollback.getAvailableTicks());
+
+        long start = System.nanoTime();
+        rollback.rollback(8);
+        long duration = System.nanoTime() - start;
+        System.out.println("Rolled back 8 ticks of 50000 entities in " + duration / 1000 + " us");
+        assertEquals(saved, snapshot(core));
+    }
+
+    private static Map<Long, Long> snapshot(final Core core) {
+        Map<Long, Long> state = new TreeMap<Long, Long>();
+        for (Entity e : core.getEntityManager().getAllEntities()) {
+            StateComponent component = e.getComponent(StateComponent.class);
+            state.put(e.getEntityId(), component == null ? null : component.value);
+        }
+        return state;
+    }
+
+    private static List<Long> values(final Map<Long, Long> state) {
+        List<Long> values = new ArrayList<Long>(state.values());
+        Collections.sort(values);
+        return values;
+    }
+
+    @Component
+    public static class StateComponent implements Copyable<StateComponent> {
+        private long value;
+
+        public StateComponent() {
+        }
+
+        public StateComponent(final long value) {
+            this.value = value;
+        }
+
+        @Override
+        public void copyFrom(final StateComponent source) {
+            value = source.value;
+        }
+    }
+
+    @Component
+    public static class ResourceComponent implements Disposable {
+        @Override
+        public void dispose() {
+        }
+    }
+
+    private static class ChurnSystem extends EntitySystem {
+        private final int modulo;
+        private final int churn;
+        private long tick;
+        private int removed;
+
+        private ChurnSystem(final int modulo, final int churn) {
+            this.modulo = modulo;
+            this.churn = churn;
+        }
+
+        @Override
+        public void initialize() {
+            addUsedComponent(StateComponent.class);
+        }
+
+        @Override
+        public void processSystem() {
+            tick++;
+            removed = 0;
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+            StateComponent state = entity.getComponent(StateComponent.class);
+            if ((state.value + tick) % modulo == 0) {
+                entity.<StateComponent>modifyComponent(StateComponent.class).value = state.value * 31 + tick;
+            } else if ((state.value + tick) % modulo == 1 && removed < churn) {
+                removed++;
+                entity.getCore().removeEntity(entity.getEntityId());
+                entity.getCore().createEntity().addComponent(new StateComponent(state.value + 1));
+            }
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+}
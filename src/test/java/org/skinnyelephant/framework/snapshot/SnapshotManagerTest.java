@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.snapshot;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Copyable;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.systems.EntitySystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class SnapshotManagerTest {
+    @Test
+    public void testSnapshotKeepsFrozenState() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        SnapshotManager manager = new SnapshotManager(core);
+        core.addManager(manager);
+        Random random = new Random(17);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < 2000; i++) {
+            entities.add(core.createEntity(i % 100 == 0 ? "ref" + i : null).addComponent(new CounterComponent(i)));
+        }
+        core.process(16);
+
+        String expected = state(core);
+        WorldSnapshot snapshot = manager.freeze();
+        assertEquals(1, snapshot.getTick());
+        assertEquals(2000, snapshot.getEntityCount());
+        for (int i = 0; i < 500; i++) {
+            Entity e = entities.get(random.nextInt(entities.size()));
+            if (core.getEntityManager().getEntity(e.getEntityId()) != e) {
+                continue;
+            }
+            switch (random.nextInt(4)) {
+                case 0:
+                    core.removeEntity(e.getEntityId());
+                    break;
+                case 1:
+                    entities.add(core.createEntity().addComponent(new CounterComponent(-1)));
+                    break;
+                case 2:
+                    e.addComponent(new MarkerComponent());
+                    break;
+                default:
+                    e.<CounterComponent>modifyComponent(CounterComponent.class).value += 1000;
+                    break;
+            }
+        }
+        assertTrue(manager.getPreservedChunks() > 0);
+        assertEquals(expected, read(snapshot));
+        snapshot.close();
+        assertNull(manager.getOpenSnapshot());
+
+        snapshot = manager.freeze();
+        assertEquals(state(core), read(snapshot));
+        snapshot.close();
+    }
+
+    @Test
+    public void testSnapshotReadWhileProcessing() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        SnapshotManager manager = new SnapshotManager(core);
+        core.addManager(manager);
+        core.addSystem(new CounterSystem());
+        for (int i = 0; i < 20000; i++) {
+            core.createEntity().addComponent(new CounterComponent(0));
+        }
+        for (int round = 0; round < 5; round++) {
+            core.process(16);
+            final WorldSnapshot snapshot = manager.freeze();
+            final AtomicReference<String> result = new AtomicReference<String>();
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final long expected = snapshot.getTick();
+                    final int[] visited = new int[1];
+                    snapshot.accept(new SnapshotVisitor() {
+                        @Override
+                        public void visitEntity(final long id, final String reference, final List<Object> components) {
+                            CounterComponent counter = (CounterComponent) components.get(0);
+                            if (counter.value != expected && result.get() == null) {
+                                result.set("entity " + id + " has " + counter.value + " instead of " + expected);
+                            }
+                            visited[0]++;
+                        }
+                    });
+                    if (result.get() == null) {
+                        result.set("visited " + visited[0]);
+                    }
+                }
+            });
+            reader.start();
+            for (int i = 0; i < 3; i++) {
+                core.process(16);
+            }
+            reader.join();
+            snapshot.close();
+            assertEquals("visited 20000", result.get());
+        }
+    }
+
+    private static String read(WorldSnapshot snapshot) {
+        final TreeMap<Long, String> state = new TreeMap<Long, String>();
+        snapshot.accept(new SnapshotVisitor() {
+            @Override
+            public void visitEntity(final long id, final String reference, final List<Object> components) {
+                state.put(id, describe(reference, components));
+            }
+        });
+        return state.toString();
+    }
+
+    private static String state(Core core) {
+        TreeMap<Long, String> state = new TreeMap<Long, String>();
+        for (Entity e : core.getEntityManager().getAllEntities()) {
+            state.put(e.getEntityId(), describe(e.getReference(), new ArrayList<Object>(e.getComponents())));
+        }
+        return state.toString();
+    }
+
+    private static String describe(String reference, List<Object> components) {
+        CounterComponent counter = null;
+        boolean marker = false;
+        for (Object component : components) {
+            if (component instanceof CounterComponent) {
+                counter = (CounterComponent) component;
+            } else if (component instanceof MarkerComponent) {
+                marker = true;
+            }
+        }
+        return reference + " " + (counter == null ? "-" : counter.value) + " " + marker;
+    }
+
+    @Component
+    public static class CounterComponent implements Copyable<CounterComponent> {
+        private int value;
+
+        public CounterComponent() {
+        }
+
+        public CounterComponent(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public void copyFrom(final CounterComponent source) {
+            value = source.value;
+        }
+    }
+
+    @Component
+    public static class MarkerComponent {
+    }
+
+    private static class CounterSystem extends EntitySystem {
+        @Override
+        public void initialize() {
+            addUsedComponent(CounterComponent.class);
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+            entity.<CounterComponent>modifyComponent(CounterComponent.class).value++;
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+}
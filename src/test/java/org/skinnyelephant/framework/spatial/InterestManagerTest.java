@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.spatial;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class InterestManagerTest {
+    @Test
+    public void testEnteredStayedLeft() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        SpatialIndex<LocationComponent> index = createIndex(core);
+        core.addManager(index);
+        InterestManager manager = new InterestManager(index);
+        core.addManager(manager);
+
+        Entity player = createEntity(core, 0);
+        Entity near = createEntity(core, 5);
+        Entity far = createEntity(core, 50);
+        Interest interest = manager.addObserver(player, 20);
+
+        core.process(16);
+        assertEquals(2, interest.getCount());
+        assertEquals(2, interest.getEnteredCount());
+        assertEquals(0, interest.getStayedCount());
+        assertTrue(interest.contains(near.getEntityId()));
+        assertFalse(interest.contains(far.getEntityId()));
+
+        near.<LocationComponent>modifyComponent(LocationComponent.class).x = 40;
+        far.<LocationComponent>modifyComponent(LocationComponent.class).x = 15;
+        core.process(16);
+        assertEquals(1, interest.getEnteredCount());
+        assertEquals(far.getEntityId(), interest.getEntered(0));
+        assertEquals(1, interest.getStayedCount());
+        assertEquals(player.getEntityId(), interest.getStayed(0));
+        assertEquals(1, interest.getLeftCount());
+        assertEquals(near.getEntityId(), interest.getLeft(0));
+
+        core.removeEntity(far.getEntityId());
+        core.process(16);
+        assertEquals(0, interest.getEnteredCount());
+        assertEquals(1, interest.getLeftCount());
+        assertEquals(1, interest.getCount());
+
+        Entity close = createEntity(core, 3);
+        core.process(16);
+        long id = close.getEntityId();
+        core.removeEntity(id);
+        Entity replacement = createEntity(core, 4);
+        assertEquals(id, replacement.getEntityId());
+        core.process(16);
+        assertEquals(1, interest.getEnteredCount());
+        assertEquals(id, interest.getEntered(0));
+        assertEquals(1, interest.getLeftCount());
+        assertEquals(id, interest.getLeft(0));
+        assertEquals(1, interest.getStayedCount());
+        assertEquals(player.getEntityId(), interest.getStayed(0));
+
+        player.<LocationComponent>modifyComponent(LocationComponent.class).x = 35;
+        core.process(16);
+        assertEquals(1, interest.getEnteredCount());
+        assertEquals(near.getEntityId(), interest.getEntered(0));
+        assertEquals(1, interest.getLeftCount());
+        assertEquals(id, interest.getLeft(0));
+        assertTrue(interest.contains(player.getEntityId()));
+
+        manager.removeObserver(interest);
+        assertEquals(0, manager.getInterests().size());
+    }
+
+    @Test
+    public void testIncrementalAreasMatchQueries() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        SpatialIndex<LocationComponent> index = createIndex(core);
+        core.addManager(index);
+        InterestManager manager = new InterestManager(index);
+        core.addManager(manager);
+        Random random = new Random(5);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < 300; i++) {
+            entities.add(createEntity(core, random.nextInt(200), random.nextInt(200)));
+        }
+        Interest small = manager.addObserver(entities.get(0), 15);
+        Interest wide = manager.addObserver(entities.get(1), 400);
+        for (int tick = 0; tick < 50; tick++) {
+            for (int i = 0; i < 30; i++) {
+                Entity e = entities.get(random.nextInt(entities.size()));
+                LocationComponent location = e.modifyComponent(LocationComponent.class);
+                location.x = random.nextInt(200);
+                location.y = random.nextInt(200);
+            }
+            for (int i = 0; i < 5; i++) {
+                int position = 2 + random.nextInt(entities.size() - 2);
+                core.removeEntity(entities.get(position).getEntityId());
+                entities.set(position, createEntity(core, random.nextInt(200), random.nextInt(200)));
+            }
+            if (tick % 10 == 0) {
+                small.setRadius(10 + random.nextInt(30));
+            }
+            core.process(16);
+            for (Interest interest : Arrays.asList(small, wide)) {
+                long[] expected = new long[entities.size()];
+                int count = index.queryRadius(index.getX(interest.getObserver()), index.getY(interest.getObserver()),
+                        interest.getRadius(), expected);
+                Arrays.sort(expected, 0, count);
+                assertEquals(count, interest.getCount());
+                for (int i = 0; i < count; i++) {
+                    assertEquals(expected[i], interest.get(i));
+                }
+            }
+        }
+    }
+
+    private static SpatialIndex<LocationComponent> createIndex(final Core core) {
+        return new SpatialIndex<LocationComponent>(core, LocationComponent.class,
+                new PositionAccessor<LocationComponent>() {
+                    @Override
+                    public float getX(final LocationComponent position) {
+                        return position.x;
+                    }
+
+                    @Override
+                    public float getY(final LocationComponent position) {
+                        return position.y;
+                    }
+                }, 10);
+    }
+
+    private static Entity createEntity(final Core core, final float x, final float y) {
+        LocationComponent location = new LocationComponent();
+        location.x = x;
+        location.y = y;
+        return core.createEntity().addComponent(location);
+    }
+
+    private static Entity createEntity(final Core core, final float x) {
+        return createEntity(core, x, 0);
+    }
+
+    @Component
+    public static class LocationComponent {
+        private float x;
+        private float y;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.spatial;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class SpatialIndexTest {
+    private static final PositionAccessor<PositionComponent> ACCESSOR = new PositionAccessor<PositionComponent>() {
+        @Override
+        public float getX(final PositionComponent position) {
+            return position.x;
+        }
+
+        @Override
+        public float getY(final PositionComponent position) {
+            return position.y;
+        }
+    };
+
+    @Test
+    public void testQueries() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        Entity existing = createEntity(core, 1, 1);
+        SpatialIndex<PositionComponent> index = new SpatialIndex<PositionComponent>(core, PositionComponent.class, ACCESSOR, 10, 16);
+        core.addManager(index);
+        Entity near = createEntity(core, 4, 5);
+        Entity far = createEntity(core, 100, -100);
+        assertEquals(3, index.size());
+
+        long[] result = new long[8];
+        assertEquals(2, index.queryRadius(0, 0, 7, result));
+        assertEquals(ids(existing, near), ids(result, 2));
+        assertEquals(1, index.queryBox(90, -110, 110, -90, result));
+        assertEquals(far.getEntityId(), result[0]);
+
+        PositionComponent position = near.modifyComponent(PositionComponent.class);
+        position.x = 95;
+        position.y = -95;
+        assertEquals(1, index.queryRadius(0, 0, 7, result));
+        assertEquals(2, index.queryRadius(100, -100, 10, result));
+
+        far.removeComponent(PositionComponent.class);
+        assertEquals(1, index.queryRadius(100, -100, 10, result));
+        core.removeEntity(near.getEntityId());
+        assertEquals(0, index.queryRadius(100, -100, 10, result));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testMatchesBruteForce() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        SpatialIndex<PositionComponent> index = new SpatialIndex<PositionComponent>(core, PositionComponent.class, ACCESSOR, 8);
+        core.addManager(index);
+        Random random = new Random(42);
+        Entity[] entities = new Entity[2000];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = createEntity(core, random.nextFloat() * 400 - 200, random.nextFloat() * 400 - 200);
+        }
+        long[] result = new long[entities.length];
+        for (int q = 0; q < 100; q++) {
+            float x = random.nextFloat() * 400 - 200;
+            float y = random.nextFloat() * 400 - 200;
+            float radius = random.nextFloat() * (q % 10 == 0 ? 500 : 30);
+            Set<Long> expected = new HashSet<Long>();
+            for (Entity e : entities) {
+                PositionComponent p = e.getComponent(PositionComponent.class);
+                float dx = p.x - x;
+                float dy = p.y - y;
+                if (dx * dx + dy * dy <= radius * radius) {
+                    expected.add(e.getEntityId());
+                }
+            }
+            int count = index.queryRadius(x, y, radius, result);
+            assertEquals(expected, ids(result, count));
+        }
+    }
+
+    private static Entity createEntity(final Core core, final float x, final float y) {
+        PositionComponent position = new PositionComponent();
+        position.x = x;
+        position.y = y;
+        return core.createEntity().addComponent(position);
+    }
+
+    private static Set<Long> ids(final Entity... entities) {
+        Set<Long> ids = new HashSet<Long>();
+        for (Entity e : entities) {
+            ids.add(e.getEntityId());
+        }
+        return ids;
+    }
+
+    private static Set<Long> ids(final long[] result, final int count) {
+        Set<Long> ids = new HashSet<Long>();
+        for (long id : Arrays.copyOf(result, count)) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    @Component
+    public static class PositionComponent {
+        private float x;
+        private float y;
+    }
+}
@@ -17,11 +17,22 @@
 package org.skinnyelephant.framework.systems;
 
 import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.annotations.Mapper;
+import org.skinnyelephant.framework.core.ComponentMapper;
 import org.skinnyelephant.framework.core.Core;
 import org.skinnyelephant.framework.core.Entity;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 
 /**
  * @author Kristaps Kohs
@@ -44,6 +55,297 @@ public class EntitySystemTest {
         }
     }
 
+    @Test
+    public void testBucketedSystem() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        MockBucketedSystem system = new MockBucketedSystem();
+        core.addSystem(system);
+        for (int i = 0; i < 40; i++) {
+            core.createEntity().addComponent(new BucketComponent(i < 8 ? 1 : 8));
+        }
+
+        for (int i = 0; i < 16; i++) {
+            assertEquals(12, system.getEntityCount(system.getTick()));
+            core.process(1);
+            assertEquals(12, system.processed);
+            system.processed = 0;
+        }
+
+        system.failing = true;
+        try {
+            core.process(1);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        system.failing = false;
+        system.setUpdateInterval(system.added, 2);
+        assertEquals(25, system.getEntityCount(0) + system.getEntityCount(1));
+    }
+
+    @Test
+    public void testSortedSystem() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        MockSortedSystem system = new MockSortedSystem();
+        core.addSystem(system);
+        Random random = new Random(3);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < 200; i++) {
+            entities.add(core.createEntity().addComponent(new LayerComponent(random.nextInt(20))));
+        }
+
+        for (int tick = 0; tick < 10; tick++) {
+            for (int i = 0; i < 20; i++) {
+                Entity e = entities.get(random.nextInt(entities.size()));
+                e.<LayerComponent>modifyComponent(LayerComponent.class).layer = random.nextInt(20);
+            }
+            Entity removed = entities.remove(random.nextInt(entities.size()));
+            core.removeEntity(removed.getEntityId());
+            entities.add(core.createEntity().addComponent(new LayerComponent(random.nextInt(20))));
+
+            system.order.clear();
+            core.process(1);
+            assertEquals(entities.size(), system.order.size());
+            for (int i = 1; i < system.order.size(); i++) {
+                assertTrue(system.order.get(i - 1) <= system.order.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testPhasesAndGroups() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        List<String> order = new ArrayList<String>();
+        core.addSystem(Phase.EXPORT, new OrderSystem("export", order));
+        OrderSystem input = new OrderSystem("input", order);
+        core.addSystem(Phase.INPUT, "feature", input);
+        core.addSystem(new OrderSystem("simulate", order));
+        core.setPhasePeriod(Phase.EXPORT, 2);
+
+        core.process(1);
+        assertEquals(Arrays.asList("input", "simulate"), order);
+        order.clear();
+        core.process(1);
+        assertEquals(Arrays.asList("input", "simulate", "export"), order);
+        order.clear();
+
+        core.setGroupEnabled("feature", false);
+        core.process(1);
+        assertEquals(Arrays.asList("simulate"), order);
+        order.clear();
+        core.getSystemGroup("feature").setEnabled(true);
+        core.process(1);
+        assertEquals(Arrays.asList("input", "simulate", "export"), order);
+
+        OrderSystem late = new OrderSystem("late", order);
+        core.addSystem(late);
+        try {
+            late.setPhase(Phase.LATE);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            core.addSystem(Phase.LATE, "other", late);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertNull(late.getGroup());
+        try {
+            core.addSystem(Phase.LATE, "other", input);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals("feature", input.getGroup().getName());
+        assertEquals(Phase.INPUT, input.getPhase());
+        assertTrue(core.getSystemGroup("other").getSystems().isEmpty());
+        core.removeSystem(late);
+        core.addSystem(Phase.LATE, late);
+        order.clear();
+        core.process(1);
+        assertEquals(Arrays.asList("input", "simulate", "late"), order);
+    }
+
+    @Test
+    public void testComponentMappers() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        MockMapperSystem system = new MockMapperSystem();
+        core.addSystem(system);
+        assertTrue(system.layers == core.getComponentMapper(LayerComponent.class));
+        Entity entity = core.createEntity().addComponent(new LayerComponent(2));
+        core.createEntity().addComponent(new LayerComponent(3));
+        core.createEntity().addComponent(new BucketComponent(1));
+
+        core.process(1);
+        assertEquals(2, system.processed);
+        assertEquals(5, system.sum);
+        assertTrue(system.layers.has(entity));
+        assertEquals(4, system.layers.modify(entity).layer);
+        assertFalse(system.layers.has(core.createEntity()));
+        assertEquals(null, system.layers.get(core.createEntity()));
+
+        try {
+            core.addSystem(new WildcardMapperSystem());
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static class MockMapperSystem extends EntitySystem {
+        @Mapper
+        private ComponentMapper<LayerComponent> layers;
+        private int processed;
+        private int sum;
+
+        @Override
+        public void initialize() {
+            addUsedComponent(layers.getType());
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+            LayerComponent layer = layers.get(entity);
+            sum += layer.layer;
+            layer.layer *= 2;
+            processed++;
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+
+    private static class WildcardMapperSystem extends EntitySystem {
+        @Mapper
+        private ComponentMapper<?> mapper;
+
+        @Override
+        public void initialize() {
+
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+
+    private static class OrderSystem extends EntitySystem {
+        private final String name;
+        private final List<String> order;
+
+        public OrderSystem(String name, List<String> order) {
+            super(true);
+            this.name = name;
+            this.order = order;
+        }
+
+        @Override
+        public void initialize() {
+
+        }
+
+        @Override
+        public void processSystem() {
+            order.add(name);
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+
+    @Component
+    private static class BucketComponent {
+        private final int interval;
+
+        public BucketComponent(int interval) {
+            this.interval = interval;
+        }
+    }
+
+    private class MockBucketedSystem extends BucketedEntitySystem {
+        private int processed;
+        private boolean failing;
+        private Entity added;
+
+        @Override
+        public void initialize() {
+            addUsedComponent(BucketComponent.class);
+        }
+
+        @Override
+        protected int getUpdateInterval(final Entity entity) {
+            return entity.<BucketComponent>getComponent(BucketComponent.class).interval;
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+            if (failing) {
+                added = entity.getCore().createEntity().addComponent(new BucketComponent(1));
+                throw new IllegalStateException("Failing system");
+            }
+            processed++;
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+
+    @Component
+    private static class LayerComponent {
+        private int layer;
+
+        public LayerComponent(int layer) {
+            this.layer = layer;
+        }
+    }
+
+    private class MockSortedSystem extends SortedEntitySystem {
+        private final List<Integer> order = new ArrayList<Integer>();
+
+        @Override
+        public void initialize() {
+            addUsedComponent(LayerComponent.class);
+        }
+
+        @Override
+        protected double getSortKey(final Entity entity) {
+            return entity.<LayerComponent>getComponent(LayerComponent.class).layer;
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+            order.add(entity.<LayerComponent>getComponent(LayerComponent.class).layer);
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+
     private class MockSystem extends EntitySystem {
 
         public MockSystem(boolean passive, boolean periodic, float period) {
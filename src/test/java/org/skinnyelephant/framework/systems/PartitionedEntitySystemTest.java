@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class PartitionedEntitySystemTest {
+    @Test
+    public void testRegionsAndMigration() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        MovingSystem system = new MovingSystem();
+        core.addSystem(system);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < 40; i++) {
+            PositionComponent position = new PositionComponent();
+            position.x = i;
+            entities.add(core.createEntity().addComponent(position));
+        }
+        for (int region = 0; region < 4; region++) {
+            assertEquals(10, system.getEntityCount(region));
+        }
+
+        for (int tick = 1; tick <= 25; tick++) {
+            core.process(16);
+            assertEquals(4, system.getLastMigrations());
+            for (Entity e : entities) {
+                PositionComponent position = e.getComponent(PositionComponent.class);
+                assertEquals(tick, position.processed);
+                assertEquals(position.x / 10, system.getRegion(e));
+            }
+        }
+
+        core.removeEntity(entities.get(0).getEntityId());
+        assertEquals(-1, system.getRegion(entities.get(0)));
+        core.process(16);
+        int total = 0;
+        for (int region = 0; region < 4; region++) {
+            total += system.getEntityCount(region);
+        }
+        assertEquals(39, total);
+        system.dispose();
+    }
+
+    @Test
+    public void testChangesDuringProcessing() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        final List<Entity> entities = new ArrayList<Entity>();
+        final int[] processed = new int[1];
+        PartitionedEntitySystem system = new PartitionedEntitySystem(new RegionLocator() {
+            @Override
+            public int getRegion(final Entity entity) {
+                return 0;
+            }
+        }, 1, 1) {
+            @Override
+            public void initialize() {
+                addUsedComponent(PositionComponent.class);
+            }
+
+            @Override
+            public void processEntity(final Entity entity) {
+                processed[0]++;
+                if (entity == entities.get(0)) {
+                    entities.get(1).removeComponent(PositionComponent.class);
+                    entity.getCore().createEntity().addComponent(new PositionComponent());
+                }
+            }
+        };
+        core.addSystem(system);
+        for (int i = 0; i < 10; i++) {
+            entities.add(core.createEntity().addComponent(new PositionComponent()));
+        }
+
+        core.process(16);
+        assertEquals(9, processed[0]);
+        assertEquals(-1, system.getRegion(entities.get(1)));
+        assertEquals(10, system.getEntityCount(0));
+    }
+
+    @Test
+    public void testChangesFromWorkersRejected() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        PartitionedEntitySystem system = new PartitionedEntitySystem(new RegionLocator() {
+            @Override
+            public int getRegion(final Entity entity) {
+                return (int) (entity.getEntityId() % 2);
+            }
+        }, 2, 2) {
+            @Override
+            public void initialize() {
+                addUsedComponent(PositionComponent.class);
+            }
+
+            @Override
+            public void processEntity(final Entity entity) {
+                entity.removeComponent(PositionComponent.class);
+            }
+        };
+        core.addSystem(system);
+        Entity entity = core.createEntity().addComponent(new PositionComponent());
+        try {
+            core.process(16);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertNotNull(entity.getComponent(PositionComponent.class));
+        assertEquals(1, core.getEntityManager().getEntitiesForSystem(system).size());
+        assertEquals(entity.getEntityId() % 2, system.getRegion(entity));
+        assertEquals(1, system.getEntityCount(system.getRegion(entity)));
+        assertEquals(1, core.getEntityManager().getAllEntities().size());
+
+        Entity other = core.createEntity().addComponent(new PositionComponent());
+        assertEquals(other.getEntityId() % 2, system.getRegion(other));
+        system.dispose();
+    }
+
+    @Test
+    public void testScalingBenchmark() throws Exception {
+        int maxThreads = Math.min(16, Runtime.getRuntime().availableProcessors());
+        long single = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Core core = new Core();
+            core.initialize();
+            MovingSystem system = new MovingSystem(16, threads, 40000, 64);
+            core.addSystem(system);
+            for (int i = 0; i < 40000; i++) {
+                PositionComponent position = new PositionComponent();
+                position.x = i;
+                core.createEntity().addComponent(position);
+            }
+            core.process(16);
+            long start = System.nanoTime();
+            for (int tick = 0; tick < 20; tick++) {
+                core.process(16);
+            }
+            long duration = System.nanoTime() - start;
+            if (threads == 1) {
+                single = duration;
+            }
+            System.out.println("Processed 20 ticks of 40000 entities with " + threads + " threads in " + duration / 1000
+                    + " us, speedup " + (float) single / duration);
+            system.dispose();
+            core.dispose();
+        }
+    }
+
+    @Component
+    public static class PositionComponent {
+        private int x;
+        private int processed;
+        private long hash;
+    }
+
+    private static class MovingSystem extends PartitionedEntitySystem {
+        private final int work;
+        private final int size;
+
+        public MovingSystem() {
+            this(4, 4, 40, 0);
+        }
+
+        public MovingSystem(final int regions, final int threads, final int size, final int work) {
+            super(new RegionLocator() {
+                @Override
+                public int getRegion(final Entity entity) {
+                    return entity.<PositionComponent>getComponent(PositionComponent.class).x * regions / size;
+                }
+            }, regions, threads);
+            this.size = size;
+            this.work = work;
+        }
+
+        @Override
+        public void initialize() {
+            addUsedComponent(PositionComponent.class);
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+            PositionComponent position = entity.getComponent(PositionComponent.class);
+            for (int i = 0; i < work; i++) {
+                position.hash = position.hash * 31 + i;
+            }
+            position.x = (position.x + 1) % size;
+            position.processed++;
+        }
+    }
+}
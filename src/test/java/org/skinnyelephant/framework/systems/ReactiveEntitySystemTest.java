@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class ReactiveEntitySystemTest {
+    @Test
+    public void testProcessChanges() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        MockReactiveSystem system = new MockReactiveSystem();
+        core.addSystem(system);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < 10; i++) {
+            entities.add(core.createEntity().addComponent(new ReactiveComponent()));
+        }
+
+        core.process(1);
+        assertEquals(10, system.processed.size());
+        system.processed.clear();
+
+        core.process(1);
+        assertTrue(system.processed.isEmpty());
+
+        ReactiveComponent component = entities.get(3).modifyComponent(ReactiveComponent.class);
+        component.value = 5;
+        entities.get(3).modifyComponent(ReactiveComponent.class);
+        core.removeEntity(entities.get(4).getEntityId());
+        Entity e = core.createEntity().addComponent(new ReactiveComponent());
+        core.removeEntity(e.getEntityId());
+
+        core.process(1);
+        assertEquals(1, system.processed.size());
+        assertEquals(entities.get(3), system.processed.get(0));
+        assertEquals(1, system.removed.size());
+        assertEquals(entities.get(4), system.removed.get(0));
+        assertEquals(0, system.getPendingChanges());
+    }
+
+    @Component
+    private static class ReactiveComponent {
+        private int value;
+    }
+
+    private static class MockReactiveSystem extends ReactiveEntitySystem {
+        private final List<Entity> processed = new ArrayList<Entity>();
+        private final List<Entity> removed = new ArrayList<Entity>();
+
+        @Override
+        public void initialize() {
+            addUsedComponent(ReactiveComponent.class);
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+            processed.add(entity);
+        }
+
+        @Override
+        protected void processRemovedEntity(final Entity entity) {
+            removed.add(entity);
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.systems;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.annotations.Component;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class TimeSlicedEntitySystemTest {
+    @Test
+    public void testEntityBudget() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        SlicedSystem system = new SlicedSystem(3);
+        core.addSystem(system);
+        for (int i = 0; i < 10; i++) {
+            core.createEntity().addComponent(new SlicedComponent());
+        }
+
+        for (int i = 0; i < 3; i++) {
+            core.process(16);
+            assertEquals(3, system.processed.size());
+            system.processed.clear();
+        }
+        assertEquals(0, system.getCompletedPasses());
+        core.process(16);
+        assertEquals(1, system.processed.size());
+        assertEquals(1, system.getCompletedPasses());
+        assertEquals(4, system.getLastPassTicks());
+
+        system.processed.clear();
+        for (int i = 0; i < 4; i++) {
+            core.process(16);
+        }
+        assertEquals(10, system.processed.size());
+        assertEquals(2, system.getCompletedPasses());
+    }
+
+    @Test
+    public void testMembershipChangesBetweenSlices() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        SlicedSystem system = new SlicedSystem(3);
+        core.addSystem(system);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < 20; i++) {
+            entities.add(core.createEntity().addComponent(new SlicedComponent()));
+        }
+        Random random = new Random(3);
+        Set<Entity> passStart = new HashSet<Entity>(entities);
+        for (int tick = 0; tick < 200; tick++) {
+            long passes = system.getCompletedPasses();
+            core.process(16);
+            if (system.getCompletedPasses() != passes) {
+                for (Entity e : passStart) {
+                    if (entities.contains(e)) {
+                        assertEquals(Integer.valueOf(1), system.counts.get(e));
+                    }
+                }
+                for (Integer count : system.counts.values()) {
+                    assertEquals(1, count.intValue());
+                }
+                system.counts.clear();
+                passStart = new HashSet<Entity>(entities);
+            }
+            Entity removed = entities.remove(random.nextInt(entities.size()));
+            removed.removeComponent(SlicedComponent.class);
+            entities.add(core.createEntity().addComponent(new SlicedComponent()));
+        }
+        assertTrue(system.getCompletedPasses() > 10);
+    }
+
+    @Component
+    private static class SlicedComponent {
+
+    }
+
+    private static class SlicedSystem extends TimeSlicedEntitySystem {
+        private final Set<Entity> processed = new HashSet<Entity>();
+        private final Map<Entity, Integer> counts = new HashMap<Entity, Integer>();
+
+        public SlicedSystem(int entityBudget) {
+            super(entityBudget, 0);
+        }
+
+        @Override
+        public void initialize() {
+            addUsedComponent(SlicedComponent.class);
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+            processed.add(entity);
+            Integer count = counts.get(entity);
+            counts.put(entity, count == null ? 1 : count + 1);
+        }
+
+        @Override
+        public void dispose() {
+
+        }
+    }
+}
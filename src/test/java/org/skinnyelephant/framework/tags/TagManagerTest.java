@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tags;
+
+import org.junit.Test;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class TagManagerTest {
+    @Test
+    public void testTags() throws Exception {
+        Core core = new Core();
+        core.initialize();
+        TagManager tags = new TagManager(core);
+        core.addManager(tags);
+        Entity red = core.createEntity();
+        Entity blue = core.createEntity();
+        Entity redSelected = core.createEntity();
+
+        assertTrue(tags.addTag(red, "team-red"));
+        assertFalse(tags.addTag(red, "team-red"));
+        tags.addTag(blue, "team-blue");
+        tags.addTag(redSelected, "team-red");
+        tags.addTag(redSelected, "selected");
+        tags.addTag(blue, "selected");
+
+        assertTrue(tags.hasTag(red, "team-red"));
+        assertFalse(tags.hasTag(red, "selected"));
+        assertEquals(2, tags.count("team-red"));
+        assertEquals(1, tags.and("team-red", "selected").cardinality());
+        assertEquals(redSelected.getEntityId(), tags.and("team-red", "selected").nextSetBit(0));
+        assertEquals(3, tags.or("team-red", "team-blue").cardinality());
+        EntityBitSet unselected = tags.andNot("team-red", "selected");
+        assertEquals(1, unselected.cardinality());
+        assertEquals(red.getEntityId(), unselected.nextSetBit(0));
+        assertEquals(0, tags.and("team-red", "unknown").cardinality());
+
+        assertTrue(tags.removeTag(blue, "selected"));
+        assertEquals(1, tags.count("selected"));
+        core.removeEntity(redSelected.getEntityId());
+        assertEquals(0, tags.count("selected"));
+        assertEquals(1, tags.count("team-red"));
+    }
+
+    @Test
+    public void testBitSetOperations() throws Exception {
+        Random random = new Random(7);
+        EntityBitSet a = new EntityBitSet();
+        EntityBitSet b = new EntityBitSet();
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        for (int i = 0; i < 5000; i++) {
+            int id = random.nextInt(100000);
+            a.set(id);
+            expectedA.set(id);
+            id = random.nextInt(50000) + 25000;
+            b.set(id);
+            expectedB.set(id);
+        }
+        for (int i = 0; i < 1000; i++) {
+            int id = random.nextInt(100000);
+            a.clear(id);
+            expectedA.clear(id);
+        }
+        assertSame(expectedA, a);
+
+        BitSet expected = (BitSet) expectedA.clone();
+        expected.and(expectedB);
+        assertSame(expected, new EntityBitSet(a).and(b));
+        expected = (BitSet) expectedA.clone();
+        expected.or(expectedB);
+        assertSame(expected, new EntityBitSet(a).or(b));
+        expected = (BitSet) expectedA.clone();
+        expected.andNot(expectedB);
+        assertSame(expected, new EntityBitSet(a).andNot(b));
+        assertSame(expectedA, a);
+    }
+
+    private static void assertSame(final BitSet expected, final EntityBitSet actual) {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        int count = 0;
+        for (int id = actual.nextSetBit(0); id >= 0; id = actual.nextSetBit(id + 1)) {
+            assertTrue(expected.get(id));
+            assertTrue(actual.get(id));
+            count++;
+        }
+        assertEquals(expected.cardinality(), count);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tick;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.systems.EntitySystem;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class TickDriverTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void testCatchUpAndOverrun() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        Core core = new Core();
+        core.initialize();
+        CountingSystem system = new CountingSystem(clock);
+        core.addSystem(system);
+        TickDriver driver = new TickDriver(core, 100, clock);
+        driver.setMaxCatchUpTicks(3);
+        CountingListener listener = new CountingListener();
+        driver.addListener(listener);
+
+        assertEquals(10 * MS, driver.advance());
+        assertEquals(1, driver.getTick());
+
+        clock.advance(5 * MS);
+        assertEquals(5 * MS, driver.advance());
+        assertEquals(1, driver.getTick());
+
+        clock.advance(25 * MS);
+        driver.advance();
+        assertEquals(4, driver.getTick());
+        assertEquals(0, driver.getDroppedTicks());
+
+        clock.advance(100 * MS);
+        driver.advance();
+        assertEquals(7, driver.getTick());
+        assertEquals(7, driver.getDroppedTicks());
+        assertEquals(7, listener.dropped);
+
+        system.cost = 15 * MS;
+        clock.advance(10 * MS);
+        driver.advance();
+        assertEquals(1, driver.getOverruns());
+        assertEquals(1, listener.overruns);
+        assertEquals(driver.getTick(), listener.processed);
+    }
+
+    @Test
+    public void testRunAndStop() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        Core core = new Core();
+        core.initialize();
+        final TickDriver driver = new TickDriver(core, 50, clock);
+        driver.addListener(new CountingListener() {
+            @Override
+            public void tickProcessed(final long tick, final long duration) {
+                if (tick == 9) {
+                    driver.stop();
+                }
+            }
+        });
+        driver.run();
+        assertEquals(10, driver.getTick());
+        assertEquals(9 * 20 * MS, clock.nanoTime());
+        assertEquals(0, driver.getDroppedTicks());
+    }
+
+    private static class CountingListener implements TickListener {
+        private long processed;
+        private long overruns;
+        private long dropped;
+
+        @Override
+        public void tickProcessed(final long tick, final long duration) {
+            processed++;
+        }
+
+        @Override
+        public void tickOverrun(final long tick, final long duration, final long period) {
+            overruns++;
+        }
+
+        @Override
+        public void ticksDropped(final long count) {
+            dropped += count;
+        }
+    }
+
+    private static class CountingSystem extends EntitySystem {
+        private final VirtualClock clock;
+        private long cost;
+
+        private CountingSystem(final VirtualClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public void processSystem() {
+            clock.advance(cost);
+        }
+
+        @Override
+        public void processEntities(final ImmutableSet<Entity> entities) {
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+}
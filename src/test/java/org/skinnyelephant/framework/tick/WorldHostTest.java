@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.tick;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.skinnyelephant.framework.core.Core;
+import org.skinnyelephant.framework.core.Entity;
+import org.skinnyelephant.framework.systems.EntitySystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class WorldHostTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void testTickRates() throws Exception {
+        VirtualClock clock = new VirtualClock();
+        WorldHost host = new WorldHost(1, clock);
+        HostedWorld slow = host.addWorld(createCore(new GuardedSystem()), 10);
+        HostedWorld fast = host.addWorld(createCore(new GuardedSystem()), 20);
+
+        for (int i = 0; i < 20; i++) {
+            host.processDue();
+            clock.advance(50 * MS);
+        }
+        assertEquals(10, slow.getTicks());
+        assertEquals(20, fast.getTicks());
+
+        host.removeWorld(slow);
+        for (int i = 0; i < 4; i++) {
+            host.processDue();
+            clock.advance(50 * MS);
+        }
+        assertEquals(10, slow.getTicks());
+        assertEquals(24, fast.getTicks());
+        assertEquals(1, host.getScheduledWorlds());
+
+        clock.advance(1000 * MS);
+        int processed;
+        do {
+            processed = host.processDue();
+        } while (processed > 0);
+        assertEquals(30, fast.getTicks());
+        assertEquals(15, fast.getDroppedTicks());
+    }
+
+    @Test
+    public void testSharedPool() throws Exception {
+        WorldHost host = new WorldHost(4, SystemClock.INSTANCE);
+        List<HostedWorld> worlds = new ArrayList<HostedWorld>();
+        List<GuardedSystem> systems = new ArrayList<GuardedSystem>();
+        for (int i = 0; i < 50; i++) {
+            GuardedSystem system = new GuardedSystem();
+            systems.add(system);
+            worlds.add(host.addWorld(createCore(system), 200));
+        }
+        host.start();
+        Thread.sleep(200);
+        host.shutdown();
+        assertFalse(host.isRunning());
+
+        for (int i = 0; i < worlds.size(); i++) {
+            assertTrue(worlds.get(i).getTicks() > 0);
+            assertEquals(worlds.get(i).getTicks(), systems.get(i).processed.get());
+            assertFalse(systems.get(i).overlapped);
+        }
+    }
+
+    @Test
+    public void testFailedWorldIsRemoved() throws Exception {
+        WorldHost host = new WorldHost(2, SystemClock.INSTANCE);
+        final List<HostedWorld> failed = new ArrayList<HostedWorld>();
+        host.setFailureListener(new WorldFailureListener() {
+            @Override
+            public void worldFailed(final HostedWorld world, final Throwable failure) {
+                synchronized (failed) {
+                    failed.add(world);
+                }
+            }
+        });
+        List<HostedWorld> broken = new ArrayList<HostedWorld>();
+        for (int i = 0; i < 4; i++) {
+            broken.add(host.addWorld(createCore(new FailingSystem()), 200));
+        }
+        GuardedSystem system = new GuardedSystem();
+        HostedWorld healthy = host.addWorld(createCore(system), 200);
+        host.start();
+        Thread.sleep(200);
+        host.shutdown();
+
+        assertEquals(broken.size(), failed.size());
+        for (HostedWorld world : broken) {
+            assertTrue(failed.contains(world));
+            assertTrue(world.getFailure() instanceof IllegalStateException);
+            assertEquals(0, world.getTicks());
+        }
+        assertTrue(healthy.getTicks() > 10);
+        assertEquals(1, host.getScheduledWorlds());
+    }
+
+    private static Core createCore(final EntitySystem system) {
+        Core core = new Core();
+        core.initialize();
+        core.addSystem(system);
+        return core;
+    }
+
+    private static class FailingSystem extends EntitySystem {
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public void processSystem() {
+            throw new IllegalStateException("Broken world");
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+
+    private static class GuardedSystem extends EntitySystem {
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger processed = new AtomicInteger();
+        private volatile boolean overlapped;
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public void processSystem() {
+            if (active.incrementAndGet() != 1) {
+                overlapped = true;
+            }
+            processed.incrementAndGet();
+            active.decrementAndGet();
+        }
+
+        @Override
+        public void processEntities(final ImmutableSet<Entity> entities) {
+        }
+
+        @Override
+        public void processEntity(final Entity entity) {
+        }
+
+        @Override
+        public void dispose() {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012  Kristaps Kohs<kristaps.kohs@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.skinnyelephant.framework.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kristaps Kohs
+ */
+public class EntityIdGeneratorTest {
+    private static final int THREADS = 8;
+    private static final int IDS = 200000;
+
+    @Test
+    public void testReserveAndReuse() throws Exception {
+        EntityIdGenerator generator = new EntityIdGeneratorImpl();
+        assertTrue(generator.reserveId(5));
+        assertFalse(generator.reserveId(5));
+        assertTrue(generator.reserveId(3));
+        assertEquals(4, generator.getId());
+        generator.removeId(5);
+        generator.removeId(5);
+        assertTrue(generator.reserveId(5));
+        assertEquals(2, generator.getId());
+        assertEquals(1, generator.getId());
+        assertEquals(0, generator.getId());
+        assertEquals(6, generator.getId());
+    }
+
+    @Test
+    public void testConcurrentReservations() throws Exception {
+        final EntityIdGenerator generator = new ConcurrentEntityIdGenerator();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = THREADS - 1 - t;
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    start.await();
+                    int failed = 0;
+                    for (long id = IDS - THREADS + offset; id >= 0; id -= THREADS) {
+                        if (!generator.reserveId(id)) {
+                            failed++;
+                        }
+                    }
+                    return failed;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> future : futures) {
+            assertEquals(Integer.valueOf(0), future.get());
+        }
+        executor.shutdown();
+
+        Set<Long> ids = new HashSet<Long>();
+        for (int i = 0; i < 1000; i++) {
+            long id = generator.getId();
+            assertTrue(id >= IDS);
+            assertTrue(ids.add(id));
+        }
+    }
+}